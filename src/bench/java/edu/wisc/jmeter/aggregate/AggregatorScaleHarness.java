@@ -0,0 +1,224 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import edu.wisc.jmeter.MonitorListener;
+import edu.wisc.jmeter.Status;
+
+/**
+ * Measures how aggregator throughput scales with the number of sharded instances. For each
+ * instance count the aggregators are started on localhost, agent threads route records to the
+ * owner of each host over the same {@link ConsistentHashRing} the listener uses, and the time
+ * until every record has been processed is measured. Agents write directly to blocking sockets
+ * so a saturated aggregator slows them down instead of records being dropped.
+ * <p>
+ * Configured with system properties, see the shard-test target in build.xml:
+ * <ul>
+ * <li>shard.instances - comma separated instance counts to run, default 1,2,4</li>
+ * <li>shard.agents - agent threads, default 4</li>
+ * <li>shard.hosts - distinct hosts, default 1000</li>
+ * <li>shard.records - records sent by each agent, default 200000</li>
+ * <li>shard.report - report file, default target/shard-report.json</li>
+ * </ul>
+ */
+public class AggregatorScaleHarness {
+    private static final int BATCH_SIZE = 500;
+
+    private final String instanceCounts = System.getProperty("shard.instances", "1,2,4");
+    private final int agents = Integer.getInteger("shard.agents", 4);
+    private final int hosts = Integer.getInteger("shard.hosts", 1000);
+    private final int records = Integer.getInteger("shard.records", 200000);
+    private final File reportFile = new File(System.getProperty("shard.report", "target/shard-report.json"));
+
+    public static void main(String[] args) throws Exception {
+        new AggregatorScaleHarness().run();
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        final StringBuilder report = new StringBuilder("{\n");
+        report.append("  \"agents\": ").append(this.agents).append(",\n");
+        report.append("  \"hosts\": ").append(this.hosts).append(",\n");
+        report.append("  \"recordsPerAgent\": ").append(this.records).append(",\n");
+        report.append("  \"runs\": [");
+
+        boolean first = true;
+        for (final String count : this.instanceCounts.split(",")) {
+            final int instances = Integer.parseInt(count.trim());
+            report.append(first ? "\n" : ",\n").append("    ").append(this.measure(instances));
+            first = false;
+        }
+        report.append("\n  ]\n}\n");
+
+        final File reportDirectory = this.reportFile.getAbsoluteFile().getParentFile();
+        if (!reportDirectory.isDirectory() && !reportDirectory.mkdirs()) {
+            throw new IOException("Failed to create " + reportDirectory);
+        }
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(this.reportFile), "UTF-8");
+        try {
+            writer.write(report.toString());
+        }
+        finally {
+            IOUtils.closeQuietly(writer);
+        }
+
+        System.out.println(report);
+        System.out.println("Wrote shard report to " + this.reportFile.getAbsolutePath());
+    }
+
+    private String measure(int instances) throws Exception {
+        final File directory = File.createTempFile("aggregator-scale", "");
+        if (!directory.delete() || !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+
+        final List<Aggregator> aggregators = new ArrayList<Aggregator>();
+        try {
+            final Map<String, String> addresses = new LinkedHashMap<String, String>();
+            for (int i = 0; i < instances; i++) {
+                final File instanceDirectory = new File(directory, "instance" + i);
+                final MonitorListener listener = new MonitorListener();
+                listener.setStorageType(MonitorListener.STORAGE_TYPE_LOCAL);
+                listener.setLocalStorageDirectory(instanceDirectory.getAbsolutePath());
+                listener.setLogLocation(instanceDirectory.getAbsolutePath());
+                listener.setFailureThreshold(2);
+
+                final Aggregator aggregator = new Aggregator(listener, Aggregator.DEFAULT_BIND_ADDRESS, 0);
+                aggregator.start();
+                aggregators.add(aggregator);
+                addresses.put(Aggregator.DEFAULT_BIND_ADDRESS + ":" + aggregator.getPort(), Aggregator.DEFAULT_BIND_ADDRESS + ":" + aggregator.getPort());
+            }
+            final ConsistentHashRing<String> ring = new ConsistentHashRing<String>(addresses);
+
+            final ExecutorService executor = Executors.newFixedThreadPool(this.agents);
+            final long start = System.nanoTime();
+            try {
+                final List<Future<Void>> results = new ArrayList<Future<Void>>();
+                for (int agent = 0; agent < this.agents; agent++) {
+                    final int agentId = agent;
+                    results.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            sendRecords(agentId, ring, addresses.keySet());
+                            return null;
+                        }
+                    }));
+                }
+                for (final Future<Void> result : results) {
+                    result.get();
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+
+            final long expected = (long) this.agents * this.records;
+            while (received(aggregators) < expected) {
+                Thread.sleep(5);
+            }
+            final long elapsedNanos = System.nanoTime() - start;
+
+            final StringBuilder perInstance = new StringBuilder("[");
+            for (int i = 0; i < aggregators.size(); i++) {
+                perInstance.append(i == 0 ? "" : ", ").append(aggregators.get(i).getReceived());
+            }
+            perInstance.append("]");
+
+            final long recordsPerSecond = expected * 1000000000L / elapsedNanos;
+            System.out.println(instances + " instances: " + recordsPerSecond + " records/s");
+            return "{\"instances\": " + instances + ", \"elapsedMillis\": " + (elapsedNanos / 1000000) + ", \"recordsPerSecond\": "
+                    + recordsPerSecond + ", \"recordsPerInstance\": " + perInstance + "}";
+        }
+        finally {
+            for (final Aggregator aggregator : aggregators) {
+                aggregator.stop();
+            }
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    private void sendRecords(int agent, ConsistentHashRing<String> ring, Iterable<String> addresses) throws IOException {
+        final Map<String, Socket> sockets = new LinkedHashMap<String, Socket>();
+        final Map<String, SampleRecordWriter> writers = new LinkedHashMap<String, SampleRecordWriter>();
+        final Map<String, List<SampleRecord>> batches = new LinkedHashMap<String, List<SampleRecord>>();
+        for (final String address : addresses) {
+            final int portIndex = address.lastIndexOf(':');
+            final Socket socket = new Socket(address.substring(0, portIndex), Integer.parseInt(address.substring(portIndex + 1)));
+            sockets.put(address, socket);
+            writers.put(address, new SampleRecordWriter(socket.getOutputStream()));
+            batches.put(address, new ArrayList<SampleRecord>(BATCH_SIZE));
+        }
+
+        try {
+            final long now = System.currentTimeMillis();
+            for (int i = 0; i < this.records; i++) {
+                final String host = "host" + ((agent * 7919 + i) % this.hosts) + ".example.edu";
+                final boolean successful = i % 20 != 0;
+                final SampleRecord record = new SampleRecord(host, "page" + (i % 8), now + i, 50 + i % 100, successful,
+                        successful ? 200 : 500, Status.UP, false);
+
+                final String owner = ring.getOwner(host);
+                final List<SampleRecord> batch = batches.get(owner);
+                batch.add(record);
+                if (batch.size() == BATCH_SIZE) {
+                    writers.get(owner).writeBatch(batch);
+                    batch.clear();
+                }
+            }
+            for (final Map.Entry<String, List<SampleRecord>> batch : batches.entrySet()) {
+                if (!batch.getValue().isEmpty()) {
+                    writers.get(batch.getKey()).writeBatch(batch.getValue());
+                }
+            }
+        }
+        finally {
+            for (final Socket socket : sockets.values()) {
+                socket.close();
+            }
+        }
+    }
+
+    private static long received(List<Aggregator> aggregators) {
+        long received = 0;
+        for (final Aggregator aggregator : aggregators) {
+            received += aggregator.getReceived();
+        }
+        return received;
+    }
+}
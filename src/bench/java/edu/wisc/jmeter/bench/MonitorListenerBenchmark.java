@@ -0,0 +1,195 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.bench;
+
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wisc.jmeter.MonitorListener;
+import edu.wisc.jmeter.dao.MonitorDao;
+
+/**
+ * Cost of {@link MonitorListener#sampleOccurred(SampleEvent)} per sample. Throughput and sample
+ * time modes give ops/sec and the latency distribution, run with <code>-prof gc</code> for the
+ * allocation per sample (gc.alloc.rate.norm). Thread counts are set with <code>-t</code>, see the
+ * bench target in build.xml.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MonitorListenerBenchmark {
+    static final String STATUS_VAR = "status";
+    static final String NOTIFICATION_VAR = "notify";
+    static final String MONITORED_PREFIX = "Monitored ";
+    static final int HOSTS = 8;
+    static final int EVENTS = 64;
+
+    /**
+     * noop keeps host status in memory and drops everything else, jdbc is {@link edu.wisc.jmeter.dao.JdbcMonitorDao}
+     * on in-memory HSQLDB
+     */
+    @Param({ "noop", "jdbc" })
+    public String dao;
+
+    /**
+     * Samples each thread replays: all successful, all failing, all ignored by the monitored
+     * sample pattern or mostly successful with a few failures and ignored samples
+     */
+    @Param({ "success", "failure", "ignored", "mixed" })
+    public String mix;
+
+    private MonitorListener listener;
+    private File workDirectory;
+
+    @Setup(Level.Trial)
+    public void setupListener() throws Exception {
+        this.workDirectory = File.createTempFile("monitor-bench", "");
+        if (!this.workDirectory.delete() || !this.workDirectory.mkdirs()) {
+            throw new IllegalStateException("Failed to create " + this.workDirectory);
+        }
+
+        this.listener = "jdbc".equals(this.dao) ? new MonitorListener() : new NoopStorageMonitorListener();
+        this.listener.setStatusVar(STATUS_VAR);
+        this.listener.setNotificationVar(NOTIFICATION_VAR);
+        this.listener.setMonitoredSamplePattern(MONITORED_PREFIX + ".*");
+        this.listener.setLogLocation(this.workDirectory.getAbsolutePath());
+        this.listener.setFailureThreshold(2);
+        this.listener.setBackoffDuration(15);
+        this.listener.setSmtpHost("localhost");
+
+        if ("jdbc".equals(this.dao)) {
+            this.listener.setStorageType(MonitorListener.STORAGE_TYPE_JDBC);
+            this.listener.setJdbcDriver("org.hsqldb.jdbcDriver");
+            this.listener.setJdbcUrl("jdbc:hsqldb:mem:MonitorListenerBenchmark;sql.syntax_ora=true");
+            this.listener.setJdbcUser("sa");
+            this.listener.setJdbcPass("");
+        }
+        this.listener.testStarted();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownListener() throws Exception {
+        this.listener.testEnded();
+        FileUtils.deleteQuietly(this.workDirectory);
+    }
+
+    /**
+     * Supplies the noop storage through the same hook as the real storage types so the listener
+     * wraps it in its usual DAO chain
+     */
+    public static class NoopStorageMonitorListener extends MonitorListener {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected MonitorDao createStorage() {
+            return new NoopMonitorDao();
+        }
+    }
+
+    /**
+     * The JMeter variables and samples of a single thread, the variables live in the thread's
+     * JMeter context just like in a test run
+     */
+    @State(Scope.Thread)
+    public static class ThreadSamples {
+        private SampleEvent[] events;
+        private int next = 0;
+
+        @Setup(Level.Trial)
+        public void setupSamples(MonitorListenerBenchmark benchmark) throws Exception {
+            final JMeterVariables vars = new JMeterVariables();
+            vars.put(STATUS_VAR, "UP");
+            vars.put(NOTIFICATION_VAR, "false");
+            JMeterContextService.getContext().setVariables(vars);
+            benchmark.listener.testIterationStart(null);
+
+            this.events = new SampleEvent[EVENTS];
+            final long now = System.currentTimeMillis();
+            for (int i = 0; i < EVENTS; i++) {
+                final boolean ignored;
+                final boolean successful;
+                if ("success".equals(benchmark.mix)) {
+                    ignored = false;
+                    successful = true;
+                }
+                else if ("failure".equals(benchmark.mix)) {
+                    ignored = false;
+                    successful = false;
+                }
+                else if ("ignored".equals(benchmark.mix)) {
+                    ignored = true;
+                    successful = true;
+                }
+                else {
+                    //One in sixteen fails, one in sixteen is ignored
+                    ignored = i % 16 == 7;
+                    successful = i % 16 != 15;
+                }
+
+                final String host = "portal" + (i % HOSTS) + ".example.edu";
+                final SampleResult result = new SampleResult();
+                result.setURL(new URL("http://" + host + "/portal/page" + (i % 4)));
+                result.setSampleLabel((ignored ? "Static " : MONITORED_PREFIX) + "page" + (i % 4));
+                result.setSuccessful(successful);
+                result.setResponseCode(successful ? "200" : "500");
+                result.setResponseMessage(successful ? "OK" : "Internal Server Error");
+                result.setResponseData(("<html>" + host + "</html>").getBytes("UTF-8"));
+                result.setStampAndTime(now + i, 50 + (i % 10) * 5);
+
+                this.events[i] = new SampleEvent(result, "Monitor Thread Group");
+            }
+        }
+
+        public SampleEvent nextEvent() {
+            final SampleEvent event = this.events[this.next];
+            this.next = (this.next + 1) % this.events.length;
+            return event;
+        }
+    }
+
+    @Benchmark
+    public void sampleOccurred(ThreadSamples samples) {
+        this.listener.sampleOccurred(samples.nextEvent());
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.bench;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.wisc.jmeter.BurnRate;
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.ErrorSignatureCount;
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
+import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.OutageStats;
+import edu.wisc.jmeter.SimpleHostStatus;
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.dao.MonitorDao;
+
+/**
+ * Keeps host status in memory and drops everything else, measures the listener without any
+ * storage cost
+ */
+public class NoopMonitorDao implements MonitorDao {
+    private final ConcurrentMap<String, HostStatus> hostStatusTable = new ConcurrentHashMap<String, HostStatus>();
+    private final ConcurrentMap<String, OutageStats> outageStatsTable = new ConcurrentHashMap<String, OutageStats>();
+
+    @Override
+    public void purgeStatusCache(Date before) {
+    }
+
+    @Override
+    public void purgeRequestLog(String host, Date before) {
+    }
+
+    @Override
+    public void purgeRequestLog(Date before) {
+    }
+
+    @Override
+    public void purgeFailureLog(Date before) {
+    }
+
+    @Override
+    public void purgeLatencyRollups(int resolution, Date before) {
+    }
+
+    @Override
+    public HostStatus getHostStatus(String hostName) {
+        HostStatus hostStatus = this.hostStatusTable.get(hostName);
+        if (hostStatus != null) {
+            return hostStatus;
+        }
+
+        hostStatus = new SimpleHostStatus();
+        hostStatus.setHost(hostName);
+        hostStatus.setLastUpdated(new Date());
+
+        final HostStatus existingStatus = this.hostStatusTable.putIfAbsent(hostName, hostStatus);
+        return existingStatus != null ? existingStatus : hostStatus;
+    }
+
+    @Override
+    public void storeHostStatus(HostStatus hostStatus) {
+    }
+
+    @Override
+    public void logFailure(String hostName, String label, Date requestTimestamp, Status status, String subject,
+            String body, Notification sentEmail) {
+    }
+
+    @Override
+    public void logRequest(String hostName, String label, Date requestTimestamp, long duration, boolean successful) {
+    }
+
+    @Override
+    public void logRequestAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, long duration,
+            boolean successful) {
+    }
+
+    @Override
+    public void logFailureAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, Status status,
+            String subject, String body, Notification sentEmail) {
+    }
+
+    @Override
+    public String claimNotification(String hostName, Status status, Date window, long windowLength) {
+        return null;
+    }
+
+    @Override
+    public void storeLatencyRollups(List<LatencyRollup> rollups) {
+    }
+
+    @Override
+    public void storeErrorCounts(List<ErrorSignatureCount> errorCounts) {
+    }
+
+    @Override
+    public void storeBurnRates(List<BurnRate> burnRates) {
+    }
+
+    @Override
+    public void storeClusterStatus(ClusterStatus clusterStatus) {
+    }
+
+    @Override
+    public void openOutage(String hostName, Date start) {
+    }
+
+    @Override
+    public void closeOutage(String hostName, Date end, int failureCount, int messageCount) {
+    }
+
+    @Override
+    public OutageStats getOutageStats(String hostName) {
+        OutageStats outageStats = this.outageStatsTable.get(hostName);
+        if (outageStats != null) {
+            return outageStats;
+        }
+
+        outageStats = new OutageStats(hostName, new Date());
+        final OutageStats existing = this.outageStatsTable.putIfAbsent(hostName, outageStats);
+        return existing != null ? existing : outageStats;
+    }
+}
@@ -0,0 +1,372 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.dao;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.Status;
+
+/**
+ * Measures {@link JdbcMonitorDao} against large tables in a file mode HSQLDB database. The
+ * database is seeded directly with the configured volumes, then the retention purge, cold
+ * {@link JdbcMonitorDao#getHostStatus(String)} loads, concurrent writes and status cache
+ * eviction and refresh are timed. Results are written as JSON so runs of different versions can
+ * be compared.
+ * <p>
+ * Volumes are set with system properties, see the scale-test target in build.xml:
+ * <ul>
+ * <li>scale.hosts - rows in MONITOR_HOST_STATUS, default 2000</li>
+ * <li>scale.labels - labels per host, default 10</li>
+ * <li>scale.failures - rows in MONITOR_FAILURE, half of them old enough to purge, default 1000000</li>
+ * <li>scale.writers - concurrent writer threads, default 8</li>
+ * <li>scale.writes - writes per writer, default 5000</li>
+ * <li>scale.dir - database directory, default a new temporary directory that is deleted after the run</li>
+ * <li>scale.report - report file, default target/scale-report.json</li>
+ * <li>scale.version - version recorded in the report, default unknown</li>
+ * </ul>
+ */
+public class JdbcMonitorDaoScaleHarness {
+    private static final int SEED_BATCH = 5000;
+    private static final long DAY = TimeUnit.MILLISECONDS.convert(1, TimeUnit.DAYS);
+
+    private final int hosts = Integer.getInteger("scale.hosts", 2000);
+    private final int labels = Integer.getInteger("scale.labels", 10);
+    private final int failures = Integer.getInteger("scale.failures", 1000000);
+    private final int writers = Integer.getInteger("scale.writers", 8);
+    private final int writes = Integer.getInteger("scale.writes", 5000);
+    private final File reportFile = new File(System.getProperty("scale.report", "target/scale-report.json"));
+    private final String version = System.getProperty("scale.version", "unknown");
+
+    private final Map<String, Object> results = new LinkedHashMap<String, Object>();
+    private final long now = System.currentTimeMillis();
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private JdbcMonitorDao jdbcMonitorDao;
+
+    public static void main(String[] args) throws Exception {
+        final String dir = System.getProperty("scale.dir");
+        final File databaseDirectory;
+        if (dir != null) {
+            databaseDirectory = new File(dir);
+        }
+        else {
+            databaseDirectory = File.createTempFile("monitor-scale", "");
+            if (!databaseDirectory.delete() || !databaseDirectory.mkdirs()) {
+                throw new IOException("Failed to create " + databaseDirectory);
+            }
+        }
+
+        final JdbcMonitorDaoScaleHarness harness = new JdbcMonitorDaoScaleHarness();
+        try {
+            harness.run(databaseDirectory);
+        }
+        finally {
+            if (dir == null) {
+                FileUtils.deleteQuietly(databaseDirectory);
+            }
+        }
+    }
+
+    public void run(File databaseDirectory) throws Exception {
+        this.dataSource = new DataSource();
+        this.dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+        //Cached tables keep the rows on disk like a real database instead of all in memory
+        this.dataSource.setUrl("jdbc:hsqldb:file:" + new File(databaseDirectory, "monitor").getAbsolutePath() + 
+                ";sql.syntax_ora=true;hsqldb.default_table_type=cached");
+        this.dataSource.setUsername("sa");
+        this.dataSource.setPassword("");
+        this.dataSource.setMaxActive(this.writers + 2);
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+
+        //Nothing is old enough for the background purge to touch during the run
+        this.jdbcMonitorDao = new JdbcMonitorDao(this.dataSource, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        this.jdbcMonitorDao.afterPropertiesSet();
+        try {
+            this.seed();
+            this.measureColdLoad();
+            this.measureCacheEviction();
+            this.measureConcurrentWrites();
+            this.measurePurge();
+        }
+        finally {
+            this.jdbcMonitorDao.destroy();
+            this.jdbcTemplate.execute("SHUTDOWN");
+            this.dataSource.close();
+        }
+
+        this.writeReport();
+    }
+
+    /**
+     * Insert hosts, labels, statuses, requests and failures in batches, half the failures are a
+     * week old and the rest from the last day
+     */
+    private void seed() {
+        final long start = System.nanoTime();
+
+        this.batchInsert("INSERT INTO MONITOR_HOST (HOST_ID, HOST_NAME) VALUES (?, ?)", this.hosts, new RowSetter() {
+            @Override
+            public void setRow(PreparedStatement ps, int row) throws SQLException {
+                ps.setLong(1, row);
+                ps.setString(2, getHostName(row));
+            }
+        });
+        this.batchInsert("INSERT INTO MONITOR_LABEL (LABEL_ID, LABEL) VALUES (?, ?)", this.labels, new RowSetter() {
+            @Override
+            public void setRow(PreparedStatement ps, int row) throws SQLException {
+                ps.setLong(1, row);
+                ps.setString(2, "Label " + row);
+            }
+        });
+        this.batchInsert("INSERT INTO MONITOR_HOST_STATUS (HOST_NAME, STATUS, FAILURE_COUNT, MESSAGE_COUNT, LAST_NOTIFICATION, LAST_UPDATED, VERSION) " +
+                "VALUES (?, ?, ?, 0, NULL, ?, 0)", this.hosts, new RowSetter() {
+            @Override
+            public void setRow(PreparedStatement ps, int row) throws SQLException {
+                ps.setString(1, getHostName(row));
+                ps.setString(2, row % 50 == 0 ? Status.DOWN.toString() : Status.UP.toString());
+                ps.setInt(3, row % 50 == 0 ? 3 : 0);
+                ps.setTimestamp(4, new Timestamp(now));
+            }
+        });
+        this.batchInsert("INSERT INTO MONITOR_REQUEST (HOST_ID, LABEL_ID, LAST_SAMPLE, DURATION, SUCCESS) VALUES (?, ?, ?, ?, ?)", 
+                this.hosts * this.labels, new RowSetter() {
+            @Override
+            public void setRow(PreparedStatement ps, int row) throws SQLException {
+                ps.setLong(1, row / labels);
+                ps.setLong(2, row % labels);
+                ps.setTimestamp(3, new Timestamp(now - row % 60000));
+                ps.setLong(4, 100 + row % 900);
+                ps.setString(5, "true");
+            }
+        });
+        this.batchInsert("INSERT INTO MONITOR_FAILURE (HOST_ID, LABEL_ID, FAILURE_DATE, STATUS, EMAIL_SUBJECT, EMAIL_BODY, EMAIL_SENT) VALUES (?, ?, ?, ?, ?, ?, ?)", 
+                this.failures, new RowSetter() {
+            @Override
+            public void setRow(PreparedStatement ps, int row) throws SQLException {
+                final boolean old = row % 2 == 0;
+                ps.setLong(1, row % hosts);
+                ps.setLong(2, row % labels);
+                ps.setTimestamp(3, new Timestamp(now - (old ? 7 * DAY : 0) - row % DAY));
+                ps.setString(4, Status.DOWN.toString());
+                ps.setString(5, "myUwMonitor: " + getHostName(row % hosts) + " DOWN (fc=3, mc=1)");
+                ps.setString(6, "Response code was '500' - 'Internal Server Error'");
+                ps.setString(7, Notification.FALSE.toString());
+            }
+        });
+
+        this.result("seedMillis", millisSince(start));
+    }
+
+    /**
+     * Load every host status into an empty cache
+     */
+    private void measureColdLoad() {
+        this.jdbcMonitorDao.clearHostStatusCache();
+
+        final long start = System.nanoTime();
+        for (int host = 0; host < this.hosts; host++) {
+            this.jdbcMonitorDao.getHostStatus(getHostName(host));
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        this.result("coldLoadMillis", TimeUnit.MILLISECONDS.convert(elapsed, TimeUnit.NANOSECONDS));
+        this.result("coldLoadMicrosPerHost", TimeUnit.MICROSECONDS.convert(elapsed, TimeUnit.NANOSECONDS) / this.hosts);
+    }
+
+    /**
+     * Refresh the full cache then evict all of it and load it again
+     */
+    private void measureCacheEviction() {
+        long start = System.nanoTime();
+        this.jdbcMonitorDao.refreshHostStatusCache();
+        this.result("cacheRefreshMillis", millisSince(start));
+
+        start = System.nanoTime();
+        this.jdbcMonitorDao.purgeStatusCache(new Date(System.currentTimeMillis() + DAY));
+        this.result("cacheEvictionMillis", millisSince(start));
+
+        start = System.nanoTime();
+        for (int host = 0; host < this.hosts; host++) {
+            this.jdbcMonitorDao.getHostStatus(getHostName(host));
+        }
+        this.result("reloadAfterEvictionMillis", millisSince(start));
+    }
+
+    /**
+     * Writers log requests for their own slice of hosts, every tenth write also logs a failure
+     */
+    private void measureConcurrentWrites() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(this.writers);
+        try {
+            final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            for (int writer = 0; writer < this.writers; writer++) {
+                final int firstHost = writer;
+                tasks.add(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        for (int write = 0; write < writes; write++) {
+                            final HostStatus hostStatus = jdbcMonitorDao.getHostStatus(getHostName((firstHost + write * writers) % hosts));
+                            final String label = "Label " + write % labels;
+                            final Date timestamp = new Date();
+                            if (write % 10 == 9) {
+                                jdbcMonitorDao.logFailureAndStatus(hostStatus, label, timestamp, Status.DOWN, "subject", "body", Notification.FALSE);
+                            }
+                            jdbcMonitorDao.logRequestAndStatus(hostStatus, label, timestamp, 100, write % 10 != 9);
+                        }
+                        return null;
+                    }
+                });
+            }
+
+            final long start = System.nanoTime();
+            for (final Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            final long elapsed = System.nanoTime() - start;
+
+            final long totalWrites = (long)this.writers * this.writes;
+            this.result("writeMillis", TimeUnit.MILLISECONDS.convert(elapsed, TimeUnit.NANOSECONDS));
+            this.result("writesPerSecond", totalWrites * TimeUnit.NANOSECONDS.convert(1, TimeUnit.SECONDS) / Math.max(elapsed, 1));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Purge the week old half of the failures
+     */
+    private void measurePurge() {
+        final int before = this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_FAILURE");
+
+        final long start = System.nanoTime();
+        this.jdbcMonitorDao.purgeFailureLog(new Date(this.now - 2 * DAY));
+        this.result("purgeFailureMillis", millisSince(start));
+
+        this.result("purgedFailures", before - this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_FAILURE"));
+    }
+
+    private void writeReport() throws IOException {
+        final Map<String, Object> config = new LinkedHashMap<String, Object>();
+        config.put("hosts", this.hosts);
+        config.put("labels", this.labels);
+        config.put("failures", this.failures);
+        config.put("writers", this.writers);
+        config.put("writes", this.writes);
+
+        final StringBuilder report = new StringBuilder();
+        report.append("{\n");
+        report.append("  \"version\": \"").append(this.version).append("\",\n");
+        report.append("  \"started\": \"").append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date(this.now))).append("\",\n");
+        report.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        report.append("  \"config\": ");
+        appendObject(report, config);
+        report.append(",\n  \"results\": ");
+        appendObject(report, this.results);
+        report.append("\n}\n");
+
+        final File reportDirectory = this.reportFile.getAbsoluteFile().getParentFile();
+        if (!reportDirectory.isDirectory() && !reportDirectory.mkdirs()) {
+            throw new IOException("Failed to create " + reportDirectory);
+        }
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(this.reportFile), "UTF-8");
+        try {
+            writer.write(report.toString());
+        }
+        finally {
+            IOUtils.closeQuietly(writer);
+        }
+
+        System.out.println(report);
+        System.out.println("Wrote scale report to " + this.reportFile.getAbsolutePath());
+    }
+
+    private static void appendObject(StringBuilder report, Map<String, Object> values) {
+        report.append("{");
+        boolean first = true;
+        for (final Map.Entry<String, Object> value : values.entrySet()) {
+            report.append(first ? "\n" : ",\n").append("    \"").append(value.getKey()).append("\": ").append(value.getValue());
+            first = false;
+        }
+        report.append("\n  }");
+    }
+
+    private void result(String name, long value) {
+        this.results.put(name, value);
+        System.out.println(name + ": " + value);
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.MILLISECONDS.convert(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String getHostName(int host) {
+        return "node" + host + ".example.edu";
+    }
+
+    private void batchInsert(String sql, final int rows, final RowSetter rowSetter) {
+        for (int batchStart = 0; batchStart < rows; batchStart += SEED_BATCH) {
+            final int first = batchStart;
+            final int size = Math.min(SEED_BATCH, rows - batchStart);
+            this.jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    rowSetter.setRow(ps, first + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    private interface RowSetter {
+        void setRow(PreparedStatement ps, int row) throws SQLException;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter;
+
+import java.util.Date;
+
+/**
+ * Error budget burn rates of a service group over the short, medium and long windows. A burn
+ * rate of 1 spends the budget exactly over the SLO period, higher rates spend it faster.
+ */
+public class BurnRate {
+    private final String group;
+    private final double sloTarget;
+    private final double shortBurnRate;
+    private final double mediumBurnRate;
+    private final double longBurnRate;
+    private final boolean burning;
+    private final Date updated;
+
+    public BurnRate(String group, double sloTarget, double shortBurnRate, double mediumBurnRate, double longBurnRate, 
+            boolean burning, Date updated) {
+        this.group = group;
+        this.sloTarget = sloTarget;
+        this.shortBurnRate = shortBurnRate;
+        this.mediumBurnRate = mediumBurnRate;
+        this.longBurnRate = longBurnRate;
+        this.burning = burning;
+        this.updated = updated;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+    /**
+     * @return Fraction of samples that should succeed, 0.999 for a 99.9% SLO
+     */
+    public double getSloTarget() {
+        return sloTarget;
+    }
+    public double getShortBurnRate() {
+        return shortBurnRate;
+    }
+    public double getMediumBurnRate() {
+        return mediumBurnRate;
+    }
+    public double getLongBurnRate() {
+        return longBurnRate;
+    }
+    public boolean isBurning() {
+        return burning;
+    }
+    public Date getUpdated() {
+        return updated;
+    }
+
+    @Override
+    public String toString() {
+        return "BurnRate [group=" + group + ", sloTarget=" + sloTarget + ", shortBurnRate=" + shortBurnRate
+                + ", mediumBurnRate=" + mediumBurnRate + ", longBurnRate=" + longBurnRate + ", burning=" + burning
+                + ", updated=" + updated + "]";
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter;
+
+import java.util.Date;
+
+/**
+ * Health of a cluster derived from the status of its hosts. Hosts out of service are not
+ * counted.
+ */
+public class ClusterStatus {
+    private final String cluster;
+    private final Status status;
+    private final Status previousStatus;
+    private final int hostCount;
+    private final int downCount;
+    private final Date updated;
+
+    public ClusterStatus(String cluster, Status status, Status previousStatus, int hostCount, int downCount, Date updated) {
+        this.cluster = cluster;
+        this.status = status;
+        this.previousStatus = previousStatus;
+        this.hostCount = hostCount;
+        this.downCount = downCount;
+        this.updated = updated;
+    }
+
+    public String getCluster() {
+        return cluster;
+    }
+    /**
+     * @return {@link Status#UP}, {@link Status#DEGRADED} or {@link Status#DOWN} when every host is down
+     */
+    public Status getStatus() {
+        return status;
+    }
+    /**
+     * @return The status before the update this status came from, the same as the status if only the counts changed
+     */
+    public Status getPreviousStatus() {
+        return previousStatus;
+    }
+    public boolean isStatusChanged() {
+        return status != previousStatus;
+    }
+    public int getHostCount() {
+        return hostCount;
+    }
+    public int getDownCount() {
+        return downCount;
+    }
+    public Date getUpdated() {
+        return updated;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterStatus [cluster=" + cluster + ", status=" + status + ", previousStatus=" + previousStatus + ", hostCount=" + hostCount + ", downCount="
+                + downCount + ", updated=" + updated + "]";
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter;
+
+import java.util.Date;
+
+/**
+ * Number of failures with one error signature for one host over one interval
+ */
+public class ErrorSignatureCount {
+    private final String host;
+    private final String signature;
+    private final Date intervalStart;
+    private final int failureCount;
+
+    public ErrorSignatureCount(String host, String signature, Date intervalStart, int failureCount) {
+        this.host = host;
+        this.signature = signature;
+        this.intervalStart = intervalStart;
+        this.failureCount = failureCount;
+    }
+
+    public String getHost() {
+        return host;
+    }
+    public String getSignature() {
+        return signature;
+    }
+    public Date getIntervalStart() {
+        return intervalStart;
+    }
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ErrorSignatureCount [host=" + host + ", signature=" + signature + ", intervalStart=" + intervalStart
+                + ", failureCount=" + failureCount + "]";
+    }
+}
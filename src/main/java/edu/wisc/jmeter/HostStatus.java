@@ -7,70 +7,93 @@
 package edu.wisc.jmeter;
 
 import java.util.Date;
-import java.util.concurrent.atomic.AtomicInteger;
-
-import org.springframework.util.Assert;
 
 /**
+ * Status of a monitored host. Holds no state itself so stores can hand out views of their own
+ * storage, {@link SimpleHostStatus} keeps the values in fields.
+ * 
  * @author Eric Dalquist
  * @version $Revision: 1.2 $
  */
-public class HostStatus {
-    private String host;
-    private final AtomicInteger messageCount = new AtomicInteger(0);
-    private final AtomicInteger failureCount = new AtomicInteger(0);
-    private Date lastMessageSent = null;
-    private Date lastUpdated = null;
-    private Status status = Status.UNKOWN;
+public abstract class HostStatus {
     
-    public Status getStatus() {
-        return status;
-    }
-    public void setStatus(Status status) {
-        Assert.notNull(status);
-        this.status = status;
-    }
-    public String getHost() {
-        return host;
-    }
-    public void setHost(String host) {
-        this.host = host;
-    }
-    public int getMessageCount() {
-        return messageCount.get();
-    }
-    public void setMessageCount(int messageCount) {
-        this.messageCount.set(messageCount);
-    }
-    public int incrementMessageCount() {
-        return this.messageCount.incrementAndGet();
-    }
-    public int getFailureCount() {
-        return failureCount.get();
-    }
-    public void setFailureCount(int failureCount) {
-        this.failureCount.set(failureCount);
-    }
-    public int incrementFailureCount() {
-        return this.failureCount.incrementAndGet();
-    }
-    public Date getLastMessageSent() {
-        return lastMessageSent;
+    public abstract Status getStatus();
+    public abstract void setStatus(Status status);
+    public abstract String getHost();
+    public abstract void setHost(String host);
+    public abstract int getMessageCount();
+    public abstract void setMessageCount(int messageCount);
+    public abstract int incrementMessageCount();
+    public abstract int getFailureCount();
+    public abstract void setFailureCount(int failureCount);
+    public abstract int incrementFailureCount();
+    public abstract Date getLastMessageSent();
+    public abstract void setLastMessageSent(Date lastMessageSent);
+    public abstract Date getLastUpdated();
+    public abstract void setLastUpdated(Date lastUpdated);
+    public abstract long getVersion();
+    public abstract void setVersion(long version);
+    
+    /**
+     * Counter values as of the last load or store, used to find local changes when merging
+     */
+    protected abstract int getStoredMessageCount();
+    protected abstract int getStoredFailureCount();
+    protected abstract void setStoredCounts(int storedMessageCount, int storedFailureCount);
+    
+    /**
+     * Record the current counters as the persisted baseline, called after every load or store
+     */
+    public void markStored() {
+        this.setStoredCounts(this.getMessageCount(), this.getFailureCount());
     }
-    public void setLastMessageSent(Date lastMessageSent) {
-        this.lastMessageSent = lastMessageSent;
+    
+    /**
+     * Copy every field of the other status, including its persisted counter baseline
+     */
+    public void copy(HostStatus other) {
+        this.setHost(other.getHost());
+        this.setStatus(other.getStatus());
+        this.setMessageCount(other.getMessageCount());
+        this.setFailureCount(other.getFailureCount());
+        this.setLastMessageSent(other.getLastMessageSent());
+        this.setLastUpdated(other.getLastUpdated());
+        this.setVersion(other.getVersion());
+        this.setStoredCounts(other.getStoredMessageCount(), other.getStoredFailureCount());
     }
-    public Date getLastUpdated() {
-        return lastUpdated;
+    
+    /**
+     * Merge with a newer copy of this status that was persisted by another node. Counter changes
+     * made locally since the last load or store are added to the other node's counters, unless
+     * they were reset locally. The latest of the two notification times is kept.
+     */
+    public void merge(HostStatus current) {
+        this.setMessageCount(mergeCounter(this.getMessageCount(), this.getStoredMessageCount(), current.getMessageCount()));
+        this.setFailureCount(mergeCounter(this.getFailureCount(), this.getStoredFailureCount(), current.getFailureCount()));
+        
+        final Date currentLastMessageSent = current.getLastMessageSent();
+        final Date lastMessageSent = this.getLastMessageSent();
+        if (currentLastMessageSent != null && (lastMessageSent == null || currentLastMessageSent.after(lastMessageSent))) {
+            this.setLastMessageSent(currentLastMessageSent);
+        }
+        
+        this.setVersion(current.getVersion());
+        this.setStoredCounts(current.getMessageCount(), current.getFailureCount());
     }
-    public void setLastUpdated(Date lastUpdated) {
-        this.lastUpdated = lastUpdated;
+    
+    private static int mergeCounter(int local, int stored, int current) {
+        if (local < stored) {
+            //Reset locally, the reset wins over any failures counted elsewhere
+            return local;
+        }
+        return current + (local - stored);
     }
     
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
+        final String host = this.getHost();
         result = prime * result + ((host == null) ? 0 : host.hashCode());
         return result;
     }
@@ -86,19 +109,20 @@ public class HostStatus {
             return false;
         }
         HostStatus other = (HostStatus) obj;
+        final String host = this.getHost();
         if (host == null) {
-            if (other.host != null) {
+            if (other.getHost() != null) {
                 return false;
             }
         }
-        else if (!host.equals(other.host)) {
+        else if (!host.equals(other.getHost())) {
             return false;
         }
         return true;
     }
     @Override
     public String toString() {
-        return "HostStatus [host=" + host + ", status=" + status + ", lastUpdated=" + lastUpdated + ", failureCount="
-                + failureCount + ", messageCount=" + messageCount + ", lastMessageSent=" + lastMessageSent + "]";
+        return "HostStatus [host=" + getHost() + ", status=" + getStatus() + ", lastUpdated=" + getLastUpdated() + ", failureCount="
+                + getFailureCount() + ", messageCount=" + getMessageCount() + ", lastMessageSent=" + getLastMessageSent() + ", version=" + getVersion() + "]";
     }
 }
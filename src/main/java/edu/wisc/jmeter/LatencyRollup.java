@@ -0,0 +1,108 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter;
+
+import java.util.Date;
+
+import edu.wisc.jmeter.stats.LatencyHistogram;
+
+/**
+ * Latency and error counts for one host and label over one time bucket of the resolution
+ */
+public class LatencyRollup {
+    private final String host;
+    private final String label;
+    private final int resolution;
+    private final Date bucketStart;
+    private final long sampleCount;
+    private final long errorCount;
+    private final long minDuration;
+    private final long maxDuration;
+    private final double meanDuration;
+    private final long p50;
+    private final long p90;
+    private final long p95;
+    private final long p99;
+
+    /**
+     * @param resolution Length of the bucket in minutes
+     */
+    public LatencyRollup(String host, String label, int resolution, Date bucketStart, LatencyHistogram.Snapshot snapshot) {
+        this.host = host;
+        this.label = label;
+        this.resolution = resolution;
+        this.bucketStart = bucketStart;
+        this.sampleCount = snapshot.getCount();
+        this.errorCount = snapshot.getErrorCount();
+        this.minDuration = snapshot.getMin();
+        this.maxDuration = snapshot.getMax();
+        this.meanDuration = snapshot.getMean();
+        this.p50 = snapshot.getPercentile(50);
+        this.p90 = snapshot.getPercentile(90);
+        this.p95 = snapshot.getPercentile(95);
+        this.p99 = snapshot.getPercentile(99);
+    }
+
+    public String getHost() {
+        return host;
+    }
+    public String getLabel() {
+        return label;
+    }
+    public int getResolution() {
+        return resolution;
+    }
+    public Date getBucketStart() {
+        return bucketStart;
+    }
+    public long getSampleCount() {
+        return sampleCount;
+    }
+    public long getErrorCount() {
+        return errorCount;
+    }
+    public long getMinDuration() {
+        return minDuration;
+    }
+    public long getMaxDuration() {
+        return maxDuration;
+    }
+    public double getMeanDuration() {
+        return meanDuration;
+    }
+    public long getP50() {
+        return p50;
+    }
+    public long getP90() {
+        return p90;
+    }
+    public long getP95() {
+        return p95;
+    }
+    public long getP99() {
+        return p99;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyRollup [host=" + host + ", label=" + label + ", resolution=" + resolution + ", bucketStart=" + bucketStart + ", sampleCount="
+                + sampleCount + ", errorCount=" + errorCount + ", p50=" + p50 + ", p95=" + p95 + ", p99=" + p99 + "]";
+    }
+}
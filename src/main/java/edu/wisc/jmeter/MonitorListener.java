@@ -8,12 +8,32 @@ package edu.wisc.jmeter;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.jmeter.assertions.AssertionResult;
 import org.apache.jmeter.engine.event.LoopIterationEvent;
@@ -31,14 +51,46 @@ import org.apache.jmeter.visualizers.Visualizer;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 import org.apache.tomcat.jdbc.pool.DataSource;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.mail.MailException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 
+import edu.wisc.jmeter.aggregate.SampleRecord;
+import edu.wisc.jmeter.aggregate.ShardedAggregatorClient;
+import edu.wisc.jmeter.capture.CaptureBufferPool;
+import edu.wisc.jmeter.capture.CaptureBufferPool.ExhaustedPolicy;
+import edu.wisc.jmeter.capture.CaptureWriter;
+import edu.wisc.jmeter.dao.ArrayHostStatusStore;
 import edu.wisc.jmeter.dao.ErrorHandlingMonitorDao;
+import edu.wisc.jmeter.dao.EventPublishingMonitorDao;
+import edu.wisc.jmeter.dao.HostPurgeListener;
+import edu.wisc.jmeter.dao.HostStatusStore;
 import edu.wisc.jmeter.dao.JdbcMonitorDao;
+import edu.wisc.jmeter.dao.LocalMonitorDao;
+import edu.wisc.jmeter.dao.MapHostStatusStore;
 import edu.wisc.jmeter.dao.MonitorDao;
+import edu.wisc.jmeter.dao.StatusRecordingMonitorDao;
+import edu.wisc.jmeter.dao.TimedMonitorDao;
+import edu.wisc.jmeter.detect.BurnRateTracker;
+import edu.wisc.jmeter.detect.Cluster;
+import edu.wisc.jmeter.detect.ClusterTracker;
+import edu.wisc.jmeter.detect.ErrorRateDetector;
+import edu.wisc.jmeter.detect.FlapDetector;
+import edu.wisc.jmeter.detect.LatencyAnomalyDetector;
+import edu.wisc.jmeter.detect.ServiceGroup;
+import edu.wisc.jmeter.event.EventDispatcher;
+import edu.wisc.jmeter.event.MonitorEventSubscriber;
+import edu.wisc.jmeter.event.NdjsonEventSubscriber;
+import edu.wisc.jmeter.metrics.MetricsMBean;
+import edu.wisc.jmeter.metrics.MetricsRegistry;
+import edu.wisc.jmeter.metrics.StripedCounter;
+import edu.wisc.jmeter.stats.ErrorSignatureTracker;
+import edu.wisc.jmeter.stats.LatencyTracker;
+import edu.wisc.jmeter.stats.RecentSamples;
+import edu.wisc.jmeter.status.StatusServer;
+import edu.wisc.jmeter.status.StatusState;
 
 /**
  * @author Eric Dalquist
@@ -49,24 +101,91 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
     private static final Logger log = LoggingManager.getLoggerForClass();
     
     public static final int DEFAULT_PURGE_OLD_FAILURE = 60 * 24 * 7; //default to 1 week
-    public static final int DEFAULT_PURGE_OLD_STATUS  = 60 * 24; //default to 1 day
+    public static final int DEFAULT_LATENCY_ROLLUP_INTERVAL = 1; //default to 1 minute
+    public static final int DEFAULT_LATENCY_RETENTION_FINE = 7 * 1440; //default to 7 days
+    public static final int DEFAULT_LATENCY_RETENTION_HOURLY = 31 * 1440; //default to 31 days
+    public static final int DEFAULT_LATENCY_RETENTION_DAILY = 730 * 1440; //default to 2 years
+    public static final int DEFAULT_ERROR_RATE_WINDOW = 300; //default to 5 minutes
+    public static final int DEFAULT_ERROR_RATE_TRIP = 50; //default to 50%
+    public static final int DEFAULT_ERROR_RATE_CLEAR = 10; //default to 10%
+    public static final int DEFAULT_LATENCY_ANOMALY_DEVIATION = 4; //default to 4 standard deviations
+    public static final int DEFAULT_LATENCY_ANOMALY_RATIO = 3; //default to 3x the mean
+    public static final int DEFAULT_LATENCY_ANOMALY_THRESHOLD = 5; //default to 5 consecutive slow samples
+    public static final int DEFAULT_FLAP_WINDOW = 30; //default to 30 minutes
+    public static final int DEFAULT_FLAP_START_SCORE = 6;
+    public static final int DEFAULT_FLAP_STOP_SCORE = 2;
+    public static final int DEFAULT_ERROR_SIGNATURE_INTERVAL = 5; //default to 5 minutes
+    public static final int DEFAULT_ERROR_SIGNATURE_RAW_FAILURES = 5;
+    public static final int DEFAULT_RECENT_SAMPLE_COUNT = 20;
+    public static final int DEFAULT_CAPTURE_BUFFER_SIZE = 0; //default to writing captures on the sampler thread
+    public static final int CAPTURE_SLAB_SIZE = 64 * 1024;
+    public static final long CAPTURE_BLOCK_TIMEOUT = 50; //milliseconds
+    public static final int DEFAULT_STATUS_PORT = 0; //default to no status server
+    public static final String DEFAULT_STATUS_BIND_ADDRESS = "127.0.0.1"; //default to local pollers only
+    public static final int DEFAULT_STATUS_RECENT_FAILURES = 50;
+    public static final int EVENT_BUFFER_SIZE = 1024;
+    public static final int AGGREGATOR_BATCH_SIZE = 500;
+    public static final int AGGREGATOR_QUEUE_SIZE = 20000;
+    public static final long AGGREGATOR_FLUSH_INTERVAL = 250; //milliseconds
+    public static final int HOURLY_RESOLUTION = 60;
+    public static final int DAILY_RESOLUTION = 1440;
+    public static final long BURN_RATE_STORE_INTERVAL = TimeUnit.MILLISECONDS.convert(1, TimeUnit.MINUTES);
+    
+    public static final String STORAGE_TYPE_JDBC = "jdbc";
+    public static final String STORAGE_TYPE_LOCAL = "local";
+    
+    public static final String CAPTURE_POLICY_TRUNCATE = "truncate";
+    public static final String CAPTURE_POLICY_DROP = "drop";
+    public static final String CAPTURE_POLICY_BLOCK = "block";
     
     private final SimpleDateFormat RESPONSE_FILE_DATE_FORMAT = new SimpleDateFormat("yyyyMMdd.HHmmss.SSS");
+    private static final String RESPONSE_FILE_SEPARATOR = "--------------------------------------------------------------------------------";
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
     
     private String statusVar; //Name of the variable used to communicate server status
     private Pattern statusSamplePattern; //Regex pattern used to identifiy samples of server status flags
     private Pattern monitoredSamplePattern; //Regex pattern used to identifiy samples to be monitored
     
     private String logLocation; //Failed responses are saved here
+    private int errorSignatureInterval = DEFAULT_ERROR_SIGNATURE_INTERVAL; //Minutes failures are counted per error signature over, 0 to log every failure
+    private int errorSignatureRawFailures = DEFAULT_ERROR_SIGNATURE_RAW_FAILURES; //Failures per host and signature logged in full each interval
+    private int recentSampleCount = DEFAULT_RECENT_SAMPLE_COUNT; //Samples per host included with failures, 0 to disable
+    private int captureBufferSize = DEFAULT_CAPTURE_BUFFER_SIZE; //Megabytes of direct memory pending captures are held in, 0 to write captures on the sampler thread
+    private String captureExhaustedPolicy = CAPTURE_POLICY_TRUNCATE; //truncate, drop or block when the capture buffer is full
     
     //Email Notification Settings
     private String notificationVar; //Name of the variable used to communicate if notification should be performed
     private int failureThreshold; //Number of failures needed to mark a machine as down
+    private int errorRateWindow = DEFAULT_ERROR_RATE_WINDOW; //Seconds of samples the error rate is over, 0 to only use consecutive failures
+    private int errorRateTrip = DEFAULT_ERROR_RATE_TRIP; //Error rate percent that marks a machine as down
+    private int errorRateClear = DEFAULT_ERROR_RATE_CLEAR; //Error rate percent that marks a down machine as up
+    private int latencyAnomalyDeviation = DEFAULT_LATENCY_ANOMALY_DEVIATION; //Standard deviations over the baseline a slow sample is, 0 to disable
+    private int latencyAnomalyRatio = DEFAULT_LATENCY_ANOMALY_RATIO; //Multiple of the baseline a slow sample is
+    private int latencyAnomalyThreshold = DEFAULT_LATENCY_ANOMALY_THRESHOLD; //Consecutive slow samples needed to mark a machine as degraded
+    private int flapWindow = DEFAULT_FLAP_WINDOW; //Minutes up/down transitions count towards the flap score, 0 to disable
+    private int flapStartScore = DEFAULT_FLAP_START_SCORE; //Flap score that marks a machine as flapping
+    private int flapStopScore = DEFAULT_FLAP_STOP_SCORE; //Flap score at which a flapping machine settles
+    private String serviceGroups; //Service groups with SLO targets, see ServiceGroup.parse
+    private String clusters; //Clusters of hosts with degraded thresholds, see Cluster.parse
     private int backoffDuration; //Minutes for spacing between notifications, exponential backoff is used
     private String smtpHost;
     private String emailTo;
     private String emailFrom;
     
+    // Storage settings
+    private String storageType = STORAGE_TYPE_JDBC; //jdbc or local
+    private String localStorageDirectory; //Status snapshot and logs are written here for local storage
+    private boolean compactHostStatus = false; //Keep host statuses in primitive arrays, for tests with many hosts
+    
+    // Status server settings
+    private int statusPort = DEFAULT_STATUS_PORT; //Port the JSON status server listens on, 0 to disable
+    private String statusBindAddress = DEFAULT_STATUS_BIND_ADDRESS; //Address the JSON status server listens on
+    private int statusRecentFailures = DEFAULT_STATUS_RECENT_FAILURES; //Failures served by the status server
+    private String eventStream; //File or tcp://host:port status change events are streamed to as JSON lines
+    
+    // Aggregator settings
+    private String aggregatorAddress; //Comma separated host:port of the aggregators samples are sent to instead of being checked here
+    
     // Database logging settings
     private String jdbcDriver;
     private String jdbcUrl;
@@ -75,12 +194,46 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
     
     // Purging times in minutes
     private int purgeOldFailure = DEFAULT_PURGE_OLD_FAILURE;
-    private int purgeOldStatus = DEFAULT_PURGE_OLD_STATUS;
+    
+    // Latency histogram flush interval in minutes, 0 disables latency tracking
+    private int latencyRollupInterval = DEFAULT_LATENCY_ROLLUP_INTERVAL;
+    
+    // Latency rollup retention times in minutes, per resolution. Raw status rows are the finest
+    // resolution and share its retention
+    private int latencyRetentionFine = DEFAULT_LATENCY_RETENTION_FINE;
+    private int latencyRetentionHourly = DEFAULT_LATENCY_RETENTION_HOURLY;
+    private int latencyRetentionDaily = DEFAULT_LATENCY_RETENTION_DAILY;
 
     private DataSource connectionPool;
-    private JdbcMonitorDao jdbcMonitorDao;
+    private DisposableBean backingMonitorDao;
     private MonitorDao monitorDao;
     private JavaMailSender javaMailSender;
+    private LatencyTracker latencyTracker;
+    private Timer rollupTimer;
+    private AtomicLong sampleClock; //Start of the minute of sample time periodic work has run up to, replaces rollupTimer
+    private ErrorSignatureTracker errorSignatureTracker;
+    private volatile ErrorRateDetector errorRateDetector; //Also read by the storage purge thread
+    private volatile LatencyAnomalyDetector latencyAnomalyDetector; //Also read by the storage purge thread
+    private volatile FlapDetector flapDetector; //Also read by the storage purge thread
+    private volatile RecentSamples recentSamples; //Also read by the storage purge thread
+    private BurnRateTracker burnRateTracker;
+    private Set<String> burningGroupsNotified; //Groups whose BURNING notification was sent
+    private volatile ClusterTracker clusterTracker; //Also read by the storage purge thread
+    private ConcurrentMap<String, HostStatus> clusterNotifications; //Backoff state of each cluster's notifications
+    private MetricsRegistry metricsRegistry;
+    private ObjectName metricsObjectName;
+    private StripedCounter samplesSeen;
+    private StripedCounter samplesMonitored;
+    private StripedCounter samplesIgnored;
+    private StripedCounter emailsSent;
+    private StripedCounter emailsFailed;
+    private StripedCounter capturesWritten;
+    private volatile StatusState statusState; //Also read by the storage purge thread
+    private StatusServer statusServer;
+    private EventDispatcher eventDispatcher;
+    private volatile EventPublishingMonitorDao eventPublishingMonitorDao; //Also read by the storage purge thread
+    private ShardedAggregatorClient aggregatorClient;
+    private CaptureWriter captureWriter;
     
     public MonitorListener() {
         log.info("Created MonitorListener");
@@ -94,6 +247,26 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
         clone.connectionPool = connectionPool;
         clone.monitorDao = monitorDao;
         clone.javaMailSender = javaMailSender;
+        clone.latencyTracker = latencyTracker;
+        clone.sampleClock = sampleClock;
+        clone.errorSignatureTracker = errorSignatureTracker;
+        clone.errorRateDetector = errorRateDetector;
+        clone.latencyAnomalyDetector = latencyAnomalyDetector;
+        clone.flapDetector = flapDetector;
+        clone.recentSamples = recentSamples;
+        clone.burnRateTracker = burnRateTracker;
+        clone.burningGroupsNotified = burningGroupsNotified;
+        clone.clusterTracker = clusterTracker;
+        clone.clusterNotifications = clusterNotifications;
+        clone.metricsRegistry = metricsRegistry;
+        clone.samplesSeen = samplesSeen;
+        clone.samplesMonitored = samplesMonitored;
+        clone.samplesIgnored = samplesIgnored;
+        clone.emailsSent = emailsSent;
+        clone.emailsFailed = emailsFailed;
+        clone.capturesWritten = capturesWritten;
+        clone.aggregatorClient = aggregatorClient;
+        clone.captureWriter = captureWriter;
         
         return clone;
     }
@@ -169,6 +342,54 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
     public void setEmailFrom(String emailFrom) {
         this.emailFrom = emailFrom;
     }
+    public String getStorageType() {
+        return storageType;
+    }
+    public void setStorageType(String storageType) {
+        this.storageType = storageType;
+    }
+    public String getLocalStorageDirectory() {
+        return localStorageDirectory;
+    }
+    public void setLocalStorageDirectory(String localStorageDirectory) {
+        this.localStorageDirectory = localStorageDirectory;
+    }
+    public boolean isCompactHostStatus() {
+        return compactHostStatus;
+    }
+    public void setCompactHostStatus(boolean compactHostStatus) {
+        this.compactHostStatus = compactHostStatus;
+    }
+    public int getStatusPort() {
+        return statusPort;
+    }
+    public void setStatusPort(int statusPort) {
+        this.statusPort = statusPort;
+    }
+    public String getStatusBindAddress() {
+        return statusBindAddress;
+    }
+    public void setStatusBindAddress(String statusBindAddress) {
+        this.statusBindAddress = statusBindAddress;
+    }
+    public int getStatusRecentFailures() {
+        return statusRecentFailures;
+    }
+    public void setStatusRecentFailures(int statusRecentFailures) {
+        this.statusRecentFailures = statusRecentFailures;
+    }
+    public String getEventStream() {
+        return eventStream;
+    }
+    public void setEventStream(String eventStream) {
+        this.eventStream = eventStream;
+    }
+    public String getAggregatorAddress() {
+        return aggregatorAddress;
+    }
+    public void setAggregatorAddress(String aggregatorAddress) {
+        this.aggregatorAddress = aggregatorAddress;
+    }
     public String getJdbcDriver() {
         return jdbcDriver;
     }
@@ -199,15 +420,383 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
     public void setPurgeOldFailure(int purgeOldFailures) {
         this.purgeOldFailure = purgeOldFailures;
     }
-    public int getPurgeOldStatus() {
-        return purgeOldStatus;
+    public int getErrorSignatureInterval() {
+        return errorSignatureInterval;
+    }
+    public void setErrorSignatureInterval(int errorSignatureInterval) {
+        this.errorSignatureInterval = errorSignatureInterval;
+    }
+    public int getErrorSignatureRawFailures() {
+        return errorSignatureRawFailures;
+    }
+    public void setErrorSignatureRawFailures(int errorSignatureRawFailures) {
+        this.errorSignatureRawFailures = errorSignatureRawFailures;
+    }
+    public int getRecentSampleCount() {
+        return recentSampleCount;
+    }
+    public void setRecentSampleCount(int recentSampleCount) {
+        this.recentSampleCount = recentSampleCount;
+    }
+    public int getCaptureBufferSize() {
+        return captureBufferSize;
+    }
+    public void setCaptureBufferSize(int captureBufferSize) {
+        this.captureBufferSize = captureBufferSize;
+    }
+    public String getCaptureExhaustedPolicy() {
+        return captureExhaustedPolicy;
+    }
+    public void setCaptureExhaustedPolicy(String captureExhaustedPolicy) {
+        this.captureExhaustedPolicy = captureExhaustedPolicy;
+    }
+    public int getErrorRateWindow() {
+        return errorRateWindow;
+    }
+    public void setErrorRateWindow(int errorRateWindow) {
+        this.errorRateWindow = errorRateWindow;
+    }
+    public int getErrorRateTrip() {
+        return errorRateTrip;
+    }
+    public void setErrorRateTrip(int errorRateTrip) {
+        this.errorRateTrip = errorRateTrip;
+    }
+    public int getErrorRateClear() {
+        return errorRateClear;
+    }
+    public void setErrorRateClear(int errorRateClear) {
+        this.errorRateClear = errorRateClear;
+    }
+    public int getLatencyAnomalyDeviation() {
+        return latencyAnomalyDeviation;
+    }
+    public void setLatencyAnomalyDeviation(int latencyAnomalyDeviation) {
+        this.latencyAnomalyDeviation = latencyAnomalyDeviation;
+    }
+    public int getLatencyAnomalyRatio() {
+        return latencyAnomalyRatio;
+    }
+    public void setLatencyAnomalyRatio(int latencyAnomalyRatio) {
+        this.latencyAnomalyRatio = latencyAnomalyRatio;
+    }
+    public int getLatencyAnomalyThreshold() {
+        return latencyAnomalyThreshold;
+    }
+    public void setLatencyAnomalyThreshold(int latencyAnomalyThreshold) {
+        this.latencyAnomalyThreshold = latencyAnomalyThreshold;
+    }
+    public int getFlapWindow() {
+        return flapWindow;
+    }
+    public void setFlapWindow(int flapWindow) {
+        this.flapWindow = flapWindow;
+    }
+    public int getFlapStartScore() {
+        return flapStartScore;
+    }
+    public void setFlapStartScore(int flapStartScore) {
+        this.flapStartScore = flapStartScore;
+    }
+    public int getFlapStopScore() {
+        return flapStopScore;
+    }
+    public void setFlapStopScore(int flapStopScore) {
+        this.flapStopScore = flapStopScore;
+    }
+    public String getServiceGroups() {
+        return serviceGroups;
+    }
+    public void setServiceGroups(String serviceGroups) {
+        this.serviceGroups = serviceGroups;
     }
-    public void setPurgeOldStatus(int purgeOldStatus) {
-        this.purgeOldStatus = purgeOldStatus;
+    public String getClusters() {
+        return clusters;
+    }
+    public void setClusters(String clusters) {
+        this.clusters = clusters;
+    }
+    public int getLatencyRollupInterval() {
+        return latencyRollupInterval;
+    }
+    public void setLatencyRollupInterval(int latencyRollupInterval) {
+        this.latencyRollupInterval = latencyRollupInterval;
+    }
+    public int getLatencyRetentionFine() {
+        return latencyRetentionFine;
+    }
+    public void setLatencyRetentionFine(int latencyRetentionFine) {
+        this.latencyRetentionFine = latencyRetentionFine;
+    }
+    public int getLatencyRetentionHourly() {
+        return latencyRetentionHourly;
+    }
+    public void setLatencyRetentionHourly(int latencyRetentionHourly) {
+        this.latencyRetentionHourly = latencyRetentionHourly;
+    }
+    public int getLatencyRetentionDaily() {
+        return latencyRetentionDaily;
+    }
+    public void setLatencyRetentionDaily(int latencyRetentionDaily) {
+        this.latencyRetentionDaily = latencyRetentionDaily;
     }
 
     @Override
     public void testStarted() {
+        this.metricsRegistry = new MetricsRegistry();
+        this.samplesSeen = this.metricsRegistry.counter("samples.seen");
+        this.samplesMonitored = this.metricsRegistry.counter("samples.monitored");
+        this.samplesIgnored = this.metricsRegistry.counter("samples.ignored");
+        this.emailsSent = this.metricsRegistry.counter("emails.sent");
+        this.emailsFailed = this.metricsRegistry.counter("emails.failed");
+        this.capturesWritten = this.metricsRegistry.counter("captures.written");
+        try {
+            this.metricsObjectName = MetricsMBean.register(this.getName(), this.metricsRegistry);
+            log.info("Registered metrics MBean as: " + this.metricsObjectName);
+        }
+        catch (JMException e) {
+            log.warn("Failed to register metrics MBean, metrics will not be available over JMX", e);
+        }
+        
+        if (this.aggregatorAddress != null && this.aggregatorAddress.trim().length() > 0) {
+            //Detection, storage and notification all happen in the aggregator
+            this.aggregatorClient = new ShardedAggregatorClient(this.aggregatorAddress.trim(), AGGREGATOR_BATCH_SIZE, AGGREGATOR_QUEUE_SIZE,
+                    this.metricsRegistry.counter("aggregator.sent"), this.metricsRegistry.counter("aggregator.dropped"));
+            this.aggregatorClient.start(AGGREGATOR_FLUSH_INTERVAL);
+            log.info("Sending samples to aggregators " + this.aggregatorClient);
+            return;
+        }
+        
+        final MonitorDao storage = this.createStorage();
+        this.monitorDao = new ErrorHandlingMonitorDao(new TimedMonitorDao(storage, this.metricsRegistry), this.metricsRegistry);
+        
+        if (this.statusPort > 0) {
+            this.createStatusServer();
+        }
+        this.createEventDispatcher();
+        
+        final JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost(this.smtpHost);
+        this.javaMailSender = mailSender;
+        log.info("Created JavaMailSender for: {" + this.smtpHost + "}");
+        
+        if (this.errorRateWindow > 0) {
+            final long windowLength = TimeUnit.MILLISECONDS.convert(this.errorRateWindow, TimeUnit.SECONDS);
+            this.errorRateDetector = new ErrorRateDetector(windowLength, this.errorRateTrip / 100.0, this.errorRateClear / 100.0, this.failureThreshold, this.failureThreshold);
+            log.info("Created error rate detection over " + this.errorRateWindow + " seconds, trip at " + this.errorRateTrip + "%, clear at " + this.errorRateClear + "%");
+        }
+        
+        if (this.latencyAnomalyDeviation > 0) {
+            this.latencyAnomalyDetector = new LatencyAnomalyDetector(this.latencyAnomalyDeviation, this.latencyAnomalyRatio, this.latencyAnomalyThreshold);
+            log.info("Created latency anomaly detection at " + this.latencyAnomalyDeviation + " standard deviations and " + this.latencyAnomalyRatio + "x the baseline");
+        }
+        
+        if (this.flapWindow > 0) {
+            final long window = TimeUnit.MILLISECONDS.convert(this.flapWindow, TimeUnit.MINUTES);
+            this.flapDetector = new FlapDetector(window, this.flapStartScore, this.flapStopScore);
+            log.info("Created flap detection over " + this.flapWindow + " minutes, start at " + this.flapStartScore + ", stop at " + this.flapStopScore);
+        }
+        
+        if (this.recentSampleCount > 0) {
+            this.recentSamples = new RecentSamples(this.recentSampleCount);
+            log.info("Created recent sample tracking of the last " + this.recentSampleCount + " samples per host");
+        }
+        
+        if (this.captureBufferSize > 0) {
+            this.createCaptureWriter();
+        }
+        
+        final List<ServiceGroup> groups = ServiceGroup.parse(this.serviceGroups);
+        if (!groups.isEmpty()) {
+            this.burnRateTracker = new BurnRateTracker(groups);
+            this.burningGroupsNotified = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            log.info("Created error budget burn rate tracking for " + groups);
+        }
+        
+        final List<Cluster> clusterList = Cluster.parse(this.clusters);
+        if (!clusterList.isEmpty()) {
+            this.clusterNotifications = new ConcurrentHashMap<String, HostStatus>();
+            this.clusterTracker = new ClusterTracker(clusterList);
+            log.info("Created cluster health tracking for " + clusterList);
+        }
+        
+        if (this.isSampleClock()) {
+            this.sampleClock = new AtomicLong(Long.MIN_VALUE);
+        }
+        else if (this.latencyRollupInterval > 0 || this.errorSignatureInterval > 0 || this.burnRateTracker != null) {
+            this.rollupTimer = new Timer("MonitorListener_RollupTimer", true);
+        }
+        
+        if (this.burnRateTracker != null && this.rollupTimer != null) {
+            this.rollupTimer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    storeBurnRates(System.currentTimeMillis());
+                }
+            }, 
+            BURN_RATE_STORE_INTERVAL, 
+            BURN_RATE_STORE_INTERVAL);
+        }
+        
+        if (this.latencyRollupInterval > 0) {
+            this.latencyTracker = new LatencyTracker(this.latencyRollupInterval, HOURLY_RESOLUTION, DAILY_RESOLUTION);
+            
+            if (this.rollupTimer != null) {
+                final long interval = TimeUnit.MILLISECONDS.convert(this.latencyRollupInterval, TimeUnit.MINUTES);
+                final long now = System.currentTimeMillis();
+                this.rollupTimer.scheduleAtFixedRate(new TimerTask() {
+                    @Override
+                    public void run() {
+                        //Runs just after the bucket boundary, the samples seen belong to the previous bucket
+                        flushLatencyRollups(LatencyTracker.getBucketStart(System.currentTimeMillis(), latencyRollupInterval) - interval, false);
+                    }
+                }, 
+                interval - (now % interval), //Line flushes up with bucket boundaries
+                interval);
+            }
+            log.info("Created latency tracking with " + this.latencyRollupInterval + " minute rollups");
+        }
+        
+        if (this.errorSignatureInterval > 0) {
+            this.errorSignatureTracker = new ErrorSignatureTracker(this.errorSignatureRawFailures);
+            
+            if (this.rollupTimer != null) {
+                final long interval = TimeUnit.MILLISECONDS.convert(this.errorSignatureInterval, TimeUnit.MINUTES);
+                final long now = System.currentTimeMillis();
+                this.rollupTimer.scheduleAtFixedRate(new TimerTask() {
+                    @Override
+                    public void run() {
+                        //Runs just after the interval boundary, the failures seen belong to the previous interval
+                        flushErrorCounts(LatencyTracker.getBucketStart(System.currentTimeMillis(), errorSignatureInterval) - interval);
+                    }
+                }, 
+                interval - (now % interval), //Line flushes up with interval boundaries
+                interval);
+            }
+            log.info("Created error signature counts over " + this.errorSignatureInterval + " minutes, logging " + this.errorSignatureRawFailures + " failures per signature in full");
+        }
+    }
+    
+    /**
+     * Runs the periodic work of the rollup timer off sample end times, once for each minute of
+     * sample time the samples move into. Intervals are whole minutes so every boundary falls on
+     * one. Samples replayed in parallel arrive slightly out of order, a sample for a minute that
+     * has already been passed is counted in the one in progress.
+     */
+    private void advanceSampleClock(long sampleTime) {
+        final AtomicLong sampleClock = this.sampleClock;
+        final long minute = sampleTime - (sampleTime % BURN_RATE_STORE_INTERVAL);
+        if (sampleClock == null || minute <= sampleClock.get()) {
+            return;
+        }
+        
+        synchronized (sampleClock) {
+            final long previous = sampleClock.get();
+            if (minute <= previous) {
+                return;
+            }
+            sampleClock.set(minute);
+            if (previous == Long.MIN_VALUE) {
+                //First sample starts the clock
+                return;
+            }
+            
+            if (this.latencyTracker != null) {
+                final long bucketStart = LatencyTracker.getBucketStart(previous, this.latencyRollupInterval);
+                if (bucketStart != LatencyTracker.getBucketStart(minute, this.latencyRollupInterval)) {
+                    this.flushLatencyRollups(bucketStart, false);
+                }
+            }
+            if (this.errorSignatureTracker != null) {
+                final long intervalStart = LatencyTracker.getBucketStart(previous, this.errorSignatureInterval);
+                if (intervalStart != LatencyTracker.getBucketStart(minute, this.errorSignatureInterval)) {
+                    this.flushErrorCounts(intervalStart);
+                }
+            }
+            if (this.burnRateTracker != null) {
+                this.storeBurnRates(minute);
+            }
+        }
+    }
+    
+    /**
+     * Whether the periodic rollup, error count and burn rate work runs off sample end times
+     * instead of a wall clock timer. Tools feeding recorded samples override this so that work
+     * lines up with the samples rather than with when they were fed.
+     */
+    protected boolean isSampleClock() {
+        return false;
+    }
+    
+    private void storeBurnRates(long now) {
+        final MonitorDao monitorDao = this.monitorDao;
+        final BurnRateTracker burnRateTracker = this.burnRateTracker;
+        final Set<String> burningGroupsNotified = this.burningGroupsNotified;
+        if (monitorDao == null || burnRateTracker == null || burningGroupsNotified == null) {
+            return;
+        }
+        
+        //Groups that went quiet stop burning here, there are no vars on this thread so the
+        //notification goes out only if the BURNING one did
+        for (final BurnRate burnRate : burnRateTracker.update(now)) {
+            this.notifyBurnRate(burnRate, new Date(now), burningGroupsNotified.contains(burnRate.getGroup()));
+        }
+        monitorDao.storeBurnRates(burnRateTracker.getBurnRates(now));
+    }
+    
+    private void flushErrorCounts(long intervalStart) {
+        final MonitorDao monitorDao = this.monitorDao;
+        final ErrorSignatureTracker errorSignatureTracker = this.errorSignatureTracker;
+        if (monitorDao == null || errorSignatureTracker == null) {
+            return;
+        }
+        
+        monitorDao.storeErrorCounts(errorSignatureTracker.drain(intervalStart));
+    }
+    
+    private void flushLatencyRollups(long bucketStart, boolean closeAll) {
+        final MonitorDao monitorDao = this.monitorDao;
+        final LatencyTracker latencyTracker = this.latencyTracker;
+        if (monitorDao == null || latencyTracker == null) {
+            return;
+        }
+        
+        if (closeAll) {
+            monitorDao.storeLatencyRollups(latencyTracker.drainAll(bucketStart));
+        }
+        else {
+            monitorDao.storeLatencyRollups(latencyTracker.drain(bucketStart));
+        }
+    }
+    
+    /**
+     * Retention for each resolution the {@link LatencyTracker} writes, coarse resolutions no
+     * larger than the rollup interval are not written
+     */
+    private Map<Integer, Integer> getLatencyRetention() {
+        final Map<Integer, Integer> latencyRetention = new LinkedHashMap<Integer, Integer>();
+        latencyRetention.put(this.latencyRollupInterval, this.latencyRetentionFine);
+        if (HOURLY_RESOLUTION > this.latencyRollupInterval) {
+            latencyRetention.put(HOURLY_RESOLUTION, this.latencyRetentionHourly);
+        }
+        if (DAILY_RESOLUTION > this.latencyRollupInterval) {
+            latencyRetention.put(DAILY_RESOLUTION, this.latencyRetentionDaily);
+        }
+        return latencyRetention;
+    }
+    
+    /**
+     * Creates the storage for the test, JDBC or local depending on {@link #getStorageType()}.
+     * Tools running the listener outside of JMeter can override this to supply their own.
+     */
+    protected MonitorDao createStorage() {
+        if (STORAGE_TYPE_LOCAL.equals(this.storageType)) {
+            return this.createLocalMonitorDao();
+        }
+        return this.createJdbcMonitorDao();
+    }
+    
+    private MonitorDao createJdbcMonitorDao() {
         this.connectionPool = new DataSource();
         this.connectionPool.setDriverClassName(this.jdbcDriver);
         this.connectionPool.setUrl(this.jdbcUrl);
@@ -220,24 +809,162 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
         
         log.info("Created DB pool for: {" + this.jdbcDriver + ", " + this.jdbcUrl + ", " + this.jdbcUser + "}");
         
-        this.jdbcMonitorDao = new JdbcMonitorDao(this.connectionPool, this.purgeOldFailure, this.purgeOldStatus);
+        final JdbcMonitorDao jdbcMonitorDao = new JdbcMonitorDao(this.connectionPool, this.purgeOldFailure, this.latencyRetentionFine);
+        jdbcMonitorDao.setLatencyRetention(this.getLatencyRetention());
+        jdbcMonitorDao.setMetricsRegistry(this.metricsRegistry);
+        jdbcMonitorDao.setHostStatusStore(this.createHostStatusStore());
+        jdbcMonitorDao.addHostPurgeListener(this.createHostPurgeListener());
         try {
-            this.jdbcMonitorDao.afterPropertiesSet();
-            this.monitorDao = new ErrorHandlingMonitorDao(this.jdbcMonitorDao);
+            jdbcMonitorDao.afterPropertiesSet();
+            this.backingMonitorDao = jdbcMonitorDao;
         }
         catch (Exception e) {
             throw new RuntimeException("Failed to initialize JdbcMonitorDao", e);
         }
         log.info("Created JdbcMonitorDao");
+        return jdbcMonitorDao;
+    }
+    
+    private MonitorDao createLocalMonitorDao() {
+        if (this.localStorageDirectory == null || this.localStorageDirectory.trim().length() == 0) {
+            throw new IllegalArgumentException("localStorageDirectory must be set when storageType is " + STORAGE_TYPE_LOCAL);
+        }
+        final LocalMonitorDao localMonitorDao = new LocalMonitorDao(new File(this.localStorageDirectory.trim()), this.purgeOldFailure, this.latencyRetentionFine);
+        localMonitorDao.setLatencyRetention(this.getLatencyRetention());
+        localMonitorDao.setMetricsRegistry(this.metricsRegistry);
+        localMonitorDao.setHostStatusStore(this.createHostStatusStore());
+        localMonitorDao.addHostPurgeListener(this.createHostPurgeListener());
+        try {
+            localMonitorDao.afterPropertiesSet();
+            this.backingMonitorDao = localMonitorDao;
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Failed to initialize LocalMonitorDao", e);
+        }
+        log.info("Created LocalMonitorDao in: " + this.localStorageDirectory);
+        return localMonitorDao;
+    }
+    
+    private void createCaptureWriter() {
+        ExhaustedPolicy exhaustedPolicy;
+        try {
+            exhaustedPolicy = ExhaustedPolicy.valueOf(this.captureExhaustedPolicy.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            log.warn("Unknown captureExhaustedPolicy '" + this.captureExhaustedPolicy + "', using " + CAPTURE_POLICY_TRUNCATE);
+            exhaustedPolicy = ExhaustedPolicy.TRUNCATE;
+        }
+        final int slabCount = (int) Math.min(Integer.MAX_VALUE / CAPTURE_SLAB_SIZE, this.captureBufferSize * 1024L * 1024L / CAPTURE_SLAB_SIZE);
+        final StripedCounter dropped = this.metricsRegistry.counter("captures.dropped");
+        final CaptureBufferPool pool = new CaptureBufferPool(CAPTURE_SLAB_SIZE, slabCount, exhaustedPolicy, CAPTURE_BLOCK_TIMEOUT,
+                this.metricsRegistry.counter("captures.truncated"), dropped, this.metricsRegistry.counter("captures.blocked"));
+        this.captureWriter = new CaptureWriter(pool, slabCount, this.capturesWritten, dropped);
+        log.info("Created capture writer with " + (slabCount * (long) CAPTURE_SLAB_SIZE) + " bytes of capture buffer, " + this.captureExhaustedPolicy + " when full");
+    }
+    
+    private HostStatusStore createHostStatusStore() {
+        if (this.compactHostStatus) {
+            log.info("Keeping host statuses in compact arrays");
+            return new ArrayHostStatusStore();
+        }
+        return new MapHostStatusStore();
+    }
+    
+    /**
+     * Drops the per-host state the listener keeps when storage purges the host's status, the
+     * state is read at purge time since storage is created before it
+     */
+    private HostPurgeListener createHostPurgeListener() {
+        return new HostPurgeListener() {
+            @Override
+            public void hostsPurged(List<String> hostNames) {
+                final RecentSamples recentSamples = MonitorListener.this.recentSamples;
+                if (recentSamples != null) {
+                    recentSamples.remove(hostNames);
+                }
+                
+                final ErrorRateDetector errorRateDetector = MonitorListener.this.errorRateDetector;
+                if (errorRateDetector != null) {
+                    errorRateDetector.remove(hostNames);
+                }
+                
+                final LatencyAnomalyDetector latencyAnomalyDetector = MonitorListener.this.latencyAnomalyDetector;
+                if (latencyAnomalyDetector != null) {
+                    latencyAnomalyDetector.remove(hostNames);
+                }
+                
+                final FlapDetector flapDetector = MonitorListener.this.flapDetector;
+                if (flapDetector != null) {
+                    flapDetector.remove(hostNames);
+                }
+                
+                final StatusState statusState = MonitorListener.this.statusState;
+                if (statusState != null) {
+                    statusState.removeHosts(hostNames);
+                }
+                
+                final EventPublishingMonitorDao eventPublishingMonitorDao = MonitorListener.this.eventPublishingMonitorDao;
+                if (eventPublishingMonitorDao != null) {
+                    eventPublishingMonitorDao.removeHosts(hostNames);
+                }
+                
+                //Cluster changes from purging are stored but not notified, there are no vars to decide with here
+                final ClusterTracker clusterTracker = MonitorListener.this.clusterTracker;
+                final MonitorDao monitorDao = MonitorListener.this.monitorDao;
+                if (clusterTracker != null && monitorDao != null) {
+                    for (final ClusterStatus clusterStatus : clusterTracker.remove(hostNames, System.currentTimeMillis())) {
+                        monitorDao.storeClusterStatus(clusterStatus);
+                    }
+                }
+            }
+        };
+    }
+    
+    private void createStatusServer() {
+        final StatusState statusState = new StatusState(this.statusRecentFailures, this.latencyRollupInterval);
+        this.monitorDao = new StatusRecordingMonitorDao(this.monitorDao, statusState);
+        this.statusState = statusState;
         
-        final JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost(this.smtpHost);
-        this.javaMailSender = mailSender;
-        log.info("Created JavaMailSender for: {" + this.smtpHost + "}");
+        final StatusServer server = new StatusServer(statusState, this.statusBindAddress, this.statusPort);
+        try {
+            server.start();
+            this.statusServer = server;
+        }
+        catch (IOException e) {
+            log.warn("Failed to start status server on " + this.statusBindAddress + ":" + this.statusPort + ", status will only be available from storage", e);
+        }
+    }
+    
+    private void createEventDispatcher() {
+        final List<MonitorEventSubscriber> subscribers = new ArrayList<MonitorEventSubscriber>();
+        try {
+            for (final MonitorEventSubscriber subscriber : ServiceLoader.load(MonitorEventSubscriber.class, MonitorListener.class.getClassLoader())) {
+                subscribers.add(subscriber);
+            }
+        }
+        catch (ServiceConfigurationError e) {
+            log.warn("Failed to load event subscribers, only the event stream will receive events", e);
+        }
+        if (this.eventStream != null && this.eventStream.trim().length() > 0) {
+            subscribers.add(new NdjsonEventSubscriber(this.eventStream.trim()));
+        }
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        
+        this.eventDispatcher = new EventDispatcher(subscribers, EVENT_BUFFER_SIZE, this.metricsRegistry.counter("events.dropped"));
+        final EventPublishingMonitorDao eventPublishingMonitorDao = new EventPublishingMonitorDao(this.monitorDao, this.eventDispatcher);
+        this.monitorDao = eventPublishingMonitorDao;
+        this.eventPublishingMonitorDao = eventPublishingMonitorDao;
+        log.info("Publishing status change events to " + subscribers);
     }
     
     @Override
     public void testIterationStart(LoopIterationEvent event) {
+        if (this.aggregatorClient != null) {
+            return;
+        }
+        
         final JMeterContext jmctx = JMeterContextService.getContext();
         final JMeterVariables vars = jmctx.getVariables();
         
@@ -263,6 +990,7 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
         final JMeterVariables vars = jmctx.getVariables();
 
         final SampleResult result = e.getResult();
+        this.samplesSeen.increment();
         
         final String statusStr = vars.get(this.statusVar);
         final Status checkStatus;
@@ -273,6 +1001,13 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
             checkStatus = Status.UNKOWN;
         }
         
+        if (this.aggregatorClient != null) {
+            this.aggregatorClient.send(new SampleRecord(this.getSampleTargetHost(result), result.getSampleLabel(), result.getEndTime(),
+                    (int) result.getTime(), result.isSuccessful(), RecentSamples.parseResponseCode(result.getResponseCode()),
+                    checkStatus, this.notifyForHost(vars)));
+            return;
+        }
+        
         switch (checkStatus) {
             case UP: {
                 this.checkLastSample(result, vars, checkStatus);
@@ -284,8 +1019,10 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
                 final String sampleLabel = result.getSampleLabel();
                 if (this.statusSamplePattern != null && !this.statusSamplePattern.matcher(sampleLabel).matches()) {
                     //Request is not status sample, ignore it
+                    this.samplesIgnored.increment();
                     return;
                 }
+                this.samplesMonitored.increment();
 
                 //Out of cluster and tomcat down, set the status if not already set
                 final String hostName = this.getSampleTargetHost(result);
@@ -293,6 +1030,7 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
                 if (Status.OUT_DOWN != hostStatus.getStatus()) {
                     hostStatus.setStatus(Status.OUT_DOWN);
                     this.monitorDao.storeHostStatus(hostStatus);
+                    this.updateClusters(vars, hostStatus, new Date(result.getEndTime()));
                 }
             } break;
             default: {
@@ -317,6 +1055,76 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
     
     @Override
     public void testEnded() {
+        final ShardedAggregatorClient client = this.aggregatorClient;
+        this.aggregatorClient = null;
+        if (client != null) {
+            client.close();
+        }
+        
+        final Timer timer = this.rollupTimer;
+        this.rollupTimer = null;
+        if (timer != null) {
+            timer.cancel();
+        }
+        final AtomicLong sampleClock = this.sampleClock;
+        this.sampleClock = null;
+        if (timer != null || (sampleClock != null && sampleClock.get() != Long.MIN_VALUE)) {
+            final long now = timer != null ? System.currentTimeMillis() : sampleClock.get();
+            
+            //Store the partial buckets in progress
+            if (this.latencyTracker != null) {
+                this.flushLatencyRollups(LatencyTracker.getBucketStart(now, this.latencyRollupInterval), true);
+            }
+            if (this.errorSignatureTracker != null) {
+                this.flushErrorCounts(LatencyTracker.getBucketStart(now, this.errorSignatureInterval));
+            }
+            if (this.burnRateTracker != null) {
+                this.storeBurnRates(now);
+            }
+        }
+        this.latencyTracker = null;
+        this.errorSignatureTracker = null;
+        this.errorRateDetector = null;
+        this.latencyAnomalyDetector = null;
+        this.flapDetector = null;
+        this.recentSamples = null;
+        this.burnRateTracker = null;
+        this.burningGroupsNotified = null;
+        this.clusterTracker = null;
+        this.clusterNotifications = null;
+        
+        final ObjectName metricsObjectName = this.metricsObjectName;
+        this.metricsObjectName = null;
+        if (metricsObjectName != null) {
+            try {
+                MetricsMBean.unregister(metricsObjectName);
+            }
+            catch (JMException e) {
+                log.info("Failed to unregister metrics MBean " + metricsObjectName, e);
+            }
+        }
+        this.metricsRegistry = null;
+        
+        this.statusState = null;
+        final StatusServer server = this.statusServer;
+        this.statusServer = null;
+        if (server != null) {
+            server.stop();
+        }
+        
+        this.eventPublishingMonitorDao = null;
+        final EventDispatcher dispatcher = this.eventDispatcher;
+        this.eventDispatcher = null;
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+        
+        final CaptureWriter writer = this.captureWriter;
+        this.captureWriter = null;
+        if (writer != null) {
+            writer.close();
+        }
+        
         final DataSource pool = this.connectionPool;
         this.connectionPool = null;
         if (pool != null) {
@@ -324,12 +1132,15 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
             log.info("Closed data pool");
         }
         
-        try {
-            this.jdbcMonitorDao.destroy();
-        }
-        catch (Exception e) {
-            log.info("Failed to close monitor dao", e);
+        if (this.backingMonitorDao != null) {
+            try {
+                this.backingMonitorDao.destroy();
+            }
+            catch (Exception e) {
+                log.info("Failed to close monitor dao", e);
+            }
         }
+        this.backingMonitorDao = null;
         this.monitorDao = null;
         
         this.javaMailSender = null;
@@ -353,27 +1164,77 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
         final String sampleLabel = result.getSampleLabel();
         if (this.monitoredSamplePattern != null && !this.monitoredSamplePattern.matcher(sampleLabel).matches()) {
             //Request is not monitored, ignore it
+            this.samplesIgnored.increment();
             return;
         }
+        this.samplesMonitored.increment();
         
         final Date sampleEndTime = new Date(result.getEndTime());
         final boolean lastSampleOk = result.isSuccessful();
+        this.advanceSampleClock(result.getEndTime());
         
         final String hostName = this.getSampleTargetHost(result);
         this.trackHost(vars, hostName);
+        if (this.latencyTracker != null) {
+            this.latencyTracker.record(hostName, sampleLabel, result.getTime(), lastSampleOk);
+        }
+        if (this.recentSamples != null) {
+            this.recentSamples.record(hostName, sampleLabel, result.getEndTime(), result.getTime(), lastSampleOk, result.getResponseCode());
+        }
+        if (this.burnRateTracker != null && !checkStatus.isOut()) {
+            //Hosts out of service don't spend the error budget
+            for (final BurnRate burnRate : this.burnRateTracker.record(hostName, sampleLabel, result.getEndTime(), lastSampleOk)) {
+                this.notifyBurnRate(burnRate, sampleEndTime, notifyForHost(vars));
+            }
+        }
         final HostStatus hostStatus = this.monitorDao.getHostStatus(hostName);
         
+        //With error rate detection a host also fails on a high error rate and stays failing until the rate clears
+        //or it answers failureThreshold requests in a row, failureThreshold failures in a row still fail it right away
+        final boolean tripped = this.errorRateDetector != null && this.errorRateDetector.record(hostName, result.getEndTime(), lastSampleOk);
+        
+        //Only successful samples say anything about how fast the host answers
+        final boolean degraded = lastSampleOk && this.latencyAnomalyDetector != null && 
+                this.latencyAnomalyDetector.record(hostName, sampleLabel, result.getTime());
+        
+        if (this.flapDetector != null && !checkStatus.isOut()) {
+            //Whether this sample leaves the host in an alerting state, each change is a transition
+            final boolean failing = tripped || (!lastSampleOk && hostStatus.getFailureCount() + 1 >= this.failureThreshold);
+            final boolean flapping = this.flapDetector.record(hostName, result.getEndTime(), !failing);
+            if (flapping || hostStatus.getStatus() == Status.FLAPPING) {
+                this.checkFlappingSample(vars, hostStatus, sampleLabel, sampleEndTime, flapping, failing, lastSampleOk, tripped);
+                this.updateClusters(vars, hostStatus, sampleEndTime);
+                this.monitorDao.logRequestAndStatus(hostStatus, sampleLabel, sampleEndTime, result.getTime(), lastSampleOk);
+                return;
+            }
+        }
+        
         int messageCount = hostStatus.getMessageCount();
         if (lastSampleOk) {
-            if (hostStatus.getFailureCount() > 0) {
+            if (tripped) {
+                //Still failing too often to be considered up
+            }
+            else if (degraded && !checkStatus.isOut()) {
+                this.checkDegradedSample(vars, hostStatus, sampleLabel, sampleEndTime, result.getTime());
+            }
+            else if (hostStatus.getFailureCount() > 0 || hostStatus.getStatus() == Status.DEGRADED) {
+                this.monitorDao.closeOutage(hostName, sampleEndTime, hostStatus.getFailureCount(), messageCount);
+                
                 final String messageSubject = buildMessageSubject(hostName, Status.UP, 0, 0);
-                final String messageBody    = buildMessageBody(sampleEndTime, hostName, sampleLabel, Status.UP, 0, 0, null);
+                String messageBody          = buildMessageBody(sampleEndTime, hostName, sampleLabel, Status.UP, 0, 0, null);
+                messageBody = appendOutageStats(messageBody, hostName, sampleEndTime);
                 Notification sentEmail = Notification.FALSE;
 
                 //Only send up message if down message has been sent
                 if (messageCount > 0) {
-                    hostStatus.setLastMessageSent(new Date());
-                    if (notifyForHost(vars)) {
+                    hostStatus.setLastMessageSent(sampleEndTime);
+                    final String claimOwner = this.monitorDao.claimNotification(hostName, Status.UP, getNotificationWindow(sampleEndTime), getNotificationWindowLength());
+                    if (claimOwner != null) {
+                        //Another node is monitoring this host and already sent the message
+                        messageBody = buildClaimedMessageBody(messageBody, claimOwner);
+                        sentEmail = Notification.DISABLED;
+                    }
+                    else if (notifyForHost(vars)) {
                         sendEmail(sampleEndTime, messageSubject, messageBody, hostName, Status.UP);
                         sentEmail = Notification.TRUE;
                     }
@@ -400,6 +1261,11 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
                 
                 log.info("Switching HostStatus.status from " + oldStatus + " to " + hostStatus.getStatus() + " for " + sampleLabel);
             }
+            else if (messageCount > 0 && isNotificationDue(hostStatus, sampleEndTime)) {
+                //A host that settled from flapping keeps its backoff until it has been quiet for a full period
+                hostStatus.setMessageCount(0);
+                this.monitorDao.storeHostStatus(hostStatus);
+            }
         }
         else {
             //Failed request, increment the counter
@@ -409,6 +1275,10 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
             hostStatus.setStatus(checkStatus.isOut() ? Status.OUT_DOWN : Status.DOWN);
 
             final String errorMessages = getErrorMessages(result);
+            
+            //Past the first few of a signature in an interval the count stands in for the full failure
+            final boolean logFullFailure = this.errorSignatureTracker == null || 
+                    this.errorSignatureTracker.record(hostName, getErrorSignature(result));
 
             //Setup default messages
             String messageSubject = buildMessageSubject(hostName, hostStatus.getStatus(), messageCount, failureCount);
@@ -417,29 +1287,28 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
 
             //Don't email when server is out
             //Ignore single failure counts to avoid making noise about transient failures
-            if (!checkStatus.isOut() && failureCount >= failureThreshold) {
-                //If not the first message use an exponential roll off send messages after a certain ammount of time
-                Date refDate = sampleEndTime;
-                if (messageCount > 0) {
-                    int minutesToMessage = (int)Math.pow(2, Math.max(messageCount - 1, 0)) * backoffDuration;
-                    Calendar refCal = Calendar.getInstance();
-                    refCal.setTime(hostStatus.getLastMessageSent());
-                    refCal.add(Calendar.MINUTE, minutesToMessage);
-                    refDate = refCal.getTime();
-                }
-
+            if (!checkStatus.isOut() && (tripped || failureCount >= failureThreshold)) {
+                //Starts an outage the first time the host is considered down
+                this.monitorDao.openOutage(hostName, sampleEndTime);
+                
                 //If a message hasn't been sent yet or if enough time has passed since the last failure message
-                if (messageCount == 0 || sampleEndTime.after(refDate)) {
+                if (isNotificationDue(hostStatus, sampleEndTime)) {
                     //Count last-sent and count even if message sending is disabled to keep both paths of behavior very similar
-                    hostStatus.setLastMessageSent(new Date());
+                    hostStatus.setLastMessageSent(sampleEndTime);
                     messageCount = hostStatus.incrementMessageCount();
                     
-                    if (notifyForHost(vars)) {
+                    final String claimOwner = this.monitorDao.claimNotification(hostName, hostStatus.getStatus(), getNotificationWindow(sampleEndTime), getNotificationWindowLength());
+                    if (claimOwner != null) {
+                        //Another node is monitoring this host and already sent the message
+                        messageBody = buildClaimedMessageBody(messageBody, claimOwner);
+                        sentEmail = Notification.DISABLED;
+                    }
+                    else if (notifyForHost(vars)) {
                         //Update messages with new messageCount
                         messageSubject = buildMessageSubject(hostName, hostStatus.getStatus(), messageCount, failureCount);
                         messageBody = buildMessageBody(sampleEndTime, hostName, sampleLabel, hostStatus.getStatus(), messageCount, failureCount, errorMessages);
     
-                        sendEmail(sampleEndTime, messageSubject, messageBody, hostName, hostStatus.getStatus());
+                        sendEmail(sampleEndTime, messageSubject, appendRecentSamples(messageBody, hostName), hostName, hostStatus.getStatus());
                         sentEmail = Notification.TRUE;
                     }
                     else {
@@ -448,17 +1317,277 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
                 }
             }
             
-            //Log the failure to the DB
-            this.monitorDao.logFailureAndStatus(hostStatus, sampleLabel, sampleEndTime, hostStatus.getStatus(), messageSubject, messageBody, sentEmail);
-
-            //Save the data for every failure, post processing so we get updated counts
-            final String userId = vars.get("userId");
-            saveResponseToFile(result, sampleEndTime, userId, hostName, errorMessages, failureCount, messageCount);
+            //Log the failure to the DB, failures that notified are always logged
+            if (logFullFailure || sentEmail != Notification.FALSE) {
+                this.monitorDao.logFailureAndStatus(hostStatus, sampleLabel, sampleEndTime, hostStatus.getStatus(), messageSubject, messageBody, sentEmail);
+    
+                //Save the data for every logged failure, post processing so we get updated counts
+                final String userId = vars.get("userId");
+                saveResponseToFile(result, sampleEndTime, userId, hostName, errorMessages, failureCount, messageCount);
+            }
         }
         
+        this.updateClusters(vars, hostStatus, sampleEndTime);
         this.monitorDao.logRequestAndStatus(hostStatus, sampleLabel, sampleEndTime, result.getTime(), lastSampleOk);
     }
 
+    /**
+     * Notify about a service group starting or stopping to burn its error budget too fast. Groups
+     * alert on their own, independent of the status of the hosts in them.
+     */
+    private void notifyBurnRate(BurnRate burnRate, Date sampleEndTime, boolean notify) {
+        final Set<String> burningGroupsNotified = this.burningGroupsNotified;
+        final String messageSubject = "myUwMonitor: " + burnRate.getGroup() + (burnRate.isBurning() ? " error budget BURNING" : " error budget OK");
+        final StringBuilder body = new StringBuilder();
+        body.append(sampleEndTime).append(": myUwMonitor: ").append(burnRate.getGroup())
+            .append(" (slo=").append(burnRate.getSloTarget() * 100).append("%")
+            .append(", burnRate5m=").append(formatBurnRate(burnRate.getShortBurnRate()))
+            .append(", burnRate1h=").append(formatBurnRate(burnRate.getMediumBurnRate()))
+            .append(", burnRate6h=").append(formatBurnRate(burnRate.getLongBurnRate())).append(")");
+        
+        //Claims are keyed by host name, prefix the group so it can't collide with a host
+        final Status status = burnRate.isBurning() ? Status.DOWN : Status.UP;
+        final String claimOwner = this.monitorDao.claimNotification("group:" + burnRate.getGroup(), status, getNotificationWindow(sampleEndTime), getNotificationWindowLength());
+        if (claimOwner != null) {
+            log.info("Burn rate notification for " + burnRate.getGroup() + " sent by " + claimOwner);
+        }
+        else if (notify) {
+            sendEmail(sampleEndTime, messageSubject, body.toString(), burnRate.getGroup(), status);
+            if (burnRate.isBurning() && burningGroupsNotified != null) {
+                burningGroupsNotified.add(burnRate.getGroup());
+            }
+        }
+        else {
+            log.info("Notification disabled, not sending: " + messageSubject + " - " + body);
+        }
+        if (!burnRate.isBurning() && burningGroupsNotified != null) {
+            burningGroupsNotified.remove(burnRate.getGroup());
+        }
+    }
+    
+    private static double formatBurnRate(double burnRate) {
+        return Math.round(burnRate * 10) / 10.0;
+    }
+
+    /**
+     * Update the health of the clusters the host belongs to with its status, storing clusters
+     * whose counts changed and notifying for clusters whose status changed. A host only counts
+     * as down for its clusters once it has enough failures or its DOWN notification went out.
+     */
+    private void updateClusters(JMeterVariables vars, HostStatus hostStatus, Date sampleEndTime) {
+        final ClusterTracker clusterTracker = this.clusterTracker;
+        if (clusterTracker == null) {
+            return;
+        }
+        
+        Status clusterHostStatus = hostStatus.getStatus();
+        if (clusterHostStatus == Status.DOWN && hostStatus.getFailureCount() < this.failureThreshold && hostStatus.getMessageCount() == 0) {
+            clusterHostStatus = Status.UP;
+        }
+        
+        for (final ClusterStatus clusterStatus : clusterTracker.update(hostStatus.getHost(), clusterHostStatus, sampleEndTime.getTime())) {
+            this.monitorDao.storeClusterStatus(clusterStatus);
+            if (clusterStatus.isStatusChanged()) {
+                this.notifyCluster(vars, clusterStatus, hostStatus, sampleEndTime);
+            }
+        }
+    }
+    
+    /**
+     * Cluster notifications use the same backoff as hosts. The UP notification is only sent if the
+     * problem was notified, and a cluster that has been quiet for a full backoff period since its
+     * last notification starts the backoff over.
+     */
+    private void notifyCluster(JMeterVariables vars, ClusterStatus clusterStatus, HostStatus hostStatus, Date sampleEndTime) {
+        final HostStatus notificationStatus = this.getClusterNotificationStatus(clusterStatus.getCluster());
+        
+        int messageCount;
+        synchronized (notificationStatus) {
+            final boolean problemNotified = !notificationStatus.getStatus().isUp();
+            if (clusterStatus.getStatus().isUp()) {
+                if (!problemNotified) {
+                    return;
+                }
+            }
+            else if (!problemNotified && notificationStatus.getMessageCount() > 0 && isNotificationDue(notificationStatus, sampleEndTime)) {
+                notificationStatus.setMessageCount(0);
+            }
+            else if (!isNotificationDue(notificationStatus, sampleEndTime)) {
+                log.info("Backing off cluster notification for " + clusterStatus.getCluster() + " " + clusterStatus.getStatus());
+                return;
+            }
+            
+            notificationStatus.setStatus(clusterStatus.getStatus());
+            notificationStatus.setLastMessageSent(sampleEndTime);
+            messageCount = clusterStatus.getStatus().isUp() ? notificationStatus.getMessageCount() : notificationStatus.incrementMessageCount();
+        }
+        
+        final String messageSubject = "myUwMonitor: cluster " + clusterStatus.getCluster() + " " + clusterStatus.getStatus() + 
+                " (" + clusterStatus.getDownCount() + "/" + clusterStatus.getHostCount() + " down)";
+        final String messageBody = sampleEndTime + ": myUwMonitor: cluster " + clusterStatus.getCluster() + " " + clusterStatus.getStatus() + 
+                " (was " + clusterStatus.getPreviousStatus() + ", downCount=" + clusterStatus.getDownCount() + 
+                ", hostCount=" + clusterStatus.getHostCount() + ", messageCount=" + messageCount + 
+                ", changed by " + hostStatus.getHost() + " " + hostStatus.getStatus() + ")";
+        
+        //Claims are keyed by host name, prefix the cluster so it can't collide with a host
+        final String claimOwner = this.monitorDao.claimNotification("cluster:" + clusterStatus.getCluster(), clusterStatus.getStatus(), getNotificationWindow(sampleEndTime), getNotificationWindowLength());
+        if (claimOwner != null) {
+            log.info("Cluster notification for " + clusterStatus.getCluster() + " sent by " + claimOwner);
+        }
+        else if (notifyForHost(vars)) {
+            sendEmail(sampleEndTime, messageSubject, messageBody, clusterStatus.getCluster(), clusterStatus.getStatus());
+        }
+        else {
+            log.info("Notification disabled, not sending: " + messageSubject + " - " + messageBody);
+        }
+    }
+    
+    private HostStatus getClusterNotificationStatus(String cluster) {
+        HostStatus notificationStatus = this.clusterNotifications.get(cluster);
+        if (notificationStatus == null) {
+            notificationStatus = new SimpleHostStatus();
+            notificationStatus.setHost(cluster);
+            notificationStatus.setStatus(Status.UP);
+            final HostStatus existing = this.clusterNotifications.putIfAbsent(cluster, notificationStatus);
+            if (existing != null) {
+                notificationStatus = existing;
+            }
+        }
+        return notificationStatus;
+    }
+
+    /**
+     * Handle a successful sample from a host whose latency is anomalous. Only the switch to
+     * DEGRADED and the notifications are logged as failures, not every slow sample.
+     */
+    private void checkDegradedSample(JMeterVariables vars, HostStatus hostStatus, String sampleLabel, Date sampleEndTime, long duration) {
+        final String hostName = hostStatus.getHost();
+        final boolean statusChanged = hostStatus.getStatus() != Status.DEGRADED;
+        hostStatus.setStatus(Status.DEGRADED);
+        
+        int messageCount = hostStatus.getMessageCount();
+        final double baselineMean = this.latencyAnomalyDetector.getMean(hostName, sampleLabel);
+        String messageSubject = buildMessageSubject(hostName, Status.DEGRADED, messageCount, 0);
+        String messageBody = buildDegradedMessageBody(sampleEndTime, hostName, sampleLabel, messageCount, duration, baselineMean);
+        Notification sentEmail = Notification.FALSE;
+        
+        final boolean notificationDue = isNotificationDue(hostStatus, sampleEndTime);
+        if (notificationDue) {
+            hostStatus.setLastMessageSent(sampleEndTime);
+            messageCount = hostStatus.incrementMessageCount();
+            messageSubject = buildMessageSubject(hostName, Status.DEGRADED, messageCount, 0);
+            messageBody = buildDegradedMessageBody(sampleEndTime, hostName, sampleLabel, messageCount, duration, baselineMean);
+            
+            final String claimOwner = this.monitorDao.claimNotification(hostName, Status.DEGRADED, getNotificationWindow(sampleEndTime), getNotificationWindowLength());
+            if (claimOwner != null) {
+                //Another node is monitoring this host and already sent the message
+                messageBody = buildClaimedMessageBody(messageBody, claimOwner);
+                sentEmail = Notification.DISABLED;
+            }
+            else if (notifyForHost(vars)) {
+                sendEmail(sampleEndTime, messageSubject, appendRecentSamples(messageBody, hostName), hostName, Status.DEGRADED);
+                sentEmail = Notification.TRUE;
+            }
+            else {
+                sentEmail = Notification.DISABLED;
+            }
+        }
+        
+        if (statusChanged || notificationDue) {
+            this.monitorDao.logFailureAndStatus(hostStatus, sampleLabel, sampleEndTime, Status.DEGRADED, messageSubject, messageBody, sentEmail);
+        }
+    }
+    
+    /**
+     * Handle a sample from a host that is flapping or just stopped. The host starting to flap and
+     * settling are notified through the usual backoff, the transitions in between are neither
+     * notified nor logged as failures. The message count carries across so a host that keeps
+     * flapping and settling backs off like one that stays down.
+     */
+    private void checkFlappingSample(JMeterVariables vars, HostStatus hostStatus, String sampleLabel, Date sampleEndTime, 
+            boolean flapping, boolean failing, boolean lastSampleOk, boolean tripped) {
+        
+        //Keep the failure count current so the host settles with the right count
+        if (!lastSampleOk) {
+            hostStatus.incrementFailureCount();
+        }
+        else if (!tripped) {
+            hostStatus.setFailureCount(0);
+        }
+        
+        final Status status;
+        if (flapping) {
+            if (hostStatus.getStatus() == Status.FLAPPING) {
+                //Still flapping, transitions are suppressed until the host settles
+                return;
+            }
+            status = Status.FLAPPING;
+        }
+        else {
+            status = failing ? Status.DOWN : Status.UP;
+        }
+        
+        final String hostName = hostStatus.getHost();
+        if (status == Status.UP) {
+            this.monitorDao.closeOutage(hostName, sampleEndTime, hostStatus.getFailureCount(), hostStatus.getMessageCount());
+        }
+        else if (status == Status.DOWN) {
+            this.monitorDao.openOutage(hostName, sampleEndTime);
+        }
+        
+        hostStatus.setStatus(status);
+        
+        int messageCount = hostStatus.getMessageCount();
+        final double flapScore = this.flapDetector.getScore(hostName, sampleEndTime.getTime());
+        String messageSubject = buildMessageSubject(hostName, status, messageCount, hostStatus.getFailureCount());
+        String messageBody = buildFlappingMessageBody(sampleEndTime, hostName, sampleLabel, status, flapScore);
+        if (status == Status.UP) {
+            messageBody = appendOutageStats(messageBody, hostName, sampleEndTime);
+        }
+        Notification sentEmail = Notification.FALSE;
+        
+        //Settling up is only news if the host was notified about
+        if ((status != Status.UP || messageCount > 0) && isNotificationDue(hostStatus, sampleEndTime)) {
+            hostStatus.setLastMessageSent(sampleEndTime);
+            messageCount = hostStatus.incrementMessageCount();
+            messageSubject = buildMessageSubject(hostName, status, messageCount, hostStatus.getFailureCount());
+            
+            final String claimOwner = this.monitorDao.claimNotification(hostName, status, getNotificationWindow(sampleEndTime), getNotificationWindowLength());
+            if (claimOwner != null) {
+                //Another node is monitoring this host and already sent the message
+                messageBody = buildClaimedMessageBody(messageBody, claimOwner);
+                sentEmail = Notification.DISABLED;
+            }
+            else if (notifyForHost(vars)) {
+                sendEmail(sampleEndTime, messageSubject, messageBody, hostName, status);
+                sentEmail = Notification.TRUE;
+            }
+            else {
+                sentEmail = Notification.DISABLED;
+            }
+        }
+        
+        this.monitorDao.logFailureAndStatus(hostStatus, sampleLabel, sampleEndTime, status, messageSubject, messageBody, sentEmail);
+    }
+    
+    /**
+     * If no message has been sent for the current problem or if the exponential backoff since the
+     * last message has passed
+     */
+    private boolean isNotificationDue(HostStatus hostStatus, Date sampleEndTime) {
+        final int messageCount = hostStatus.getMessageCount();
+        if (messageCount == 0) {
+            return true;
+        }
+        
+        //If not the first message use an exponential roll off send messages after a certain ammount of time
+        int minutesToMessage = (int)Math.pow(2, Math.max(messageCount - 1, 0)) * backoffDuration;
+        Calendar refCal = Calendar.getInstance();
+        refCal.setTime(hostStatus.getLastMessageSent());
+        refCal.add(Calendar.MINUTE, minutesToMessage);
+        return sampleEndTime.after(refCal.getTime());
+    }
+
     /**
      * Generate the email subject string
      */
@@ -470,6 +1599,9 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
         if (Status.DOWN.equals(status)) {
             subject.append(" (fc=").append(failureCount).append(", mc=").append(messageCount).append(")");
         }
+        else if (Status.DEGRADED.equals(status)) {
+            subject.append(" (mc=").append(messageCount).append(")");
+        }
         
         return subject.toString();
     }
@@ -487,17 +1619,96 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
             body.append(" ").append(status);
         }
         else {
-            body.append(" (failureCount=").append(failureCount).append(", messageCount=").append(messageCount).append(")\n")
-                .append(errorMessages);
+            body.append(" (failureCount=").append(failureCount).append(", messageCount=").append(messageCount);
+            if (this.errorRateDetector != null) {
+                body.append(", errorRate=").append(Math.round(this.errorRateDetector.getErrorRate(hostName) * 100)).append("%");
+            }
+            body.append(")\n").append(errorMessages);
+        }
+        
+        return body.toString();
+    }
+
+    /**
+     * Generate the email body string for a slow host
+     */
+    private String buildDegradedMessageBody(Date sampleEndTime, String hostName, String label, int messageCount, long duration, double baselineMean) {
+        final StringBuilder body = new StringBuilder();
+        body.append(sampleEndTime).append(": myUwMonitor: ").append(hostName)
+            .append(" (").append(label).append(" ) ").append(Status.DEGRADED)
+            .append(" (duration=").append(duration).append("ms, baseline=").append(Math.round(baselineMean))
+            .append("ms, messageCount=").append(messageCount).append(")");
+        
+        return body.toString();
+    }
+
+    /**
+     * Generate the email body string for a host starting or stopping flapping
+     */
+    private String buildFlappingMessageBody(Date sampleEndTime, String hostName, String label, Status status, double flapScore) {
+        final StringBuilder body = new StringBuilder();
+        body.append(sampleEndTime).append(": myUwMonitor: ").append(hostName)
+            .append(" (").append(label).append(" ) ").append(status)
+            .append(" (flapScore=").append(Math.round(flapScore * 10) / 10.0).append(")");
+        
+        if (Status.FLAPPING.equals(status)) {
+            body.append("\nNotifications for each change between UP and DOWN are suppressed until it settles");
+        }
+        else {
+            body.append("\nStopped flapping");
         }
         
         return body.toString();
     }
 
     /**
-     * Executes a shell script to send an email.
+     * Adds the host's availability and mean time to recovery, including the outage that just closed
+     */
+    private String appendOutageStats(String messageBody, String hostName, Date sampleEndTime) {
+        final OutageStats outageStats = this.monitorDao.getOutageStats(hostName);
+        return messageBody + "\nAvailability since " + outageStats.getTrackedSince() + ": " 
+                + Math.round(outageStats.getAvailability(sampleEndTime) * 10000) / 100.0 + "% (outages=" 
+                + outageStats.getOutageCount() + ", meanTimeToRecovery=" 
+                + Math.round(outageStats.getMeanTimeToRecovery() / 1000.0) + "s)";
+    }
+
+    /**
+     * Adds the host's recent samples to a notification so the lead up to the failure is visible.
+     * Only the sent email gets them, the logged body stays short.
+     */
+    private String appendRecentSamples(String messageBody, String hostName) {
+        if (this.recentSamples == null) {
+            return messageBody;
+        }
+        return messageBody + "\n\nRecent samples:\n" + this.recentSamples.describe(hostName);
+    }
+
+    /**
+     * Notes which node sent the notification in place of this one
+     */
+    private String buildClaimedMessageBody(String messageBody, String claimOwner) {
+        return messageBody + "\nNotification sent by " + claimOwner;
+    }
+    
+    /**
+     * Start of the backoff window the sample falls in, nodes only send one notification per
+     * host, status and window
      */
-    private void sendEmail(Date now, String subject, String body, String host, Status status) {
+    private Date getNotificationWindow(Date sampleEndTime) {
+        final long windowLength = getNotificationWindowLength();
+        final long time = sampleEndTime.getTime();
+        return new Date(time - (time % windowLength));
+    }
+    
+    private long getNotificationWindowLength() {
+        return TimeUnit.MILLISECONDS.convert(Math.max(this.backoffDuration, 1), TimeUnit.MINUTES);
+    }
+
+    /**
+     * Sends a notification email. Tools running the listener outside of JMeter can override this
+     * to capture notifications instead.
+     */
+    protected void sendEmail(Date now, String subject, String body, String host, Status status) {
         log("Sending email (" + status + "): " + subject + " - " + body);
 
         final SimpleMailMessage message = new SimpleMailMessage();
@@ -508,8 +1719,10 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
 
         try {
             this.javaMailSender.send(message);
+            this.emailsSent.increment();
         }
         catch (MailException me) {
+            this.emailsFailed.increment();
             log("Failed to send email", me);
         }
     }
@@ -556,15 +1769,62 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
     }
     
     /**
-     * Saves data from the last response to a file
+     * Normalized form of the errors on the request, failures with the same cause get the same
+     * signature no matter which ids or numbers are in their messages.
+     */
+    private String getErrorSignature(SampleResult sampleResult) {
+        final StringBuilder signature = new StringBuilder();
+        signature.append(sampleResult.getResponseCode());
+
+        if (!sampleResult.getResponseCode().equals("200")) {
+            signature.append(" ").append(ErrorSignatureTracker.mask(sampleResult.getResponseMessage()));
+        }
+        else {
+            final AssertionResult[] assertionResults = sampleResult.getAssertionResults();
+            for (final AssertionResult assertionResult : assertionResults) {
+                if (assertionResult.isError() || assertionResult.isFailure()) {
+                    signature.append(" [").append(assertionResult.getName()).append("] ")
+                        .append(ErrorSignatureTracker.mask(assertionResult.getFailureMessage()));
+                }
+            }
+        }
+
+        return ErrorSignatureTracker.truncate(signature.toString());
+    }
+    
+    /**
+     * Saves data from the last response to a file, tools running the listener outside of JMeter
+     * can override this to skip or redirect captures
      */
-    private void saveResponseToFile(SampleResult sampleResult, Date now, String userId, String hostName, String errorMessages, int errorCount, int messageCount) {
+    protected void saveResponseToFile(SampleResult sampleResult, Date now, String userId, String hostName, String errorMessages, int errorCount, int messageCount) {
         final String formatedDate;
         synchronized (RESPONSE_FILE_DATE_FORMAT) {
             formatedDate = RESPONSE_FILE_DATE_FORMAT.format(now);
         }
         final File responseFile = new File(logLocation, formatedDate + "." + hostName + ".response");
 
+        final StringWriter description = new StringWriter();
+        final PrintWriter pw = new PrintWriter(description);
+        pw.println("Sampler Label: " + sampleResult.getSampleLabel());
+        pw.println("Portal User: " + userId);
+        pw.println("Consecutive Error Count: " + errorCount);
+        pw.println("Sent Message Count: " + messageCount);
+        pw.println("Error Messages: " + errorMessages);
+        if (this.recentSamples != null) {
+            pw.println(RESPONSE_FILE_SEPARATOR);
+            pw.println("Recent Samples:");
+            pw.print(this.recentSamples.describe(hostName));
+        }
+        pw.println(RESPONSE_FILE_SEPARATOR);
+        pw.flush();
+        
+        if (this.captureWriter != null) {
+            //Written later from the capture buffer so the sampler doesn't wait on the disk
+            this.captureWriter.capture(responseFile, description.toString(), sampleResult.getResponseHeaders(), 
+                    RESPONSE_FILE_SEPARATOR + LINE_SEPARATOR, sampleResult.getResponseData());
+            return;
+        }
+
         PrintStream ps = null;
         try {
             ps = new PrintStream(responseFile);
@@ -572,16 +1832,12 @@ public class MonitorListener extends AbstractTestElement implements SampleListen
             final String respHeaders = sampleResult.getResponseHeaders();
             final String respData = sampleResult.getResponseDataAsString();
 
-            ps.println("Sampler Label: " + sampleResult.getSampleLabel());
-            ps.println("Portal User: " + userId);
-            ps.println("Consecutive Error Count: " + errorCount);
-            ps.println("Sent Message Count: " + messageCount);
-            ps.println("Error Messages: " + errorMessages);
-            ps.println("--------------------------------------------------------------------------------");
+            ps.print(description);
             ps.print(respHeaders);
-            ps.println("--------------------------------------------------------------------------------");
+            ps.println(RESPONSE_FILE_SEPARATOR);
             ps.print(respData);
             ps.flush();
+            this.capturesWritten.increment();
 
             log("Saved response to: " + responseFile);
         }
@@ -37,7 +37,31 @@ public class MonitorListenerBeanInfo extends BeanInfoSupport {
         p = property("logLocation");
         p.setValue(NOT_UNDEFINED, Boolean.TRUE);
         p.setValue(DEFAULT, "");
-        createPropertyGroup("logLocationGroup", new String[] { "logLocation" });
+        
+        p = property("errorSignatureInterval");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_ERROR_SIGNATURE_INTERVAL));
+        
+        p = property("errorSignatureRawFailures");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_ERROR_SIGNATURE_RAW_FAILURES));
+        
+        p = property("recentSampleCount");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_RECENT_SAMPLE_COUNT));
+        
+        p = property("captureBufferSize");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_CAPTURE_BUFFER_SIZE));
+        
+        p = property("captureExhaustedPolicy");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, MonitorListener.CAPTURE_POLICY_TRUNCATE);
+        p.setValue(NOT_OTHER, Boolean.TRUE);
+        p.setValue(TAGS, new String[] { MonitorListener.CAPTURE_POLICY_TRUNCATE, MonitorListener.CAPTURE_POLICY_DROP, MonitorListener.CAPTURE_POLICY_BLOCK });
+        
+        createPropertyGroup("logLocationGroup", new String[] { "logLocation", "errorSignatureInterval", "errorSignatureRawFailures", "recentSampleCount",
+                "captureBufferSize", "captureExhaustedPolicy" });
 
 
 
@@ -67,6 +91,98 @@ public class MonitorListenerBeanInfo extends BeanInfoSupport {
 
         createPropertyGroup("notifcationGroup", new String[] { "notificationVar", "failureThreshold", "backoffDuration", "smtpHost", "emailTo", "emailFrom" });
         
+        p = property("errorRateWindow");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_ERROR_RATE_WINDOW));
+        
+        p = property("errorRateTrip");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_ERROR_RATE_TRIP));
+        
+        p = property("errorRateClear");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_ERROR_RATE_CLEAR));
+        
+        p = property("latencyAnomalyDeviation");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_LATENCY_ANOMALY_DEVIATION));
+        
+        p = property("latencyAnomalyRatio");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_LATENCY_ANOMALY_RATIO));
+        
+        p = property("latencyAnomalyThreshold");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_LATENCY_ANOMALY_THRESHOLD));
+        
+        p = property("flapWindow");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_FLAP_WINDOW));
+        
+        p = property("flapStartScore");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_FLAP_START_SCORE));
+        
+        p = property("flapStopScore");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_FLAP_STOP_SCORE));
+        
+        p = property("serviceGroups");
+        p.setValue(NOT_UNDEFINED, Boolean.FALSE);
+        p.setValue(DEFAULT, "");
+        
+        p = property("clusters");
+        p.setValue(NOT_UNDEFINED, Boolean.FALSE);
+        p.setValue(DEFAULT, "");
+        
+        createPropertyGroup("detectionGroup", new String[] { "errorRateWindow", "errorRateTrip", "errorRateClear", 
+                "latencyAnomalyDeviation", "latencyAnomalyRatio", "latencyAnomalyThreshold",
+                "flapWindow", "flapStartScore", "flapStopScore", "serviceGroups", "clusters" });
+        
+
+        
+        p = property("storageType");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, MonitorListener.STORAGE_TYPE_JDBC);
+        p.setValue(NOT_OTHER, Boolean.TRUE);
+        p.setValue(TAGS, new String[] { MonitorListener.STORAGE_TYPE_JDBC, MonitorListener.STORAGE_TYPE_LOCAL });
+        
+        p = property("localStorageDirectory");
+        p.setValue(NOT_UNDEFINED, Boolean.FALSE);
+        p.setValue(DEFAULT, "");
+        
+        p = property("compactHostStatus");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Boolean.FALSE);
+        
+        createPropertyGroup("storageGroup", new String[] { "storageType", "localStorageDirectory", "compactHostStatus" });
+        
+        p = property("statusPort");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_STATUS_PORT));
+        
+        p = property("statusBindAddress");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, MonitorListener.DEFAULT_STATUS_BIND_ADDRESS);
+        
+        p = property("statusRecentFailures");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_STATUS_RECENT_FAILURES));
+        
+        createPropertyGroup("statusServerGroup", new String[] { "statusPort", "statusBindAddress", "statusRecentFailures" });
+        
+        p = property("eventStream");
+        p.setValue(NOT_UNDEFINED, Boolean.FALSE);
+        p.setValue(DEFAULT, "");
+        
+        createPropertyGroup("eventGroup", new String[] { "eventStream" });
+        
+        p = property("aggregatorAddress");
+        p.setValue(NOT_UNDEFINED, Boolean.FALSE);
+        p.setValue(DEFAULT, "");
+        
+        createPropertyGroup("aggregatorGroup", new String[] { "aggregatorAddress" });
+        
 
         
         p = property("jdbcDriver");
@@ -88,12 +204,28 @@ public class MonitorListenerBeanInfo extends BeanInfoSupport {
         p = property("purgeOldFailure");
         p.setValue(NOT_UNDEFINED, Boolean.TRUE);
         p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_PURGE_OLD_FAILURE));
+
+        createPropertyGroup("databaseGroup", new String[] { "jdbcDriver", "jdbcUrl", "jdbcUser", "jdbcPass", "purgeOldFailure" });
         
-        p = property("purgeOldStatus");
-        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
-        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_PURGE_OLD_STATUS));
 
-        createPropertyGroup("databaseGroup", new String[] { "jdbcDriver", "jdbcUrl", "jdbcUser", "jdbcPass", "purgeOldFailure", "purgeOldStatus" });
+        
+        p = property("latencyRollupInterval");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_LATENCY_ROLLUP_INTERVAL));
+        
+        p = property("latencyRetentionFine");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_LATENCY_RETENTION_FINE));
+        
+        p = property("latencyRetentionHourly");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_LATENCY_RETENTION_HOURLY));
+        
+        p = property("latencyRetentionDaily");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Integer.toString(MonitorListener.DEFAULT_LATENCY_RETENTION_DAILY));
+        
+        createPropertyGroup("latencyGroup", new String[] { "latencyRollupInterval", "latencyRetentionFine", "latencyRetentionHourly", "latencyRetentionDaily" });
     }
 
 }
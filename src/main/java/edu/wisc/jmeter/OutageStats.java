@@ -0,0 +1,121 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter;
+
+import java.util.Date;
+
+/**
+ * Running outage totals for a host, availability and MTTR are derived from them without looking
+ * at individual outages
+ */
+public class OutageStats {
+    private final String host;
+    private final Date trackedSince;
+    private int outageCount = 0;
+    private long outageDuration = 0;
+    private Date openOutageStart = null;
+
+    public OutageStats(String host, Date trackedSince) {
+        this.host = host;
+        this.trackedSince = trackedSince;
+    }
+
+    public String getHost() {
+        return host;
+    }
+    public Date getTrackedSince() {
+        return trackedSince;
+    }
+    public synchronized int getOutageCount() {
+        return outageCount;
+    }
+    /**
+     * @return Total ms of all closed outages
+     */
+    public synchronized long getOutageDuration() {
+        return outageDuration;
+    }
+    /**
+     * @return Start of the outage in progress, null if the host is not in an outage
+     */
+    public synchronized Date getOpenOutageStart() {
+        return openOutageStart;
+    }
+    public synchronized void setOpenOutageStart(Date openOutageStart) {
+        this.openOutageStart = openOutageStart;
+    }
+
+    /**
+     * Replace the totals with the persisted ones, which may include outages closed by other nodes
+     */
+    public synchronized void setTotals(int outageCount, long outageDuration) {
+        this.outageCount = outageCount;
+        this.outageDuration = outageDuration;
+    }
+
+    /**
+     * Close the open outage and add it to the totals
+     *
+     * @return The duration of the outage in ms, -1 if no outage was open
+     */
+    public synchronized long closeOutage(Date end) {
+        if (this.openOutageStart == null) {
+            return -1;
+        }
+
+        final long duration = Math.max(end.getTime() - this.openOutageStart.getTime(), 0);
+        this.outageCount++;
+        this.outageDuration += duration;
+        this.openOutageStart = null;
+        return duration;
+    }
+
+    /**
+     * @return Share of the time since tracking started, 0 - 1, that the host was not in an outage
+     */
+    public synchronized double getAvailability(Date now) {
+        final long tracked = now.getTime() - this.trackedSince.getTime();
+        if (tracked <= 0) {
+            return 1;
+        }
+
+        long down = this.outageDuration;
+        if (this.openOutageStart != null) {
+            down += Math.max(now.getTime() - this.openOutageStart.getTime(), 0);
+        }
+        return Math.max(0, 1 - (double)down / tracked);
+    }
+
+    /**
+     * @return Mean ms to recover from the closed outages, 0 if there have been none
+     */
+    public synchronized long getMeanTimeToRecovery() {
+        if (this.outageCount == 0) {
+            return 0;
+        }
+        return this.outageDuration / this.outageCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "OutageStats [host=" + host + ", trackedSince=" + trackedSince + ", outageCount=" + outageCount
+                + ", outageDuration=" + outageDuration + ", openOutageStart=" + openOutageStart + "]";
+    }
+}
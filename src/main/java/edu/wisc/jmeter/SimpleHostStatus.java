@@ -0,0 +1,126 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+
+package edu.wisc.jmeter;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link HostStatus} keeping its values in fields
+ */
+public class SimpleHostStatus extends HostStatus {
+    //Updaters rather than AtomicIntegers to keep the per host footprint down
+    private static final AtomicIntegerFieldUpdater<SimpleHostStatus> MESSAGE_COUNT = AtomicIntegerFieldUpdater.newUpdater(SimpleHostStatus.class, "messageCount");
+    private static final AtomicIntegerFieldUpdater<SimpleHostStatus> FAILURE_COUNT = AtomicIntegerFieldUpdater.newUpdater(SimpleHostStatus.class, "failureCount");
+    
+    private String host;
+    private volatile int messageCount = 0;
+    private volatile int failureCount = 0;
+    private Date lastMessageSent = null;
+    private Date lastUpdated = null;
+    private Status status = Status.UNKOWN;
+    private long version = 0;
+    private int storedMessageCount = 0;
+    private int storedFailureCount = 0;
+    
+    @Override
+    public Status getStatus() {
+        return status;
+    }
+    @Override
+    public void setStatus(Status status) {
+        Assert.notNull(status);
+        this.status = status;
+    }
+    @Override
+    public String getHost() {
+        return host;
+    }
+    @Override
+    public void setHost(String host) {
+        this.host = host;
+    }
+    @Override
+    public int getMessageCount() {
+        return messageCount;
+    }
+    @Override
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+    @Override
+    public int incrementMessageCount() {
+        return MESSAGE_COUNT.incrementAndGet(this);
+    }
+    @Override
+    public int getFailureCount() {
+        return failureCount;
+    }
+    @Override
+    public void setFailureCount(int failureCount) {
+        this.failureCount = failureCount;
+    }
+    @Override
+    public int incrementFailureCount() {
+        return FAILURE_COUNT.incrementAndGet(this);
+    }
+    @Override
+    public Date getLastMessageSent() {
+        return lastMessageSent;
+    }
+    @Override
+    public void setLastMessageSent(Date lastMessageSent) {
+        this.lastMessageSent = lastMessageSent;
+    }
+    @Override
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+    @Override
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+    @Override
+    public long getVersion() {
+        return version;
+    }
+    @Override
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    @Override
+    protected int getStoredMessageCount() {
+        return storedMessageCount;
+    }
+    @Override
+    protected int getStoredFailureCount() {
+        return storedFailureCount;
+    }
+    @Override
+    protected void setStoredCounts(int storedMessageCount, int storedFailureCount) {
+        this.storedMessageCount = storedMessageCount;
+        this.storedFailureCount = storedFailureCount;
+    }
+}
@@ -17,6 +17,8 @@ public enum Status {
     OUT_UP(true, true),
     OUT_DOWN(false, true),
     DOWN(false, false),
+    DEGRADED(true, false), //Answering but much slower than usual
+    FLAPPING(false, false), //Switching between up and down too often to notify on each switch
     UNKOWN(false, false);
     
     private final boolean up;
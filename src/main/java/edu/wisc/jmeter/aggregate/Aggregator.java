@@ -0,0 +1,288 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+
+import edu.wisc.jmeter.MonitorListener;
+import edu.wisc.jmeter.stats.RecentSamples;
+
+/**
+ * Standalone process that receives samples from agents running the listener in aggregator mode
+ * and runs detection, storage and notification for all of them in one place. Samples are fed
+ * through a {@link MonitorListener} configured here, so the central process behaves exactly like
+ * a single JMeter node seeing every agent's samples. Failure captures only contain what the
+ * records carry, response headers and bodies stay on the agents.
+ * <p>
+ * Run with a properties file holding {@link #PORT_PROPERTY}, {@link #BIND_ADDRESS_PROPERTY} and
+ * any {@link MonitorListener} properties, for example storageType, jdbcUrl, smtpHost and emailTo.
+ * <p>
+ * Agents are not authenticated and the stream is not encrypted, anyone who can connect can feed
+ * samples that change host statuses and send notifications. The aggregator only listens on
+ * {@link #DEFAULT_BIND_ADDRESS} unless another address is configured, bind it to an interface
+ * agents can reach only on a trusted network or behind a firewall limited to the agent hosts.
+ */
+public class Aggregator {
+    public static final String PORT_PROPERTY = "aggregator.port";
+    public static final String BIND_ADDRESS_PROPERTY = "aggregator.bindAddress";
+    public static final String DEFAULT_BIND_ADDRESS = "127.0.0.1";
+    static final String STATUS_VAR = "aggregator.status";
+    static final String NOTIFICATION_VAR = "aggregator.notify";
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private final AtomicLong received = new AtomicLong();
+    private final MonitorListener listener;
+    private final String bindAddress;
+    private final int port;
+    private ExecutorService executor;
+    private ServerSocket serverSocket;
+
+    /**
+     * @param bindAddress Address to accept agents on, agents are not authenticated so only use an
+     * address reachable from trusted hosts
+     * @param port Port to accept agents on, 0 for any free port
+     */
+    public Aggregator(MonitorListener listener, String bindAddress, int port) {
+        this.listener = listener;
+        this.bindAddress = bindAddress;
+        this.port = port;
+
+        //Status and notification flags arrive with the records
+        this.listener.setStatusVar(STATUS_VAR);
+        this.listener.setNotificationVar(NOTIFICATION_VAR);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: " + Aggregator.class.getName() + " <config.properties>");
+            System.exit(1);
+        }
+
+        final Properties config = new Properties();
+        final InputStream in = new FileInputStream(args[0]);
+        try {
+            config.load(in);
+        }
+        finally {
+            IOUtils.closeQuietly(in);
+        }
+
+        final int port = Integer.parseInt(config.getProperty(PORT_PROPERTY, "4445"));
+        config.remove(PORT_PROPERTY);
+        final String bindAddress = config.getProperty(BIND_ADDRESS_PROPERTY, DEFAULT_BIND_ADDRESS);
+        config.remove(BIND_ADDRESS_PROPERTY);
+
+        final MonitorListener listener = new MonitorListener();
+        final BeanWrapper listenerWrapper = new BeanWrapperImpl(listener);
+        listenerWrapper.setPropertyValues(config);
+
+        final Aggregator aggregator = new Aggregator(listener, bindAddress, port);
+        aggregator.start();
+        Runtime.getRuntime().addShutdownHook(new Thread("Aggregator-Shutdown") {
+            @Override
+            public void run() {
+                aggregator.stop();
+            }
+        });
+    }
+
+    public void start() throws IOException {
+        this.listener.testStarted();
+
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                return new Thread(r, "Aggregator-" + (count++));
+            }
+        });
+
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(this.bindAddress, this.port));
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+        log.info("Aggregator listening on " + this.bindAddress + ":" + this.getPort());
+    }
+
+    /**
+     * @return The port agents connect to, useful when started on port 0
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Records received from all agents so far
+     */
+    public long getReceived() {
+        return this.received.get();
+    }
+
+    /**
+     * Disconnect the agents, finish the records already read and end the listener's test
+     */
+    public void stop() {
+        final ServerSocket server = this.serverSocket;
+        this.serverSocket = null;
+        if (server == null) {
+            return;
+        }
+
+        try {
+            server.close();
+        }
+        catch (IOException e) {
+            log.warn("Failed to close aggregator socket", e);
+        }
+        for (final Socket connection : this.connections) {
+            closeQuietly(connection);
+        }
+
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.listener.testEnded();
+        log.info("Aggregator stopped");
+    }
+
+    private void accept() {
+        final ServerSocket server = this.serverSocket;
+        while (server != null && !server.isClosed()) {
+            final Socket connection;
+            try {
+                connection = server.accept();
+            }
+            catch (IOException e) {
+                if (!server.isClosed()) {
+                    log.warn("Failed to accept agent connection", e);
+                }
+                continue;
+            }
+
+            this.connections.add(connection);
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    receive(connection);
+                }
+            });
+        }
+    }
+
+    private void receive(Socket connection) {
+        final String agent = connection.getRemoteSocketAddress().toString();
+        log.info("Agent connected: " + agent);
+
+        //The listener reads the status and notification flags, and tracks visited hosts, in the thread's variables
+        final JMeterVariables vars = new JMeterVariables();
+        JMeterContextService.getContext().setVariables(vars);
+        this.listener.testIterationStart(null);
+
+        long agentReceived = 0;
+        try {
+            final SampleRecordReader reader = new SampleRecordReader(connection.getInputStream());
+            for (List<SampleRecord> batch = reader.readBatch(); batch != null; batch = reader.readBatch()) {
+                for (final SampleRecord record : batch) {
+                    vars.put(STATUS_VAR, record.getStatus().name());
+                    vars.put(NOTIFICATION_VAR, Boolean.toString(record.isNotify()));
+                    this.listener.sampleOccurred(new SampleEvent(toSampleResult(record), "Aggregator"));
+                }
+                agentReceived += batch.size();
+                this.received.addAndGet(batch.size());
+            }
+        }
+        catch (SocketException e) {
+            log.info("Agent " + agent + " disconnected: " + e.getMessage());
+        }
+        catch (IOException e) {
+            log.warn("Failed to read samples from agent " + agent, e);
+        }
+        finally {
+            this.connections.remove(connection);
+            closeQuietly(connection);
+            log.info("Agent " + agent + " done after " + agentReceived + " samples");
+        }
+    }
+
+    static SampleResult toSampleResult(SampleRecord record) throws MalformedURLException {
+        final SampleResult result = new SampleResult();
+        result.setURL(new URL("http", record.getHost(), "/"));
+        result.setSampleLabel(record.getLabel());
+        result.setSuccessful(record.isSuccessful());
+        if (record.getResponseCode() != RecentSamples.NO_RESPONSE_CODE) {
+            result.setResponseCode(Integer.toString(record.getResponseCode()));
+        }
+        else {
+            result.setResponseCode("");
+        }
+        result.setResponseMessage(record.isSuccessful() ? "OK" : "Failed on agent");
+        result.setStampAndTime(record.getEndTime() - record.getDuration(), record.getDuration());
+        return result;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            //Ignore
+        }
+    }
+}
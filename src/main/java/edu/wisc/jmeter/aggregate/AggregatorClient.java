@@ -0,0 +1,215 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+import edu.wisc.jmeter.metrics.StripedCounter;
+
+/**
+ * Streams sample records from an agent to the {@link Aggregator}. Records are queued without
+ * blocking and written in batches by a single background thread, every flush interval or as soon
+ * as a full batch is waiting. While the aggregator can't be reached it is unavailable, records
+ * are dropped and the connection is retried at most every 5 seconds.
+ */
+public class AggregatorClient {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+    private static final long RECONNECT_INTERVAL = TimeUnit.MILLISECONDS.convert(5, TimeUnit.SECONDS);
+
+    private final AtomicBoolean flushPending = new AtomicBoolean(false);
+    private final String host;
+    private final int port;
+    private final int batchSize;
+    private final BlockingQueue<SampleRecord> records;
+    private final StripedCounter sent;
+    private final StripedCounter dropped;
+    private final ScheduledExecutorService executor;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushPending.set(false);
+            flush();
+        }
+    };
+    private Socket socket;
+    private SampleRecordWriter writer;
+    private long nextConnect = 0;
+    private volatile boolean available = true;
+
+    /**
+     * @param address host:port of the aggregator
+     * @param capacity Records to queue while waiting to be sent
+     */
+    public AggregatorClient(String address, int batchSize, int capacity, StripedCounter sent, StripedCounter dropped) {
+        final int portIndex = address.lastIndexOf(':');
+        if (portIndex < 0) {
+            throw new IllegalArgumentException("Aggregator address must be host:port: " + address);
+        }
+        this.host = address.substring(0, portIndex);
+        this.port = Integer.parseInt(address.substring(portIndex + 1));
+        this.batchSize = batchSize;
+        this.records = new ArrayBlockingQueue<SampleRecord>(capacity);
+        this.sent = sent;
+        this.dropped = dropped;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "AggregatorClient-" + host + ":" + port);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param flushInterval Milliseconds between sends of partial batches
+     */
+    public void start(long flushInterval) {
+        this.executor.scheduleWithFixedDelay(this.flushTask, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return false once sending to the aggregator has failed, until it can be connected to again
+     */
+    public boolean isAvailable() {
+        return this.available;
+    }
+
+    public String getAddress() {
+        return this.host + ":" + this.port;
+    }
+
+    public void send(SampleRecord record) {
+        if (!this.records.offer(record)) {
+            this.dropped.increment();
+            return;
+        }
+
+        if (this.records.size() >= this.batchSize && this.flushPending.compareAndSet(false, true)) {
+            this.executor.execute(this.flushTask);
+        }
+    }
+
+    /**
+     * Send the queued records and disconnect
+     */
+    public void close() {
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                this.executor.shutdownNow();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.flush();
+        this.disconnect();
+    }
+
+    private synchronized void flush() {
+        if (!this.available && this.records.isEmpty()) {
+            //Nothing is routed here while unavailable, probe so the aggregator rejoins once it is back
+            try {
+                this.getWriter();
+            }
+            catch (IOException e) {
+                log.debug("Aggregator " + this.getAddress() + " still unavailable", e);
+                this.nextConnect = System.currentTimeMillis() + RECONNECT_INTERVAL;
+            }
+        }
+
+        final List<SampleRecord> batch = new ArrayList<SampleRecord>(this.batchSize);
+        while (this.records.drainTo(batch, this.batchSize) > 0) {
+            try {
+                final SampleRecordWriter out = this.getWriter();
+                if (out == null) {
+                    this.dropped.add(batch.size());
+                }
+                else {
+                    out.writeBatch(batch);
+                    this.sent.add(batch.size());
+                }
+            }
+            catch (IOException e) {
+                log.warn("Failed to send " + batch.size() + " samples to aggregator " + this.host + ":" + this.port + ", dropping samples for " + RECONNECT_INTERVAL + "ms", e);
+                this.dropped.add(batch.size());
+                this.nextConnect = System.currentTimeMillis() + RECONNECT_INTERVAL;
+                this.available = false;
+                this.disconnect();
+            }
+            batch.clear();
+        }
+    }
+
+    private SampleRecordWriter getWriter() throws IOException {
+        if (this.writer != null) {
+            return this.writer;
+        }
+        if (System.currentTimeMillis() < this.nextConnect) {
+            return null;
+        }
+
+        final Socket newSocket = new Socket();
+        try {
+            newSocket.connect(new InetSocketAddress(this.host, this.port), (int) RECONNECT_INTERVAL);
+            newSocket.setTcpNoDelay(true);
+            this.writer = new SampleRecordWriter(newSocket.getOutputStream());
+            this.socket = newSocket;
+        }
+        catch (IOException e) {
+            newSocket.close();
+            this.available = false;
+            throw e;
+        }
+        this.available = true;
+        log.info("Connected to aggregator " + this.host + ":" + this.port);
+        return this.writer;
+    }
+
+    private void disconnect() {
+        this.writer = null;
+        if (this.socket != null) {
+            try {
+                this.socket.close();
+            }
+            catch (IOException e) {
+                //Ignore
+            }
+            this.socket = null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Consistent hash ring placing each node at {@link #VIRTUAL_NODES} points, so when a node joins
+ * or leaves only the keys next to its points move and they spread over all the other nodes.
+ * Points are MD5 based so every agent builds the same ring from the same node names. The point
+ * of each key is cached, keys are expected to be a bounded set like host names.
+ */
+public class ConsistentHashRing<T> {
+    public static final int VIRTUAL_NODES = 128;
+
+    private final int[] points;
+    private final List<T> owners;
+    private final int[] ownerIndexes;
+    private final ConcurrentMap<String, Integer> keyPoints = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * @param nodes Nodes keyed by the name they are hashed with
+     */
+    public ConsistentHashRing(Map<String, T> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+
+        final List<T> nodeList = new ArrayList<T>(nodes.values());
+        final TreeMap<Integer, Integer> ring = new TreeMap<Integer, Integer>();
+        int nodeIndex = 0;
+        for (final String name : nodes.keySet()) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                //On the rare collision the first node keeps the point
+                final int point = hash(name + "#" + i);
+                if (!ring.containsKey(point)) {
+                    ring.put(point, nodeIndex);
+                }
+            }
+            nodeIndex++;
+        }
+
+        this.owners = nodeList;
+        this.points = new int[ring.size()];
+        this.ownerIndexes = new int[ring.size()];
+        int index = 0;
+        for (final Map.Entry<Integer, Integer> point : ring.entrySet()) {
+            this.points[index] = point.getKey();
+            this.ownerIndexes[index] = point.getValue();
+            index++;
+        }
+    }
+
+    /**
+     * @return The node owning the key
+     */
+    public T getOwner(String key) {
+        return this.owners.get(this.ownerIndexes[this.getPoint(key)]);
+    }
+
+    /**
+     * @return The first node at or after the key's point that the filter accepts, the key's owner
+     *         if it accepts none
+     */
+    public T getOwner(String key, NodeFilter<T> filter) {
+        final int start = this.getPoint(key);
+        for (int i = 0; i < this.points.length; i++) {
+            final T node = this.owners.get(this.ownerIndexes[(start + i) % this.points.length]);
+            if (filter.accept(node)) {
+                return node;
+            }
+        }
+        return this.owners.get(this.ownerIndexes[start]);
+    }
+
+    /**
+     * @return Index of the first point at or after the key's hash, wrapping around the ring
+     */
+    private int getPoint(String key) {
+        Integer point = this.keyPoints.get(key);
+        if (point == null) {
+            point = this.findPoint(hash(key));
+            this.keyPoints.put(key, point);
+        }
+        return point;
+    }
+
+    private int findPoint(int hash) {
+        int low = 0;
+        int high = this.points.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (this.points[mid] < hash) {
+                low = mid + 1;
+            }
+            else if (this.points[mid] > hash) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return low == this.points.length ? 0 : low;
+    }
+
+    static int hash(String key) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is required to be supported", e);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is required to be supported", e);
+        }
+        return ((digest[0] & 0xFF) << 24) | ((digest[1] & 0xFF) << 16) | ((digest[2] & 0xFF) << 8) | (digest[3] & 0xFF);
+    }
+
+    public interface NodeFilter<T> {
+        boolean accept(T node);
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import edu.wisc.jmeter.Status;
+
+/**
+ * The parts of a sample the aggregator needs to run detection, along with the status and
+ * notification flags the agent read from its JMeter variables
+ */
+public final class SampleRecord {
+    private final String host;
+    private final String label;
+    private final long endTime;
+    private final int duration;
+    private final boolean successful;
+    private final int responseCode;
+    private final Status status;
+    private final boolean notify;
+
+    /**
+     * @param responseCode Numeric response code, {@link edu.wisc.jmeter.stats.RecentSamples#NO_RESPONSE_CODE} if there isn't one
+     */
+    public SampleRecord(String host, String label, long endTime, int duration, boolean successful, int responseCode,
+            Status status, boolean notify) {
+        this.host = host;
+        this.label = label;
+        this.endTime = endTime;
+        this.duration = duration;
+        this.successful = successful;
+        this.responseCode = responseCode;
+        this.status = status;
+        this.notify = notify;
+    }
+
+    public String getHost() {
+        return host;
+    }
+    public String getLabel() {
+        return label;
+    }
+    public long getEndTime() {
+        return endTime;
+    }
+    public int getDuration() {
+        return duration;
+    }
+    public boolean isSuccessful() {
+        return successful;
+    }
+    public int getResponseCode() {
+        return responseCode;
+    }
+    public Status getStatus() {
+        return status;
+    }
+    public boolean isNotify() {
+        return notify;
+    }
+
+    @Override
+    public String toString() {
+        return "SampleRecord [host=" + host + ", label=" + label + ", endTime=" + endTime + ", duration=" + duration
+                + ", successful=" + successful + ", responseCode=" + responseCode + ", status=" + status + "]";
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wisc.jmeter.Status;
+
+/**
+ * Reads the batches written by a {@link SampleRecordWriter}. Not thread safe.
+ */
+public class SampleRecordReader {
+    private final Map<Integer, String> hosts = new HashMap<Integer, String>();
+    private final Map<Integer, String> labels = new HashMap<Integer, String>();
+    private final DataInputStream in;
+
+    public SampleRecordReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+
+        final int magic = this.in.readInt();
+        if (magic != SampleRecordWriter.MAGIC) {
+            throw new IOException("Not a sample record stream, bad magic: " + Integer.toHexString(magic));
+        }
+        final int version = this.in.readUnsignedByte();
+        if (version != SampleRecordWriter.VERSION) {
+            throw new IOException("Unsupported sample record stream version: " + version);
+        }
+    }
+
+    /**
+     * @return The next batch of records, null if the stream ended cleanly
+     */
+    public List<SampleRecord> readBatch() throws IOException {
+        while (true) {
+            final int type = this.in.read();
+            switch (type) {
+                case -1: {
+                    return null;
+                }
+                case SampleRecordWriter.DEFINE_HOST: {
+                    this.hosts.put(this.in.readInt(), this.in.readUTF());
+                } break;
+                case SampleRecordWriter.DEFINE_LABEL: {
+                    this.labels.put(this.in.readInt(), this.in.readUTF());
+                } break;
+                case SampleRecordWriter.BATCH: {
+                    return this.readRecords();
+                }
+                default: {
+                    throw new IOException("Unknown frame type: " + type);
+                }
+            }
+        }
+    }
+
+    private List<SampleRecord> readRecords() throws IOException {
+        final int count = this.in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative batch size: " + count);
+        }
+        if (count > SampleRecordWriter.MAX_BATCH_SIZE) {
+            throw new IOException("Batch size " + count + " is over the " + SampleRecordWriter.MAX_BATCH_SIZE + " record limit");
+        }
+
+        final List<SampleRecord> records = new ArrayList<SampleRecord>(count);
+        for (int i = 0; i < count; i++) {
+            final String host = this.lookup(this.hosts, this.in.readInt());
+            final String label = this.lookup(this.labels, this.in.readInt());
+            final long endTime = this.in.readLong();
+            final int duration = this.in.readInt();
+            final int flags = this.in.readUnsignedByte();
+            final Status status = getStatus(this.in.readUnsignedByte());
+            final int responseCode = this.in.readShort();
+            records.add(new SampleRecord(host, label, endTime, duration,
+                    (flags & SampleRecordWriter.FLAG_SUCCESSFUL) != 0, responseCode,
+                    status, (flags & SampleRecordWriter.FLAG_NOTIFY) != 0));
+        }
+        return records;
+    }
+
+    static Status getStatus(int statusCode) throws IOException {
+        switch (statusCode) {
+            case SampleRecordWriter.STATUS_UP: return Status.UP;
+            case SampleRecordWriter.STATUS_OUT_UP: return Status.OUT_UP;
+            case SampleRecordWriter.STATUS_OUT_DOWN: return Status.OUT_DOWN;
+            case SampleRecordWriter.STATUS_DOWN: return Status.DOWN;
+            case SampleRecordWriter.STATUS_DEGRADED: return Status.DEGRADED;
+            case SampleRecordWriter.STATUS_FLAPPING: return Status.FLAPPING;
+            case SampleRecordWriter.STATUS_UNKNOWN: return Status.UNKOWN;
+            default: throw new IOException("Unknown status code: " + statusCode);
+        }
+    }
+
+    private String lookup(Map<Integer, String> names, int id) throws IOException {
+        final String name = names.get(id);
+        if (name == null) {
+            throw new IOException("Record refers to undefined id: " + id);
+        }
+        return name;
+    }
+}
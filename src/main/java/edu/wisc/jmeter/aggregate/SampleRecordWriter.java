@@ -0,0 +1,143 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.stats.RecentSamples;
+
+/**
+ * Writes batches of {@link SampleRecord}s to an aggregator. The stream starts with
+ * {@link #MAGIC} and {@link #VERSION}, followed by frames that each start with a type byte:
+ * <ul>
+ *  <li>{@link #DEFINE_HOST}, {@link #DEFINE_LABEL}: int id, UTF name. Sent the first time a name
+ *      is used on the stream, records refer to names by id after that.</li>
+ *  <li>{@link #BATCH}: int record count, then per record int host id, int label id, long end time,
+ *      int duration, byte flags, byte status code and short response code. 24 bytes a record,
+ *      at most {@link #MAX_BATCH_SIZE} records a batch.</li>
+ * </ul>
+ * Not thread safe.
+ */
+public class SampleRecordWriter {
+    public static final int MAGIC = 0x4A4D4147; //JMAG
+    public static final int VERSION = 1;
+
+    public static final int DEFINE_HOST = 1;
+    public static final int DEFINE_LABEL = 2;
+    public static final int BATCH = 3;
+
+    //Bounds what a reader allocates for a batch before any records arrive
+    public static final int MAX_BATCH_SIZE = 10000;
+
+    public static final int FLAG_SUCCESSFUL = 0x01;
+    public static final int FLAG_NOTIFY = 0x02;
+
+    //Fixed on the wire so reordering or adding statuses can't change what a code means
+    public static final int STATUS_UP = 0;
+    public static final int STATUS_OUT_UP = 1;
+    public static final int STATUS_OUT_DOWN = 2;
+    public static final int STATUS_DOWN = 3;
+    public static final int STATUS_DEGRADED = 4;
+    public static final int STATUS_FLAPPING = 5;
+    public static final int STATUS_UNKNOWN = 6;
+
+    private final Map<String, Integer> hostIds = new HashMap<String, Integer>();
+    private final Map<String, Integer> labelIds = new HashMap<String, Integer>();
+    private final DataOutputStream out;
+
+    public SampleRecordWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    public void writeBatch(List<SampleRecord> records) throws IOException {
+        if (records.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch of " + records.size() + " records is over the " + MAX_BATCH_SIZE + " record limit");
+        }
+
+        final int[] hosts = new int[records.size()];
+        final int[] labels = new int[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            final SampleRecord record = records.get(i);
+            hosts[i] = this.define(this.hostIds, DEFINE_HOST, record.getHost());
+            labels[i] = this.define(this.labelIds, DEFINE_LABEL, record.getLabel());
+        }
+
+        this.out.writeByte(BATCH);
+        this.out.writeInt(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            final SampleRecord record = records.get(i);
+            this.out.writeInt(hosts[i]);
+            this.out.writeInt(labels[i]);
+            this.out.writeLong(record.getEndTime());
+            this.out.writeInt(record.getDuration());
+
+            int flags = 0;
+            if (record.isSuccessful()) {
+                flags |= FLAG_SUCCESSFUL;
+            }
+            if (record.isNotify()) {
+                flags |= FLAG_NOTIFY;
+            }
+            this.out.writeByte(flags);
+            this.out.writeByte(getStatusCode(record.getStatus()));
+            //Codes that don't fit in a short aren't real response codes
+            final int responseCode = record.getResponseCode();
+            this.out.writeShort(responseCode >= 0 && responseCode <= Short.MAX_VALUE ? responseCode : RecentSamples.NO_RESPONSE_CODE);
+        }
+        this.out.flush();
+    }
+
+    static int getStatusCode(Status status) {
+        switch (status) {
+            case UP: return STATUS_UP;
+            case OUT_UP: return STATUS_OUT_UP;
+            case OUT_DOWN: return STATUS_OUT_DOWN;
+            case DOWN: return STATUS_DOWN;
+            case DEGRADED: return STATUS_DEGRADED;
+            case FLAPPING: return STATUS_FLAPPING;
+            case UNKOWN: return STATUS_UNKNOWN;
+            default: throw new IllegalArgumentException("No sample record code for status: " + status);
+        }
+    }
+
+    private int define(Map<String, Integer> ids, int type, String name) throws IOException {
+        final Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        final int newId = ids.size();
+        ids.put(name, newId);
+        this.out.writeByte(type);
+        this.out.writeInt(newId);
+        this.out.writeUTF(name);
+        return newId;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wisc.jmeter.metrics.StripedCounter;
+
+/**
+ * Routes each record to the aggregator owning its host on a {@link ConsistentHashRing}, so the
+ * status of a host is only tracked by one aggregator. When an aggregator becomes unavailable its
+ * hosts move to the next available aggregators on the ring, and move back once it can be
+ * connected to again. Aggregators can join by being listed on the agents before they start.
+ * <p>
+ * Hosts that move pick up their status from shared storage, so sharded aggregators should use
+ * JDBC storage. Known limits:
+ * <ul>
+ *  <li>Only the stored status moves. Error rate windows, latency baselines, flap history, recent
+ *      samples and cluster membership stay in the old owner's memory, so the new owner starts
+ *      them from scratch. Error rate and latency anomaly alerts for a moved host can be late, and
+ *      the old owner's state is stale if the host moves back before it is purged.</li>
+ *  <li>Availability is judged by each agent on its own. If only some agents lose an aggregator,
+ *      the host's samples are split between two owners that both update its status and can both
+ *      notify. Each owner only sees part of the samples, and a failure seen by both counts toward
+ *      the threshold on each. Notification claims only stop duplicates within a notification
+ *      window.</li>
+ * </ul>
+ */
+public class ShardedAggregatorClient {
+    private static final ConsistentHashRing.NodeFilter<AggregatorClient> AVAILABLE = new ConsistentHashRing.NodeFilter<AggregatorClient>() {
+        @Override
+        public boolean accept(AggregatorClient client) {
+            return client.isAvailable();
+        }
+    };
+
+    private final List<AggregatorClient> clients = new ArrayList<AggregatorClient>();
+    private final ConsistentHashRing<AggregatorClient> ring;
+
+    /**
+     * @param addresses Comma separated host:port of every aggregator
+     * @param capacity Records to queue per aggregator while waiting to be sent
+     */
+    public ShardedAggregatorClient(String addresses, int batchSize, int capacity, StripedCounter sent, StripedCounter dropped) {
+        final Map<String, AggregatorClient> nodes = new LinkedHashMap<String, AggregatorClient>();
+        for (final String address : addresses.split(",")) {
+            final String trimmed = address.trim();
+            if (trimmed.length() > 0 && !nodes.containsKey(trimmed)) {
+                final AggregatorClient client = new AggregatorClient(trimmed, batchSize, capacity, sent, dropped);
+                nodes.put(trimmed, client);
+                this.clients.add(client);
+            }
+        }
+        this.ring = new ConsistentHashRing<AggregatorClient>(nodes);
+    }
+
+    public void start(long flushInterval) {
+        for (final AggregatorClient client : this.clients) {
+            client.start(flushInterval);
+        }
+    }
+
+    public void send(SampleRecord record) {
+        this.ring.getOwner(record.getHost(), AVAILABLE).send(record);
+    }
+
+    public void close() {
+        for (final AggregatorClient client : this.clients) {
+            client.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final List<String> addresses = new ArrayList<String>();
+        for (final AggregatorClient client : this.clients) {
+            addresses.add(client.getAddress());
+        }
+        return addresses.toString();
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.capture;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import edu.wisc.jmeter.metrics.StripedCounter;
+
+/**
+ * Fixed pool of direct buffer slabs failure captures are copied into while they wait to be
+ * written, so a burst of large error pages is held outside the heap and can never use more than
+ * the pool's size. The slabs are sliced from a single direct buffer allocated up front. A single
+ * capture may use at most a quarter of the pool, longer captures are truncated.
+ */
+public class CaptureBufferPool {
+    /**
+     * What to do when a capture needs more slabs than are free
+     */
+    public enum ExhaustedPolicy {
+        /** Keep as much of the capture as the free slabs hold, dropping it if there are none */
+        TRUNCATE,
+        /** Drop the capture */
+        DROP,
+        /** Wait briefly for slabs to be released, dropping the capture if they aren't */
+        BLOCK;
+    }
+
+    private final BlockingQueue<ByteBuffer> free;
+    private final int slabSize;
+    private final int maxCaptureSlabs;
+    private final ExhaustedPolicy exhaustedPolicy;
+    private final long blockTimeout;
+    private final StripedCounter truncated;
+    private final StripedCounter dropped;
+    private final StripedCounter blocked;
+
+    /**
+     * @param blockTimeout Milliseconds to wait for slabs with {@link ExhaustedPolicy#BLOCK}
+     * @param truncated Counts captures cut short because they were too long or the pool ran low
+     * @param dropped Counts captures dropped because the pool was exhausted
+     * @param blocked Counts captures that had to wait for slabs
+     */
+    public CaptureBufferPool(int slabSize, int slabCount, ExhaustedPolicy exhaustedPolicy, long blockTimeout,
+            StripedCounter truncated, StripedCounter dropped, StripedCounter blocked) {
+        if (slabSize < 1 || slabCount < 1) {
+            throw new IllegalArgumentException("slabSize and slabCount must be at least 1: " + slabSize + ", " + slabCount);
+        }
+        if ((long) slabSize * slabCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Pool can't be larger than " + Integer.MAX_VALUE + " bytes: " + slabSize + " * " + slabCount);
+        }
+
+        this.slabSize = slabSize;
+        this.maxCaptureSlabs = Math.max(1, slabCount / 4);
+        this.exhaustedPolicy = exhaustedPolicy;
+        this.blockTimeout = blockTimeout;
+        this.truncated = truncated;
+        this.dropped = dropped;
+        this.blocked = blocked;
+
+        final ByteBuffer memory = ByteBuffer.allocateDirect(slabSize * slabCount);
+        this.free = new ArrayBlockingQueue<ByteBuffer>(slabCount);
+        for (int i = 0; i < slabCount; i++) {
+            memory.limit((i + 1) * slabSize).position(i * slabSize);
+            this.free.add(memory.slice());
+        }
+    }
+
+    /**
+     * Copy the parts into slabs, in order. Truncation cuts from the end so the last part goes first.
+     *
+     * @return The copied bytes, null if the capture was dropped
+     */
+    public PooledBytes copy(byte[]... parts) {
+        long length = 0;
+        for (final byte[] part : parts) {
+            length += part.length;
+        }
+
+        final long slabsNeeded = (length + this.slabSize - 1) / this.slabSize;
+        final int slabsWanted = (int) Math.min(slabsNeeded, this.maxCaptureSlabs);
+        final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>(slabsWanted);
+        this.free.drainTo(slabs, slabsWanted);
+
+        if (slabs.size() < slabsWanted && this.exhaustedPolicy == ExhaustedPolicy.BLOCK) {
+            this.blocked.increment();
+            final long deadline = System.nanoTime() + TimeUnit.NANOSECONDS.convert(this.blockTimeout, TimeUnit.MILLISECONDS);
+            try {
+                while (slabs.size() < slabsWanted) {
+                    final ByteBuffer slab = this.free.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (slab == null) {
+                        break;
+                    }
+                    slabs.add(slab);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (slabs.size() < slabsWanted && (this.exhaustedPolicy != ExhaustedPolicy.TRUNCATE || slabs.isEmpty())) {
+            this.release(slabs);
+            this.dropped.increment();
+            return null;
+        }
+        if (slabs.size() < slabsNeeded) {
+            this.truncated.increment();
+        }
+
+        int slabIndex = 0;
+        for (final byte[] part : parts) {
+            int offset = 0;
+            while (offset < part.length && slabIndex < slabs.size()) {
+                final ByteBuffer slab = slabs.get(slabIndex);
+                final int count = Math.min(slab.remaining(), part.length - offset);
+                slab.put(part, offset, count);
+                offset += count;
+                if (!slab.hasRemaining()) {
+                    slabIndex++;
+                }
+            }
+        }
+        for (final ByteBuffer slab : slabs) {
+            slab.flip();
+        }
+
+        return new PooledBytes(this, slabs, length);
+    }
+
+    /**
+     * @return Slabs not holding a capture
+     */
+    public int getFree() {
+        return this.free.size();
+    }
+
+    public int getSlabSize() {
+        return this.slabSize;
+    }
+
+    void release(List<ByteBuffer> slabs) {
+        for (final ByteBuffer slab : slabs) {
+            slab.clear();
+            this.free.add(slab);
+        }
+        slabs.clear();
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.capture;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+import edu.wisc.jmeter.metrics.StripedCounter;
+
+/**
+ * Writes failure captures to files on a daemon thread so samplers don't wait on the disk. The
+ * response headers and body are copied into a {@link CaptureBufferPool} right away, the sample
+ * doesn't have to be kept and the pool caps the memory pending captures use.
+ */
+public class CaptureWriter {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+    private static final long CLOSE_TIMEOUT = TimeUnit.MILLISECONDS.convert(5, TimeUnit.SECONDS);
+
+    private final CaptureBufferPool pool;
+    private final BlockingQueue<Capture> captures;
+    private final StripedCounter written;
+    private final StripedCounter dropped;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    /**
+     * @param written Counts captures written to their file
+     * @param dropped Counts captures dropped, shared with the pool
+     */
+    public CaptureWriter(CaptureBufferPool pool, int capacity, StripedCounter written, StripedCounter dropped) {
+        this.pool = pool;
+        this.captures = new ArrayBlockingQueue<Capture>(capacity);
+        this.written = written;
+        this.dropped = dropped;
+
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "MonitorListener-CaptureWriter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue a capture, the description is written first followed by the response
+     *
+     * @return false if the capture was dropped
+     */
+    public boolean capture(File file, String description, String responseHeaders, String separator, byte[] responseData) {
+        final PooledBytes response;
+        try {
+            response = this.pool.copy(responseHeaders.getBytes("UTF-8"), separator.getBytes("UTF-8"), responseData);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 isn't supported", e);
+        }
+        if (response == null) {
+            return false;
+        }
+
+        final Capture capture = new Capture(file, description, response);
+        if (this.closed || !this.captures.offer(capture)) {
+            this.discard(capture);
+            return false;
+        }
+        
+        //Closed while queueing, close may have already drained the queue
+        if (this.closed && this.captures.remove(capture)) {
+            this.discard(capture);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write the pending captures, waiting up to 5 seconds. Captures still queued after that are
+     * dropped.
+     */
+    public void close() {
+        this.closed = true;
+        try {
+            this.thread.join(CLOSE_TIMEOUT);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.thread.isAlive()) {
+            log.warn("Capture writer did not finish within " + CLOSE_TIMEOUT + "ms, dropping " + this.captures.size() + " captures");
+            this.thread.interrupt();
+            for (Capture capture = this.captures.poll(); capture != null; capture = this.captures.poll()) {
+                this.discard(capture);
+            }
+        }
+        else {
+            //Queued after the writer thread saw the queue empty
+            for (Capture capture = this.captures.poll(); capture != null; capture = this.captures.poll()) {
+                this.write(capture);
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            final Capture capture;
+            try {
+                capture = this.captures.poll(100, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+
+            if (capture == null) {
+                if (this.closed) {
+                    return;
+                }
+                continue;
+            }
+
+            this.write(capture);
+        }
+    }
+
+    private void write(Capture capture) {
+        try {
+            this.writeFile(capture);
+            this.written.increment();
+            log.info("Saved response to: " + capture.file);
+        }
+        catch (IOException e) {
+            log.warn("Failed to save response headers and body to " + capture.file, e);
+        }
+        finally {
+            capture.response.release();
+        }
+    }
+
+    private void discard(Capture capture) {
+        capture.response.release();
+        this.dropped.increment();
+    }
+
+    private void writeFile(Capture capture) throws IOException {
+        final FileOutputStream out = new FileOutputStream(capture.file);
+        try {
+            out.write(capture.description.getBytes("UTF-8"));
+            capture.response.writeTo(out.getChannel());
+            if (capture.response.isTruncated()) {
+                out.write(("\n[Truncated, captured " + capture.response.getLength() + " of " + capture.response.getOriginalLength() + " bytes]\n").getBytes("UTF-8"));
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private static final class Capture {
+        private final File file;
+        private final String description;
+        private final PooledBytes response;
+
+        public Capture(File file, String description, PooledBytes response) {
+            this.file = file;
+            this.description = description;
+            this.response = response;
+        }
+    }
+}
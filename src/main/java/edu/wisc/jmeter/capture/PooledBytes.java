@@ -0,0 +1,77 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Bytes held in slabs of a {@link CaptureBufferPool}, must be released once written
+ */
+public final class PooledBytes {
+    private final CaptureBufferPool pool;
+    private final List<ByteBuffer> slabs;
+    private final long originalLength;
+    private long length;
+
+    PooledBytes(CaptureBufferPool pool, List<ByteBuffer> slabs, long originalLength) {
+        this.pool = pool;
+        this.slabs = slabs;
+        this.originalLength = originalLength;
+        for (final ByteBuffer slab : slabs) {
+            this.length += slab.remaining();
+        }
+    }
+
+    /**
+     * @return Bytes held, less than {@link #getOriginalLength()} if the capture was truncated
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    public long getOriginalLength() {
+        return this.originalLength;
+    }
+
+    public boolean isTruncated() {
+        return this.length < this.originalLength;
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        for (final ByteBuffer slab : this.slabs) {
+            final ByteBuffer data = slab.duplicate();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    /**
+     * Return the slabs to the pool, the bytes can't be used after
+     */
+    public void release() {
+        this.pool.release(this.slabs);
+        this.length = 0;
+    }
+}
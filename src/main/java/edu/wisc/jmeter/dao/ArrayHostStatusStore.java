@@ -0,0 +1,431 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.Status;
+
+/**
+ * Keeps host statuses in parallel primitive arrays for tests with many hosts. Host names are
+ * interned to dense int ids through an open addressing index, each id is a slot in pages of
+ * arrays that never move once allocated. The HostStatus objects handed out are short lived views
+ * that read and write their slot directly and carry no HostStatus fields of their own. A stored
+ * host costs around 76 bytes including its lock object, against around 190 for a HostStatus
+ * object, its lock and their map entries, and purges scan arrays instead of chasing pointers.
+ * <p>
+ * Lookups don't lock, adding and removing hosts is serialized. Slots of removed hosts are reused
+ * only after the next removal so views still held by callers don't write into another host, a
+ * view must not be kept across two purges. Every slot holds its host's own lock, so hosts never
+ * wait on each other's storage I/O. A host locked before it is stored gets a pending lock that
+ * moves into its slot when the host is added.
+ */
+public class ArrayHostStatusStore implements HostStatusStore {
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MIN_INDEX_SIZE = 64;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final Status[] STATUSES = Status.values();
+
+    private final Object writeLock = new Object();
+
+    //Index slots hold id + 1, 0 is empty. Kept at most half full, rebuilt on growth and removal.
+    private volatile AtomicIntegerArray index = new AtomicIntegerArray(MIN_INDEX_SIZE);
+    private volatile Page[] pages = new Page[0];
+
+    //Guarded by writeLock
+    private int nextId = 0;
+    private int size = 0;
+    private int[] freeIds = new int[0];
+    private int freeCount = 0;
+    private int[] releasedIds = new int[0];
+    private int releasedCount = 0;
+    private final Map<String, Object> pendingLocks = new HashMap<String, Object>();
+
+    @Override
+    public HostStatus get(String hostName) {
+        return this.find(hostName);
+    }
+
+    @Override
+    public HostStatus add(HostStatus hostStatus) {
+        synchronized (this.writeLock) {
+            final View view = this.find(hostStatus.getHost());
+            if (view != null) {
+                return view;
+            }
+            return this.insert(hostStatus);
+        }
+    }
+
+    @Override
+    public void put(HostStatus hostStatus) {
+        if (hostStatus instanceof View && ((View) hostStatus).isLive(this)) {
+            //Changes to views are already in the arrays
+            return;
+        }
+
+        synchronized (this.writeLock) {
+            final View view = this.find(hostStatus.getHost());
+            if (view == null) {
+                this.insert(hostStatus);
+            }
+            else {
+                view.copy(hostStatus);
+            }
+        }
+    }
+
+    @Override
+    public List<String> removeUpdatedBefore(Date before) {
+        final List<String> removed = new ArrayList<String>();
+        final long beforeTime = before.getTime();
+
+        synchronized (this.writeLock) {
+            //Slots released by the last removal are now safe to reuse
+            this.freeIds = grow(this.freeIds, this.freeCount + this.releasedCount);
+            System.arraycopy(this.releasedIds, 0, this.freeIds, this.freeCount, this.releasedCount);
+            this.freeCount += this.releasedCount;
+            this.releasedCount = 0;
+
+            final Page[] pages = this.pages;
+            for (int id = 0; id < this.nextId; id++) {
+                final Page page = pages[id >>> PAGE_BITS];
+                final int slot = id & PAGE_MASK;
+                final String host = page.hosts[slot];
+                if (host != null && page.lastUpdated.get(slot) < beforeTime) {
+                    page.hosts[slot] = null;
+                    page.locks[slot] = null;
+                    this.releasedIds = grow(this.releasedIds, this.releasedCount + 1);
+                    this.releasedIds[this.releasedCount++] = id;
+                    this.size--;
+                    removed.add(host);
+                }
+            }
+
+            if (!removed.isEmpty()) {
+                this.rebuildIndex(this.index.length());
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public List<HostStatus> values() {
+        final List<HostStatus> values = new ArrayList<HostStatus>();
+        synchronized (this.writeLock) {
+            final Page[] pages = this.pages;
+            for (int id = 0; id < this.nextId; id++) {
+                final Page page = pages[id >>> PAGE_BITS];
+                final String host = page.hosts[id & PAGE_MASK];
+                if (host != null) {
+                    values.add(new View(host, page, id & PAGE_MASK));
+                }
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public int size() {
+        synchronized (this.writeLock) {
+            return this.size;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this.writeLock) {
+            //Views still held keep their old pages, like objects dropped from a map
+            this.pages = new Page[0];
+            this.index = new AtomicIntegerArray(MIN_INDEX_SIZE);
+            this.nextId = 0;
+            this.size = 0;
+            this.freeCount = 0;
+            this.releasedCount = 0;
+            this.pendingLocks.clear();
+        }
+    }
+
+    @Override
+    public Object getLock(String hostName) {
+        //A slot being purged may still be found without the write lock, its lock is already gone
+        final View view = this.find(hostName);
+        final Object storedLock = view != null ? view.getLock() : null;
+        if (storedLock != null) {
+            return storedLock;
+        }
+
+        synchronized (this.writeLock) {
+            final View added = this.find(hostName);
+            if (added != null) {
+                return added.getLock();
+            }
+
+            Object lock = this.pendingLocks.get(hostName);
+            if (lock == null) {
+                lock = new Object();
+                this.pendingLocks.put(hostName, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * @return A view of the host's slot, null if it isn't stored
+     */
+    private View find(String hostName) {
+        final AtomicIntegerArray index = this.index;
+        final int mask = index.length() - 1;
+        for (int i = spread(hostName.hashCode()) & mask; ; i = (i + 1) & mask) {
+            final int entry = index.get(i);
+            if (entry == 0) {
+                return null;
+            }
+
+            //Read after the entry so the page holding the id has been published, a clear may have dropped it
+            final int id = entry - 1;
+            final Page[] pages = this.pages;
+            final int pageIndex = id >>> PAGE_BITS;
+            if (pageIndex < pages.length) {
+                final Page page = pages[pageIndex];
+                final int slot = id & PAGE_MASK;
+                if (hostName.equals(page.hosts[slot])) {
+                    return new View(hostName, page, slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the status into a new slot and index it, must hold the write lock
+     */
+    private View insert(HostStatus hostStatus) {
+        final int id;
+        if (this.freeCount > 0) {
+            id = this.freeIds[--this.freeCount];
+        }
+        else {
+            id = this.nextId++;
+            final int pageIndex = id >>> PAGE_BITS;
+            if (pageIndex == this.pages.length) {
+                final Page[] pages = Arrays.copyOf(this.pages, pageIndex + 1);
+                pages[pageIndex] = new Page();
+                this.pages = pages;
+            }
+        }
+
+        final Page page = this.pages[id >>> PAGE_BITS];
+        final int slot = id & PAGE_MASK;
+        final Object lock = this.pendingLocks.remove(hostStatus.getHost());
+        page.locks[slot] = lock != null ? lock : new Object();
+        page.hosts[slot] = hostStatus.getHost();
+        final View view = new View(hostStatus.getHost(), page, slot);
+        view.copy(hostStatus);
+
+        this.size++;
+        if (this.size * 2 > this.index.length()) {
+            this.rebuildIndex(this.index.length() * 2);
+        }
+        else {
+            indexId(this.index, id, hostStatus.getHost());
+        }
+        return view;
+    }
+
+    /**
+     * Publish a new index of every stored host, must hold the write lock
+     */
+    private void rebuildIndex(int length) {
+        while (length > MIN_INDEX_SIZE && this.size * 4 < length) {
+            length >>>= 1;
+        }
+
+        final AtomicIntegerArray index = new AtomicIntegerArray(length);
+        final Page[] pages = this.pages;
+        for (int id = 0; id < this.nextId; id++) {
+            final String host = pages[id >>> PAGE_BITS].hosts[id & PAGE_MASK];
+            if (host != null) {
+                indexId(index, id, host);
+            }
+        }
+        this.index = index;
+    }
+
+    private static void indexId(AtomicIntegerArray index, int id, String host) {
+        final int mask = index.length() - 1;
+        int i = spread(host.hashCode()) & mask;
+        while (index.get(i) != 0) {
+            i = (i + 1) & mask;
+        }
+        index.set(i, id + 1);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int[] grow(int[] ids, int length) {
+        if (ids.length >= length) {
+            return ids;
+        }
+        return Arrays.copyOf(ids, Math.max(length, ids.length * 2));
+    }
+
+    /**
+     * A page of host slots, one array per field
+     */
+    private static final class Page {
+        private final String[] hosts = new String[PAGE_SIZE];
+        private final Object[] locks = new Object[PAGE_SIZE];
+        private final byte[] statuses = new byte[PAGE_SIZE];
+        private final AtomicIntegerArray messageCounts = new AtomicIntegerArray(PAGE_SIZE);
+        private final AtomicIntegerArray failureCounts = new AtomicIntegerArray(PAGE_SIZE);
+        private final int[] storedMessageCounts = new int[PAGE_SIZE];
+        private final int[] storedFailureCounts = new int[PAGE_SIZE];
+        private final AtomicLongArray lastMessageSent = new AtomicLongArray(PAGE_SIZE);
+        private final AtomicLongArray lastUpdated = new AtomicLongArray(PAGE_SIZE);
+        private final AtomicLongArray versions = new AtomicLongArray(PAGE_SIZE);
+    }
+
+    /**
+     * HostStatus reading and writing a slot
+     */
+    private final class View extends HostStatus {
+        private final String host;
+        private final Page page;
+        private final int slot;
+
+        public View(String host, Page page, int slot) {
+            this.host = host;
+            this.page = page;
+            this.slot = slot;
+        }
+
+        /**
+         * @return If the view belongs to the store and its host hasn't been removed since
+         */
+        public boolean isLive(ArrayHostStatusStore store) {
+            return store == ArrayHostStatusStore.this && this.host.equals(this.page.hosts[this.slot]);
+        }
+
+        public Object getLock() {
+            return this.page.locks[this.slot];
+        }
+
+        @Override
+        public String getHost() {
+            return this.host;
+        }
+        @Override
+        public void setHost(String host) {
+            if (!this.host.equals(host)) {
+                throw new UnsupportedOperationException("The host of a stored HostStatus can't be changed");
+            }
+        }
+        @Override
+        public Status getStatus() {
+            return STATUSES[this.page.statuses[this.slot]];
+        }
+        @Override
+        public void setStatus(Status status) {
+            this.page.statuses[this.slot] = (byte) status.ordinal();
+        }
+        @Override
+        public int getMessageCount() {
+            return this.page.messageCounts.get(this.slot);
+        }
+        @Override
+        public void setMessageCount(int messageCount) {
+            this.page.messageCounts.set(this.slot, messageCount);
+        }
+        @Override
+        public int incrementMessageCount() {
+            return this.page.messageCounts.incrementAndGet(this.slot);
+        }
+        @Override
+        public int getFailureCount() {
+            return this.page.failureCounts.get(this.slot);
+        }
+        @Override
+        public void setFailureCount(int failureCount) {
+            this.page.failureCounts.set(this.slot, failureCount);
+        }
+        @Override
+        public int incrementFailureCount() {
+            return this.page.failureCounts.incrementAndGet(this.slot);
+        }
+        @Override
+        public Date getLastMessageSent() {
+            return toDate(this.page.lastMessageSent.get(this.slot));
+        }
+        @Override
+        public void setLastMessageSent(Date lastMessageSent) {
+            this.page.lastMessageSent.set(this.slot, toTime(lastMessageSent));
+        }
+        @Override
+        public Date getLastUpdated() {
+            return toDate(this.page.lastUpdated.get(this.slot));
+        }
+        @Override
+        public void setLastUpdated(Date lastUpdated) {
+            this.page.lastUpdated.set(this.slot, toTime(lastUpdated));
+        }
+        @Override
+        public long getVersion() {
+            return this.page.versions.get(this.slot);
+        }
+        @Override
+        public void setVersion(long version) {
+            this.page.versions.set(this.slot, version);
+        }
+        @Override
+        protected int getStoredMessageCount() {
+            return this.page.storedMessageCounts[this.slot];
+        }
+        @Override
+        protected int getStoredFailureCount() {
+            return this.page.storedFailureCounts[this.slot];
+        }
+        @Override
+        protected void setStoredCounts(int storedMessageCount, int storedFailureCount) {
+            this.page.storedMessageCounts[this.slot] = storedMessageCount;
+            this.page.storedFailureCounts[this.slot] = storedFailureCount;
+        }
+    }
+
+    private static Date toDate(long time) {
+        return time == NO_TIME ? null : new Date(time);
+    }
+
+    private static long toTime(Date date) {
+        return date == null ? NO_TIME : date.getTime();
+    }
+}
@@ -1,25 +1,41 @@
 package edu.wisc.jmeter.dao;
 
 import java.util.Date;
+import java.util.List;
 
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
+import edu.wisc.jmeter.BurnRate;
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.ErrorSignatureCount;
 import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
 import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.OutageStats;
+import edu.wisc.jmeter.SimpleHostStatus;
 import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.metrics.MetricsRegistry;
+import edu.wisc.jmeter.metrics.StripedCounter;
 
 /**
- * Wraps another {@link MonitorDao} logging all exceptions
+ * Wraps another {@link MonitorDao} logging all exceptions, the exceptions are counted in the
+ * dao.failures counter
  * 
  * @author Eric Dalquist
  */
 public class ErrorHandlingMonitorDao implements MonitorDao {
     private static final Logger log = LoggingManager.getLoggerForClass();
     private final MonitorDao monitorDao;
+    private final StripedCounter failures;
 
     public ErrorHandlingMonitorDao(MonitorDao monitorDao) {
+        this(monitorDao, new MetricsRegistry());
+    }
+
+    public ErrorHandlingMonitorDao(MonitorDao monitorDao, MetricsRegistry metricsRegistry) {
         this.monitorDao = monitorDao;
+        this.failures = metricsRegistry.counter("dao.failures");
     }
 
     @Override
@@ -28,6 +44,7 @@ public class ErrorHandlingMonitorDao implements MonitorDao {
             this.monitorDao.purgeStatusCache(before);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             log.warn("Failed to purge status cache", re);
         }
     }
@@ -38,6 +55,7 @@ public class ErrorHandlingMonitorDao implements MonitorDao {
             this.monitorDao.purgeRequestLog(host, before);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             log.warn("Failed to purge request log database", re);
         }
     }
@@ -48,6 +66,7 @@ public class ErrorHandlingMonitorDao implements MonitorDao {
             this.monitorDao.purgeRequestLog(before);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             log.warn("Failed to purge request log database", re);
         }
     }
@@ -58,18 +77,31 @@ public class ErrorHandlingMonitorDao implements MonitorDao {
             this.monitorDao.purgeFailureLog(before);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             log.warn("Failed to purge failure log database", re);
         }
     }
 
+    @Override
+    public void purgeLatencyRollups(int resolution, Date before) {
+        try {
+            this.monitorDao.purgeLatencyRollups(resolution, before);
+        }
+        catch (RuntimeException re) {
+            this.failures.increment();
+            log.warn("Failed to purge latency rollups database", re);
+        }
+    }
+
     @Override
     public HostStatus getHostStatus(String hostName) {
         try {
             return this.monitorDao.getHostStatus(hostName);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             //Want things to still work if the database is broken so create an empty HostStatus to work with in memory only
-            final HostStatus hostStatus = new HostStatus();
+            final HostStatus hostStatus = new SimpleHostStatus();
             hostStatus.setHost(hostName);
             hostStatus.setLastUpdated(new Date());
             
@@ -85,6 +117,7 @@ public class ErrorHandlingMonitorDao implements MonitorDao {
             this.monitorDao.storeHostStatus(hostStatus);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             log.warn("Failed to persist HostStatus via database, using memory storage only", re);
         }
     }
@@ -96,6 +129,7 @@ public class ErrorHandlingMonitorDao implements MonitorDao {
             this.monitorDao.logFailure(hostName, label, requestTimestamp, status, subject, body, sentEmail);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             log.warn("Failed to log failure to database", re);
         }
     }
@@ -106,6 +140,7 @@ public class ErrorHandlingMonitorDao implements MonitorDao {
             this.monitorDao.logRequest(hostName, label, requestTimestamp, duration, successful);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             log.warn("Failed to log request to database", re);
         }
     }
@@ -117,6 +152,7 @@ public class ErrorHandlingMonitorDao implements MonitorDao {
             this.monitorDao.logRequestAndStatus(hostStatus, label, requestTimestamp, duration, successful);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             log.warn("Failed to log request and store status to database", re);
         }
     }
@@ -128,8 +164,100 @@ public class ErrorHandlingMonitorDao implements MonitorDao {
             this.monitorDao.logFailureAndStatus(hostStatus, label, requestTimestamp, status, subject, body, sentEmail);
         }
         catch (RuntimeException re) {
+            this.failures.increment();
             log.warn("Failed to log request and store failure status to database", re);
         }
     }
 
+    @Override
+    public String claimNotification(String hostName, Status status, Date window, long windowLength) {
+        try {
+            return this.monitorDao.claimNotification(hostName, status, window, windowLength);
+        }
+        catch (RuntimeException re) {
+            this.failures.increment();
+            //Better to send a duplicate notification than none at all
+            log.warn("Failed to claim notification via database, notifying anyway", re);
+            return null;
+        }
+    }
+
+    @Override
+    public void storeLatencyRollups(List<LatencyRollup> rollups) {
+        try {
+            this.monitorDao.storeLatencyRollups(rollups);
+        }
+        catch (RuntimeException re) {
+            this.failures.increment();
+            log.warn("Failed to store latency rollups to database", re);
+        }
+    }
+
+    @Override
+    public void storeErrorCounts(List<ErrorSignatureCount> errorCounts) {
+        try {
+            this.monitorDao.storeErrorCounts(errorCounts);
+        }
+        catch (RuntimeException re) {
+            this.failures.increment();
+            log.warn("Failed to store error counts to database", re);
+        }
+    }
+
+    @Override
+    public void storeBurnRates(List<BurnRate> burnRates) {
+        try {
+            this.monitorDao.storeBurnRates(burnRates);
+        }
+        catch (RuntimeException re) {
+            this.failures.increment();
+            log.warn("Failed to store burn rates to database", re);
+        }
+    }
+
+    @Override
+    public void storeClusterStatus(ClusterStatus clusterStatus) {
+        try {
+            this.monitorDao.storeClusterStatus(clusterStatus);
+        }
+        catch (RuntimeException re) {
+            this.failures.increment();
+            log.warn("Failed to store cluster status to database", re);
+        }
+    }
+
+    @Override
+    public void openOutage(String hostName, Date start) {
+        try {
+            this.monitorDao.openOutage(hostName, start);
+        }
+        catch (RuntimeException re) {
+            this.failures.increment();
+            log.warn("Failed to open outage in database", re);
+        }
+    }
+
+    @Override
+    public void closeOutage(String hostName, Date end, int failureCount, int messageCount) {
+        try {
+            this.monitorDao.closeOutage(hostName, end, failureCount, messageCount);
+        }
+        catch (RuntimeException re) {
+            this.failures.increment();
+            log.warn("Failed to close outage in database", re);
+        }
+    }
+
+    @Override
+    public OutageStats getOutageStats(String hostName) {
+        try {
+            return this.monitorDao.getOutageStats(hostName);
+        }
+        catch (RuntimeException re) {
+            this.failures.increment();
+            log.warn("Failed to retrieve/create OutageStats via database, using memory storage only", re);
+            return new OutageStats(hostName, new Date());
+        }
+    }
+
 }
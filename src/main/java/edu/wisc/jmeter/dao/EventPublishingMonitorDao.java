@@ -0,0 +1,177 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.dao;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.wisc.jmeter.BurnRate;
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.ErrorSignatureCount;
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
+import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.OutageStats;
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.event.EventDispatcher;
+import edu.wisc.jmeter.event.MonitorEvent;
+
+/**
+ * Wraps another {@link MonitorDao} publishing an event whenever a stored host status differs
+ * from the last one seen for the host, and for every failure logged. The first status seen for a
+ * host, when it is loaded, is not a transition.
+ */
+public class EventPublishingMonitorDao implements MonitorDao {
+    private final ConcurrentMap<String, Status> lastStatus = new ConcurrentHashMap<String, Status>();
+    private final MonitorDao monitorDao;
+    private final EventDispatcher eventDispatcher;
+
+    public EventPublishingMonitorDao(MonitorDao monitorDao, EventDispatcher eventDispatcher) {
+        this.monitorDao = monitorDao;
+        this.eventDispatcher = eventDispatcher;
+    }
+
+    @Override
+    public void purgeStatusCache(Date before) {
+        this.monitorDao.purgeStatusCache(before);
+    }
+
+    @Override
+    public void purgeRequestLog(String host, Date before) {
+        this.monitorDao.purgeRequestLog(host, before);
+    }
+
+    @Override
+    public void purgeRequestLog(Date before) {
+        this.monitorDao.purgeRequestLog(before);
+    }
+
+    @Override
+    public void purgeFailureLog(Date before) {
+        this.monitorDao.purgeFailureLog(before);
+    }
+
+    @Override
+    public void purgeLatencyRollups(int resolution, Date before) {
+        this.monitorDao.purgeLatencyRollups(resolution, before);
+    }
+
+    @Override
+    public HostStatus getHostStatus(String hostName) {
+        final HostStatus hostStatus = this.monitorDao.getHostStatus(hostName);
+        this.lastStatus.putIfAbsent(hostName, hostStatus.getStatus());
+        return hostStatus;
+    }
+
+    @Override
+    public void storeHostStatus(HostStatus hostStatus) {
+        this.publishTransition(hostStatus);
+        this.monitorDao.storeHostStatus(hostStatus);
+    }
+
+    @Override
+    public void logFailure(String hostName, String label, Date requestTimestamp, Status status, String subject,
+            String body, Notification sentEmail) {
+        this.eventDispatcher.publish(MonitorEvent.failure(hostName, label, requestTimestamp, status, subject));
+        this.monitorDao.logFailure(hostName, label, requestTimestamp, status, subject, body, sentEmail);
+    }
+
+    @Override
+    public void logRequest(String hostName, String label, Date requestTimestamp, long duration, boolean successful) {
+        this.monitorDao.logRequest(hostName, label, requestTimestamp, duration, successful);
+    }
+
+    @Override
+    public void logRequestAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, long duration,
+            boolean successful) {
+        this.publishTransition(hostStatus);
+        this.monitorDao.logRequestAndStatus(hostStatus, label, requestTimestamp, duration, successful);
+    }
+
+    @Override
+    public void logFailureAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, Status status,
+            String subject, String body, Notification sentEmail) {
+        this.publishTransition(hostStatus);
+        this.eventDispatcher.publish(MonitorEvent.failure(hostStatus.getHost(), label, requestTimestamp, status, subject));
+        this.monitorDao.logFailureAndStatus(hostStatus, label, requestTimestamp, status, subject, body, sentEmail);
+    }
+
+    @Override
+    public String claimNotification(String hostName, Status status, Date window, long windowLength) {
+        return this.monitorDao.claimNotification(hostName, status, window, windowLength);
+    }
+
+    @Override
+    public void storeLatencyRollups(List<LatencyRollup> rollups) {
+        this.monitorDao.storeLatencyRollups(rollups);
+    }
+
+    @Override
+    public void storeErrorCounts(List<ErrorSignatureCount> errorCounts) {
+        this.monitorDao.storeErrorCounts(errorCounts);
+    }
+
+    @Override
+    public void storeBurnRates(List<BurnRate> burnRates) {
+        this.monitorDao.storeBurnRates(burnRates);
+    }
+
+    @Override
+    public void storeClusterStatus(ClusterStatus clusterStatus) {
+        this.monitorDao.storeClusterStatus(clusterStatus);
+    }
+
+    @Override
+    public void openOutage(String hostName, Date start) {
+        this.monitorDao.openOutage(hostName, start);
+    }
+
+    @Override
+    public void closeOutage(String hostName, Date end, int failureCount, int messageCount) {
+        this.monitorDao.closeOutage(hostName, end, failureCount, messageCount);
+    }
+
+    @Override
+    public OutageStats getOutageStats(String hostName) {
+        return this.monitorDao.getOutageStats(hostName);
+    }
+
+    /**
+     * Forget the last status of hosts that storage purged, a purged host that returns starts over
+     * from its reloaded status
+     */
+    public void removeHosts(Collection<String> hostNames) {
+        for (final String hostName : hostNames) {
+            this.lastStatus.remove(hostName);
+        }
+    }
+
+    private void publishTransition(HostStatus hostStatus) {
+        final Status status = hostStatus.getStatus();
+        final Status previousStatus = this.lastStatus.put(hostStatus.getHost(), status);
+        if (previousStatus != null && previousStatus != status) {
+            this.eventDispatcher.publish(MonitorEvent.statusChange(hostStatus, previousStatus));
+        }
+    }
+}
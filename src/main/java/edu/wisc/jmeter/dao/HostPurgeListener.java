@@ -0,0 +1,34 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.dao;
+
+import java.util.List;
+
+/**
+ * Told about the hosts a DAO drops from memory when it purges old statuses, so per-host state
+ * kept outside the DAO can be dropped in the same pass instead of growing without bound.
+ */
+public interface HostPurgeListener {
+    /**
+     * @param hostNames Hosts purged, never empty
+     */
+    void hostsPurged(List<String> hostNames);
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.dao;
+
+import java.util.Date;
+import java.util.List;
+
+import edu.wisc.jmeter.HostStatus;
+
+/**
+ * In memory HostStatus table for the DAOs. Statuses returned are live, changes made to them are
+ * seen by every later lookup of the host.
+ */
+public interface HostStatusStore {
+    /**
+     * @return The host's status, null if the host isn't stored
+     */
+    HostStatus get(String hostName);
+
+    /**
+     * Store the status if its host isn't stored yet
+     *
+     * @return The stored status callers must use from then on, the existing one if the host was already stored
+     */
+    HostStatus add(HostStatus hostStatus);
+
+    /**
+     * Store the status, replacing whatever is stored for its host
+     */
+    void put(HostStatus hostStatus);
+
+    /**
+     * Remove every status last updated before the date
+     *
+     * @return Names of the removed hosts
+     */
+    List<String> removeUpdatedBefore(Date before);
+
+    /**
+     * @return Every stored status
+     */
+    List<HostStatus> values();
+
+    int size();
+
+    void clear();
+
+    /**
+     * @return Monitor to hold while loading or storing the host's status
+     */
+    Object getLock(String hostName);
+}
@@ -6,22 +6,23 @@
 
 package edu.wisc.jmeter.dao;
 
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
@@ -31,6 +32,7 @@ import org.apache.log.Logger;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcOperations;
@@ -44,9 +46,18 @@ import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import edu.wisc.jmeter.BurnRate;
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.ErrorSignatureCount;
 import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
 import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.OutageStats;
+import edu.wisc.jmeter.SimpleHostStatus;
 import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.metrics.MetricsRegistry;
+import edu.wisc.jmeter.metrics.StripedCounter;
+import edu.wisc.jmeter.metrics.StripedTimer;
 
 /**
  * @author Eric Dalquist
@@ -55,10 +66,21 @@ import edu.wisc.jmeter.Status;
 public class JdbcMonitorDao implements InitializingBean, DisposableBean, MonitorDao {
     private static final Logger log = LoggingManager.getLoggerForClass();
     
+    private static final int MAX_STORE_ATTEMPTS = 5;
+    private static final String PURGE_LEASE = "purge";
+    private static final String SETUP_LEASE = "setup";
+    //Long enough to migrate the legacy tables, a node that died setting up holds the others back this long
+    private static final long SETUP_LEASE_DURATION = TimeUnit.MILLISECONDS.convert(10, TimeUnit.MINUTES);
+    private static final long SETUP_LEASE_POLL = 1000;
+    
     private static final Map<String, String> TABLE_CONFIG;
+    private static final Map<String, String> COLUMN_CONFIG;
+    private static final List<String> LEGACY_TABLES;
+    private static final Map<String, String> LEGACY_MIGRATIONS;
     
     static {
-        final Map<String, String> tableConfigBuilder = new HashMap<String, String>();
+        //Created in order, views must come after the tables they select from
+        final Map<String, String> tableConfigBuilder = new LinkedHashMap<String, String>();
         
         
         tableConfigBuilder.put("MONITOR_HOST_STATUS", 
@@ -69,23 +91,40 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
                 "    MESSAGE_COUNT NUMBER,\n" + 
                 "    LAST_NOTIFICATION TIMESTAMP,\n" + 
                 "    LAST_UPDATED TIMESTAMP,\n" + 
+                "    VERSION NUMBER DEFAULT 0 NOT NULL,\n" + 
                 "    CONSTRAINT PK_MONITOR_HOST_STATUS PRIMARY KEY (HOST_NAME)\n" + 
                 ")");
         
-        tableConfigBuilder.put("MONITOR_LOG", 
-                "CREATE TABLE MONITOR_LOG (\n" + 
-                "    HOST_NAME VARCHAR2(500),\n" + 
-                "    LABEL VARCHAR2(2000),\n" + 
+        tableConfigBuilder.put("MONITOR_HOST", 
+                "CREATE TABLE MONITOR_HOST (\n" + 
+                "    HOST_ID NUMBER,\n" + 
+                "    HOST_NAME VARCHAR2(500) NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_HOST PRIMARY KEY (HOST_ID),\n" + 
+                "    CONSTRAINT UK_MONITOR_HOST UNIQUE (HOST_NAME)\n" + 
+                ")");
+        
+        tableConfigBuilder.put("MONITOR_LABEL", 
+                "CREATE TABLE MONITOR_LABEL (\n" + 
+                "    LABEL_ID NUMBER,\n" + 
+                "    LABEL VARCHAR2(2000) NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_LABEL PRIMARY KEY (LABEL_ID),\n" + 
+                "    CONSTRAINT UK_MONITOR_LABEL UNIQUE (LABEL)\n" + 
+                ")");
+        
+        tableConfigBuilder.put("MONITOR_REQUEST", 
+                "CREATE TABLE MONITOR_REQUEST (\n" + 
+                "    HOST_ID NUMBER,\n" + 
+                "    LABEL_ID NUMBER,\n" + 
                 "    LAST_SAMPLE TIMESTAMP,\n" + 
                 "    DURATION NUMBER,\n" +
                 "    SUCCESS VARCHAR2(10),\n" + 
-                "    CONSTRAINT PK_MONITOR_LOG PRIMARY KEY (HOST_NAME, LABEL)\n" + 
+                "    CONSTRAINT PK_MONITOR_REQUEST PRIMARY KEY (HOST_ID, LABEL_ID)\n" + 
                 ")");
         
-        tableConfigBuilder.put("MONITOR_ERRORS", 
-                "CREATE TABLE MONITOR_ERRORS (\n" + 
-                "    HOST_NAME VARCHAR2(500),\n" + 
-                "    LABEL VARCHAR2(2000),\n" + 
+        tableConfigBuilder.put("MONITOR_FAILURE", 
+                "CREATE TABLE MONITOR_FAILURE (\n" + 
+                "    HOST_ID NUMBER,\n" + 
+                "    LABEL_ID NUMBER,\n" + 
                 "    FAILURE_DATE TIMESTAMP,\n" + 
                 "    STATUS VARCHAR2(50),\n" + 
                 "    EMAIL_SUBJECT VARCHAR2(1000),\n" + 
@@ -93,22 +132,193 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
                 "    EMAIL_SENT VARCHAR2(10)\n" + 
                 ")");
         
+        tableConfigBuilder.put("MONITOR_LATENCY", 
+                "CREATE TABLE MONITOR_LATENCY (\n" + 
+                "    HOST_ID NUMBER,\n" + 
+                "    LABEL_ID NUMBER,\n" + 
+                "    RESOLUTION NUMBER,\n" + 
+                "    BUCKET_START TIMESTAMP,\n" + 
+                "    SAMPLE_COUNT NUMBER,\n" + 
+                "    ERROR_COUNT NUMBER,\n" + 
+                "    MIN_DURATION NUMBER,\n" + 
+                "    MAX_DURATION NUMBER,\n" + 
+                "    MEAN_DURATION NUMBER,\n" + 
+                "    P50_DURATION NUMBER,\n" + 
+                "    P90_DURATION NUMBER,\n" + 
+                "    P95_DURATION NUMBER,\n" + 
+                "    P99_DURATION NUMBER,\n" + 
+                "    CONSTRAINT PK_MONITOR_LATENCY PRIMARY KEY (HOST_ID, LABEL_ID, RESOLUTION, BUCKET_START)\n" + 
+                ")");
+        
+        //Legacy tables whose rows have been copied into their replacements
+        tableConfigBuilder.put("MONITOR_MIGRATION", 
+                "CREATE TABLE MONITOR_MIGRATION (\n" + 
+                "    TABLE_NAME VARCHAR2(100),\n" + 
+                "    MIGRATED TIMESTAMP NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_MIGRATION PRIMARY KEY (TABLE_NAME)\n" + 
+                ")");
+        
+        //Compatibility views with the original MONITOR_LOG and MONITOR_ERRORS columns
+        tableConfigBuilder.put("MONITOR_LOG", 
+                "CREATE VIEW MONITOR_LOG AS\n" + 
+                "SELECT H.HOST_NAME, L.LABEL, R.LAST_SAMPLE, R.DURATION, R.SUCCESS\n" + 
+                "FROM MONITOR_REQUEST R\n" + 
+                "    JOIN MONITOR_HOST H ON H.HOST_ID = R.HOST_ID\n" + 
+                "    JOIN MONITOR_LABEL L ON L.LABEL_ID = R.LABEL_ID");
+        
+        tableConfigBuilder.put("MONITOR_ERRORS", 
+                "CREATE VIEW MONITOR_ERRORS AS\n" + 
+                "SELECT H.HOST_NAME, L.LABEL, F.FAILURE_DATE, F.STATUS, F.EMAIL_SUBJECT, F.EMAIL_BODY, F.EMAIL_SENT\n" + 
+                "FROM MONITOR_FAILURE F\n" + 
+                "    JOIN MONITOR_HOST H ON H.HOST_ID = F.HOST_ID\n" + 
+                "    JOIN MONITOR_LABEL L ON L.LABEL_ID = F.LABEL_ID");
+        
+        tableConfigBuilder.put("MONITOR_LEASE", 
+                "CREATE TABLE MONITOR_LEASE (\n" + 
+                "    LEASE_NAME VARCHAR2(100),\n" + 
+                "    OWNER VARCHAR2(500) NOT NULL,\n" + 
+                "    EXPIRES TIMESTAMP NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_LEASE PRIMARY KEY (LEASE_NAME)\n" + 
+                ")");
+        
+        tableConfigBuilder.put("MONITOR_NOTIFICATION_CLAIM", 
+                "CREATE TABLE MONITOR_NOTIFICATION_CLAIM (\n" + 
+                "    HOST_NAME VARCHAR2(500),\n" + 
+                "    STATUS VARCHAR2(50),\n" + 
+                "    WINDOW_START TIMESTAMP,\n" + 
+                "    OWNER VARCHAR2(500) NOT NULL,\n" + 
+                "    CLAIMED TIMESTAMP NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_NOTIFICATION_CLAIM PRIMARY KEY (HOST_NAME, STATUS, WINDOW_START)\n" + 
+                ")");
+        
+        tableConfigBuilder.put("MONITOR_ERROR_SIGNATURE", 
+                "CREATE TABLE MONITOR_ERROR_SIGNATURE (\n" + 
+                "    SIGNATURE_ID NUMBER,\n" + 
+                "    SIGNATURE VARCHAR2(1000) NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_ERROR_SIGNATURE PRIMARY KEY (SIGNATURE_ID),\n" + 
+                "    CONSTRAINT UK_MONITOR_ERROR_SIGNATURE UNIQUE (SIGNATURE)\n" + 
+                ")");
+        
+        tableConfigBuilder.put("MONITOR_ERROR_COUNT", 
+                "CREATE TABLE MONITOR_ERROR_COUNT (\n" + 
+                "    HOST_ID NUMBER,\n" + 
+                "    SIGNATURE_ID NUMBER,\n" + 
+                "    INTERVAL_START TIMESTAMP,\n" + 
+                "    FAILURE_COUNT NUMBER NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_ERROR_COUNT PRIMARY KEY (HOST_ID, SIGNATURE_ID, INTERVAL_START)\n" + 
+                ")");
+        
+        tableConfigBuilder.put("MONITOR_OUTAGE", 
+                "CREATE TABLE MONITOR_OUTAGE (\n" + 
+                "    HOST_ID NUMBER,\n" + 
+                "    OUTAGE_START TIMESTAMP,\n" + 
+                "    OUTAGE_END TIMESTAMP,\n" + 
+                "    DURATION NUMBER,\n" + 
+                "    FAILURE_COUNT NUMBER,\n" + 
+                "    MESSAGE_COUNT NUMBER,\n" + 
+                "    CONSTRAINT PK_MONITOR_OUTAGE PRIMARY KEY (HOST_ID, OUTAGE_START)\n" + 
+                ")");
+        
+        tableConfigBuilder.put("MONITOR_OUTAGE_STATS", 
+                "CREATE TABLE MONITOR_OUTAGE_STATS (\n" + 
+                "    HOST_ID NUMBER,\n" + 
+                "    TRACKED_SINCE TIMESTAMP NOT NULL,\n" + 
+                "    OUTAGE_COUNT NUMBER NOT NULL,\n" + 
+                "    OUTAGE_DURATION NUMBER NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_OUTAGE_STATS PRIMARY KEY (HOST_ID)\n" + 
+                ")");
+        
+        //Each node sees its own samples so burn rates are kept per node
+        tableConfigBuilder.put("MONITOR_BURN_RATE", 
+                "CREATE TABLE MONITOR_BURN_RATE (\n" + 
+                "    GROUP_NAME VARCHAR2(200),\n" + 
+                "    NODE_ID VARCHAR2(500),\n" + 
+                "    SLO_TARGET NUMBER NOT NULL,\n" + 
+                "    SHORT_BURN_RATE NUMBER NOT NULL,\n" + 
+                "    MEDIUM_BURN_RATE NUMBER NOT NULL,\n" + 
+                "    LONG_BURN_RATE NUMBER NOT NULL,\n" + 
+                "    BURNING VARCHAR2(10) NOT NULL,\n" + 
+                "    LAST_UPDATED TIMESTAMP NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_BURN_RATE PRIMARY KEY (GROUP_NAME, NODE_ID)\n" + 
+                ")");
+        
+        tableConfigBuilder.put("MONITOR_CLUSTER_STATUS", 
+                "CREATE TABLE MONITOR_CLUSTER_STATUS (\n" + 
+                "    CLUSTER_NAME VARCHAR2(200),\n" + 
+                "    STATUS VARCHAR2(50) NOT NULL,\n" + 
+                "    HOST_COUNT NUMBER NOT NULL,\n" + 
+                "    DOWN_COUNT NUMBER NOT NULL,\n" + 
+                "    LAST_UPDATED TIMESTAMP NOT NULL,\n" + 
+                "    CONSTRAINT PK_MONITOR_CLUSTER_STATUS PRIMARY KEY (CLUSTER_NAME)\n" + 
+                ")");
+        
         TABLE_CONFIG = Collections.unmodifiableMap(tableConfigBuilder);
+        
+        //Columns added after the table was first released, keyed by TABLE.COLUMN
+        final Map<String, String> columnConfigBuilder = new LinkedHashMap<String, String>();
+        
+        columnConfigBuilder.put("MONITOR_HOST_STATUS.VERSION", 
+                "ALTER TABLE MONITOR_HOST_STATUS ADD VERSION NUMBER DEFAULT 0 NOT NULL");
+        
+        COLUMN_CONFIG = Collections.unmodifiableMap(columnConfigBuilder);
+        
+        //Tables replaced by views, existing tables are renamed out of the way
+        LEGACY_TABLES = Collections.unmodifiableList(Arrays.asList("MONITOR_LOG", "MONITOR_ERRORS"));
+        
+        //Copies the rows of a renamed legacy table into its replacement, run once its names are in the dictionaries
+        final Map<String, String> legacyMigrationBuilder = new LinkedHashMap<String, String>();
+        
+        legacyMigrationBuilder.put("MONITOR_LOG", 
+                "INSERT INTO MONITOR_REQUEST (HOST_ID, LABEL_ID, LAST_SAMPLE, DURATION, SUCCESS)\n" + 
+                "SELECT H.HOST_ID, L.LABEL_ID, O.LAST_SAMPLE, O.DURATION, O.SUCCESS\n" + 
+                "FROM MONITOR_LOG_OLD O\n" + 
+                "    JOIN MONITOR_HOST H ON H.HOST_NAME = O.HOST_NAME\n" + 
+                "    JOIN MONITOR_LABEL L ON L.LABEL = O.LABEL");
+        
+        legacyMigrationBuilder.put("MONITOR_ERRORS", 
+                "INSERT INTO MONITOR_FAILURE (HOST_ID, LABEL_ID, FAILURE_DATE, STATUS, EMAIL_SUBJECT, EMAIL_BODY, EMAIL_SENT)\n" + 
+                "SELECT H.HOST_ID, L.LABEL_ID, O.FAILURE_DATE, O.STATUS, O.EMAIL_SUBJECT, O.EMAIL_BODY, O.EMAIL_SENT\n" + 
+                "FROM MONITOR_ERRORS_OLD O\n" + 
+                "    JOIN MONITOR_HOST H ON H.HOST_NAME = O.HOST_NAME\n" + 
+                "    JOIN MONITOR_LABEL L ON L.LABEL = O.LABEL");
+        
+        LEGACY_MIGRATIONS = Collections.unmodifiableMap(legacyMigrationBuilder);
     }
     
-    private final ConcurrentMap<String, Object> hostMutexMap = new ConcurrentHashMap<String, Object>();
-    private final Map<String, HostStatus> hostStatusCache = new ConcurrentHashMap<String, HostStatus>();
+    private HostStatusStore hostStatusCache = new MapHostStatusStore();
+    private final List<HostPurgeListener> hostPurgeListeners = new CopyOnWriteArrayList<HostPurgeListener>();
+    private final Map<String, OutageStats> outageStatsCache = new ConcurrentHashMap<String, OutageStats>();
+    private StripedCounter hostStatusCacheHits = new StripedCounter();
+    private StripedCounter hostStatusCacheMisses = new StripedCounter();
+    private StripedCounter outageStatsCacheHits = new StripedCounter();
+    private StripedCounter outageStatsCacheMisses = new StripedCounter();
+    private StripedCounter purgedRows = new StripedCounter();
+    private StripedTimer purgeTimer = new StripedTimer();
     private Timer purgingTimer;
     
     //Purge times are in milliseconds
     private final long purgeStatusCache = TimeUnit.MILLISECONDS.convert(5, TimeUnit.MINUTES);
+    private final long refreshStatusCache = TimeUnit.MILLISECONDS.convert(15, TimeUnit.SECONDS);
+    private final long refreshClockSkew = TimeUnit.MILLISECONDS.convert(1, TimeUnit.MINUTES);
+    private volatile long lastStatusCacheRefresh = System.currentTimeMillis();
+    //Held for two purge periods so a missed run doesn't lose the lease, a dead node's lease expires after that
+    private final long purgeLeaseDuration = TimeUnit.MILLISECONDS.convert(10, TimeUnit.MINUTES);
+    private String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "/" + Integer.toHexString(System.identityHashCode(this));
     private final long purgeOldFailure;
-    private final long purgeOldStatus;
+    private final long statusRetention;
+    private Map<Integer, Integer> latencyRetention = Collections.emptyMap();
     private final NamedParameterJdbcTemplate jdbcTemplate;
     private final TransactionTemplate transactionTemplate;
+    private final NameDictionary hostDictionary;
+    private final NameDictionary labelDictionary;
+    private final NameDictionary signatureDictionary;
     
     
-    public JdbcMonitorDao(DataSource dataSource, int purgeOldFailures, int purgeOldStatus) {
+    /**
+     * @param purgeOldFailures Minutes to keep failures for
+     * @param statusRetention Minutes to keep request logs and status rows for
+     */
+    public JdbcMonitorDao(DataSource dataSource, int purgeOldFailures, int statusRetention) {
         this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
         
         final DataSourceTransactionManager dataSourceTransactionManager = new DataSourceTransactionManager(dataSource);
@@ -117,16 +327,28 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
         this.transactionTemplate = new TransactionTemplate(dataSourceTransactionManager);
         this.transactionTemplate.afterPropertiesSet();
         
+        this.hostDictionary = new NameDictionary(this.jdbcTemplate, dataSourceTransactionManager, "MONITOR_HOST", "HOST_ID", "HOST_NAME");
+        this.labelDictionary = new NameDictionary(this.jdbcTemplate, dataSourceTransactionManager, "MONITOR_LABEL", "LABEL_ID", "LABEL");
+        this.signatureDictionary = new NameDictionary(this.jdbcTemplate, dataSourceTransactionManager, "MONITOR_ERROR_SIGNATURE", "SIGNATURE_ID", "SIGNATURE");
+        
         this.purgeOldFailure = TimeUnit.MILLISECONDS.convert(purgeOldFailures, TimeUnit.MINUTES);
-        this.purgeOldStatus = TimeUnit.MILLISECONDS.convert(purgeOldStatus, TimeUnit.MINUTES);
+        this.statusRetention = TimeUnit.MILLISECONDS.convert(statusRetention, TimeUnit.MINUTES);
     }
     
-    public JdbcMonitorDao(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, int purgeOldFailures, int purgeOldStatus) {
+    /**
+     * @param purgeOldFailures Minutes to keep failures for
+     * @param statusRetention Minutes to keep request logs and status rows for
+     */
+    public JdbcMonitorDao(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, int purgeOldFailures, int statusRetention) {
         this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         
+        this.hostDictionary = new NameDictionary(this.jdbcTemplate, transactionManager, "MONITOR_HOST", "HOST_ID", "HOST_NAME");
+        this.labelDictionary = new NameDictionary(this.jdbcTemplate, transactionManager, "MONITOR_LABEL", "LABEL_ID", "LABEL");
+        this.signatureDictionary = new NameDictionary(this.jdbcTemplate, transactionManager, "MONITOR_ERROR_SIGNATURE", "SIGNATURE_ID", "SIGNATURE");
+        
         this.purgeOldFailure = TimeUnit.MILLISECONDS.convert(purgeOldFailures, TimeUnit.MINUTES);
-        this.purgeOldStatus = TimeUnit.MILLISECONDS.convert(purgeOldStatus, TimeUnit.MINUTES);
+        this.statusRetention = TimeUnit.MILLISECONDS.convert(statusRetention, TimeUnit.MINUTES);
     }
 
     @Override
@@ -137,65 +359,316 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
         this.purgingTimer.schedule(new TimerTask() {
             @Override
             public void run() {
-                purgeFailureLog(new Date(System.currentTimeMillis() - purgeOldFailure));
-                purgeRequestLog(new Date(System.currentTimeMillis() - purgeOldStatus));
+                try {
+                    //Only one node needs to purge the shared tables
+                    if (acquireLease(PURGE_LEASE, purgeLeaseDuration)) {
+                        final long purgeStart = System.nanoTime();
+                        purgeFailureLog(new Date(System.currentTimeMillis() - purgeOldFailure));
+                        purgeRequestLog(new Date(System.currentTimeMillis() - statusRetention));
+                        for (final Map.Entry<Integer, Integer> retentionEntry : latencyRetention.entrySet()) {
+                            final long retention = TimeUnit.MILLISECONDS.convert(retentionEntry.getValue(), TimeUnit.MINUTES);
+                            purgeLatencyRollups(retentionEntry.getKey(), new Date(System.currentTimeMillis() - retention));
+                        }
+                        purgeTimer.recordSince(purgeStart);
+                    }
+                }
+                catch (RuntimeException re) {
+                    log.warn("Failed to purge old data from database", re);
+                }
                 purgeStatusCache(new Date(System.currentTimeMillis() - purgeStatusCache)); //HostStatus objects can be rebuilt, don't hold stuff older than 5 minutes
             }
         }, 
         1000 * 60, //Run 1 minute after starting 
         1000 * 60 * 5); //Repeat every 5 minutes
+        this.purgingTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    refreshHostStatusCache();
+                }
+                catch (RuntimeException re) {
+                    log.warn("Failed to refresh HostStatus cache from database", re);
+                }
+            }
+        }, 
+        refreshStatusCache, 
+        refreshStatusCache);
     }
 
-    private void setupTables() {
-        final JdbcOperations jdbcOperations = this.jdbcTemplate.getJdbcOperations();
+    private void setupTables() throws InterruptedException {
+        //Nodes starting together take turns, the lease table has to exist before anything else
+        this.createTableIfMissing("MONITOR_LEASE", TABLE_CONFIG.get("MONITOR_LEASE"));
+        while (!this.acquireLease(SETUP_LEASE, SETUP_LEASE_DURATION)) {
+            log.info("Waiting for another node to finish setting up the tables");
+            Thread.sleep(SETUP_LEASE_POLL);
+        }
         
-        for (final Map.Entry<String, String> tableConfigEntry : TABLE_CONFIG.entrySet()) {
-            jdbcOperations.execute(new ConnectionCallback<Object>() {
-                @Override
-                public Object doInConnection(Connection con) throws SQLException, DataAccessException {
-                    final DatabaseMetaData metaData = con.getMetaData();
-                    
-                    final String tableName = tableConfigEntry.getKey();
-                    final ResultSet tables = metaData.getTables(null, null, tableName, null);
-                    try {
-                        if (!tables.next()) {
-                            log.warn("'" + tableName + "' table does not exist, creating.");
-                            jdbcOperations.update(tableConfigEntry.getValue());
+        try {
+            final JdbcOperations jdbcOperations = this.jdbcTemplate.getJdbcOperations();
+            for (final String legacyTable : LEGACY_TABLES) {
+                if (this.tableExists(legacyTable, new String[] { "TABLE" })) {
+                    log.warn("'" + legacyTable + "' is a table, renaming to '" + legacyTable + "_OLD' to make room for the compatibility view. " +
+                            "Its rows are migrated, drop it once the migration has been checked.");
+                    jdbcOperations.update("ALTER TABLE " + legacyTable + " RENAME TO " + legacyTable + "_OLD");
+                }
+            }
+            
+            for (final Map.Entry<String, String> tableConfigEntry : TABLE_CONFIG.entrySet()) {
+                //The replacement tables and dictionaries come first, fill them before the view goes in
+                final String tableName = tableConfigEntry.getKey();
+                if (LEGACY_TABLES.contains(tableName) && this.tableExists(tableName + "_OLD", null) && !this.isMigrated(tableName)) {
+                    this.migrateLegacyTable(tableName);
+                }
+                
+                this.createTableIfMissing(tableName, tableConfigEntry.getValue());
+            }
+            
+            for (final Map.Entry<String, String> columnConfigEntry : COLUMN_CONFIG.entrySet()) {
+                jdbcOperations.execute(new ConnectionCallback<Object>() {
+                    @Override
+                    public Object doInConnection(Connection con) throws SQLException, DataAccessException {
+                        final DatabaseMetaData metaData = con.getMetaData();
+                        
+                        final String[] tableColumn = columnConfigEntry.getKey().split("\\.");
+                        final ResultSet columns = metaData.getColumns(null, null, tableColumn[0], tableColumn[1]);
+                        try {
+                            if (!columns.next()) {
+                                log.warn("'" + columnConfigEntry.getKey() + "' column does not exist, adding.");
+                                jdbcOperations.update(columnConfigEntry.getValue());
+                            }
                         }
-                        else {
-                            log.info("'" + tableName + "' table already exists, skipping.");
+                        finally {
+                            columns.close();
                         }
+                        
+                        return null;
                     }
-                    finally {
-                        tables.close();
-                    }
-                    
-                    return null;
+                });
+            }
+        }
+        finally {
+            this.releaseLease(SETUP_LEASE);
+        }
+    }
+    
+    private void createTableIfMissing(String tableName, String ddl) {
+        if (this.tableExists(tableName, null)) {
+            log.info("'" + tableName + "' table already exists, skipping.");
+            return;
+        }
+        
+        log.warn("'" + tableName + "' table does not exist, creating.");
+        try {
+            this.jdbcTemplate.getJdbcOperations().update(ddl);
+        }
+        catch (DataAccessException e) {
+            //Another node created it first, only possible for the lease table
+            if (!this.tableExists(tableName, null)) {
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * @param types Table types to match, null for any
+     */
+    private boolean tableExists(final String tableName, final String[] types) {
+        return this.jdbcTemplate.getJdbcOperations().execute(new ConnectionCallback<Boolean>() {
+            @Override
+            public Boolean doInConnection(Connection con) throws SQLException, DataAccessException {
+                final ResultSet tables = con.getMetaData().getTables(null, null, tableName, types);
+                try {
+                    return tables.next();
                 }
-            });
+                finally {
+                    tables.close();
+                }
+            }
+        });
+    }
+    
+    private boolean isMigrated(String legacyTable) {
+        return this.jdbcTemplate.queryForInt(
+                "SELECT COUNT(*) FROM MONITOR_MIGRATION WHERE TABLE_NAME = :tableName", 
+                Collections.singletonMap("tableName", legacyTable)) > 0;
+    }
+    
+    /**
+     * Copy the rows of a legacy table renamed to *_OLD into its dictionary keyed replacement. The
+     * copy is recorded in MONITOR_MIGRATION in the same transaction, a failed copy is retried the
+     * next time the tables are set up.
+     */
+    private void migrateLegacyTable(final String legacyTable) {
+        final JdbcOperations jdbcOperations = this.jdbcTemplate.getJdbcOperations();
+        final String oldTable = legacyTable + "_OLD";
+        
+        //Dictionary entries are shared and never removed, filling them again is harmless
+        for (final String hostName : jdbcOperations.queryForList("SELECT DISTINCT HOST_NAME FROM " + oldTable + " WHERE HOST_NAME IS NOT NULL", String.class)) {
+            this.hostDictionary.getId(hostName);
         }
+        for (final String label : jdbcOperations.queryForList("SELECT DISTINCT LABEL FROM " + oldTable + " WHERE LABEL IS NOT NULL", String.class)) {
+            this.labelDictionary.getId(label);
+        }
+        
+        final int migrated = this.transactionTemplate.execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus transactionStatus) {
+                final int migrated = jdbcOperations.update(LEGACY_MIGRATIONS.get(legacyTable));
+                
+                final Map<String, Object> params = new LinkedHashMap<String, Object>();
+                params.put("tableName", legacyTable);
+                params.put("migrated", new Date());
+                jdbcTemplate.update(
+                        "INSERT INTO MONITOR_MIGRATION (TABLE_NAME, MIGRATED) " +
+                        "VALUES (:tableName, :migrated)", 
+                        params);
+                return migrated;
+            }
+        });
+        log.warn("Migrated " + migrated + " rows from '" + oldTable + "', rows without a host or label were skipped");
     }
     
     @Override
     public void destroy() throws Exception {
         this.purgingTimer.cancel();
         this.purgingTimer = null;
+        
+        //Let another node take over purging without waiting for the lease to expire
+        try {
+            this.releaseLease(PURGE_LEASE);
+        }
+        catch (RuntimeException re) {
+            log.warn("Failed to release '" + PURGE_LEASE + "' lease", re);
+        }
+    }
+    
+    /**
+     * Minutes to keep latency rollups for, keyed by rollup resolution in minutes. Rollups of
+     * resolutions with no retention are kept forever.
+     */
+    public void setLatencyRetention(Map<Integer, Integer> latencyRetention) {
+        this.latencyRetention = latencyRetention;
+    }
+    
+    /**
+     * Store for the in memory HostStatus cache, must be set before the DAO is used
+     */
+    public void setHostStatusStore(HostStatusStore hostStatusStore) {
+        this.hostStatusCache = hostStatusStore;
+    }
+
+    /**
+     * Listener told about the hosts each purge drops from memory
+     */
+    public void addHostPurgeListener(HostPurgeListener hostPurgeListener) {
+        this.hostPurgeListeners.add(hostPurgeListener);
+    }
+    
+    /**
+     * Registry for the cache hit and miss, purged row and purge duration metrics
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.hostStatusCacheHits = metricsRegistry.counter("cache.hostStatus.hits");
+        this.hostStatusCacheMisses = metricsRegistry.counter("cache.hostStatus.misses");
+        this.outageStatsCacheHits = metricsRegistry.counter("cache.outageStats.hits");
+        this.outageStatsCacheMisses = metricsRegistry.counter("cache.outageStats.misses");
+        this.purgedRows = metricsRegistry.counter("purge.rows");
+        this.purgeTimer = metricsRegistry.timer("purge");
+    }
+    
+    /**
+     * Identifies this DAO instance to other nodes sharing the database
+     */
+    public String getNodeId() {
+        return this.nodeId;
+    }
+    
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+    
+    /**
+     * Acquire or renew the named lease for this node. The lease is granted if nobody holds it,
+     * this node already holds it or the current holder let it expire.
+     * 
+     * @return true if this node now holds the lease for the next duration milliseconds
+     */
+    public boolean acquireLease(final String leaseName, final long duration) {
+        final long now = System.currentTimeMillis();
+        
+        final Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("leaseName", leaseName);
+        params.put("owner", this.nodeId);
+        params.put("now", new Date(now));
+        params.put("expires", new Date(now + duration));
+        
+        return this.transactionTemplate.execute(new TransactionCallback<Boolean>() {
+            @Override
+            public Boolean doInTransaction(TransactionStatus transactionStatus) {
+                final int updated = jdbcTemplate.update(
+                        "UPDATE MONITOR_LEASE " +
+                        "SET OWNER = :owner, EXPIRES = :expires " +
+                        "WHERE LEASE_NAME = :leaseName AND (OWNER = :owner OR EXPIRES < :now)",
+                        params);
+                if (updated > 0) {
+                    return true;
+                }
+                
+                try {
+                    jdbcTemplate.update(
+                            "INSERT INTO MONITOR_LEASE (LEASE_NAME, OWNER, EXPIRES) " +
+                            "VALUES (:leaseName, :owner, :expires)",
+                            params);
+                    log.info("Acquired '" + leaseName + "' lease for " + nodeId);
+                    return true;
+                }
+                catch (DataIntegrityViolationException e) {
+                    //Held by another node
+                    return false;
+                }
+            }
+        });
+    }
+    
+    /**
+     * Release the named lease if it is held by this node
+     */
+    public void releaseLease(String leaseName) {
+        final Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("leaseName", leaseName);
+        params.put("owner", this.nodeId);
+        
+        this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
+                jdbcTemplate.update(
+                        "DELETE FROM MONITOR_LEASE " +
+                        "WHERE LEASE_NAME = :leaseName AND OWNER = :owner",
+                        params);
+            }
+        });
     }
     
     @Override
     public void purgeStatusCache(final Date before) {
-        int removedStatuses = 0;
-        for (final Iterator<Map.Entry<String, HostStatus>> hostStatusIterator = hostStatusCache.entrySet().iterator(); hostStatusIterator.hasNext();) {
-            final Entry<String, HostStatus> hostStatusEntry = hostStatusIterator.next();
-            final HostStatus hostStatus = hostStatusEntry.getValue();
-            if (hostStatus.getLastUpdated().before(before)) {
-                hostMutexMap.remove(hostStatusEntry.getKey());
-                hostStatusIterator.remove();
-                removedStatuses++;
-            }
+        final List<String> removedHosts = this.hostStatusCache.removeUpdatedBefore(before);
+        for (final String hostName : removedHosts) {
+            outageStatsCache.remove(hostName);
         }
-        if (removedStatuses > 0) {
-            log.info("Purged " + removedStatuses + " HostStatus objects older than " + before + " from memory");
+        if (!removedHosts.isEmpty()) {
+            log.info("Purged " + removedHosts.size() + " HostStatus objects older than " + before + " from memory");
+            this.fireHostsPurged(removedHosts);
+        }
+    }
+
+    private void fireHostsPurged(List<String> removedHosts) {
+        for (final HostPurgeListener hostPurgeListener : this.hostPurgeListeners) {
+            try {
+                hostPurgeListener.hostsPurged(removedHosts);
+            }
+            catch (RuntimeException e) {
+                log.warn("HostPurgeListener " + hostPurgeListener + " failed for " + removedHosts.size() + " hosts", e);
+            }
         }
     }
 
@@ -203,15 +676,16 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
     public void purgeRequestLog(final String host, final Date before) {
         final Map<String, Object> params = new LinkedHashMap<String, Object>();
         params.put("before", before);
-        params.put("host", host);
+        params.put("hostId", this.hostDictionary.getId(host));
         
         this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
                 final int purgedRequests = jdbcTemplate.update(
-                        "DELETE FROM MONITOR_LOG " +
-                        "WHERE HOST_NAME = :host AND LAST_SAMPLE < :before",
+                        "DELETE FROM MONITOR_REQUEST " +
+                        "WHERE HOST_ID = :hostId AND LAST_SAMPLE < :before",
                         params);
+                purgedRows.add(purgedRequests);
                 if (purgedRequests > 0) {
                     log.info("Purged " + purgedRequests + " requests for " + host + " older than " + before + " from database");
                 }
@@ -228,9 +702,10 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
                 final int purgedRequests = jdbcTemplate.update(
-                        "DELETE FROM MONITOR_LOG " +
+                        "DELETE FROM MONITOR_REQUEST " +
                         "WHERE LAST_SAMPLE < :before",
                         params);
+                purgedRows.add(purgedRequests);
                 if (purgedRequests > 0) {
                     log.info("Purged " + purgedRequests + " requests older than " + before + " from database");
                 }
@@ -239,9 +714,19 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
                         "DELETE FROM MONITOR_HOST_STATUS " +
                         "WHERE LAST_UPDATED < :before",
                         params);
+                purgedRows.add(purgedStatuses);
                 if (purgedStatuses > 0) {
                     log.info("Purged " + purgedStatuses + " statuses older than " + before + " from database");
                 }
+                
+                final int purgedBurnRates = jdbcTemplate.update(
+                        "DELETE FROM MONITOR_BURN_RATE " +
+                        "WHERE LAST_UPDATED < :before",
+                        params);
+                purgedRows.add(purgedBurnRates);
+                if (purgedBurnRates > 0) {
+                    log.info("Purged " + purgedBurnRates + " burn rates older than " + before + " from database");
+                }
             }
         });
     }
@@ -255,13 +740,62 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
                 final int purged = jdbcTemplate.update(
-                        "DELETE FROM MONITOR_ERRORS " +
+                        "DELETE FROM MONITOR_FAILURE " +
                         "WHERE FAILURE_DATE < :before",
                         params);
                 
+                purgedRows.add(purged);
+                
                 if (purged > 0) {
                     log.info("Purged " + purged + " failures older than " + before + " from database");
                 }
+                
+                final int purgedClaims = jdbcTemplate.update(
+                        "DELETE FROM MONITOR_NOTIFICATION_CLAIM " +
+                        "WHERE WINDOW_START < :before",
+                        params);
+                
+                purgedRows.add(purgedClaims);
+                
+                if (purgedClaims > 0) {
+                    log.info("Purged " + purgedClaims + " notification claims older than " + before + " from database");
+                }
+                
+                //MONITOR_OUTAGE rows are kept as long as the MONITOR_OUTAGE_STATS totals they add up to
+                
+                final int purgedErrorCounts = jdbcTemplate.update(
+                        "DELETE FROM MONITOR_ERROR_COUNT " +
+                        "WHERE INTERVAL_START < :before",
+                        params);
+                
+                purgedRows.add(purgedErrorCounts);
+                
+                if (purgedErrorCounts > 0) {
+                    log.info("Purged " + purgedErrorCounts + " error counts older than " + before + " from database");
+                }
+            }
+        });
+    }
+
+    @Override
+    public void purgeLatencyRollups(final int resolution, final Date before) {
+        final Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("resolution", resolution);
+        params.put("before", before);
+        
+        this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
+                final int purged = jdbcTemplate.update(
+                        "DELETE FROM MONITOR_LATENCY " +
+                        "WHERE RESOLUTION = :resolution AND BUCKET_START < :before",
+                        params);
+                
+                purgedRows.add(purged);
+                
+                if (purged > 0) {
+                    log.info("Purged " + purged + " " + resolution + " minute latency rollups older than " + before + " from database");
+                }
             }
         });
     }
@@ -273,55 +807,35 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
         synchronized (lock) {
             HostStatus hostStatus = this.hostStatusCache.get(hostName);
             if (hostStatus != null) {
+                this.hostStatusCacheHits.increment();
                 return hostStatus;
             }
-            
-            final Map<String, Object> params = new LinkedHashMap<String, Object>();
-            params.put("hostName", hostName);
+            this.hostStatusCacheMisses.increment();
             
             try {
                 hostStatus = this.transactionTemplate.execute(new TransactionCallback<HostStatus>() {
                     @Override
                     public HostStatus doInTransaction(TransactionStatus transactionStatus) {
-                        final List<HostStatus> results = jdbcTemplate.query(
-                                "SELECT STATUS, FAILURE_COUNT, MESSAGE_COUNT, LAST_NOTIFICATION, LAST_UPDATED " +
-                                "FROM MONITOR_HOST_STATUS " +
-                                "WHERE HOST_NAME = :hostName", 
-                                params,
-                                new RowMapper<HostStatus>() {
-                                    @Override
-                                    public HostStatus mapRow(ResultSet rs, int row) throws SQLException {
-                                        final HostStatus hostStatus = new HostStatus();
-                                        
-                                        hostStatus.setHost(hostName);
-                                        hostStatus.setStatus(Status.valueOf(rs.getString("STATUS")));
-                                        hostStatus.setFailureCount(rs.getInt("FAILURE_COUNT"));
-                                        hostStatus.setMessageCount(rs.getInt("MESSAGE_COUNT"));
-                                        hostStatus.setLastMessageSent(rs.getTimestamp("LAST_NOTIFICATION"));
-                                        hostStatus.setLastUpdated(rs.getTimestamp("LAST_UPDATED"));
-                                        
-                                        return hostStatus;
-                                    }
-                                });
-                        
-                        HostStatus hostStatus = DataAccessUtils.singleResult(results);
+                        HostStatus hostStatus = loadHostStatus(hostName);
                         if (hostStatus != null) {
                             return hostStatus;
                         }
                         
-                        hostStatus = new HostStatus();
+                        hostStatus = new SimpleHostStatus();
                         hostStatus.setHost(hostName);
                         hostStatus.setLastUpdated(new Date());
                         
-                        params.put("status", hostStatus.getStatus().toString());
-                        params.put("failureCount", hostStatus.getFailureCount());
-                        params.put("messageCount", hostStatus.getMessageCount());
-                        params.put("lastNotification", hostStatus.getLastMessageSent());
-                        params.put("lastUpdated", hostStatus.getLastUpdated());
-                        
-                        jdbcTemplate.update(
-                                "INSERT INTO MONITOR_HOST_STATUS (HOST_NAME, STATUS, FAILURE_COUNT, MESSAGE_COUNT, LAST_NOTIFICATION, LAST_UPDATED) " +
-                        		"VALUES (:hostName, :status, :failureCount, :messageCount, :lastNotification, :lastUpdated)", params);
+                        try {
+                            insertHostStatus(hostStatus);
+                        }
+                        catch (DataIntegrityViolationException e) {
+                            //Another node created the row first, use theirs
+                            final HostStatus existingStatus = loadHostStatus(hostName);
+                            if (existingStatus == null) {
+                                throw e;
+                            }
+                            return existingStatus;
+                        }
     
                         return hostStatus;
                     }
@@ -330,7 +844,7 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
             catch (RuntimeException re) {
                 //Want things to still work if the database is broken so create an empty HostStatus to work with in memory only
                 if (hostStatus == null) {
-                    hostStatus = new HostStatus();
+                    hostStatus = new SimpleHostStatus();
                     hostStatus.setHost(hostName);
                     hostStatus.setLastUpdated(new Date());
                 }
@@ -338,15 +852,154 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
                 log.warn("Failed to retrieve/create HostStatus via database, using memory storage only", re);
             }
             
-            this.hostStatusCache.put(hostName, hostStatus);
-            return hostStatus;
+            return this.hostStatusCache.add(hostStatus);
         }
     }
     
+    /**
+     * Stores the status using compare-and-update on the VERSION column. If another node updated the
+     * row since it was read the two copies are merged with {@link HostStatus#merge(HostStatus)} and
+     * the update is retried.
+     */
     @Override
-    public void storeHostStatus(HostStatus hostStatus) {
+    public void storeHostStatus(final HostStatus hostStatus) {
         hostStatus.setLastUpdated(new Date());
         
+        final Object lock = this.getHostLock(hostStatus.getHost());
+        synchronized (lock) {
+            this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
+                    for (int attempt = 0; attempt < MAX_STORE_ATTEMPTS; attempt++) {
+                        final Map<String, Object> params = createHostStatusParams(hostStatus);
+                        final int updated = jdbcTemplate.update(
+                                "UPDATE MONITOR_HOST_STATUS " +
+                                "SET " +
+                                    "STATUS = :status, " +
+                                    "FAILURE_COUNT = :failureCount, " +
+                                    "MESSAGE_COUNT = :messageCount, " +
+                                    "LAST_NOTIFICATION = :lastNotification," +
+                                    "LAST_UPDATED =  :lastUpdated, " +
+                                    "VERSION = VERSION + 1 " +
+                                "WHERE HOST_NAME = :hostName AND VERSION = :version",
+                                params);
+                        
+                        if (updated > 0) {
+                            hostStatus.setVersion(hostStatus.getVersion() + 1);
+                            hostStatus.markStored();
+                            return;
+                        }
+                        
+                        final HostStatus currentStatus = loadHostStatus(hostStatus.getHost());
+                        if (currentStatus == null) {
+                            //Row was purged, recreate it
+                            try {
+                                hostStatus.setVersion(0);
+                                insertHostStatus(hostStatus);
+                                return;
+                            }
+                            catch (DataIntegrityViolationException e) {
+                                //Another node recreated it first, merge with their copy and try the update again
+                                final HostStatus recreatedStatus = loadHostStatus(hostStatus.getHost());
+                                if (recreatedStatus == null) {
+                                    throw e;
+                                }
+                                hostStatus.merge(recreatedStatus);
+                                continue;
+                            }
+                        }
+                        
+                        //Another node updated the row since it was read, merge in their changes and try again
+                        hostStatus.merge(currentStatus);
+                    }
+                    
+                    log.warn("Failed to store " + hostStatus + " after " + MAX_STORE_ATTEMPTS + " conflicting updates");
+                }
+            });
+        }
+    }
+    
+    /**
+     * Reloads cached HostStatus objects whose row VERSION was changed by another node. The cached
+     * instances are updated in place since callers hold on to them.
+     */
+    protected final void refreshHostStatusCache() {
+        final long refreshStart = System.currentTimeMillis();
+        
+        final Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("since", new Date(this.lastStatusCacheRefresh - this.refreshClockSkew));
+        
+        final List<Map<String, Object>> versions = this.jdbcTemplate.queryForList(
+                "SELECT HOST_NAME, VERSION " +
+                "FROM MONITOR_HOST_STATUS " +
+                "WHERE LAST_UPDATED >= :since", 
+                params);
+        
+        int refreshed = 0;
+        for (final Map<String, Object> version : versions) {
+            final String hostName = (String)version.get("HOST_NAME");
+            final HostStatus hostStatus = this.hostStatusCache.get(hostName);
+            if (hostStatus == null || hostStatus.getVersion() >= ((Number)version.get("VERSION")).longValue()) {
+                continue;
+            }
+            
+            final Object lock = this.getHostLock(hostName);
+            synchronized (lock) {
+                final HostStatus currentStatus = this.loadHostStatus(hostName);
+                if (currentStatus != null && currentStatus.getVersion() > hostStatus.getVersion()) {
+                    hostStatus.merge(currentStatus);
+                    hostStatus.setStatus(currentStatus.getStatus());
+                    hostStatus.setLastUpdated(currentStatus.getLastUpdated());
+                    refreshed++;
+                }
+            }
+        }
+        
+        this.lastStatusCacheRefresh = refreshStart;
+        if (refreshed > 0) {
+            log.info("Refreshed " + refreshed + " HostStatus objects changed by other nodes");
+        }
+    }
+    
+    private HostStatus loadHostStatus(final String hostName) {
+        final Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("hostName", hostName);
+        
+        final List<HostStatus> results = this.jdbcTemplate.query(
+                "SELECT STATUS, FAILURE_COUNT, MESSAGE_COUNT, LAST_NOTIFICATION, LAST_UPDATED, VERSION " +
+                "FROM MONITOR_HOST_STATUS " +
+                "WHERE HOST_NAME = :hostName", 
+                params,
+                new RowMapper<HostStatus>() {
+                    @Override
+                    public HostStatus mapRow(ResultSet rs, int row) throws SQLException {
+                        final HostStatus hostStatus = new SimpleHostStatus();
+                        
+                        hostStatus.setHost(hostName);
+                        hostStatus.setStatus(Status.valueOf(rs.getString("STATUS")));
+                        hostStatus.setFailureCount(rs.getInt("FAILURE_COUNT"));
+                        hostStatus.setMessageCount(rs.getInt("MESSAGE_COUNT"));
+                        hostStatus.setLastMessageSent(rs.getTimestamp("LAST_NOTIFICATION"));
+                        hostStatus.setLastUpdated(rs.getTimestamp("LAST_UPDATED"));
+                        hostStatus.setVersion(rs.getLong("VERSION"));
+                        hostStatus.markStored();
+                        
+                        return hostStatus;
+                    }
+                });
+        
+        return DataAccessUtils.singleResult(results);
+    }
+    
+    private void insertHostStatus(HostStatus hostStatus) {
+        this.jdbcTemplate.update(
+                "INSERT INTO MONITOR_HOST_STATUS (HOST_NAME, STATUS, FAILURE_COUNT, MESSAGE_COUNT, LAST_NOTIFICATION, LAST_UPDATED, VERSION) " +
+                "VALUES (:hostName, :status, :failureCount, :messageCount, :lastNotification, :lastUpdated, :version)", 
+                createHostStatusParams(hostStatus));
+        hostStatus.markStored();
+    }
+    
+    private Map<String, Object> createHostStatusParams(HostStatus hostStatus) {
         final Map<String, Object> params = new LinkedHashMap<String, Object>();
         params.put("hostName", hostStatus.getHost());
         params.put("status", hostStatus.getStatus().toString());
@@ -354,29 +1007,15 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
         params.put("messageCount", hostStatus.getMessageCount());
         params.put("lastNotification", hostStatus.getLastMessageSent());
         params.put("lastUpdated", hostStatus.getLastUpdated());
-        
-        this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
-            @Override
-            protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
-                jdbcTemplate.update(
-                        "UPDATE MONITOR_HOST_STATUS " +
-                        "SET " +
-                            "STATUS = :status, " +
-                            "FAILURE_COUNT = :failureCount, " +
-                            "MESSAGE_COUNT = :messageCount, " +
-                            "LAST_NOTIFICATION = :lastNotification," +
-                            "LAST_UPDATED =  :lastUpdated " +
-                        "WHERE HOST_NAME = :hostName",
-                        params);
-            }
-        });
+        params.put("version", hostStatus.getVersion());
+        return params;
     }
     
     @Override
     public void logFailure(String hostName, String label, Date requestTimestamp, Status status, String subject, String body, Notification sentEmail) {
         final Map<String, Object> params = new LinkedHashMap<String, Object>();
-        params.put("hostName", hostName);
-        params.put("label", label);
+        params.put("hostId", this.hostDictionary.getId(hostName));
+        params.put("labelId", this.labelDictionary.getId(label));
         params.put("failureDate", requestTimestamp);
         params.put("status", status.toString());
         params.put("emailSubject", subject);
@@ -387,8 +1026,8 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
                 jdbcTemplate.update(
-                        "INSERT INTO MONITOR_ERRORS (HOST_NAME, LABEL, FAILURE_DATE, STATUS, EMAIL_SUBJECT, EMAIL_BODY, EMAIL_SENT) " +
-                        "VALUES (:hostName, :label, :failureDate, :status, :emailSubject, :emailBody, :emailSent)", params);
+                        "INSERT INTO MONITOR_FAILURE (HOST_ID, LABEL_ID, FAILURE_DATE, STATUS, EMAIL_SUBJECT, EMAIL_BODY, EMAIL_SENT) " +
+                        "VALUES (:hostId, :labelId, :failureDate, :status, :emailSubject, :emailBody, :emailSent)", params);
             }
         });
     }
@@ -396,8 +1035,8 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
     @Override
     public void logRequest(String hostName, String label, Date requestTimestamp, long duration, boolean successful) {
         final Map<String, Object> params = new LinkedHashMap<String, Object>();
-        params.put("hostName", hostName);
-        params.put("label", label);
+        params.put("hostId", this.hostDictionary.getId(hostName));
+        params.put("labelId", this.labelDictionary.getId(label));
         params.put("lastSample", requestTimestamp);
         params.put("successful", Boolean.toString(successful));
         params.put("duration", duration);
@@ -406,18 +1045,18 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
                 final int affected = jdbcTemplate.update(
-                        "UPDATE MONITOR_LOG " +
+                        "UPDATE MONITOR_REQUEST " +
                         "SET " +
                             "LAST_SAMPLE = :lastSample, " +
                             "DURATION = :duration, " +
                             "SUCCESS = :successful " +
-                        "WHERE HOST_NAME = :hostName AND LABEL = :label",
+                        "WHERE HOST_ID = :hostId AND LABEL_ID = :labelId",
                         params);
                 
                 if (affected == 0) {
                     jdbcTemplate.update(
-                            "INSERT INTO MONITOR_LOG (HOST_NAME, LABEL, LAST_SAMPLE, DURATION, SUCCESS) " +
-                            "VALUES (:hostName, :label, :lastSample, :duration, :successful)", params);
+                            "INSERT INTO MONITOR_REQUEST (HOST_ID, LABEL_ID, LAST_SAMPLE, DURATION, SUCCESS) " +
+                            "VALUES (:hostId, :labelId, :lastSample, :duration, :successful)", params);
                 }
             }
         });
@@ -450,20 +1089,491 @@ public class JdbcMonitorDao implements InitializingBean, DisposableBean, Monitor
         }
     }
 
-    protected Object getHostLock(String hostName) {
-        Object lock = this.hostMutexMap.get(hostName);
-        if (lock == null) {
-            lock = new Object();
-            final Object existingLock = this.hostMutexMap.putIfAbsent(hostName, lock);
-            if (existingLock != null) {
-                //Another thread created the lock before us, use the _one_ instance from the Map
-                return existingLock;
+    @Override
+    public String claimNotification(final String hostName, Status status, Date window, long windowLength) {
+        final Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("hostName", hostName);
+        params.put("status", status.toString());
+        params.put("windowStart", window);
+        params.put("previousWindowStart", new Date(window.getTime() - windowLength));
+        params.put("nextWindowStart", new Date(window.getTime() + windowLength));
+        params.put("owner", this.nodeId);
+        params.put("claimed", new Date());
+        
+        return this.transactionTemplate.execute(new TransactionCallback<String>() {
+            @Override
+            public String doInTransaction(TransactionStatus transactionStatus) {
+                //The same transition claimed by another node just across the window boundary
+                final List<String> neighbourOwners = jdbcTemplate.queryForList(
+                        "SELECT OWNER " +
+                        "FROM MONITOR_NOTIFICATION_CLAIM " +
+                        "WHERE HOST_NAME = :hostName AND STATUS = :status " +
+                            "AND WINDOW_START IN (:previousWindowStart, :nextWindowStart) AND OWNER <> :owner", 
+                        params, String.class);
+                if (!neighbourOwners.isEmpty()) {
+                    log.info("Notification for " + hostName + " already claimed by " + neighbourOwners.get(0) + " in an adjacent window");
+                    return neighbourOwners.get(0);
+                }
+                
+                try {
+                    jdbcTemplate.update(
+                            "INSERT INTO MONITOR_NOTIFICATION_CLAIM (HOST_NAME, STATUS, WINDOW_START, OWNER, CLAIMED) " +
+                            "VALUES (:hostName, :status, :windowStart, :owner, :claimed)", 
+                            params);
+                    return null;
+                }
+                catch (DataIntegrityViolationException e) {
+                    //Already claimed, find out who has it
+                    final String owner = DataAccessUtils.singleResult(jdbcTemplate.queryForList(
+                            "SELECT OWNER " +
+                            "FROM MONITOR_NOTIFICATION_CLAIM " +
+                            "WHERE HOST_NAME = :hostName AND STATUS = :status AND WINDOW_START = :windowStart", 
+                            params, String.class));
+                    
+                    if (owner == null || nodeId.equals(owner)) {
+                        return null;
+                    }
+                    
+                    log.info("Notification for " + hostName + " already claimed by " + owner);
+                    return owner;
+                }
             }
+        });
+    }
+
+    @Override
+    public void storeLatencyRollups(List<LatencyRollup> rollups) {
+        for (final LatencyRollup rollup : rollups) {
+            final Map<String, Object> params = new LinkedHashMap<String, Object>();
+            params.put("hostId", this.hostDictionary.getId(rollup.getHost()));
+            params.put("labelId", this.labelDictionary.getId(rollup.getLabel()));
+            params.put("resolution", rollup.getResolution());
+            params.put("bucketStart", rollup.getBucketStart());
+            params.put("sampleCount", rollup.getSampleCount());
+            params.put("errorCount", rollup.getErrorCount());
+            params.put("minDuration", rollup.getMinDuration());
+            params.put("maxDuration", rollup.getMaxDuration());
+            params.put("meanDuration", rollup.getMeanDuration());
+            params.put("p50", rollup.getP50());
+            params.put("p90", rollup.getP90());
+            params.put("p95", rollup.getP95());
+            params.put("p99", rollup.getP99());
+            
+            this.storeLatencyRollup(params);
         }
-        return lock;
+    }
+    
+    /**
+     * Add the rollup to any row already stored for the bucket, other nodes and earlier runs may
+     * have written part of it. Counts and the mean combine exactly, percentiles can only be
+     * combined as an upper bound.
+     */
+    private void storeLatencyRollup(final Map<String, Object> params) {
+        for (int attempt = 0; attempt < MAX_STORE_ATTEMPTS; attempt++) {
+            try {
+                this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
+                        final int updated = jdbcTemplate.update(
+                                "UPDATE MONITOR_LATENCY " +
+                                "SET MEAN_DURATION = (MEAN_DURATION * SAMPLE_COUNT + :meanDuration * :sampleCount) / (SAMPLE_COUNT + :sampleCount), " +
+                                "    SAMPLE_COUNT = SAMPLE_COUNT + :sampleCount, " +
+                                "    ERROR_COUNT = ERROR_COUNT + :errorCount, " +
+                                "    MIN_DURATION = LEAST(MIN_DURATION, :minDuration), " +
+                                "    MAX_DURATION = GREATEST(MAX_DURATION, :maxDuration), " +
+                                "    P50_DURATION = GREATEST(P50_DURATION, :p50), " +
+                                "    P90_DURATION = GREATEST(P90_DURATION, :p90), " +
+                                "    P95_DURATION = GREATEST(P95_DURATION, :p95), " +
+                                "    P99_DURATION = GREATEST(P99_DURATION, :p99) " +
+                                "WHERE HOST_ID = :hostId AND LABEL_ID = :labelId AND RESOLUTION = :resolution AND BUCKET_START = :bucketStart", 
+                                params);
+                        if (updated == 0) {
+                            jdbcTemplate.update(
+                                    "INSERT INTO MONITOR_LATENCY (HOST_ID, LABEL_ID, RESOLUTION, BUCKET_START, SAMPLE_COUNT, ERROR_COUNT, MIN_DURATION, MAX_DURATION, MEAN_DURATION, P50_DURATION, P90_DURATION, P95_DURATION, P99_DURATION) " +
+                                    "VALUES (:hostId, :labelId, :resolution, :bucketStart, :sampleCount, :errorCount, :minDuration, :maxDuration, :meanDuration, :p50, :p90, :p95, :p99)", 
+                                    params);
+                        }
+                    }
+                });
+                return;
+            }
+            catch (DataIntegrityViolationException e) {
+                //Another node inserted the bucket first, add to its row
+            }
+        }
+        
+        throw new IllegalStateException("Failed to store latency rollup " + params + " after " + MAX_STORE_ATTEMPTS + " attempts");
+    }
+
+    @Override
+    public void storeErrorCounts(List<ErrorSignatureCount> errorCounts) {
+        for (final ErrorSignatureCount errorCount : errorCounts) {
+            final Map<String, Object> params = new LinkedHashMap<String, Object>();
+            params.put("hostId", this.hostDictionary.getId(errorCount.getHost()));
+            params.put("signatureId", this.signatureDictionary.getId(errorCount.getSignature()));
+            params.put("intervalStart", errorCount.getIntervalStart());
+            params.put("failureCount", errorCount.getFailureCount());
+            
+            this.storeErrorCount(params);
+        }
+    }
+    
+    /**
+     * Add the count to any row already stored for the interval by other nodes or earlier runs
+     */
+    private void storeErrorCount(final Map<String, Object> params) {
+        for (int attempt = 0; attempt < MAX_STORE_ATTEMPTS; attempt++) {
+            try {
+                this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
+                        final int updated = jdbcTemplate.update(
+                                "UPDATE MONITOR_ERROR_COUNT " +
+                                "SET FAILURE_COUNT = FAILURE_COUNT + :failureCount " +
+                                "WHERE HOST_ID = :hostId AND SIGNATURE_ID = :signatureId AND INTERVAL_START = :intervalStart", 
+                                params);
+                        if (updated == 0) {
+                            jdbcTemplate.update(
+                                    "INSERT INTO MONITOR_ERROR_COUNT (HOST_ID, SIGNATURE_ID, INTERVAL_START, FAILURE_COUNT) " +
+                                    "VALUES (:hostId, :signatureId, :intervalStart, :failureCount)", 
+                                    params);
+                        }
+                    }
+                });
+                return;
+            }
+            catch (DataIntegrityViolationException e) {
+                //Another node inserted the interval first, add to its row
+            }
+        }
+        
+        throw new IllegalStateException("Failed to store error count " + params + " after " + MAX_STORE_ATTEMPTS + " attempts");
+    }
+    
+    @Override
+    public void storeBurnRates(List<BurnRate> burnRates) {
+        for (final BurnRate burnRate : burnRates) {
+            final Map<String, Object> params = new LinkedHashMap<String, Object>();
+            params.put("groupName", burnRate.getGroup());
+            params.put("nodeId", this.nodeId);
+            params.put("sloTarget", burnRate.getSloTarget());
+            params.put("shortBurnRate", burnRate.getShortBurnRate());
+            params.put("mediumBurnRate", burnRate.getMediumBurnRate());
+            params.put("longBurnRate", burnRate.getLongBurnRate());
+            params.put("burning", Boolean.toString(burnRate.isBurning()));
+            params.put("lastUpdated", burnRate.getUpdated());
+            
+            this.storeBurnRate(params);
+        }
+    }
+    
+    /**
+     * Replace this node's row for the group
+     */
+    private void storeBurnRate(final Map<String, Object> params) {
+        for (int attempt = 0; attempt < MAX_STORE_ATTEMPTS; attempt++) {
+            try {
+                this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
+                        final int updated = jdbcTemplate.update(
+                                "UPDATE MONITOR_BURN_RATE " +
+                                "SET SLO_TARGET = :sloTarget, " +
+                                "    SHORT_BURN_RATE = :shortBurnRate, " +
+                                "    MEDIUM_BURN_RATE = :mediumBurnRate, " +
+                                "    LONG_BURN_RATE = :longBurnRate, " +
+                                "    BURNING = :burning, " +
+                                "    LAST_UPDATED = :lastUpdated " +
+                                "WHERE GROUP_NAME = :groupName AND NODE_ID = :nodeId", 
+                                params);
+                        if (updated == 0) {
+                            jdbcTemplate.update(
+                                    "INSERT INTO MONITOR_BURN_RATE (GROUP_NAME, NODE_ID, SLO_TARGET, SHORT_BURN_RATE, MEDIUM_BURN_RATE, LONG_BURN_RATE, BURNING, LAST_UPDATED) " +
+                                    "VALUES (:groupName, :nodeId, :sloTarget, :shortBurnRate, :mediumBurnRate, :longBurnRate, :burning, :lastUpdated)", 
+                                    params);
+                        }
+                    }
+                });
+                return;
+            }
+            catch (DataIntegrityViolationException e) {
+                //A concurrent store inserted the row first, update it
+            }
+        }
+        
+        throw new IllegalStateException("Failed to store burn rate " + params + " after " + MAX_STORE_ATTEMPTS + " attempts");
+    }
+    
+    /**
+     * Replace the stored status of the cluster. Rows are only written when the counts change and
+     * there is one per cluster so they are never purged.
+     */
+    @Override
+    public void storeClusterStatus(ClusterStatus clusterStatus) {
+        final Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("clusterName", clusterStatus.getCluster());
+        params.put("status", clusterStatus.getStatus().toString());
+        params.put("hostCount", clusterStatus.getHostCount());
+        params.put("downCount", clusterStatus.getDownCount());
+        params.put("lastUpdated", clusterStatus.getUpdated());
+        
+        for (int attempt = 0; attempt < MAX_STORE_ATTEMPTS; attempt++) {
+            try {
+                this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
+                        final int updated = jdbcTemplate.update(
+                                "UPDATE MONITOR_CLUSTER_STATUS " +
+                                "SET STATUS = :status, " +
+                                "    HOST_COUNT = :hostCount, " +
+                                "    DOWN_COUNT = :downCount, " +
+                                "    LAST_UPDATED = :lastUpdated " +
+                                "WHERE CLUSTER_NAME = :clusterName", 
+                                params);
+                        if (updated == 0) {
+                            jdbcTemplate.update(
+                                    "INSERT INTO MONITOR_CLUSTER_STATUS (CLUSTER_NAME, STATUS, HOST_COUNT, DOWN_COUNT, LAST_UPDATED) " +
+                                    "VALUES (:clusterName, :status, :hostCount, :downCount, :lastUpdated)", 
+                                    params);
+                        }
+                    }
+                });
+                return;
+            }
+            catch (DataIntegrityViolationException e) {
+                //Another node inserted the cluster first, update its row
+            }
+        }
+        
+        throw new IllegalStateException("Failed to store cluster status " + params + " after " + MAX_STORE_ATTEMPTS + " attempts");
+    }
+    
+    @Override
+    public OutageStats getOutageStats(final String hostName) {
+        final Object lock = this.getHostLock(hostName);
+        
+        synchronized (lock) {
+            OutageStats outageStats = this.outageStatsCache.get(hostName);
+            if (outageStats != null) {
+                this.outageStatsCacheHits.increment();
+                return outageStats;
+            }
+            this.outageStatsCacheMisses.increment();
+            
+            final Map<String, Object> params = new LinkedHashMap<String, Object>();
+            params.put("hostId", this.hostDictionary.getId(hostName));
+            params.put("trackedSince", new Date());
+            
+            outageStats = this.transactionTemplate.execute(new TransactionCallback<OutageStats>() {
+                @Override
+                public OutageStats doInTransaction(TransactionStatus transactionStatus) {
+                    OutageStats outageStats = loadOutageStats(hostName, params);
+                    if (outageStats != null) {
+                        return outageStats;
+                    }
+                    
+                    try {
+                        jdbcTemplate.update(
+                                "INSERT INTO MONITOR_OUTAGE_STATS (HOST_ID, TRACKED_SINCE, OUTAGE_COUNT, OUTAGE_DURATION) " +
+                                "VALUES (:hostId, :trackedSince, 0, 0)", 
+                                params);
+                    }
+                    catch (DataIntegrityViolationException e) {
+                        //Another node created the row first, use theirs
+                    }
+                    return loadOutageStats(hostName, params);
+                }
+            });
+            
+            this.outageStatsCache.put(hostName, outageStats);
+            return outageStats;
+        }
+    }
+    
+    /**
+     * The host's MONITOR_OUTAGE_STATS row is locked before looking for an open outage so nodes
+     * opening the same outage take turns, the node that goes second finds the first node's row.
+     */
+    @Override
+    public void openOutage(final String hostName, final Date start) {
+        final OutageStats outageStats = this.getOutageStats(hostName);
+        if (outageStats.getOpenOutageStart() != null) {
+            return;
+        }
+        
+        final Object lock = this.getHostLock(hostName);
+        synchronized (lock) {
+            if (outageStats.getOpenOutageStart() != null) {
+                return;
+            }
+            
+            final Map<String, Object> params = new LinkedHashMap<String, Object>();
+            params.put("hostId", this.hostDictionary.getId(hostName));
+            params.put("outageStart", start);
+            
+            final Date openOutageStart = this.transactionTemplate.execute(new TransactionCallback<Date>() {
+                @Override
+                public Date doInTransaction(TransactionStatus transactionStatus) {
+                    //getOutageStats created the row, the no-op update holds its lock until commit
+                    jdbcTemplate.update(
+                            "UPDATE MONITOR_OUTAGE_STATS " +
+                            "SET OUTAGE_COUNT = OUTAGE_COUNT " +
+                            "WHERE HOST_ID = :hostId", 
+                            params);
+                    
+                    //Another node may already have opened the outage
+                    final Date existingStart = findOpenOutageStart(params);
+                    if (existingStart != null) {
+                        return existingStart;
+                    }
+                    
+                    try {
+                        jdbcTemplate.update(
+                                "INSERT INTO MONITOR_OUTAGE (HOST_ID, OUTAGE_START, FAILURE_COUNT, MESSAGE_COUNT) " +
+                                "VALUES (:hostId, :outageStart, 0, 0)", 
+                                params);
+                    }
+                    catch (DataIntegrityViolationException e) {
+                        //Another node opened the outage with the same start, use theirs
+                        final Date conflictingStart = findOpenOutageStart(params);
+                        if (conflictingStart == null) {
+                            throw e;
+                        }
+                        return conflictingStart;
+                    }
+                    return start;
+                }
+            });
+            
+            outageStats.setOpenOutageStart(openOutageStart);
+        }
+    }
+    
+    /**
+     * Only the node whose update closes the outage row adds it to MONITOR_OUTAGE_STATS, the cached
+     * totals are then reloaded to pick up outages other nodes closed.
+     */
+    @Override
+    public void closeOutage(final String hostName, final Date end, int failureCount, int messageCount) {
+        final OutageStats outageStats = this.getOutageStats(hostName);
+        if (outageStats.getOpenOutageStart() == null) {
+            return;
+        }
+        
+        final Object lock = this.getHostLock(hostName);
+        synchronized (lock) {
+            final Date start = outageStats.getOpenOutageStart();
+            if (start == null) {
+                return;
+            }
+            
+            final Map<String, Object> params = new LinkedHashMap<String, Object>();
+            params.put("hostId", this.hostDictionary.getId(hostName));
+            params.put("outageStart", start);
+            params.put("outageEnd", end);
+            params.put("duration", Math.max(end.getTime() - start.getTime(), 0));
+            params.put("failureCount", failureCount);
+            params.put("messageCount", messageCount);
+            
+            this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus transactionStatus) {
+                    final int closed = jdbcTemplate.update(
+                            "UPDATE MONITOR_OUTAGE " +
+                            "SET OUTAGE_END = :outageEnd, DURATION = :duration, FAILURE_COUNT = :failureCount, MESSAGE_COUNT = :messageCount " +
+                            "WHERE HOST_ID = :hostId AND OUTAGE_START = :outageStart AND OUTAGE_END IS NULL", 
+                            params);
+                    
+                    if (closed > 0) {
+                        jdbcTemplate.update(
+                                "UPDATE MONITOR_OUTAGE_STATS " +
+                                "SET OUTAGE_COUNT = OUTAGE_COUNT + 1, OUTAGE_DURATION = OUTAGE_DURATION + :duration " +
+                                "WHERE HOST_ID = :hostId", 
+                                params);
+                    }
+                    
+                    final OutageStats currentStats = loadOutageStats(hostName, params);
+                    if (currentStats != null) {
+                        outageStats.setTotals(currentStats.getOutageCount(), currentStats.getOutageDuration());
+                        outageStats.setOpenOutageStart(currentStats.getOpenOutageStart());
+                    }
+                    else {
+                        outageStats.setOpenOutageStart(null);
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * @param params Must contain hostId
+     */
+    private OutageStats loadOutageStats(final String hostName, Map<String, Object> params) {
+        final OutageStats outageStats = DataAccessUtils.singleResult(this.jdbcTemplate.query(
+                "SELECT TRACKED_SINCE, OUTAGE_COUNT, OUTAGE_DURATION " +
+                "FROM MONITOR_OUTAGE_STATS " +
+                "WHERE HOST_ID = :hostId", 
+                params, 
+                new RowMapper<OutageStats>() {
+                    @Override
+                    public OutageStats mapRow(ResultSet rs, int row) throws SQLException {
+                        final OutageStats outageStats = new OutageStats(hostName, rs.getTimestamp("TRACKED_SINCE"));
+                        outageStats.setTotals(rs.getInt("OUTAGE_COUNT"), rs.getLong("OUTAGE_DURATION"));
+                        return outageStats;
+                    }
+                }));
+        
+        if (outageStats != null) {
+            outageStats.setOpenOutageStart(this.findOpenOutageStart(params));
+        }
+        return outageStats;
+    }
+    
+    /**
+     * @param params Must contain hostId
+     * @return Start of the host's open outage, null if there is none
+     */
+    private Date findOpenOutageStart(Map<String, Object> params) {
+        return this.jdbcTemplate.queryForObject(
+                "SELECT MIN(OUTAGE_START) " +
+                "FROM MONITOR_OUTAGE " +
+                "WHERE HOST_ID = :hostId AND OUTAGE_END IS NULL", 
+                params, Date.class);
+    }
+
+    protected Object getHostLock(String hostName) {
+        return this.hostStatusCache.getLock(hostName);
+    }
+
+    /**
+     * Name of a host in the MONITOR_HOST dictionary
+     * 
+     * @return null if no host has the id
+     */
+    public String getHostName(long hostId) {
+        return this.hostDictionary.getName(hostId);
+    }
+    
+    /**
+     * Label in the MONITOR_LABEL dictionary
+     * 
+     * @return null if no label has the id
+     */
+    public String getLabel(long labelId) {
+        return this.labelDictionary.getName(labelId);
+    }
+    
+    /**
+     * Error signature in the MONITOR_ERROR_SIGNATURE dictionary
+     * 
+     * @return null if no signature has the id
+     */
+    public String getErrorSignature(long signatureId) {
+        return this.signatureDictionary.getName(signatureId);
     }
 
     protected final void clearHostStatusCache() {
         this.hostStatusCache.clear();
+        this.outageStatsCache.clear();
     }
 }
@@ -0,0 +1,641 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.dao;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import edu.wisc.jmeter.BurnRate;
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.ErrorSignatureCount;
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
+import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.OutageStats;
+import edu.wisc.jmeter.SimpleHostStatus;
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.metrics.MetricsRegistry;
+import edu.wisc.jmeter.metrics.StripedCounter;
+import edu.wisc.jmeter.metrics.StripedTimer;
+
+/**
+ * {@link MonitorDao} that needs no database. Host status is kept in memory and periodically
+ * snapshotted to a file, requests and failures are written to append-only {@link SegmentedLog}s
+ * which are purged by deleting expired segments.
+ */
+public class LocalMonitorDao implements InitializingBean, DisposableBean, MonitorDao {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final String SNAPSHOT_FILE = "host-status.snapshot";
+    private static final String OUTAGE_SNAPSHOT_FILE = "outage-stats.snapshot";
+
+    private HostStatusStore hostStatusTable = new MapHostStatusStore();
+    private final List<HostPurgeListener> hostPurgeListeners = new CopyOnWriteArrayList<HostPurgeListener>();
+    private final ConcurrentMap<String, OutageStats> outageStatsTable = new ConcurrentHashMap<String, OutageStats>();
+    private final File directory;
+    private final SegmentedLog requestLog;
+    private final SegmentedLog failureLog;
+    private final SegmentedLog outageLog;
+    private final SegmentedLog errorCountLog;
+    private final SegmentedLog burnRateLog;
+    private final SegmentedLog clusterStatusLog;
+    private final ConcurrentMap<Integer, SegmentedLog> latencyLogs = new ConcurrentHashMap<Integer, SegmentedLog>();
+    private Map<Integer, Integer> latencyRetention = Collections.emptyMap();
+    private Timer purgingTimer;
+    private StripedCounter purgedSegmentCount = new StripedCounter();
+    private StripedTimer purgeTimer = new StripedTimer();
+
+    //Purge times are in milliseconds
+    private final long purgeOldFailure;
+    private final long statusRetention;
+
+    /**
+     * @param purgeOldFailures Minutes to keep failures for
+     * @param statusRetention Minutes to keep request logs and status rows for
+     */
+    public LocalMonitorDao(File directory, int purgeOldFailures, int statusRetention) {
+        this.directory = directory;
+        this.requestLog = new SegmentedLog(directory, "requests");
+        this.failureLog = new SegmentedLog(directory, "failures");
+        this.outageLog = new SegmentedLog(directory, "outages");
+        this.errorCountLog = new SegmentedLog(directory, "error-counts");
+        this.burnRateLog = new SegmentedLog(directory, "burn-rates");
+        this.clusterStatusLog = new SegmentedLog(directory, "cluster-status");
+
+        this.purgeOldFailure = TimeUnit.MILLISECONDS.convert(purgeOldFailures, TimeUnit.MINUTES);
+        this.statusRetention = TimeUnit.MILLISECONDS.convert(statusRetention, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Store for the HostStatus table, must be set before {@link #afterPropertiesSet()}
+     */
+    public void setHostStatusStore(HostStatusStore hostStatusStore) {
+        this.hostStatusTable = hostStatusStore;
+    }
+
+    /**
+     * Listener told about the hosts each purge drops from memory
+     */
+    public void addHostPurgeListener(HostPurgeListener hostPurgeListener) {
+        this.hostPurgeListeners.add(hostPurgeListener);
+    }
+
+    /**
+     * Registry for the purged segment and purge duration metrics
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.purgedSegmentCount = metricsRegistry.counter("purge.segments");
+        this.purgeTimer = metricsRegistry.timer("purge");
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Failed to create local storage directory: " + this.directory);
+        }
+
+        this.loadSnapshot();
+        this.loadOutageSnapshot();
+
+        this.purgingTimer = new Timer("LocalMonitorDao_PurgingTimer", true);
+        this.purgingTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                flush();
+            }
+        },
+        1000 * 30, //Run 30 seconds after starting
+        1000 * 30); //Repeat every 30 seconds
+        this.purgingTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                final long purgeStart = System.nanoTime();
+                purgeFailureLog(new Date(System.currentTimeMillis() - purgeOldFailure));
+                purgeRequestLog(new Date(System.currentTimeMillis() - statusRetention));
+                for (final Map.Entry<Integer, Integer> retentionEntry : latencyRetention.entrySet()) {
+                    final long retention = TimeUnit.MILLISECONDS.convert(retentionEntry.getValue(), TimeUnit.MINUTES);
+                    purgeLatencyRollups(retentionEntry.getKey(), new Date(System.currentTimeMillis() - retention));
+                }
+                purgeTimer.recordSince(purgeStart);
+            }
+        },
+        1000 * 60, //Run 1 minute after starting
+        1000 * 60 * 5); //Repeat every 5 minutes
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        this.purgingTimer.cancel();
+        this.purgingTimer = null;
+
+        this.flush();
+        this.requestLog.close();
+        this.failureLog.close();
+        this.outageLog.close();
+        this.errorCountLog.close();
+        this.burnRateLog.close();
+        this.clusterStatusLog.close();
+        for (final SegmentedLog latencyLog : this.latencyLogs.values()) {
+            latencyLog.close();
+        }
+    }
+
+    /**
+     * Minutes to keep latency rollups for, keyed by rollup resolution in minutes. Rollups of
+     * resolutions with no retention are kept forever.
+     */
+    public void setLatencyRetention(Map<Integer, Integer> latencyRetention) {
+        this.latencyRetention = latencyRetention;
+    }
+
+    /**
+     * Flush the request and failure logs and write a new host status snapshot
+     */
+    public void flush() {
+        try {
+            this.requestLog.flush();
+            this.failureLog.flush();
+            this.outageLog.flush();
+            this.errorCountLog.flush();
+            this.burnRateLog.flush();
+            this.clusterStatusLog.flush();
+            for (final SegmentedLog latencyLog : this.latencyLogs.values()) {
+                latencyLog.flush();
+            }
+        }
+        catch (IOException e) {
+            log.warn("Failed to flush request, failure and latency logs", e);
+        }
+
+        try {
+            this.writeSnapshot();
+        }
+        catch (IOException e) {
+            log.warn("Failed to write HostStatus snapshot", e);
+        }
+
+        try {
+            this.writeOutageSnapshot();
+        }
+        catch (IOException e) {
+            log.warn("Failed to write OutageStats snapshot", e);
+        }
+    }
+
+    /**
+     * The in-memory table is the system of record so nothing is evicted here, old statuses are
+     * removed by {@link #purgeRequestLog(Date)}
+     */
+    @Override
+    public void purgeStatusCache(Date before) {
+    }
+
+    /**
+     * Segments are shared by all hosts so per-host purging is not possible, the records expire
+     * with their segment in {@link #purgeRequestLog(Date)}
+     */
+    @Override
+    public void purgeRequestLog(String host, Date before) {
+    }
+
+    @Override
+    public void purgeRequestLog(Date before) {
+        final int purgedSegments = this.requestLog.purge(before);
+        this.purgedSegmentCount.add(purgedSegments);
+        if (purgedSegments > 0) {
+            log.info("Purged " + purgedSegments + " request log segments older than " + before);
+        }
+
+        final int purgedBurnRateSegments = this.burnRateLog.purge(before);
+        this.purgedSegmentCount.add(purgedBurnRateSegments);
+        if (purgedBurnRateSegments > 0) {
+            log.info("Purged " + purgedBurnRateSegments + " burn rate log segments older than " + before);
+        }
+
+        final int purgedClusterStatusSegments = this.clusterStatusLog.purge(before);
+        this.purgedSegmentCount.add(purgedClusterStatusSegments);
+        if (purgedClusterStatusSegments > 0) {
+            log.info("Purged " + purgedClusterStatusSegments + " cluster status log segments older than " + before);
+        }
+
+        final List<String> purgedHosts = this.hostStatusTable.removeUpdatedBefore(before);
+        if (!purgedHosts.isEmpty()) {
+            log.info("Purged " + purgedHosts.size() + " statuses older than " + before);
+            this.fireHostsPurged(purgedHosts);
+        }
+    }
+
+    private void fireHostsPurged(List<String> removedHosts) {
+        for (final HostPurgeListener hostPurgeListener : this.hostPurgeListeners) {
+            try {
+                hostPurgeListener.hostsPurged(removedHosts);
+            }
+            catch (RuntimeException e) {
+                log.warn("HostPurgeListener " + hostPurgeListener + " failed for " + removedHosts.size() + " hosts", e);
+            }
+        }
+    }
+
+    @Override
+    public void purgeFailureLog(Date before) {
+        final int purgedSegments = this.failureLog.purge(before);
+        this.purgedSegmentCount.add(purgedSegments);
+        if (purgedSegments > 0) {
+            log.info("Purged " + purgedSegments + " failure log segments older than " + before);
+        }
+
+        //Outage log segments are kept as long as the OutageStats totals they add up to
+
+        final int purgedErrorCountSegments = this.errorCountLog.purge(before);
+        this.purgedSegmentCount.add(purgedErrorCountSegments);
+        if (purgedErrorCountSegments > 0) {
+            log.info("Purged " + purgedErrorCountSegments + " error count log segments older than " + before);
+        }
+    }
+
+    @Override
+    public void purgeLatencyRollups(int resolution, Date before) {
+        final int purgedSegments = this.getLatencyLog(resolution).purge(before);
+        this.purgedSegmentCount.add(purgedSegments);
+        if (purgedSegments > 0) {
+            log.info("Purged " + purgedSegments + " " + resolution + " minute latency log segments older than " + before);
+        }
+    }
+
+    @Override
+    public HostStatus getHostStatus(String hostName) {
+        HostStatus hostStatus = this.hostStatusTable.get(hostName);
+        if (hostStatus != null) {
+            return hostStatus;
+        }
+
+        hostStatus = new SimpleHostStatus();
+        hostStatus.setHost(hostName);
+        hostStatus.setLastUpdated(new Date());
+
+        return this.hostStatusTable.add(hostStatus);
+    }
+
+    @Override
+    public void storeHostStatus(HostStatus hostStatus) {
+        hostStatus.setLastUpdated(new Date());
+        this.hostStatusTable.put(hostStatus);
+    }
+
+    @Override
+    public void logFailure(String hostName, String label, Date requestTimestamp, Status status, String subject,
+            String body, Notification sentEmail) {
+        try {
+            this.failureLog.append(requestTimestamp, hostName, label, status, sentEmail, subject, body);
+        }
+        catch (IOException e) {
+            throw new DataAccessResourceFailureException("Failed to append to failure log", e);
+        }
+    }
+
+    @Override
+    public void logRequest(String hostName, String label, Date requestTimestamp, long duration, boolean successful) {
+        try {
+            this.requestLog.append(requestTimestamp, hostName, label, duration, successful);
+        }
+        catch (IOException e) {
+            throw new DataAccessResourceFailureException("Failed to append to request log", e);
+        }
+    }
+
+    @Override
+    public void logRequestAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, long duration,
+            boolean successful) {
+        this.storeHostStatus(hostStatus);
+        this.logRequest(hostStatus.getHost(), label, requestTimestamp, duration, successful);
+    }
+
+    @Override
+    public void logFailureAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, Status status,
+            String subject, String body, Notification sentEmail) {
+        this.storeHostStatus(hostStatus);
+        this.logFailure(hostStatus.getHost(), label, requestTimestamp, status, subject, body, sentEmail);
+    }
+
+    /**
+     * Local storage is never shared with another node so this node always holds the claim
+     */
+    @Override
+    public String claimNotification(String hostName, Status status, Date window, long windowLength) {
+        return null;
+    }
+
+    @Override
+    public void storeLatencyRollups(List<LatencyRollup> rollups) {
+        try {
+            for (final LatencyRollup rollup : rollups) {
+                this.getLatencyLog(rollup.getResolution()).append(rollup.getBucketStart(), rollup.getHost(), rollup.getLabel(), 
+                        rollup.getSampleCount(), rollup.getErrorCount(), rollup.getMinDuration(), rollup.getMaxDuration(), 
+                        rollup.getMeanDuration(), rollup.getP50(), rollup.getP90(), rollup.getP95(), rollup.getP99());
+            }
+        }
+        catch (IOException e) {
+            throw new DataAccessResourceFailureException("Failed to append to latency log", e);
+        }
+    }
+
+    @Override
+    public void storeErrorCounts(List<ErrorSignatureCount> errorCounts) {
+        try {
+            for (final ErrorSignatureCount errorCount : errorCounts) {
+                this.errorCountLog.append(errorCount.getIntervalStart(), errorCount.getHost(), errorCount.getSignature(), errorCount.getFailureCount());
+            }
+        }
+        catch (IOException e) {
+            throw new DataAccessResourceFailureException("Failed to append to error count log", e);
+        }
+    }
+
+    @Override
+    public void storeBurnRates(List<BurnRate> burnRates) {
+        try {
+            for (final BurnRate burnRate : burnRates) {
+                this.burnRateLog.append(burnRate.getUpdated(), burnRate.getGroup(), burnRate.getSloTarget(), 
+                        burnRate.getShortBurnRate(), burnRate.getMediumBurnRate(), burnRate.getLongBurnRate(), burnRate.isBurning());
+            }
+        }
+        catch (IOException e) {
+            throw new DataAccessResourceFailureException("Failed to append to burn rate log", e);
+        }
+    }
+
+    @Override
+    public void storeClusterStatus(ClusterStatus clusterStatus) {
+        try {
+            this.clusterStatusLog.append(clusterStatus.getUpdated(), clusterStatus.getCluster(), clusterStatus.getStatus(), 
+                    clusterStatus.getHostCount(), clusterStatus.getDownCount());
+        }
+        catch (IOException e) {
+            throw new DataAccessResourceFailureException("Failed to append to cluster status log", e);
+        }
+    }
+
+    @Override
+    public OutageStats getOutageStats(String hostName) {
+        OutageStats outageStats = this.outageStatsTable.get(hostName);
+        if (outageStats != null) {
+            return outageStats;
+        }
+
+        outageStats = new OutageStats(hostName, new Date());
+        final OutageStats existingStats = this.outageStatsTable.putIfAbsent(hostName, outageStats);
+        if (existingStats != null) {
+            return existingStats;
+        }
+        return outageStats;
+    }
+
+    @Override
+    public void openOutage(String hostName, Date start) {
+        final OutageStats outageStats = this.getOutageStats(hostName);
+        synchronized (outageStats) {
+            if (outageStats.getOpenOutageStart() == null) {
+                outageStats.setOpenOutageStart(start);
+            }
+        }
+    }
+
+    @Override
+    public void closeOutage(String hostName, Date end, int failureCount, int messageCount) {
+        final OutageStats outageStats = this.getOutageStats(hostName);
+        final Date start;
+        final long duration;
+        synchronized (outageStats) {
+            start = outageStats.getOpenOutageStart();
+            duration = outageStats.closeOutage(end);
+        }
+        if (duration < 0) {
+            return;
+        }
+
+        try {
+            this.outageLog.append(start, hostName, formatDate(end), duration, failureCount, messageCount);
+        }
+        catch (IOException e) {
+            throw new DataAccessResourceFailureException("Failed to append to outage log", e);
+        }
+    }
+
+    /**
+     * One log per resolution so each can be purged on its own schedule
+     */
+    private SegmentedLog getLatencyLog(int resolution) {
+        SegmentedLog latencyLog = this.latencyLogs.get(resolution);
+        if (latencyLog == null) {
+            latencyLog = new SegmentedLog(this.directory, "latency-" + resolution);
+            final SegmentedLog existing = this.latencyLogs.putIfAbsent(resolution, latencyLog);
+            if (existing != null) {
+                latencyLog = existing;
+            }
+        }
+        return latencyLog;
+    }
+
+    private void loadSnapshot() throws IOException {
+        final File snapshotFile = new File(this.directory, SNAPSHOT_FILE);
+        if (!snapshotFile.exists()) {
+            log.info("No HostStatus snapshot found in " + this.directory + ", starting empty");
+            return;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(snapshotFile), "UTF-8"));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split("\t", -1);
+                if (fields.length != 6) {
+                    log.warn("Ignoring malformed HostStatus snapshot line: " + line);
+                    continue;
+                }
+
+                final HostStatus hostStatus = new SimpleHostStatus();
+                hostStatus.setHost(SegmentedLog.unescape(fields[0]));
+                hostStatus.setStatus(Status.valueOf(fields[1]));
+                hostStatus.setFailureCount(Integer.parseInt(fields[2]));
+                hostStatus.setMessageCount(Integer.parseInt(fields[3]));
+                hostStatus.setLastMessageSent(parseDate(fields[4]));
+                hostStatus.setLastUpdated(parseDate(fields[5]));
+
+                this.hostStatusTable.put(hostStatus);
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(reader);
+        }
+
+        log.info("Loaded " + this.hostStatusTable.size() + " HostStatus objects from " + snapshotFile);
+    }
+
+    private void loadOutageSnapshot() throws IOException {
+        final File snapshotFile = new File(this.directory, OUTAGE_SNAPSHOT_FILE);
+        if (!snapshotFile.exists()) {
+            return;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(snapshotFile), "UTF-8"));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split("\t", -1);
+                if (fields.length != 5) {
+                    log.warn("Ignoring malformed OutageStats snapshot line: " + line);
+                    continue;
+                }
+
+                final OutageStats outageStats = new OutageStats(SegmentedLog.unescape(fields[0]), parseDate(fields[1]));
+                outageStats.setTotals(Integer.parseInt(fields[2]), Long.parseLong(fields[3]));
+                outageStats.setOpenOutageStart(parseDate(fields[4]));
+
+                this.outageStatsTable.put(outageStats.getHost(), outageStats);
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(reader);
+        }
+
+        log.info("Loaded " + this.outageStatsTable.size() + " OutageStats objects from " + snapshotFile);
+    }
+
+    private synchronized void writeOutageSnapshot() throws IOException {
+        final File snapshotFile = new File(this.directory, OUTAGE_SNAPSHOT_FILE);
+        final File tempFile = new File(this.directory, OUTAGE_SNAPSHOT_FILE + ".tmp");
+        if (this.outageStatsTable.isEmpty() && !snapshotFile.exists()) {
+            return;
+        }
+
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+
+            for (final OutageStats outageStats : this.outageStatsTable.values()) {
+                writer.write(SegmentedLog.escape(outageStats.getHost()));
+                writer.write('\t');
+                writer.write(formatDate(outageStats.getTrackedSince()));
+                writer.write('\t');
+                writer.write(Integer.toString(outageStats.getOutageCount()));
+                writer.write('\t');
+                writer.write(Long.toString(outageStats.getOutageDuration()));
+                writer.write('\t');
+                writer.write(formatDate(outageStats.getOpenOutageStart()));
+                writer.write('\n');
+            }
+
+            //Close here so a failed flush aborts before the good snapshot is replaced
+            writer.close();
+        }
+        finally {
+            IOUtils.closeQuietly(writer);
+        }
+
+        replaceFile(tempFile, snapshotFile);
+    }
+
+    private synchronized void writeSnapshot() throws IOException {
+        final File snapshotFile = new File(this.directory, SNAPSHOT_FILE);
+        final File tempFile = new File(this.directory, SNAPSHOT_FILE + ".tmp");
+
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+
+            for (final HostStatus hostStatus : this.hostStatusTable.values()) {
+                writer.write(SegmentedLog.escape(hostStatus.getHost()));
+                writer.write('\t');
+                writer.write(hostStatus.getStatus().name());
+                writer.write('\t');
+                writer.write(Integer.toString(hostStatus.getFailureCount()));
+                writer.write('\t');
+                writer.write(Integer.toString(hostStatus.getMessageCount()));
+                writer.write('\t');
+                writer.write(formatDate(hostStatus.getLastMessageSent()));
+                writer.write('\t');
+                writer.write(formatDate(hostStatus.getLastUpdated()));
+                writer.write('\n');
+            }
+
+            //Close here so a failed flush aborts before the good snapshot is replaced
+            writer.close();
+        }
+        finally {
+            IOUtils.closeQuietly(writer);
+        }
+
+        replaceFile(tempFile, snapshotFile);
+    }
+
+    /**
+     * Replace the old snapshot only once the new one is completely written
+     */
+    private static void replaceFile(File tempFile, File snapshotFile) throws IOException {
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            throw new IOException("Failed to replace snapshot: " + snapshotFile);
+        }
+        if (!tempFile.renameTo(snapshotFile)) {
+            throw new IOException("Failed to replace snapshot: " + snapshotFile);
+        }
+    }
+
+    private static String formatDate(Date date) {
+        if (date == null) {
+            return "";
+        }
+        return Long.toString(date.getTime());
+    }
+
+    private static Date parseDate(String date) {
+        if (date.length() == 0) {
+            return null;
+        }
+        return new Date(Long.parseLong(date));
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.dao;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.wisc.jmeter.HostStatus;
+
+/**
+ * Keeps a HostStatus object and a lock object per host in concurrent maps
+ */
+public class MapHostStatusStore implements HostStatusStore {
+    private final ConcurrentMap<String, Object> hostMutexMap = new ConcurrentHashMap<String, Object>();
+    private final ConcurrentMap<String, HostStatus> hostStatusMap = new ConcurrentHashMap<String, HostStatus>();
+
+    @Override
+    public HostStatus get(String hostName) {
+        return this.hostStatusMap.get(hostName);
+    }
+
+    @Override
+    public HostStatus add(HostStatus hostStatus) {
+        final HostStatus existingStatus = this.hostStatusMap.putIfAbsent(hostStatus.getHost(), hostStatus);
+        if (existingStatus != null) {
+            //Another thread created the status before us, use the _one_ instance from the Map
+            return existingStatus;
+        }
+        return hostStatus;
+    }
+
+    @Override
+    public void put(HostStatus hostStatus) {
+        this.hostStatusMap.put(hostStatus.getHost(), hostStatus);
+    }
+
+    @Override
+    public List<String> removeUpdatedBefore(Date before) {
+        final List<String> removed = new ArrayList<String>();
+        for (final Iterator<HostStatus> hostStatusIterator = this.hostStatusMap.values().iterator(); hostStatusIterator.hasNext();) {
+            final HostStatus hostStatus = hostStatusIterator.next();
+            if (hostStatus.getLastUpdated().before(before)) {
+                this.hostMutexMap.remove(hostStatus.getHost());
+                hostStatusIterator.remove();
+                removed.add(hostStatus.getHost());
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public List<HostStatus> values() {
+        return new ArrayList<HostStatus>(this.hostStatusMap.values());
+    }
+
+    @Override
+    public int size() {
+        return this.hostStatusMap.size();
+    }
+
+    @Override
+    public void clear() {
+        this.hostStatusMap.clear();
+    }
+
+    @Override
+    public Object getLock(String hostName) {
+        Object lock = this.hostMutexMap.get(hostName);
+        if (lock == null) {
+            lock = new Object();
+            final Object existingLock = this.hostMutexMap.putIfAbsent(hostName, lock);
+            if (existingLock != null) {
+                //Another thread created the lock before us, use the _one_ instance from the Map
+                return existingLock;
+            }
+        }
+        return lock;
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.dao;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.wisc.jmeter.BurnRate;
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.ErrorSignatureCount;
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
+import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.OutageStats;
+import edu.wisc.jmeter.SimpleHostStatus;
+import edu.wisc.jmeter.Status;
+
+/**
+ * Keeps host status and outages in memory for running the listener outside of a test, such as
+ * replaying recorded results. Request, latency, error count and burn rate data is dropped,
+ * logged failures are only counted. Every notification claim succeeds.
+ */
+public class MemoryMonitorDao implements MonitorDao {
+    private final ConcurrentMap<String, HostStatus> hostStatusTable = new ConcurrentHashMap<String, HostStatus>();
+    private final ConcurrentMap<String, OutageStats> outageStatsTable = new ConcurrentHashMap<String, OutageStats>();
+    private final List<Outage> outages = new ArrayList<Outage>();
+    private final AtomicLong failuresLogged = new AtomicLong();
+
+    /**
+     * @return Every host seen
+     */
+    public List<HostStatus> getHostStatuses() {
+        return new ArrayList<HostStatus>(this.hostStatusTable.values());
+    }
+
+    /**
+     * @return Closed outages in the order they closed, followed by those still open
+     */
+    public List<Outage> getOutages() {
+        final List<Outage> allOutages;
+        synchronized (this.outages) {
+            allOutages = new ArrayList<Outage>(this.outages);
+        }
+        for (final OutageStats outageStats : this.outageStatsTable.values()) {
+            final Date start = outageStats.getOpenOutageStart();
+            if (start != null) {
+                allOutages.add(new Outage(outageStats.getHost(), start, null, -1, -1));
+            }
+        }
+        return allOutages;
+    }
+
+    public long getFailuresLogged() {
+        return this.failuresLogged.get();
+    }
+
+    @Override
+    public void purgeStatusCache(Date before) {
+    }
+
+    @Override
+    public void purgeRequestLog(String host, Date before) {
+    }
+
+    @Override
+    public void purgeRequestLog(Date before) {
+    }
+
+    @Override
+    public void purgeFailureLog(Date before) {
+    }
+
+    @Override
+    public void purgeLatencyRollups(int resolution, Date before) {
+    }
+
+    @Override
+    public HostStatus getHostStatus(String hostName) {
+        HostStatus hostStatus = this.hostStatusTable.get(hostName);
+        if (hostStatus != null) {
+            return hostStatus;
+        }
+
+        hostStatus = new SimpleHostStatus();
+        hostStatus.setHost(hostName);
+        hostStatus.setLastUpdated(new Date());
+
+        final HostStatus existingStatus = this.hostStatusTable.putIfAbsent(hostName, hostStatus);
+        return existingStatus != null ? existingStatus : hostStatus;
+    }
+
+    @Override
+    public void storeHostStatus(HostStatus hostStatus) {
+        this.hostStatusTable.put(hostStatus.getHost(), hostStatus);
+    }
+
+    @Override
+    public void logFailure(String hostName, String label, Date requestTimestamp, Status status, String subject,
+            String body, Notification sentEmail) {
+        this.failuresLogged.incrementAndGet();
+    }
+
+    @Override
+    public void logRequest(String hostName, String label, Date requestTimestamp, long duration, boolean successful) {
+    }
+
+    @Override
+    public void logRequestAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, long duration,
+            boolean successful) {
+        this.storeHostStatus(hostStatus);
+    }
+
+    @Override
+    public void logFailureAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, Status status,
+            String subject, String body, Notification sentEmail) {
+        this.storeHostStatus(hostStatus);
+        this.failuresLogged.incrementAndGet();
+    }
+
+    @Override
+    public String claimNotification(String hostName, Status status, Date window, long windowLength) {
+        return null;
+    }
+
+    @Override
+    public void storeLatencyRollups(List<LatencyRollup> rollups) {
+    }
+
+    @Override
+    public void storeErrorCounts(List<ErrorSignatureCount> errorCounts) {
+    }
+
+    @Override
+    public void storeBurnRates(List<BurnRate> burnRates) {
+    }
+
+    @Override
+    public void storeClusterStatus(ClusterStatus clusterStatus) {
+    }
+
+    @Override
+    public void openOutage(String hostName, Date start) {
+        final OutageStats outageStats = this.getOutageStats(hostName);
+        synchronized (outageStats) {
+            if (outageStats.getOpenOutageStart() == null) {
+                outageStats.setOpenOutageStart(start);
+            }
+        }
+    }
+
+    @Override
+    public void closeOutage(String hostName, Date end, int failureCount, int messageCount) {
+        final OutageStats outageStats = this.getOutageStats(hostName);
+        final Date start;
+        synchronized (outageStats) {
+            start = outageStats.getOpenOutageStart();
+            if (outageStats.closeOutage(end) < 0) {
+                return;
+            }
+        }
+
+        synchronized (this.outages) {
+            this.outages.add(new Outage(hostName, start, end, failureCount, messageCount));
+        }
+    }
+
+    @Override
+    public OutageStats getOutageStats(String hostName) {
+        OutageStats outageStats = this.outageStatsTable.get(hostName);
+        if (outageStats != null) {
+            return outageStats;
+        }
+
+        outageStats = new OutageStats(hostName, new Date());
+        final OutageStats existing = this.outageStatsTable.putIfAbsent(hostName, outageStats);
+        return existing != null ? existing : outageStats;
+    }
+
+    public static final class Outage {
+        private final String host;
+        private final Date start;
+        private final Date end;
+        private final int failureCount;
+        private final int messageCount;
+
+        public Outage(String host, Date start, Date end, int failureCount, int messageCount) {
+            this.host = host;
+            this.start = start;
+            this.end = end;
+            this.failureCount = failureCount;
+            this.messageCount = messageCount;
+        }
+
+        public String getHost() {
+            return host;
+        }
+        public Date getStart() {
+            return start;
+        }
+        /**
+         * @return null if the outage is still open
+         */
+        public Date getEnd() {
+            return end;
+        }
+        /**
+         * @return Failures during the outage, -1 if it is still open
+         */
+        public int getFailureCount() {
+            return failureCount;
+        }
+        /**
+         * @return Messages sent during the outage, -1 if it is still open
+         */
+        public int getMessageCount() {
+            return messageCount;
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package edu.wisc.jmeter.dao;
 
 import java.util.Date;
+import java.util.List;
 
+import edu.wisc.jmeter.BurnRate;
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.ErrorSignatureCount;
 import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
 import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.OutageStats;
 import edu.wisc.jmeter.Status;
 
 public interface MonitorDao {
@@ -16,6 +22,8 @@ public interface MonitorDao {
 
     void purgeFailureLog(Date before);
 
+    void purgeLatencyRollups(int resolution, Date before);
+
     HostStatus getHostStatus(String hostName);
 
     void storeHostStatus(HostStatus hostStatus);
@@ -31,4 +39,53 @@ public interface MonitorDao {
     void logFailureAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, Status status, String subject,
             String body, Notification sentEmail);
 
+    /**
+     * Claim the notification for a host changing to status within the backoff window starting at
+     * window. Only one node sharing the storage can hold each claim, and a claim held by another
+     * node in the window before or after also wins so nodes crossing a window boundary on either
+     * side of it don't both notify.
+     * 
+     * @param windowLength Length of the backoff windows in milliseconds
+     * @return null if this node holds the claim, otherwise the id of the node that does
+     */
+    String claimNotification(String hostName, Status status, Date window, long windowLength);
+
+    void storeLatencyRollups(List<LatencyRollup> rollups);
+
+    /**
+     * Add the counts to any already stored for the same host, signature and interval
+     */
+    void storeErrorCounts(List<ErrorSignatureCount> errorCounts);
+
+    /**
+     * Store the current burn rates of the service groups this node tracks
+     */
+    void storeBurnRates(List<BurnRate> burnRates);
+
+    /**
+     * Store the status of a cluster, replacing any stored before
+     */
+    void storeClusterStatus(ClusterStatus clusterStatus);
+
+    /**
+     * Open an outage for the host starting at start, does nothing if the host already has an
+     * open outage
+     */
+    void openOutage(String hostName, Date start);
+
+    /**
+     * Close the host's open outage and add it to the host's {@link OutageStats}, does nothing if
+     * the host has no open outage
+     * 
+     * @param failureCount Failures seen during the outage
+     * @param messageCount Notifications sent during the outage
+     */
+    void closeOutage(String hostName, Date end, int failureCount, int messageCount);
+
+    /**
+     * The totals are never purged, so neither are the outages they are made from
+     */
+
+    OutageStats getOutageStats(String hostName);
+
 }
\ No newline at end of file
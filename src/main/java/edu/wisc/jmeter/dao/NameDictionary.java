@@ -0,0 +1,133 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maps names to numeric ids stored in a dictionary table, with an in-process cache in both
+ * directions. Ids are allocated as MAX + 1 in their own transaction, collisions with other nodes
+ * allocating at the same time are resolved by the table's primary and unique keys.
+ */
+class NameDictionary {
+    private static final int MAX_ALLOCATE_ATTEMPTS = 5;
+
+    private final ConcurrentMap<String, Long> ids = new ConcurrentHashMap<String, Long>();
+    private final ConcurrentMap<Long, String> names = new ConcurrentHashMap<Long, String>();
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String selectId;
+    private final String selectName;
+    private final String selectMaxId;
+    private final String insert;
+
+    public NameDictionary(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            String table, String idColumn, String nameColumn) {
+        this.jdbcTemplate = jdbcTemplate;
+
+        //Ids must be committed even if the transaction that needed them rolls back
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.selectId = "SELECT " + idColumn + " FROM " + table + " WHERE " + nameColumn + " = :name";
+        this.selectName = "SELECT " + nameColumn + " FROM " + table + " WHERE " + idColumn + " = :id";
+        this.selectMaxId = "SELECT MAX(" + idColumn + ") FROM " + table;
+        this.insert = "INSERT INTO " + table + " (" + idColumn + ", " + nameColumn + ") VALUES (:id, :name)";
+    }
+
+    /**
+     * Get the id for the name, allocating a new one if the name has never been seen
+     */
+    public long getId(final String name) {
+        final Long cachedId = this.ids.get(name);
+        if (cachedId != null) {
+            return cachedId;
+        }
+
+        final Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("name", name);
+
+        for (int attempt = 0; attempt < MAX_ALLOCATE_ATTEMPTS; attempt++) {
+            try {
+                final Long id = this.transactionTemplate.execute(new TransactionCallback<Long>() {
+                    @Override
+                    public Long doInTransaction(TransactionStatus transactionStatus) {
+                        final Long existingId = DataAccessUtils.singleResult(jdbcTemplate.queryForList(selectId, params, Long.class));
+                        if (existingId != null) {
+                            return existingId;
+                        }
+
+                        final Long maxId = jdbcTemplate.queryForObject(selectMaxId, params, Long.class);
+                        final long newId = maxId == null ? 1 : maxId + 1;
+                        params.put("id", newId);
+                        jdbcTemplate.update(insert, params);
+                        return newId;
+                    }
+                });
+
+                this.cache(name, id);
+                return id;
+            }
+            catch (DataIntegrityViolationException e) {
+                //Another node allocated the same id or the same name, look again
+            }
+        }
+
+        throw new IllegalStateException("Failed to allocate an id for '" + name + "' after " + MAX_ALLOCATE_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Get the name for an id
+     *
+     * @return null if the id is not in the dictionary
+     */
+    public String getName(long id) {
+        final String cachedName = this.names.get(id);
+        if (cachedName != null) {
+            return cachedName;
+        }
+
+        final Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("id", id);
+
+        final String name = DataAccessUtils.singleResult(this.jdbcTemplate.queryForList(this.selectName, params, String.class));
+        if (name != null) {
+            this.cache(name, id);
+        }
+        return name;
+    }
+
+    private void cache(String name, long id) {
+        this.ids.put(name, id);
+        this.names.put(id, name);
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.dao;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Append-only, tab delimited log split into one file per hour. Retention is handled by deleting
+ * whole segments instead of rewriting files.
+ */
+class SegmentedLog {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    static final long SEGMENT_DURATION = TimeUnit.MILLISECONDS.convert(1, TimeUnit.HOURS);
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final SimpleDateFormat segmentFormat = new SimpleDateFormat("yyyyMMddHH");
+    private final SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+    private final File directory;
+    private final String name;
+
+    private long segmentStart = -1;
+    private Writer writer;
+
+    public SegmentedLog(File directory, String name) {
+        this.directory = directory;
+        this.name = name;
+
+        //Segment names are in UTC so they line up with the epoch based segment boundaries
+        this.segmentFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Append a record, the first field is the record timestamp and the remaining fields are escaped strings
+     */
+    public synchronized void append(Date timestamp, Object... fields) throws IOException {
+        final long now = System.currentTimeMillis();
+        final long start = now - (now % SEGMENT_DURATION);
+        if (this.writer == null || start != this.segmentStart) {
+            this.closeSegment();
+
+            final File segmentFile = new File(this.directory, this.name + "." + this.segmentFormat.format(new Date(start)) + SEGMENT_SUFFIX);
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(segmentFile, true), "UTF-8"));
+            this.segmentStart = start;
+        }
+
+        this.writer.write(this.timestampFormat.format(timestamp));
+        for (final Object field : fields) {
+            this.writer.write('\t');
+            if (field != null) {
+                this.writer.write(escape(field.toString()));
+            }
+        }
+        this.writer.write('\n');
+    }
+
+    public synchronized void flush() throws IOException {
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+    }
+
+    public synchronized void close() {
+        this.closeSegment();
+    }
+
+    /**
+     * Delete all segments that only contain records older than before
+     *
+     * @return The number of segments deleted
+     */
+    public synchronized int purge(Date before) {
+        final File[] files = this.directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        int purged = 0;
+        for (final File file : files) {
+            final long start = this.getSegmentStart(file);
+            if (start < 0 || start + SEGMENT_DURATION > before.getTime()) {
+                continue;
+            }
+
+            if (start == this.segmentStart) {
+                this.closeSegment();
+            }
+
+            if (file.delete()) {
+                purged++;
+            }
+            else {
+                log.warn("Failed to delete expired log segment " + file);
+            }
+        }
+
+        return purged;
+    }
+
+    private long getSegmentStart(File file) {
+        final String fileName = file.getName();
+        final String prefix = this.name + ".";
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+
+        final String segment = fileName.substring(prefix.length(), fileName.length() - SEGMENT_SUFFIX.length());
+        try {
+            return this.segmentFormat.parse(segment).getTime();
+        }
+        catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    private void closeSegment() {
+        IOUtils.closeQuietly(this.writer);
+        this.writer = null;
+        this.segmentStart = -1;
+    }
+
+    /**
+     * Escapes characters that would break the one record per line, tab delimited format
+     */
+    static String escape(String value) {
+        final StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    static String unescape(String value) {
+        final StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                final char next = value.charAt(++i);
+                switch (next) {
+                    case 't': unescaped.append('\t'); break;
+                    case 'n': unescaped.append('\n'); break;
+                    case 'r': unescaped.append('\r'); break;
+                    default: unescaped.append(next);
+                }
+            }
+            else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
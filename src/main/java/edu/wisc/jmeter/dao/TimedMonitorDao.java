@@ -0,0 +1,297 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.dao;
+
+import java.util.Date;
+import java.util.List;
+
+import edu.wisc.jmeter.BurnRate;
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.ErrorSignatureCount;
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
+import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.OutageStats;
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.metrics.MetricsRegistry;
+import edu.wisc.jmeter.metrics.StripedTimer;
+
+/**
+ * Wraps another {@link MonitorDao} timing every call in a dao.&lt;method&gt; timer, calls that
+ * throw are timed too. The timers are looked up once so timing a call doesn't touch the registry.
+ */
+public class TimedMonitorDao implements MonitorDao {
+    private final MonitorDao monitorDao;
+    private final StripedTimer purgeStatusCacheTimer;
+    private final StripedTimer purgeHostRequestLogTimer;
+    private final StripedTimer purgeRequestLogTimer;
+    private final StripedTimer purgeFailureLogTimer;
+    private final StripedTimer purgeLatencyRollupsTimer;
+    private final StripedTimer getHostStatusTimer;
+    private final StripedTimer storeHostStatusTimer;
+    private final StripedTimer logFailureTimer;
+    private final StripedTimer logRequestTimer;
+    private final StripedTimer logRequestAndStatusTimer;
+    private final StripedTimer logFailureAndStatusTimer;
+    private final StripedTimer claimNotificationTimer;
+    private final StripedTimer storeLatencyRollupsTimer;
+    private final StripedTimer storeErrorCountsTimer;
+    private final StripedTimer storeBurnRatesTimer;
+    private final StripedTimer storeClusterStatusTimer;
+    private final StripedTimer openOutageTimer;
+    private final StripedTimer closeOutageTimer;
+    private final StripedTimer getOutageStatsTimer;
+
+    public TimedMonitorDao(MonitorDao monitorDao, MetricsRegistry metricsRegistry) {
+        this.monitorDao = monitorDao;
+        this.purgeStatusCacheTimer = metricsRegistry.timer("dao.purgeStatusCache");
+        this.purgeHostRequestLogTimer = metricsRegistry.timer("dao.purgeHostRequestLog");
+        this.purgeRequestLogTimer = metricsRegistry.timer("dao.purgeRequestLog");
+        this.purgeFailureLogTimer = metricsRegistry.timer("dao.purgeFailureLog");
+        this.purgeLatencyRollupsTimer = metricsRegistry.timer("dao.purgeLatencyRollups");
+        this.getHostStatusTimer = metricsRegistry.timer("dao.getHostStatus");
+        this.storeHostStatusTimer = metricsRegistry.timer("dao.storeHostStatus");
+        this.logFailureTimer = metricsRegistry.timer("dao.logFailure");
+        this.logRequestTimer = metricsRegistry.timer("dao.logRequest");
+        this.logRequestAndStatusTimer = metricsRegistry.timer("dao.logRequestAndStatus");
+        this.logFailureAndStatusTimer = metricsRegistry.timer("dao.logFailureAndStatus");
+        this.claimNotificationTimer = metricsRegistry.timer("dao.claimNotification");
+        this.storeLatencyRollupsTimer = metricsRegistry.timer("dao.storeLatencyRollups");
+        this.storeErrorCountsTimer = metricsRegistry.timer("dao.storeErrorCounts");
+        this.storeBurnRatesTimer = metricsRegistry.timer("dao.storeBurnRates");
+        this.storeClusterStatusTimer = metricsRegistry.timer("dao.storeClusterStatus");
+        this.openOutageTimer = metricsRegistry.timer("dao.openOutage");
+        this.closeOutageTimer = metricsRegistry.timer("dao.closeOutage");
+        this.getOutageStatsTimer = metricsRegistry.timer("dao.getOutageStats");
+    }
+
+    @Override
+    public void purgeStatusCache(Date before) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.purgeStatusCache(before);
+        }
+        finally {
+            this.purgeStatusCacheTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void purgeRequestLog(String host, Date before) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.purgeRequestLog(host, before);
+        }
+        finally {
+            this.purgeHostRequestLogTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void purgeRequestLog(Date before) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.purgeRequestLog(before);
+        }
+        finally {
+            this.purgeRequestLogTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void purgeFailureLog(Date before) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.purgeFailureLog(before);
+        }
+        finally {
+            this.purgeFailureLogTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void purgeLatencyRollups(int resolution, Date before) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.purgeLatencyRollups(resolution, before);
+        }
+        finally {
+            this.purgeLatencyRollupsTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public HostStatus getHostStatus(String hostName) {
+        final long startNanos = System.nanoTime();
+        try {
+            return this.monitorDao.getHostStatus(hostName);
+        }
+        finally {
+            this.getHostStatusTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void storeHostStatus(HostStatus hostStatus) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.storeHostStatus(hostStatus);
+        }
+        finally {
+            this.storeHostStatusTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void logFailure(String hostName, String label, Date requestTimestamp, Status status, String subject, String body,
+            Notification sentEmail) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.logFailure(hostName, label, requestTimestamp, status, subject, body, sentEmail);
+        }
+        finally {
+            this.logFailureTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void logRequest(String hostName, String label, Date requestTimestamp, long duration, boolean successful) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.logRequest(hostName, label, requestTimestamp, duration, successful);
+        }
+        finally {
+            this.logRequestTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void logRequestAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, long duration,
+            boolean successful) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.logRequestAndStatus(hostStatus, label, requestTimestamp, duration, successful);
+        }
+        finally {
+            this.logRequestAndStatusTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void logFailureAndStatus(HostStatus hostStatus, String label, Date requestTimestamp, Status status, String subject,
+            String body, Notification sentEmail) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.logFailureAndStatus(hostStatus, label, requestTimestamp, status, subject, body, sentEmail);
+        }
+        finally {
+            this.logFailureAndStatusTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public String claimNotification(String hostName, Status status, Date window, long windowLength) {
+        final long startNanos = System.nanoTime();
+        try {
+            return this.monitorDao.claimNotification(hostName, status, window, windowLength);
+        }
+        finally {
+            this.claimNotificationTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void storeLatencyRollups(List<LatencyRollup> rollups) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.storeLatencyRollups(rollups);
+        }
+        finally {
+            this.storeLatencyRollupsTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void storeErrorCounts(List<ErrorSignatureCount> errorCounts) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.storeErrorCounts(errorCounts);
+        }
+        finally {
+            this.storeErrorCountsTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void storeBurnRates(List<BurnRate> burnRates) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.storeBurnRates(burnRates);
+        }
+        finally {
+            this.storeBurnRatesTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void storeClusterStatus(ClusterStatus clusterStatus) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.storeClusterStatus(clusterStatus);
+        }
+        finally {
+            this.storeClusterStatusTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void openOutage(String hostName, Date start) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.openOutage(hostName, start);
+        }
+        finally {
+            this.openOutageTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public void closeOutage(String hostName, Date end, int failureCount, int messageCount) {
+        final long startNanos = System.nanoTime();
+        try {
+            this.monitorDao.closeOutage(hostName, end, failureCount, messageCount);
+        }
+        finally {
+            this.closeOutageTimer.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public OutageStats getOutageStats(String hostName) {
+        final long startNanos = System.nanoTime();
+        try {
+            return this.monitorDao.getOutageStats(hostName);
+        }
+        finally {
+            this.getOutageStatsTimer.recordSince(startNanos);
+        }
+    }
+}
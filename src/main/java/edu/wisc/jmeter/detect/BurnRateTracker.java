@@ -0,0 +1,207 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.detect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.wisc.jmeter.BurnRate;
+
+/**
+ * Tracks how fast each {@link ServiceGroup} is spending its error budget over a short, medium
+ * and long window. A group is burning when both the medium and short windows burn faster than
+ * {@link #FAST_BURN_RATE} or both the long and medium windows burn faster than
+ * {@link #SLOW_BURN_RATE}. Requiring the shorter window too means a burst that has already
+ * stopped doesn't keep the group burning until it ages out of the longer one. A window needs
+ * {@link #MIN_WINDOW_REQUESTS} samples before its burn rate counts so a handful of requests with
+ * one failure isn't a burn, and {@link #update(long)} lets a group that has gone quiet stop
+ * burning without waiting for its next sample.
+ * <p>
+ * Each sample costs two map lookups for its groups plus a bounded update of each group's windows,
+ * the groups matching a host and label are only worked out the first time they are seen. At most
+ * {@link #MAX_CACHED_MATCHES} host and label pairs are cached, the cache starts over past that.
+ */
+public class BurnRateTracker {
+    public static final long SHORT_WINDOW = TimeUnit.MILLISECONDS.convert(5, TimeUnit.MINUTES);
+    public static final long MEDIUM_WINDOW = TimeUnit.MILLISECONDS.convert(1, TimeUnit.HOURS);
+    public static final long LONG_WINDOW = TimeUnit.MILLISECONDS.convert(6, TimeUnit.HOURS);
+    
+    //Spends 2% of a 30 day budget in an hour and 5% in 6 hours respectively
+    public static final double FAST_BURN_RATE = 14.4;
+    public static final double SLOW_BURN_RATE = 6;
+    
+    public static final int MIN_WINDOW_REQUESTS = 10;
+    public static final int MAX_CACHED_MATCHES = 10000;
+
+    private static final GroupState[] NO_GROUPS = new GroupState[0];
+
+    private final List<GroupState> groups = new ArrayList<GroupState>();
+    private final ConcurrentMap<String, ConcurrentMap<String, GroupState[]>> matches = new ConcurrentHashMap<String, ConcurrentMap<String, GroupState[]>>();
+    private final AtomicInteger cachedMatches = new AtomicInteger();
+
+    public BurnRateTracker(List<ServiceGroup> serviceGroups) {
+        for (final ServiceGroup serviceGroup : serviceGroups) {
+            this.groups.add(new GroupState(serviceGroup));
+        }
+    }
+
+    /**
+     * Count a sample towards the groups its host and label belong to
+     * 
+     * @return The burn rates of groups that started or stopped burning with this sample, usually empty
+     */
+    public List<BurnRate> record(String host, String label, long time, boolean successful) {
+        List<BurnRate> changed = Collections.emptyList();
+        for (final GroupState group : this.getGroups(host, label)) {
+            if (group.record(time, successful)) {
+                if (changed.isEmpty()) {
+                    changed = new ArrayList<BurnRate>(1);
+                }
+                changed.add(group.getBurnRate(time));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Move every group's windows forward to now, for groups that haven't seen a sample in a while
+     * 
+     * @return The burn rates of groups that started or stopped burning as of now, usually empty
+     */
+    public List<BurnRate> update(long now) {
+        List<BurnRate> changed = Collections.emptyList();
+        for (final GroupState group : this.groups) {
+            if (group.update(now)) {
+                if (changed.isEmpty()) {
+                    changed = new ArrayList<BurnRate>(1);
+                }
+                changed.add(group.getBurnRate(now));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return The burn rates of every group as of now
+     */
+    public List<BurnRate> getBurnRates(long now) {
+        final List<BurnRate> burnRates = new ArrayList<BurnRate>(this.groups.size());
+        for (final GroupState group : this.groups) {
+            burnRates.add(group.getBurnRate(now));
+        }
+        return burnRates;
+    }
+
+    private GroupState[] getGroups(String host, String label) {
+        ConcurrentMap<String, GroupState[]> labelMatches = this.matches.get(host);
+        if (labelMatches == null) {
+            labelMatches = new ConcurrentHashMap<String, GroupState[]>();
+            final ConcurrentMap<String, GroupState[]> existing = this.matches.putIfAbsent(host, labelMatches);
+            if (existing != null) {
+                labelMatches = existing;
+            }
+        }
+
+        GroupState[] groups = labelMatches.get(label);
+        if (groups == null) {
+            final List<GroupState> matching = new ArrayList<GroupState>();
+            for (final GroupState group : this.groups) {
+                if (group.serviceGroup.matches(host, label)) {
+                    matching.add(group);
+                }
+            }
+            groups = matching.isEmpty() ? NO_GROUPS : matching.toArray(new GroupState[matching.size()]);
+            
+            //Hosts and labels that churn would otherwise grow the cache forever
+            if (this.cachedMatches.incrementAndGet() > MAX_CACHED_MATCHES) {
+                this.matches.clear();
+                this.cachedMatches.set(0);
+            }
+            labelMatches.put(label, groups);
+        }
+        return groups;
+    }
+
+    private static final class GroupState {
+        private final ServiceGroup serviceGroup;
+        private final ErrorRateWindow shortWindow = new ErrorRateWindow(SHORT_WINDOW, 30);
+        private final ErrorRateWindow mediumWindow = new ErrorRateWindow(MEDIUM_WINDOW, 60);
+        private final ErrorRateWindow longWindow = new ErrorRateWindow(LONG_WINDOW, 72);
+        private boolean burning = false;
+
+        public GroupState(ServiceGroup serviceGroup) {
+            this.serviceGroup = serviceGroup;
+        }
+
+        /**
+         * @return true if the group started or stopped burning
+         */
+        public synchronized boolean record(long time, boolean successful) {
+            this.shortWindow.record(time, successful);
+            this.mediumWindow.record(time, successful);
+            this.longWindow.record(time, successful);
+            return this.evaluate();
+        }
+
+        /**
+         * @return true if the group started or stopped burning
+         */
+        public synchronized boolean update(long now) {
+            this.shortWindow.advanceTo(now);
+            this.mediumWindow.advanceTo(now);
+            this.longWindow.advanceTo(now);
+            return this.evaluate();
+        }
+
+        private boolean evaluate() {
+            final boolean burning = (this.isBurning(this.mediumWindow, FAST_BURN_RATE) && this.isBurning(this.shortWindow, FAST_BURN_RATE)) ||
+                    (this.isBurning(this.longWindow, SLOW_BURN_RATE) && this.isBurning(this.mediumWindow, SLOW_BURN_RATE));
+
+            final boolean changed = burning != this.burning;
+            this.burning = burning;
+            return changed;
+        }
+
+        public synchronized BurnRate getBurnRate(long now) {
+            this.shortWindow.advanceTo(now);
+            this.mediumWindow.advanceTo(now);
+            this.longWindow.advanceTo(now);
+
+            return new BurnRate(this.serviceGroup.getName(), this.serviceGroup.getSloTarget(), 
+                    this.getBurnRate(this.shortWindow), this.getBurnRate(this.mediumWindow), this.getBurnRate(this.longWindow), 
+                    this.burning, new Date(now));
+        }
+
+        private boolean isBurning(ErrorRateWindow window, double threshold) {
+            return window.getSuccesses() + window.getFailures() >= MIN_WINDOW_REQUESTS && this.getBurnRate(window) > threshold;
+        }
+
+        private double getBurnRate(ErrorRateWindow window) {
+            return window.getErrorRate() / (1 - this.serviceGroup.getSloTarget());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.detect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A group of hosts serving the same application. The cluster is degraded when enough of its
+ * in service hosts are down, either a number of hosts or a percentage of them.
+ */
+public class Cluster {
+    private final String name;
+    private final int degradedThreshold;
+    private final boolean thresholdPercent;
+    private final List<Pattern> hostPatterns;
+
+    /**
+     * @param degradedThreshold Down hosts that make the cluster degraded, at least 1
+     * @param thresholdPercent If the threshold is a percentage of the in service hosts instead of a number of hosts
+     */
+    public Cluster(String name, int degradedThreshold, boolean thresholdPercent, List<Pattern> hostPatterns) {
+        if (degradedThreshold < 1) {
+            throw new IllegalArgumentException("Degraded threshold for " + name + " must be at least 1: " + degradedThreshold);
+        }
+        this.name = name;
+        this.degradedThreshold = degradedThreshold;
+        this.thresholdPercent = thresholdPercent;
+        this.hostPatterns = hostPatterns;
+    }
+
+    /**
+     * Parse cluster definitions, one per line or separated by ';'. Each is the cluster name, the
+     * number of down hosts that make it degraded (or a percentage like 30%) and a comma separated
+     * list of host names or regexes separated by whitespace, for example:
+     * <code>portal 30% portal\d+\.example\.edu</code> or <code>mail 2 mail1.example.edu,mail2.example.edu</code>
+     */
+    public static List<Cluster> parse(String definitions) {
+        if (definitions == null) {
+            return Collections.emptyList();
+        }
+
+        final List<Cluster> clusters = new ArrayList<Cluster>();
+        for (final String definition : definitions.split("[;\\n]")) {
+            final String trimmed = definition.trim();
+            if (trimmed.length() == 0) {
+                continue;
+            }
+
+            final String[] fields = trimmed.split("\\s+");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Cluster must have a name, degraded threshold and host list: " + trimmed);
+            }
+
+            final boolean thresholdPercent = fields[1].endsWith("%");
+            final int threshold;
+            try {
+                threshold = Integer.parseInt(thresholdPercent ? fields[1].substring(0, fields[1].length() - 1) : fields[1]);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cluster degraded threshold is not a number: " + trimmed, e);
+            }
+
+            final List<Pattern> hostPatterns = new ArrayList<Pattern>();
+            for (final String host : fields[2].split(",")) {
+                if (host.length() > 0) {
+                    hostPatterns.add(Pattern.compile(host));
+                }
+            }
+            clusters.add(new Cluster(fields[0], threshold, thresholdPercent, hostPatterns));
+        }
+        return clusters;
+    }
+
+    public boolean matches(String host) {
+        for (final Pattern hostPattern : this.hostPatterns) {
+            if (hostPattern.matcher(host).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Down hosts needed to make the cluster degraded with hostCount hosts in service
+     */
+    public int getDegradedThreshold(int hostCount) {
+        if (!this.thresholdPercent) {
+            return this.degradedThreshold;
+        }
+        return Math.max(1, (hostCount * this.degradedThreshold + 99) / 100);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "Cluster [name=" + name + ", degradedThreshold=" + degradedThreshold + (thresholdPercent ? "%" : "")
+                + ", hostPatterns=" + hostPatterns + "]";
+    }
+}
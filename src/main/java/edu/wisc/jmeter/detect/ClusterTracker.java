@@ -0,0 +1,162 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.detect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.Status;
+
+/**
+ * Keeps the health of each {@link Cluster} up to date from the status of its hosts. Each cluster
+ * counts its in service and down hosts, a host status update only changes the counts when the
+ * host moves between up, down and out of service so nothing is ever recounted. Hosts become
+ * members the first time their status is seen and stop being members when they are removed.
+ * <p>
+ * Only {@link Status#DOWN} counts as down, a flapping or degraded host is still answering. Callers
+ * should only pass DOWN once they consider the host down rather than on its first failure.
+ */
+public class ClusterTracker {
+    private static final ClusterState[] NO_CLUSTERS = new ClusterState[0];
+
+    private final List<ClusterState> clusters = new ArrayList<ClusterState>();
+    private final ConcurrentMap<String, ClusterState[]> memberships = new ConcurrentHashMap<String, ClusterState[]>();
+
+    public ClusterTracker(List<Cluster> clusters) {
+        for (final Cluster cluster : clusters) {
+            this.clusters.add(new ClusterState(cluster));
+        }
+    }
+
+    /**
+     * Update the clusters the host belongs to with its current status
+     * 
+     * @return The status of clusters whose host counts changed, usually empty
+     */
+    public List<ClusterStatus> update(String host, Status status, long time) {
+        List<ClusterStatus> changed = Collections.emptyList();
+        for (final ClusterState cluster : this.getClusters(host)) {
+            final ClusterStatus clusterStatus = cluster.update(host, status, time);
+            if (clusterStatus != null) {
+                if (changed.isEmpty()) {
+                    changed = new ArrayList<ClusterStatus>(1);
+                }
+                changed.add(clusterStatus);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Drop the hosts from the clusters they belong to, for hosts that are no longer monitored
+     * 
+     * @return The status of clusters whose host counts changed
+     */
+    public List<ClusterStatus> remove(Collection<String> hosts, long time) {
+        List<ClusterStatus> changed = Collections.emptyList();
+        for (final String host : hosts) {
+            final ClusterState[] clusters = this.memberships.remove(host);
+            if (clusters == null) {
+                continue;
+            }
+            for (final ClusterState cluster : clusters) {
+                final ClusterStatus clusterStatus = cluster.update(host, null, time);
+                if (clusterStatus != null) {
+                    if (changed.isEmpty()) {
+                        changed = new ArrayList<ClusterStatus>(1);
+                    }
+                    changed.add(clusterStatus);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private ClusterState[] getClusters(String host) {
+        ClusterState[] clusters = this.memberships.get(host);
+        if (clusters == null) {
+            final List<ClusterState> matching = new ArrayList<ClusterState>();
+            for (final ClusterState cluster : this.clusters) {
+                if (cluster.cluster.matches(host)) {
+                    matching.add(cluster);
+                }
+            }
+            clusters = matching.isEmpty() ? NO_CLUSTERS : matching.toArray(new ClusterState[matching.size()]);
+            this.memberships.put(host, clusters);
+        }
+        return clusters;
+    }
+
+    private static final class ClusterState {
+        private final Cluster cluster;
+        //In service hosts and if they are down, hosts out of service are left out
+        private final Map<String, Boolean> hosts = new HashMap<String, Boolean>();
+        private int downCount = 0;
+        private Status status = Status.UP;
+
+        public ClusterState(Cluster cluster) {
+            this.cluster = cluster;
+        }
+
+        /**
+         * @param hostStatus null to remove the host
+         * @return The new cluster status if the host counts changed, null if not
+         */
+        public synchronized ClusterStatus update(String host, Status hostStatus, long time) {
+            final Boolean down = hostStatus == null || hostStatus.isOut() ? null : hostStatus == Status.DOWN;
+            final Boolean wasDown = down == null ? this.hosts.remove(host) : this.hosts.put(host, down);
+            if (down == wasDown || (down != null && down.equals(wasDown))) {
+                return null;
+            }
+
+            if (Boolean.TRUE.equals(wasDown)) {
+                this.downCount--;
+            }
+            if (Boolean.TRUE.equals(down)) {
+                this.downCount++;
+            }
+
+            final int hostCount = this.hosts.size();
+            final Status status;
+            if (this.downCount > 0 && this.downCount == hostCount) {
+                status = Status.DOWN;
+            }
+            else if (this.downCount > 0 && this.downCount >= this.cluster.getDegradedThreshold(hostCount)) {
+                status = Status.DEGRADED;
+            }
+            else {
+                status = Status.UP;
+            }
+
+            final Status previousStatus = this.status;
+            this.status = status;
+            return new ClusterStatus(this.cluster.getName(), status, previousStatus, hostCount, this.downCount, new Date(time));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.detect;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides if a host is failing from its error rate over a sliding {@link ErrorRateWindow}. A host
+ * trips once the rate reaches the trip rate with at least the minimum number of failures in the
+ * window and clears once the rate drops to the clear rate or it answers enough requests in a row,
+ * so hosts failing a steady share of requests stay tripped even though individual requests
+ * succeed while a host that recovered clears without waiting for its failures to age out.
+ */
+public class ErrorRateDetector {
+    public static final int DEFAULT_BUCKETS = 30;
+
+    private final ConcurrentMap<String, HostWindow> windows = new ConcurrentHashMap<String, HostWindow>();
+    private final long windowLength;
+    private final int buckets;
+    private final double tripRate;
+    private final double clearRate;
+    private final int minFailures;
+    private final int clearSuccesses;
+
+    /**
+     * @param windowLength Length of the window in ms
+     * @param tripRate Error rate, 0 - 1, at which a host trips
+     * @param clearRate Error rate, 0 - 1, at or below which a tripped host clears
+     * @param minFailures Failures needed in the window before a host can trip
+     * @param clearSuccesses Successes in a row that clear a tripped host whatever its error rate
+     */
+    public ErrorRateDetector(long windowLength, double tripRate, double clearRate, int minFailures, int clearSuccesses) {
+        this(windowLength, DEFAULT_BUCKETS, tripRate, clearRate, minFailures, clearSuccesses);
+    }
+
+    public ErrorRateDetector(long windowLength, int buckets, double tripRate, double clearRate, int minFailures, int clearSuccesses) {
+        if (clearRate > tripRate) {
+            throw new IllegalArgumentException("clearRate " + clearRate + " must not be greater than tripRate " + tripRate);
+        }
+        this.windowLength = windowLength;
+        this.buckets = buckets;
+        this.tripRate = tripRate;
+        this.clearRate = clearRate;
+        this.minFailures = minFailures;
+        this.clearSuccesses = Math.max(clearSuccesses, 1);
+    }
+
+    /**
+     * Record a sample for the host
+     *
+     * @param time Time of the sample in ms, windows move with sample time not wall time
+     * @return true if the host is tripped after the sample
+     */
+    public boolean record(String host, long time, boolean successful) {
+        final HostWindow hostWindow = this.getHostWindow(host);
+        synchronized (hostWindow) {
+            hostWindow.record(time, successful);
+            hostWindow.consecutiveSuccesses = successful ? hostWindow.consecutiveSuccesses + 1 : 0;
+
+            final double errorRate = hostWindow.getErrorRate();
+            if (hostWindow.tripped) {
+                hostWindow.tripped = errorRate > this.clearRate && hostWindow.consecutiveSuccesses < this.clearSuccesses;
+            }
+            else {
+                hostWindow.tripped = errorRate >= this.tripRate && hostWindow.getFailures() >= this.minFailures;
+            }
+            return hostWindow.tripped;
+        }
+    }
+
+    /**
+     * @return The error rate, 0 - 1, over the host's window
+     */
+    public double getErrorRate(String host) {
+        final HostWindow hostWindow = this.windows.get(host);
+        if (hostWindow == null) {
+            return 0;
+        }
+        return hostWindow.getErrorRate();
+    }
+
+    /**
+     * Drop the windows of the hosts
+     */
+    public void remove(Collection<String> hosts) {
+        for (final String host : hosts) {
+            this.windows.remove(host);
+        }
+    }
+
+    /**
+     * @return Number of hosts with a window
+     */
+    public int getHostCount() {
+        return this.windows.size();
+    }
+
+    public long getWindowLength() {
+        return this.windowLength;
+    }
+
+    private HostWindow getHostWindow(String host) {
+        HostWindow hostWindow = this.windows.get(host);
+        if (hostWindow == null) {
+            hostWindow = new HostWindow(this.windowLength, this.buckets);
+            final HostWindow existing = this.windows.putIfAbsent(host, hostWindow);
+            if (existing != null) {
+                hostWindow = existing;
+            }
+        }
+        return hostWindow;
+    }
+
+    /**
+     * Window plus trip state, both guarded by the window's lock
+     */
+    private static final class HostWindow extends ErrorRateWindow {
+        private boolean tripped = false;
+        private int consecutiveSuccesses = 0;
+
+        public HostWindow(long windowLength, int buckets) {
+            super(windowLength, buckets);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.detect;
+
+/**
+ * Success and failure counts over a sliding window, kept in a ring of fixed length time buckets
+ * with running totals. Recording never allocates and touches at most one lap of the ring, so the
+ * cost per sample is bounded by the bucket count no matter how long the window has been idle.
+ * <p>
+ * Time only moves forward with the newest sample seen, samples older than the window are ignored.
+ */
+public class ErrorRateWindow {
+    private final long bucketLength;
+    private final int[] successes;
+    private final int[] failures;
+    private long currentBucket = Long.MIN_VALUE;
+    private int totalSuccesses = 0;
+    private int totalFailures = 0;
+
+    /**
+     * @param windowLength Length of the window in ms
+     * @param buckets Number of buckets the window is split into
+     */
+    public ErrorRateWindow(long windowLength, int buckets) {
+        if (buckets < 1 || windowLength < buckets) {
+            throw new IllegalArgumentException("windowLength " + windowLength + " must be at least buckets " + buckets + " and buckets must be positive");
+        }
+        this.bucketLength = windowLength / buckets;
+        this.successes = new int[buckets];
+        this.failures = new int[buckets];
+    }
+
+    public synchronized void record(long time, boolean successful) {
+        final long bucket = time / this.bucketLength;
+        if (bucket > this.currentBucket) {
+            this.advance(bucket);
+        }
+        else if (bucket <= this.currentBucket - this.successes.length) {
+            //Fell out of the window before it arrived
+            return;
+        }
+
+        final int slot = (int)(bucket % this.successes.length);
+        if (successful) {
+            this.successes[slot]++;
+            this.totalSuccesses++;
+        }
+        else {
+            this.failures[slot]++;
+            this.totalFailures++;
+        }
+    }
+
+    /**
+     * Move the window forward to time without recording a sample, so a window that has gone
+     * quiet stops reporting the samples it saw before
+     */
+    public synchronized void advanceTo(long time) {
+        final long bucket = time / this.bucketLength;
+        if (bucket > this.currentBucket) {
+            this.advance(bucket);
+        }
+    }
+
+    public synchronized int getSuccesses() {
+        return this.totalSuccesses;
+    }
+
+    public synchronized int getFailures() {
+        return this.totalFailures;
+    }
+
+    /**
+     * @return Failures over all samples in the window, 0 if there are none
+     */
+    public synchronized double getErrorRate() {
+        final int total = this.totalSuccesses + this.totalFailures;
+        if (total == 0) {
+            return 0;
+        }
+        return (double)this.totalFailures / total;
+    }
+
+    /**
+     * Clear the buckets passed over on the way to the new current bucket
+     */
+    private void advance(long bucket) {
+        final long cleared = Math.min(bucket - this.currentBucket, this.successes.length);
+        for (long i = 0; i < cleared; i++) {
+            final int slot = (int)((bucket - i) % this.successes.length);
+            this.totalSuccesses -= this.successes[slot];
+            this.totalFailures -= this.failures[slot];
+            this.successes[slot] = 0;
+            this.failures[slot] = 0;
+        }
+        this.currentBucket = bucket;
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.detect;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Detects hosts flapping between up and down. The times of each host's recent transitions are
+ * kept in a small ring, the flap score is the sum of the transitions weighted from 1 for a
+ * transition just now down to 0 for one a full window ago. A host starts flapping when the score
+ * reaches the start score and stops once it decays to the stop score.
+ */
+public class FlapDetector {
+    private final ConcurrentMap<String, HostTransitions> hosts = new ConcurrentHashMap<String, HostTransitions>();
+    private final long window;
+    private final double startScore;
+    private final double stopScore;
+    private final int ringSize;
+
+    /**
+     * @param window Time in ms over which transitions count towards the score
+     * @param startScore Score at which a host starts flapping
+     * @param stopScore Score at or below which a flapping host stops
+     */
+    public FlapDetector(long window, double startScore, double stopScore) {
+        if (stopScore > startScore) {
+            throw new IllegalArgumentException("stopScore " + stopScore + " must not be greater than startScore " + startScore);
+        }
+        this.window = window;
+        this.startScore = startScore;
+        this.stopScore = stopScore;
+        
+        //Enough transitions to reach the start score even with some decay
+        this.ringSize = Math.max(16, (int)Math.ceil(startScore) * 2);
+    }
+
+    /**
+     * Record the current state of the host, a transition is counted whenever it differs from the
+     * last recorded state
+     *
+     * @param time Time of the sample in ms
+     * @return true if the host is flapping
+     */
+    public boolean record(String host, long time, boolean up) {
+        final HostTransitions hostTransitions = this.getHostTransitions(host);
+        synchronized (hostTransitions) {
+            final boolean changed = up != hostTransitions.up;
+            if (changed) {
+                hostTransitions.up = up;
+                hostTransitions.times[hostTransitions.next] = time;
+                hostTransitions.next = (hostTransitions.next + 1) % this.ringSize;
+                hostTransitions.count = Math.min(hostTransitions.count + 1, this.ringSize);
+            }
+            else if (!hostTransitions.flapping) {
+                //Score only goes down without a transition, nothing to start
+                return false;
+            }
+
+            final double score = this.getScore(hostTransitions, time);
+            if (hostTransitions.flapping) {
+                hostTransitions.flapping = score > this.stopScore;
+            }
+            else {
+                hostTransitions.flapping = score >= this.startScore;
+            }
+            return hostTransitions.flapping;
+        }
+    }
+
+    /**
+     * @return The host's flap score as of the time
+     */
+    public double getScore(String host, long time) {
+        final HostTransitions hostTransitions = this.hosts.get(host);
+        if (hostTransitions == null) {
+            return 0;
+        }
+        synchronized (hostTransitions) {
+            return this.getScore(hostTransitions, time);
+        }
+    }
+
+    /**
+     * Drop the transitions of the hosts
+     */
+    public void remove(Collection<String> hosts) {
+        for (final String host : hosts) {
+            this.hosts.remove(host);
+        }
+    }
+
+    /**
+     * @return Number of hosts with transitions
+     */
+    public int getHostCount() {
+        return this.hosts.size();
+    }
+
+    private double getScore(HostTransitions hostTransitions, long time) {
+        double score = 0;
+        for (int i = 0; i < hostTransitions.count; i++) {
+            final long age = time - hostTransitions.times[i];
+            if (age < this.window) {
+                score += 1 - (double)Math.max(age, 0) / this.window;
+            }
+        }
+        return score;
+    }
+
+    private HostTransitions getHostTransitions(String host) {
+        HostTransitions hostTransitions = this.hosts.get(host);
+        if (hostTransitions == null) {
+            hostTransitions = new HostTransitions(this.ringSize);
+            final HostTransitions existing = this.hosts.putIfAbsent(host, hostTransitions);
+            if (existing != null) {
+                hostTransitions = existing;
+            }
+        }
+        return hostTransitions;
+    }
+
+    private static final class HostTransitions {
+        private final long[] times;
+        private int next = 0;
+        private int count = 0;
+        private boolean up = true;
+        private boolean flapping = false;
+
+        public HostTransitions(int ringSize) {
+            this.times = new long[ringSize];
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.detect;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a {@link LatencyBaseline} per host and label and marks a host degraded when enough
+ * consecutive samples are slow compared to their label's baseline. A sample is slow when it is
+ * more than the deviation number of standard deviations over the mean and also more than the
+ * ratio times the mean, the ratio keeps very steady labels from alerting on small changes.
+ * <p>
+ * Slow samples only move the baseline at {@link #SLOW_SAMPLE_WEIGHT} of the normal weight so a
+ * brief slowdown barely shifts it, while a permanent latency change is adapted to within a few
+ * dozen samples. A degraded host clears after the same number of consecutive normal samples.
+ */
+public class LatencyAnomalyDetector {
+    public static final double DEFAULT_ALPHA = 0.05;
+    public static final int DEFAULT_WARMUP = 20;
+    public static final double SLOW_SAMPLE_WEIGHT = 0.02;
+
+    private final ConcurrentMap<String, HostBaselines> hosts = new ConcurrentHashMap<String, HostBaselines>();
+    private final double alpha;
+    private final int warmup;
+    private final double deviation;
+    private final double ratio;
+    private final int threshold;
+
+    /**
+     * @param deviation Standard deviations over the mean a slow sample must be
+     * @param ratio Multiple of the mean a slow sample must be
+     * @param threshold Consecutive slow samples that mark the host degraded
+     */
+    public LatencyAnomalyDetector(double deviation, double ratio, int threshold) {
+        this(DEFAULT_ALPHA, DEFAULT_WARMUP, deviation, ratio, threshold);
+    }
+
+    /**
+     * @param alpha Weight of each sample in the baselines
+     * @param warmup Samples a label's baseline needs before its samples can be slow
+     */
+    public LatencyAnomalyDetector(double alpha, int warmup, double deviation, double ratio, int threshold) {
+        this.alpha = alpha;
+        this.warmup = warmup;
+        this.deviation = deviation;
+        this.ratio = ratio;
+        this.threshold = Math.max(threshold, 1);
+    }
+
+    /**
+     * Record the duration of a successful sample
+     *
+     * @return true if the host is degraded after the sample
+     */
+    public boolean record(String host, String label, long duration) {
+        final HostBaselines hostBaselines = this.getHostBaselines(host);
+        final LatencyBaseline baseline = hostBaselines.getBaseline(label, this.alpha);
+
+        synchronized (hostBaselines) {
+            final boolean slow = baseline.getCount() >= this.warmup && 
+                    duration > baseline.getMean() + this.deviation * baseline.getStandardDeviation() &&
+                    duration > baseline.getMean() * this.ratio;
+
+            if (slow) {
+                baseline.update(duration, SLOW_SAMPLE_WEIGHT);
+                hostBaselines.normalSamples = 0;
+                hostBaselines.slowSamples++;
+                if (hostBaselines.slowSamples >= this.threshold) {
+                    hostBaselines.degraded = true;
+                }
+            }
+            else {
+                baseline.update(duration);
+                hostBaselines.slowSamples = 0;
+                hostBaselines.normalSamples++;
+                if (hostBaselines.normalSamples >= this.threshold) {
+                    hostBaselines.degraded = false;
+                }
+            }
+
+            return hostBaselines.degraded;
+        }
+    }
+
+    /**
+     * @return The baseline mean for the host and label, 0 if nothing has been recorded
+     */
+    public double getMean(String host, String label) {
+        final HostBaselines hostBaselines = this.hosts.get(host);
+        if (hostBaselines == null) {
+            return 0;
+        }
+        final LatencyBaseline baseline = hostBaselines.baselines.get(label);
+        if (baseline == null) {
+            return 0;
+        }
+        synchronized (hostBaselines) {
+            return baseline.getMean();
+        }
+    }
+
+    /**
+     * Drop the baselines of the hosts
+     */
+    public void remove(Collection<String> hosts) {
+        for (final String host : hosts) {
+            this.hosts.remove(host);
+        }
+    }
+
+    /**
+     * @return Number of hosts with baselines
+     */
+    public int getHostCount() {
+        return this.hosts.size();
+    }
+
+    private HostBaselines getHostBaselines(String host) {
+        HostBaselines hostBaselines = this.hosts.get(host);
+        if (hostBaselines == null) {
+            hostBaselines = new HostBaselines();
+            final HostBaselines existing = this.hosts.putIfAbsent(host, hostBaselines);
+            if (existing != null) {
+                hostBaselines = existing;
+            }
+        }
+        return hostBaselines;
+    }
+
+    /**
+     * Baselines for each of a host's labels plus the host's degraded state, all guarded by the
+     * HostBaselines lock
+     */
+    private static final class HostBaselines {
+        private final ConcurrentMap<String, LatencyBaseline> baselines = new ConcurrentHashMap<String, LatencyBaseline>();
+        private int slowSamples = 0;
+        private int normalSamples = 0;
+        private boolean degraded = false;
+
+        public LatencyBaseline getBaseline(String label, double alpha) {
+            LatencyBaseline baseline = this.baselines.get(label);
+            if (baseline == null) {
+                baseline = new LatencyBaseline(alpha);
+                final LatencyBaseline existing = this.baselines.putIfAbsent(label, baseline);
+                if (existing != null) {
+                    baseline = existing;
+                }
+            }
+            return baseline;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.detect;
+
+/**
+ * Exponentially weighted mean and variance of a latency stream, updated in constant time.
+ * Not thread safe.
+ */
+public class LatencyBaseline {
+    private final double alpha;
+    private long count = 0;
+    private double mean = 0;
+    private double variance = 0;
+
+    /**
+     * @param alpha Weight of each new value, 0 - 1
+     */
+    public LatencyBaseline(double alpha) {
+        this.alpha = alpha;
+    }
+
+    public void update(long value) {
+        this.update(value, 1);
+    }
+
+    /**
+     * @param weight Multiplier applied to alpha for this value, 0 - 1
+     */
+    public void update(long value, double weight) {
+        this.count++;
+        if (this.count == 1) {
+            this.mean = value;
+            this.variance = 0;
+            return;
+        }
+
+        final double diff = value - this.mean;
+        final double weightedAlpha = this.alpha * weight;
+        final double increment = weightedAlpha * diff;
+        this.mean += increment;
+        this.variance = (1 - weightedAlpha) * (this.variance + diff * increment);
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getMean() {
+        return this.mean;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(this.variance);
+    }
+}
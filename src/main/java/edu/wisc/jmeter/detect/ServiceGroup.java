@@ -0,0 +1,105 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.detect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A service with an availability SLO, made up of the samples whose host (and optionally label)
+ * match the group's patterns
+ */
+public class ServiceGroup {
+    private final String name;
+    private final double sloTarget;
+    private final Pattern hostPattern;
+    private final Pattern labelPattern;
+
+    /**
+     * @param sloTarget Fraction of samples that should succeed, 0.999 for a 99.9% SLO
+     * @param labelPattern null to match every label
+     */
+    public ServiceGroup(String name, double sloTarget, Pattern hostPattern, Pattern labelPattern) {
+        if (sloTarget <= 0 || sloTarget >= 1) {
+            throw new IllegalArgumentException("SLO target for " + name + " must be between 0 and 1 exclusive: " + sloTarget);
+        }
+        this.name = name;
+        this.sloTarget = sloTarget;
+        this.hostPattern = hostPattern;
+        this.labelPattern = labelPattern;
+    }
+
+    /**
+     * Parse group definitions, one per line or separated by ';'. Each is the group name, the SLO
+     * target in percent, a regex for the hosts and optionally a regex for the labels separated
+     * by whitespace, for example: <code>portal 99.9 portal\d+\.example\.edu</code>
+     */
+    public static List<ServiceGroup> parse(String definitions) {
+        if (definitions == null) {
+            return Collections.emptyList();
+        }
+
+        final List<ServiceGroup> groups = new ArrayList<ServiceGroup>();
+        for (final String definition : definitions.split("[;\\n]")) {
+            final String trimmed = definition.trim();
+            if (trimmed.length() == 0) {
+                continue;
+            }
+
+            final String[] fields = trimmed.split("\\s+", 4);
+            if (fields.length < 3) {
+                throw new IllegalArgumentException("Service group must have a name, SLO target and host pattern: " + trimmed);
+            }
+
+            final double sloPercent;
+            try {
+                sloPercent = Double.parseDouble(fields[1]);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Service group SLO target is not a number: " + trimmed, e);
+            }
+
+            final Pattern labelPattern = fields.length > 3 ? Pattern.compile(fields[3]) : null;
+            groups.add(new ServiceGroup(fields[0], sloPercent / 100, Pattern.compile(fields[2]), labelPattern));
+        }
+        return groups;
+    }
+
+    public boolean matches(String host, String label) {
+        return this.hostPattern.matcher(host).matches() && 
+                (this.labelPattern == null || this.labelPattern.matcher(label).matches());
+    }
+
+    public String getName() {
+        return name;
+    }
+    public double getSloTarget() {
+        return sloTarget;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceGroup [name=" + name + ", sloTarget=" + sloTarget + ", hostPattern=" + hostPattern
+                + ", labelPattern=" + labelPattern + "]";
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+import edu.wisc.jmeter.metrics.StripedCounter;
+
+/**
+ * Delivers events to subscribers asynchronously. Every subscriber has its own fixed size ring of
+ * pending events drained by its own daemon thread, publishing never blocks and a slow subscriber
+ * only delays itself. When a subscriber's ring is full new events for it are dropped and counted.
+ */
+public class EventDispatcher {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+    private static final long CLOSE_TIMEOUT = TimeUnit.MILLISECONDS.convert(5, TimeUnit.SECONDS);
+
+    private final List<Worker> workers = new ArrayList<Worker>();
+    private final StripedCounter dropped;
+
+    /**
+     * @param capacity Pending events to buffer per subscriber
+     * @param dropped Counts events dropped because a subscriber's buffer was full
+     */
+    public EventDispatcher(List<MonitorEventSubscriber> subscribers, int capacity, StripedCounter dropped) {
+        this.dropped = dropped;
+        for (final MonitorEventSubscriber subscriber : subscribers) {
+            final Worker worker = new Worker(subscriber, capacity);
+            final Thread thread = new Thread(worker, "MonitorEventDispatcher-" + subscriber.getClass().getSimpleName());
+            thread.setDaemon(true);
+            worker.thread = thread;
+            this.workers.add(worker);
+            thread.start();
+        }
+    }
+
+    public void publish(MonitorEvent event) {
+        for (final Worker worker : this.workers) {
+            if (!worker.events.offer(event)) {
+                this.dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * Deliver the pending events, waiting up to 5 seconds per subscriber, then close the subscribers
+     */
+    public void close() {
+        for (final Worker worker : this.workers) {
+            worker.closed = true;
+        }
+        for (final Worker worker : this.workers) {
+            try {
+                worker.thread.join(CLOSE_TIMEOUT);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.thread.isAlive()) {
+                log.warn("Subscriber " + worker.subscriber + " did not finish within " + CLOSE_TIMEOUT + "ms, dropping " + worker.events.size() + " events");
+                worker.thread.interrupt();
+            }
+        }
+        this.workers.clear();
+    }
+
+    private static final class Worker implements Runnable {
+        private final MonitorEventSubscriber subscriber;
+        private final BlockingQueue<MonitorEvent> events;
+        private volatile boolean closed = false;
+        private Thread thread;
+
+        public Worker(MonitorEventSubscriber subscriber, int capacity) {
+            this.subscriber = subscriber;
+            this.events = new ArrayBlockingQueue<MonitorEvent>(capacity);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final MonitorEvent event;
+                    try {
+                        event = this.events.poll(100, TimeUnit.MILLISECONDS);
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+
+                    if (event == null) {
+                        if (this.closed) {
+                            return;
+                        }
+                        continue;
+                    }
+
+                    try {
+                        this.subscriber.onEvent(event);
+                    }
+                    catch (RuntimeException re) {
+                        log.warn("Subscriber " + this.subscriber + " failed to handle " + event, re);
+                    }
+                }
+            }
+            finally {
+                try {
+                    this.subscriber.close();
+                }
+                catch (RuntimeException re) {
+                    log.warn("Failed to close subscriber " + this.subscriber, re);
+                }
+            }
+        }
+    }
+}
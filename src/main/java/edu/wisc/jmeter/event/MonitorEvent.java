@@ -0,0 +1,112 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.event;
+
+import java.util.Date;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.Status;
+
+/**
+ * A host status transition or a recorded failure, passed to every {@link MonitorEventSubscriber}
+ */
+public final class MonitorEvent {
+    public enum Type {
+        STATUS,
+        FAILURE;
+    }
+
+    private final Type type;
+    private final String host;
+    private final String label;
+    private final Date time;
+    private final Status status;
+    private final Status previousStatus;
+    private final int failureCount;
+    private final int messageCount;
+    private final String subject;
+
+    private MonitorEvent(Type type, String host, String label, Date time, Status status, Status previousStatus,
+            int failureCount, int messageCount, String subject) {
+        this.type = type;
+        this.host = host;
+        this.label = label;
+        this.time = time;
+        this.status = status;
+        this.previousStatus = previousStatus;
+        this.failureCount = failureCount;
+        this.messageCount = messageCount;
+        this.subject = subject;
+    }
+
+    public static MonitorEvent statusChange(HostStatus hostStatus, Status previousStatus) {
+        final Date time = hostStatus.getLastUpdated() != null ? hostStatus.getLastUpdated() : new Date();
+        return new MonitorEvent(Type.STATUS, hostStatus.getHost(), null, time, hostStatus.getStatus(), previousStatus,
+                hostStatus.getFailureCount(), hostStatus.getMessageCount(), null);
+    }
+
+    public static MonitorEvent failure(String host, String label, Date time, Status status, String subject) {
+        return new MonitorEvent(Type.FAILURE, host, label, time, status, null, 0, 0, subject);
+    }
+
+    public Type getType() {
+        return type;
+    }
+    public String getHost() {
+        return host;
+    }
+    /**
+     * @return The failed sample's label, null for status events
+     */
+    public String getLabel() {
+        return label;
+    }
+    public Date getTime() {
+        return time;
+    }
+    public Status getStatus() {
+        return status;
+    }
+    /**
+     * @return The status before the transition, null for failure events
+     */
+    public Status getPreviousStatus() {
+        return previousStatus;
+    }
+    public int getFailureCount() {
+        return failureCount;
+    }
+    public int getMessageCount() {
+        return messageCount;
+    }
+    /**
+     * @return The failure's notification subject, null for status events
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    @Override
+    public String toString() {
+        return "MonitorEvent [type=" + type + ", host=" + host + ", label=" + label + ", time=" + time + ", status="
+                + status + ", previousStatus=" + previousStatus + "]";
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.event;
+
+/**
+ * Receives host status transitions and failures as they happen. Implementations listed in
+ * META-INF/services/edu.wisc.jmeter.event.MonitorEventSubscriber are loaded when a test starts,
+ * they need a public no argument constructor.
+ * <p>
+ * Events are delivered on a thread owned by the {@link EventDispatcher}, one at a time and in
+ * order. A subscriber that falls too far behind loses events rather than slowing the listener.
+ */
+public interface MonitorEventSubscriber {
+    void onEvent(MonitorEvent event);
+
+    /**
+     * Called once after the last event has been delivered
+     */
+    void close();
+}
@@ -0,0 +1,145 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.event;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+import edu.wisc.jmeter.Json;
+
+/**
+ * Writes every event as a line of JSON to a file or a TCP socket. Targets of the form
+ * tcp://host:port are connected to, anything else is a file that is appended to. If writing fails
+ * the events are dropped until the target can be reopened, which is tried at most every 5 seconds.
+ */
+public class NdjsonEventSubscriber implements MonitorEventSubscriber {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+    private static final String TCP_PREFIX = "tcp://";
+    private static final long REOPEN_INTERVAL = TimeUnit.MILLISECONDS.convert(5, TimeUnit.SECONDS);
+
+    private final String target;
+    private Socket socket;
+    private Writer writer;
+    private long nextOpen = 0;
+
+    public NdjsonEventSubscriber(String target) {
+        this.target = target;
+    }
+
+    @Override
+    public void onEvent(MonitorEvent event) {
+        final String line = toJson(event);
+        try {
+            final Writer out = this.getWriter();
+            if (out == null) {
+                return;
+            }
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        }
+        catch (IOException e) {
+            log.warn("Failed to write event to " + this.target + ", dropping events for " + REOPEN_INTERVAL + "ms", e);
+            this.nextOpen = System.currentTimeMillis() + REOPEN_INTERVAL;
+            this.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(this.writer);
+        this.writer = null;
+        if (this.socket != null) {
+            try {
+                this.socket.close();
+            }
+            catch (IOException e) {
+                //Ignore
+            }
+            this.socket = null;
+        }
+    }
+
+    private Writer getWriter() throws IOException {
+        if (this.writer != null) {
+            return this.writer;
+        }
+        if (System.currentTimeMillis() < this.nextOpen) {
+            return null;
+        }
+
+        final OutputStream out;
+        if (this.target.startsWith(TCP_PREFIX)) {
+            final String address = this.target.substring(TCP_PREFIX.length());
+            final int portIndex = address.lastIndexOf(':');
+            if (portIndex < 0) {
+                throw new IOException("No port in event stream target: " + this.target);
+            }
+            this.socket = new Socket();
+            this.socket.connect(new InetSocketAddress(address.substring(0, portIndex), Integer.parseInt(address.substring(portIndex + 1))));
+            out = this.socket.getOutputStream();
+        }
+        else {
+            out = new FileOutputStream(this.target, true);
+        }
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        log.info("Opened event stream to " + this.target);
+        return this.writer;
+    }
+
+    static String toJson(MonitorEvent event) {
+        final StringBuilder json = new StringBuilder(256);
+        json.append("{\"type\":").append(Json.quote(event.getType().name()))
+            .append(",\"host\":").append(Json.quote(event.getHost()))
+            .append(",\"time\":").append(Json.time(event.getTime()))
+            .append(",\"status\":").append(Json.quote(event.getStatus().name()));
+
+        switch (event.getType()) {
+            case STATUS: {
+                json.append(",\"previousStatus\":").append(Json.quote(event.getPreviousStatus() == null ? null : event.getPreviousStatus().name()))
+                    .append(",\"failureCount\":").append(event.getFailureCount())
+                    .append(",\"messageCount\":").append(event.getMessageCount());
+            } break;
+            case FAILURE: {
+                json.append(",\"label\":").append(Json.quote(event.getLabel()))
+                    .append(",\"subject\":").append(Json.quote(event.getSubject()));
+            } break;
+        }
+
+        return json.append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return "NdjsonEventSubscriber [target=" + target + "]";
+    }
+}
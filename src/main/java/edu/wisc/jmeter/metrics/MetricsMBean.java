@@ -0,0 +1,141 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Publishes a {@link MetricsRegistry} over JMX, every counter and timer value is a read only
+ * attribute. Metrics are created as the listener runs so the attribute list grows, JMX clients
+ * see new attributes when they reload the MBean info.
+ * <p>
+ * Each listener registers under its own name so several listeners in one JVM don't replace
+ * each other's metrics.
+ */
+public class MetricsMBean implements DynamicMBean {
+    public static final String OBJECT_NAME_PREFIX = "edu.wisc.jmeter:type=MonitorListener,name=";
+    public static final String DEFAULT_NAME = "Metrics";
+
+    private final MetricsRegistry metricsRegistry;
+
+    public MetricsMBean(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * @param listenerName Name of the listener, {@link #DEFAULT_NAME} is used if it is blank
+     * @return The name the listener's metrics are registered under
+     */
+    public static ObjectName getObjectName(String listenerName) throws JMException {
+        final String name = listenerName == null || listenerName.trim().length() == 0 ? DEFAULT_NAME : listenerName.trim();
+        return new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+    }
+
+    /**
+     * Register the registry with the platform MBean server under the listener's name, replacing
+     * the registry of an earlier test run that wasn't unregistered
+     * 
+     * @return The name the registry was registered under
+     */
+    public static ObjectName register(String listenerName, MetricsRegistry metricsRegistry) throws JMException {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = getObjectName(listenerName);
+        try {
+            mBeanServer.registerMBean(new MetricsMBean(metricsRegistry), objectName);
+        }
+        catch (InstanceAlreadyExistsException e) {
+            mBeanServer.unregisterMBean(objectName);
+            mBeanServer.registerMBean(new MetricsMBean(metricsRegistry), objectName);
+        }
+        return objectName;
+    }
+
+    public static void unregister(ObjectName objectName) throws JMException {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer.isRegistered(objectName)) {
+            mBeanServer.unregisterMBean(objectName);
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        final Long value = this.metricsRegistry.snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        final SortedMap<String, Long> snapshot = this.metricsRegistry.snapshot();
+        final AttributeList attributeList = new AttributeList();
+        for (final String attribute : attributes) {
+            final Long value = snapshot.get(attribute);
+            if (value != null) {
+                attributeList.add(new Attribute(attribute, value));
+            }
+        }
+        return attributeList;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final SortedMap<String, Long> snapshot = this.metricsRegistry.snapshot();
+        final MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+        int index = 0;
+        for (final Map.Entry<String, Long> metric : snapshot.entrySet()) {
+            attributes[index++] = new MBeanAttributeInfo(metric.getKey(), Long.class.getName(), metric.getKey(), true, false, false);
+        }
+        return new MBeanInfo(this.getClass().getName(), "MonitorListener metrics", attributes, null, new MBeanOperationInfo[0], null);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        //No operations are published
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Named counters and timers of the listener and its storage. Callers on hot paths should look up
+ * their counters and timers once and keep them.
+ */
+public class MetricsRegistry {
+    private final ConcurrentMap<String, StripedCounter> counters = new ConcurrentHashMap<String, StripedCounter>();
+    private final ConcurrentMap<String, StripedTimer> timers = new ConcurrentHashMap<String, StripedTimer>();
+
+    public StripedCounter counter(String name) {
+        StripedCounter counter = this.counters.get(name);
+        if (counter == null) {
+            counter = new StripedCounter();
+            final StripedCounter existing = this.counters.putIfAbsent(name, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    public StripedTimer timer(String name) {
+        StripedTimer timer = this.timers.get(name);
+        if (timer == null) {
+            timer = new StripedTimer();
+            final StripedTimer existing = this.timers.putIfAbsent(name, timer);
+            if (existing != null) {
+                timer = existing;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * @return Current value of every counter, and the count, mean and max of every timer as
+     *         name.count, name.meanMicros and name.maxMicros, sorted by name
+     */
+    public SortedMap<String, Long> snapshot() {
+        final SortedMap<String, Long> snapshot = new TreeMap<String, Long>();
+        for (final Map.Entry<String, StripedCounter> counterEntry : this.counters.entrySet()) {
+            snapshot.put(counterEntry.getKey(), counterEntry.getValue().get());
+        }
+        for (final Map.Entry<String, StripedTimer> timerEntry : this.timers.entrySet()) {
+            final StripedTimer timer = timerEntry.getValue();
+            snapshot.put(timerEntry.getKey() + ".count", timer.getCount());
+            snapshot.put(timerEntry.getKey() + ".meanMicros", timer.getMeanMicros());
+            snapshot.put(timerEntry.getKey() + ".maxMicros", timer.getMaxMicros());
+        }
+        return snapshot;
+    }
+}
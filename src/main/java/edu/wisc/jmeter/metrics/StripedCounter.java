@@ -0,0 +1,65 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread over several cells so threads incrementing at the same time rarely touch the
+ * same cache line. Each thread always uses the cell picked by its id, reading sums the cells.
+ */
+public class StripedCounter {
+    //Longs per cell, keeps cells 64 bytes apart
+    private static final int PADDING = 8;
+    static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        final int target = Math.min(Runtime.getRuntime().availableProcessors() * 2, 64);
+        while (stripes < target) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void increment() {
+        this.add(1);
+    }
+
+    public void add(long delta) {
+        this.cells.addAndGet(getCell(), delta);
+    }
+
+    public long get() {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += this.cells.get(stripe * PADDING);
+        }
+        return sum;
+    }
+
+    static int getCell() {
+        final long id = Thread.currentThread().getId();
+        return (int)((id ^ (id >>> 16)) & (STRIPES - 1)) * PADDING;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of calls, total and maximum time of an operation. Count and total are striped, the
+ * maximum is only written when it grows.
+ */
+public class StripedTimer {
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter totalNanos = new StripedCounter();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param startNanos {@link System#nanoTime()} when the operation started
+     */
+    public void recordSince(long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        this.count.increment();
+        this.totalNanos.add(nanos);
+
+        long max = this.maxNanos.get();
+        while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+            max = this.maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getTotalMicros() {
+        return TimeUnit.MICROSECONDS.convert(this.totalNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMeanMicros() {
+        final long count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.MICROSECONDS.convert(this.totalNanos.get() / count, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxMicros() {
+        return TimeUnit.MICROSECONDS.convert(this.maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+}
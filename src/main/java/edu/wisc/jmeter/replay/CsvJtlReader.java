@@ -0,0 +1,166 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * Reads CSV results saved with a header line. The timeStamp, elapsed, label, responseCode, success
+ * and URL columns are required, responseMessage and failureMessage are used when present.
+ * Timestamps must be saved as milliseconds.
+ */
+class CsvJtlReader extends JtlReader {
+    private final BufferedReader reader;
+    private final int timeStampColumn;
+    private final int elapsedColumn;
+    private final int labelColumn;
+    private final int responseCodeColumn;
+    private final int responseMessageColumn;
+    private final int successColumn;
+    private final int failureMessageColumn;
+    private final int urlColumn;
+    private final List<String> fields = new ArrayList<String>();
+    private final StringBuilder field = new StringBuilder();
+    private long lineNumber = 1;
+
+    public CsvJtlReader(InputStream in, boolean timestampIsEnd) throws IOException {
+        super(timestampIsEnd);
+        this.reader = new BufferedReader(new InputStreamReader(in, "UTF-8"), 64 * 1024);
+
+        final String header = this.reader.readLine();
+        if (header == null) {
+            throw new IOException("Empty results file");
+        }
+        final List<String> columns = new ArrayList<String>(this.split(header));
+        this.timeStampColumn = required(columns, "timeStamp");
+        this.elapsedColumn = required(columns, "elapsed");
+        this.labelColumn = required(columns, "label");
+        this.responseCodeColumn = required(columns, "responseCode");
+        this.successColumn = required(columns, "success");
+        this.urlColumn = required(columns, "URL");
+        this.responseMessageColumn = columns.indexOf("responseMessage");
+        this.failureMessageColumn = columns.indexOf("failureMessage");
+    }
+
+    @Override
+    public SampleResult read() throws IOException {
+        while (true) {
+            final String line = this.reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            this.lineNumber++;
+            if (line.length() == 0) {
+                continue;
+            }
+
+            final List<String> values = this.split(line);
+            if (values.size() <= this.urlColumn) {
+                throw new IOException("Line " + this.lineNumber + " has " + values.size() + " columns, the URL is column " + (this.urlColumn + 1));
+            }
+
+            final long timeStamp;
+            final long elapsed;
+            try {
+                timeStamp = Long.parseLong(values.get(this.timeStampColumn));
+                elapsed = Long.parseLong(values.get(this.elapsedColumn));
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Line " + this.lineNumber + " timeStamp and elapsed must be milliseconds: " + e.getMessage());
+            }
+
+            final SampleResult result = this.toSampleResult(timeStamp, elapsed,
+                    values.get(this.labelColumn),
+                    Boolean.parseBoolean(values.get(this.successColumn)),
+                    values.get(this.responseCodeColumn),
+                    get(values, this.responseMessageColumn),
+                    get(values, this.failureMessageColumn),
+                    values.get(this.urlColumn));
+            if (result != null) {
+                return result;
+            }
+            this.skip();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    /**
+     * Split a line on commas, fields may be quoted with " and quotes in them doubled. The returned
+     * list is reused by the next call.
+     */
+    private List<String> split(String line) {
+        this.fields.clear();
+        this.field.setLength(0);
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        this.field.append('"');
+                        i++;
+                    }
+                    else {
+                        quoted = false;
+                    }
+                }
+                else {
+                    this.field.append(c);
+                }
+            }
+            else if (c == '"') {
+                quoted = true;
+            }
+            else if (c == ',') {
+                this.fields.add(this.field.toString());
+                this.field.setLength(0);
+            }
+            else {
+                this.field.append(c);
+            }
+        }
+        this.fields.add(this.field.toString());
+        return this.fields;
+    }
+
+    private static int required(List<String> columns, String column) throws IOException {
+        final int index = columns.indexOf(column);
+        if (index < 0) {
+            throw new IOException("Results must be saved with a header including the " + column + " column, found: " + columns);
+        }
+        return index;
+    }
+
+    private static String get(List<String> values, int column) {
+        return column >= 0 && column < values.size() ? values.get(column) : null;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * Streams the samples of a JMeter results (JTL) file in file order
+ */
+public abstract class JtlReader implements Closeable {
+    private final boolean timestampIsEnd;
+    private long skipped = 0;
+
+    protected JtlReader(boolean timestampIsEnd) {
+        this.timestampIsEnd = timestampIsEnd;
+    }
+
+    /**
+     * Open the file as XML if it starts with &lt;, as CSV otherwise
+     *
+     * @param timestampIsEnd If the file's timestamps are sample end times rather than start times
+     */
+    public static JtlReader open(File file, boolean timestampIsEnd) throws IOException {
+        final InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        try {
+            in.mark(1024);
+            int c;
+            do {
+                c = in.read();
+            } while (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == 0xEF || c == 0xBB || c == 0xBF);
+            in.reset();
+
+            if (c == '<') {
+                return new XmlJtlReader(in, timestampIsEnd);
+            }
+            return new CsvJtlReader(in, timestampIsEnd);
+        }
+        catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        catch (RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The next sample with a URL, null at the end of the file
+     */
+    public abstract SampleResult read() throws IOException;
+
+    /**
+     * @return Samples skipped because they had no URL to get the host from
+     */
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    protected void skip() {
+        this.skipped++;
+    }
+
+    /**
+     * @return The sample, or null if it has no usable URL
+     */
+    protected SampleResult toSampleResult(long timestamp, long elapsed, String label, boolean successful,
+            String responseCode, String responseMessage, String failureMessage, String url) {
+        if (url == null || url.length() == 0) {
+            return null;
+        }
+
+        final SampleResult result = new SampleResult();
+        try {
+            result.setURL(new URL(url));
+        }
+        catch (MalformedURLException e) {
+            return null;
+        }
+        result.setSampleLabel(label);
+        result.setSuccessful(successful);
+        result.setResponseCode(responseCode != null ? responseCode : "");
+        result.setResponseMessage(responseMessage != null ? responseMessage : "");
+        //JMeter reads the stamp as the start or end time depending on its own configuration
+        final long startTime = this.timestampIsEnd ? timestamp - elapsed : timestamp;
+        result.setStampAndTime(result.isStampedAtStart() ? startTime : startTime + elapsed, elapsed);
+
+        if (failureMessage != null && failureMessage.length() > 0) {
+            final AssertionResult assertionResult = new AssertionResult("Replayed Assertion");
+            assertionResult.setFailure(true);
+            assertionResult.setFailureMessage(failureMessage);
+            result.addAssertionResult(assertionResult);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,375 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.replay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.dao.MemoryMonitorDao.Outage;
+
+/**
+ * Replays recorded JMeter results (JTL files, CSV or XML) through the listener's failure detection
+ * and notification logic to see what a configuration would have alerted on. Samples are handed to
+ * worker threads by host so every host's samples are checked in file order while hosts are checked
+ * in parallel. Files are replayed one after the other so they should be given oldest first.
+ * <p>
+ * Run with an optional properties file of {@link ReplayMonitorListener} properties, such as
+ * failureThreshold, errorRateWindow or flapWindow, and the results files. {@link #THREADS_PROPERTY},
+ * {@link #TIMESTAMP_IS_END_PROPERTY} and {@link #REPORT_PROPERTY} configure the replay itself.
+ */
+public class Replay {
+    public static final String THREADS_PROPERTY = "replay.threads";
+    public static final String TIMESTAMP_IS_END_PROPERTY = "replay.timestampIsEnd";
+    public static final String REPORT_PROPERTY = "replay.report";
+    static final String STATUS_VAR = "replay.status";
+    static final String NOTIFICATION_VAR = "replay.notify";
+
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_SIZE = 64;
+    private static final long OFFER_TIMEOUT = 100; //milliseconds between checks that the worker is still running
+    private static final List<SampleResult> END = Collections.emptyList();
+
+    private final ReplayMonitorListener listener;
+    private final int threads;
+    private final boolean timestampIsEnd;
+    private long samples = 0;
+    private long skipped = 0;
+    private long duration = 0;
+
+    /**
+     * @param threads Worker threads to check hosts on
+     * @param timestampIsEnd If the files' timestamps are sample end times rather than start times
+     */
+    public Replay(ReplayMonitorListener listener, int threads, boolean timestampIsEnd) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.listener = listener;
+        this.threads = threads;
+        this.timestampIsEnd = timestampIsEnd;
+
+        //Every recorded sample is checked and may notify
+        this.listener.setStatusVar(STATUS_VAR);
+        this.listener.setNotificationVar(NOTIFICATION_VAR);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: " + Replay.class.getName() + " [config.properties] <results.jtl>...");
+            System.exit(1);
+        }
+
+        final Properties config = new Properties();
+        int firstFile = 0;
+        if (args[0].endsWith(".properties")) {
+            final InputStream in = new FileInputStream(args[0]);
+            try {
+                config.load(in);
+            }
+            finally {
+                IOUtils.closeQuietly(in);
+            }
+            firstFile = 1;
+        }
+
+        final int threads = Integer.parseInt(config.getProperty(THREADS_PROPERTY, Integer.toString(Runtime.getRuntime().availableProcessors())));
+        final boolean timestampIsEnd = Boolean.parseBoolean(config.getProperty(TIMESTAMP_IS_END_PROPERTY, "false"));
+        final String report = config.getProperty(REPORT_PROPERTY);
+        config.remove(THREADS_PROPERTY);
+        config.remove(TIMESTAMP_IS_END_PROPERTY);
+        config.remove(REPORT_PROPERTY);
+
+        final ReplayMonitorListener listener = new ReplayMonitorListener();
+        //The listener's BeanInfo defaults only apply inside JMeter
+        listener.setFailureThreshold(2);
+        listener.setBackoffDuration(15);
+        final BeanWrapper listenerWrapper = new BeanWrapperImpl(listener);
+        listenerWrapper.setPropertyValues(config);
+
+        final List<File> files = new ArrayList<File>();
+        for (int i = firstFile; i < args.length; i++) {
+            files.add(new File(args[i]));
+        }
+
+        final Replay replay = new Replay(listener, threads, timestampIsEnd);
+        replay.replay(files);
+
+        final Writer out;
+        if (report != null) {
+            out = new OutputStreamWriter(new FileOutputStream(report), "UTF-8");
+        }
+        else {
+            out = new OutputStreamWriter(System.out, "UTF-8");
+        }
+        final PrintWriter writer = new PrintWriter(out);
+        replay.report(writer);
+        writer.flush();
+        if (report != null) {
+            writer.close();
+            System.out.println("Wrote replay report to " + report);
+        }
+    }
+
+    /**
+     * Replay the files in order, running the listener's whole test around them
+     */
+    public void replay(List<File> files) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        this.listener.testStarted();
+        try {
+            final ExecutorService executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+                private int count = 0;
+
+                @Override
+                public synchronized Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "Replay-" + (count++));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            try {
+                final List<BlockingQueue<List<SampleResult>>> queues = new ArrayList<BlockingQueue<List<SampleResult>>>(this.threads);
+                final List<Future<?>> workers = new ArrayList<Future<?>>(this.threads);
+                for (int i = 0; i < this.threads; i++) {
+                    final BlockingQueue<List<SampleResult>> queue = new ArrayBlockingQueue<List<SampleResult>>(QUEUE_SIZE);
+                    queues.add(queue);
+                    workers.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            check(queue);
+                        }
+                    }));
+                }
+
+                try {
+                    this.read(files, queues, workers);
+                }
+                finally {
+                    for (int i = 0; i < this.threads; i++) {
+                        offer(queues.get(i), workers.get(i), END);
+                    }
+                }
+
+                for (final Future<?> worker : workers) {
+                    join(worker);
+                }
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+        finally {
+            this.listener.testEnded();
+            this.duration += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Read every sample, batching them up per worker by host
+     */
+    private void read(List<File> files, List<BlockingQueue<List<SampleResult>>> queues, List<Future<?>> workers) throws IOException, InterruptedException {
+        final List<List<SampleResult>> batches = new ArrayList<List<SampleResult>>(this.threads);
+        for (int i = 0; i < this.threads; i++) {
+            batches.add(new ArrayList<SampleResult>(BATCH_SIZE));
+        }
+
+        for (final File file : files) {
+            final JtlReader reader = JtlReader.open(file, this.timestampIsEnd);
+            try {
+                for (SampleResult result = reader.read(); result != null; result = reader.read()) {
+                    this.samples++;
+
+                    final int worker = (result.getURL().getHost().hashCode() & Integer.MAX_VALUE) % this.threads;
+                    final List<SampleResult> batch = batches.get(worker);
+                    batch.add(result);
+                    if (batch.size() == BATCH_SIZE) {
+                        send(queues.get(worker), workers.get(worker), batch);
+                        batches.set(worker, new ArrayList<SampleResult>(BATCH_SIZE));
+                    }
+                }
+                this.skipped += reader.getSkipped();
+            }
+            finally {
+                reader.close();
+            }
+        }
+
+        for (int i = 0; i < this.threads; i++) {
+            final List<SampleResult> batch = batches.get(i);
+            if (!batch.isEmpty()) {
+                send(queues.get(i), workers.get(i), batch);
+            }
+        }
+    }
+
+    /**
+     * Hand the batch to the worker, failing with the worker's own error if it stopped
+     */
+    private static void send(BlockingQueue<List<SampleResult>> queue, Future<?> worker, List<SampleResult> batch) throws InterruptedException {
+        if (!offer(queue, worker, batch)) {
+            join(worker);
+            throw new IllegalStateException("Replay worker stopped before reading every sample");
+        }
+    }
+
+    /**
+     * @return false if the worker stopped, it will never take the batch
+     */
+    private static boolean offer(BlockingQueue<List<SampleResult>> queue, Future<?> worker, List<SampleResult> batch) throws InterruptedException {
+        while (!queue.offer(batch, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            if (worker.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void join(Future<?> worker) throws InterruptedException {
+        try {
+            worker.get();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Replay worker failed", e.getCause());
+        }
+    }
+
+    private void check(BlockingQueue<List<SampleResult>> queue) {
+        //The listener reads the status and notification flags, and tracks visited hosts, in the thread's variables
+        final JMeterVariables vars = new JMeterVariables();
+        vars.put(STATUS_VAR, Status.UP.name());
+        vars.put(NOTIFICATION_VAR, Boolean.TRUE.toString());
+        JMeterContextService.getContext().setVariables(vars);
+        this.listener.testIterationStart(null);
+
+        try {
+            for (List<SampleResult> batch = queue.take(); batch != END; batch = queue.take()) {
+                for (final SampleResult result : batch) {
+                    this.listener.sampleOccurred(new SampleEvent(result, "Replay"));
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Samples replayed
+     */
+    public long getSamples() {
+        return this.samples;
+    }
+
+    /**
+     * @return Samples skipped because they had no URL
+     */
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * Write the notifications, outages and final host statuses
+     */
+    public void report(PrintWriter out) {
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        final double seconds = this.duration / 1000000000.0;
+
+        out.println("Replayed " + this.samples + " samples in " + String.format("%.2f", seconds) + "s ("
+                + (seconds > 0 ? Math.round(this.samples / seconds) : this.samples) + " samples/s), "
+                + this.skipped + " skipped without a URL");
+        out.println("Failures logged: " + this.listener.getMemoryMonitorDao().getFailuresLogged()
+                + ", responses captured: " + this.listener.getCaptures());
+
+        final List<ReplayNotification> notifications = this.listener.getNotifications();
+        Collections.sort(notifications, new Comparator<ReplayNotification>() {
+            @Override
+            public int compare(ReplayNotification o1, ReplayNotification o2) {
+                return o1.getTime().compareTo(o2.getTime());
+            }
+        });
+        out.println();
+        out.println("Notifications (" + notifications.size() + "):");
+        for (final ReplayNotification notification : notifications) {
+            out.println("  " + dateFormat.format(notification.getTime()) + " " + notification.getStatus() + " "
+                    + notification.getHost() + ": " + notification.getSubject());
+        }
+
+        final List<Outage> outages = this.listener.getMemoryMonitorDao().getOutages();
+        out.println();
+        out.println("Outages (" + outages.size() + "):");
+        for (final Outage outage : outages) {
+            final Date end = outage.getEnd();
+            if (end == null) {
+                out.println("  " + outage.getHost() + " " + dateFormat.format(outage.getStart()) + " - still down");
+            }
+            else {
+                out.println("  " + outage.getHost() + " " + dateFormat.format(outage.getStart()) + " - " + dateFormat.format(end)
+                        + " (" + ((end.getTime() - outage.getStart().getTime()) / 1000) + "s, " + outage.getFailureCount()
+                        + " failures, " + outage.getMessageCount() + " notifications)");
+            }
+        }
+
+        final List<HostStatus> hostStatuses = this.listener.getMemoryMonitorDao().getHostStatuses();
+        Collections.sort(hostStatuses, new Comparator<HostStatus>() {
+            @Override
+            public int compare(HostStatus o1, HostStatus o2) {
+                return o1.getHost().compareTo(o2.getHost());
+            }
+        });
+        out.println();
+        out.println("Hosts (" + hostStatuses.size() + "):");
+        for (final HostStatus hostStatus : hostStatuses) {
+            out.println("  " + hostStatus.getHost() + " " + hostStatus.getStatus() + " (" + hostStatus.getFailureCount()
+                    + " failures, " + hostStatus.getMessageCount() + " notifications)");
+        }
+    }
+}
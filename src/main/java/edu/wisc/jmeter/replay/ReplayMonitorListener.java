@@ -0,0 +1,89 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.replay;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+import edu.wisc.jmeter.MonitorListener;
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.dao.MemoryMonitorDao;
+import edu.wisc.jmeter.dao.MonitorDao;
+
+/**
+ * Listener for replays, state is kept in memory, notifications are captured instead of emailed
+ * and failure captures are counted instead of written. Rollups, error counts and burn rates are
+ * driven by the recorded sample times instead of the wall clock.
+ */
+public class ReplayMonitorListener extends MonitorListener {
+    private static final long serialVersionUID = 1L;
+
+    private final MemoryMonitorDao memoryMonitorDao = new MemoryMonitorDao();
+    private final List<ReplayNotification> notifications = new ArrayList<ReplayNotification>();
+    private final AtomicLong captures = new AtomicLong();
+
+    public MemoryMonitorDao getMemoryMonitorDao() {
+        return this.memoryMonitorDao;
+    }
+
+    /**
+     * @return Notifications in the order they were sent, hosts replayed in parallel interleave
+     */
+    public List<ReplayNotification> getNotifications() {
+        synchronized (this.notifications) {
+            return new ArrayList<ReplayNotification>(this.notifications);
+        }
+    }
+
+    /**
+     * @return Failures the listener would have saved the response of
+     */
+    public long getCaptures() {
+        return this.captures.get();
+    }
+
+    @Override
+    protected boolean isSampleClock() {
+        return true;
+    }
+
+    @Override
+    protected MonitorDao createStorage() {
+        return this.memoryMonitorDao;
+    }
+
+    @Override
+    protected void sendEmail(Date now, String subject, String body, String host, Status status) {
+        synchronized (this.notifications) {
+            this.notifications.add(new ReplayNotification(now, host, status, subject));
+        }
+    }
+
+    @Override
+    protected void saveResponseToFile(SampleResult sampleResult, Date now, String userId, String hostName,
+            String errorMessages, int errorCount, int messageCount) {
+        this.captures.incrementAndGet();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.replay;
+
+import java.util.Date;
+
+import edu.wisc.jmeter.Status;
+
+/**
+ * A notification the listener would have emailed during a replay
+ */
+public final class ReplayNotification {
+    private final Date time;
+    private final String host;
+    private final Status status;
+    private final String subject;
+
+    public ReplayNotification(Date time, String host, Status status, String subject) {
+        this.time = time;
+        this.host = host;
+        this.status = status;
+        this.subject = subject;
+    }
+
+    /**
+     * @return End time of the sample that triggered the notification
+     */
+    public Date getTime() {
+        return this.time;
+    }
+
+    public String getHost() {
+        return this.host;
+    }
+
+    public Status getStatus() {
+        return this.status;
+    }
+
+    public String getSubject() {
+        return this.subject;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayNotification [time=" + this.time + ", host=" + this.host + ", status=" + this.status
+                + ", subject=" + this.subject + "]";
+    }
+}
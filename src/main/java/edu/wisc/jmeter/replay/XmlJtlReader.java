@@ -0,0 +1,146 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.replay;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * Streams XML results with StAX, only the top level httpSample and sample elements are read, sub
+ * samples are part of their parent. The URL comes from the java.net.URL child element, failure
+ * messages from failed assertionResult children.
+ */
+class XmlJtlReader extends JtlReader {
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private final InputStream in;
+    private final XMLStreamReader reader;
+
+    public XmlJtlReader(InputStream in, boolean timestampIsEnd) throws IOException {
+        super(timestampIsEnd);
+        this.in = in;
+        try {
+            this.reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Failed to read results XML: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public SampleResult read() throws IOException {
+        try {
+            while (this.reader.hasNext()) {
+                if (this.reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    final String name = this.reader.getLocalName();
+                    if ("httpSample".equals(name) || "sample".equals(name)) {
+                        final SampleResult result = this.readSample();
+                        if (result != null) {
+                            return result;
+                        }
+                        this.skip();
+                    }
+                }
+            }
+            return null;
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Failed to read results XML: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read the sample the reader is on the start of, leaving the reader on its end
+     */
+    private SampleResult readSample() throws XMLStreamException, IOException {
+        final long timestamp;
+        final long elapsed;
+        try {
+            timestamp = Long.parseLong(this.reader.getAttributeValue(null, "ts"));
+            elapsed = Long.parseLong(this.reader.getAttributeValue(null, "t"));
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Sample at line " + this.reader.getLocation().getLineNumber() + " has no ts or t: " + e.getMessage());
+        }
+        final String label = this.reader.getAttributeValue(null, "lb");
+        final boolean successful = Boolean.parseBoolean(this.reader.getAttributeValue(null, "s"));
+        final String responseCode = this.reader.getAttributeValue(null, "rc");
+        final String responseMessage = this.reader.getAttributeValue(null, "rm");
+
+        String url = null;
+        StringBuilder failureMessages = null;
+        boolean assertionFailed = false;
+        String assertionMessage = null;
+        int depth = 1;
+        while (depth > 0) {
+            switch (this.reader.next()) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    depth++;
+                    final String name = this.reader.getLocalName();
+                    if (depth == 2 && "java.net.URL".equals(name)) {
+                        url = this.reader.getElementText().trim();
+                        depth--;
+                    }
+                    else if (depth == 3 && ("failure".equals(name) || "error".equals(name))) {
+                        assertionFailed |= Boolean.parseBoolean(this.reader.getElementText().trim());
+                        depth--;
+                    }
+                    else if (depth == 3 && "failureMessage".equals(name)) {
+                        assertionMessage = this.reader.getElementText();
+                        depth--;
+                    }
+                } break;
+                case XMLStreamConstants.END_ELEMENT: {
+                    if (depth == 2 && "assertionResult".equals(this.reader.getLocalName())) {
+                        if (assertionFailed && assertionMessage != null) {
+                            failureMessages = failureMessages == null ? new StringBuilder() : failureMessages.append(", ");
+                            failureMessages.append(assertionMessage);
+                        }
+                        assertionFailed = false;
+                        assertionMessage = null;
+                    }
+                    depth--;
+                } break;
+            }
+        }
+
+        return this.toSampleResult(timestamp, elapsed, label, successful, responseCode, responseMessage,
+                failureMessages != null ? failureMessages.toString() : null, url);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.reader.close();
+        }
+        catch (XMLStreamException e) {
+            //Ignore, the stream is closed below
+        }
+        this.in.close();
+    }
+}
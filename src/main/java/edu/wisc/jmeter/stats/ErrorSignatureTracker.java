@@ -0,0 +1,134 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.stats;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import edu.wisc.jmeter.ErrorSignatureCount;
+
+/**
+ * Counts failures per host and error signature over an interval, {@link #drain(long)} turns the
+ * counts into {@link ErrorSignatureCount}s. Only the first few failures of each host and signature
+ * in an interval need to be logged in full, the rest are represented by the count.
+ */
+public class ErrorSignatureTracker {
+    public static final int MAX_SIGNATURE_LENGTH = 1000;
+    
+    //Variable parts of messages, hex ids with at least one digit then any remaining numbers
+    private static final Pattern HEX_ID_PATTERN = Pattern.compile("\\b(?=[0-9a-fA-F-]*[0-9])[0-9a-fA-F]+(?:-[0-9a-fA-F]+)*\\b");
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("[0-9]+");
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+
+    private final ConcurrentMap<String, ConcurrentMap<String, AtomicInteger>> counts = new ConcurrentHashMap<String, ConcurrentMap<String, AtomicInteger>>();
+    private final int rawFailures;
+
+    /**
+     * @param rawFailures Failures per host, signature and interval to log in full
+     */
+    public ErrorSignatureTracker(int rawFailures) {
+        this.rawFailures = rawFailures;
+    }
+
+    /**
+     * Count a failure
+     *
+     * @return true if the failure is one of the first for the host and signature this interval and should be logged in full
+     */
+    public boolean record(String host, String signature) {
+        return this.getCount(host, signature).incrementAndGet() <= this.rawFailures;
+    }
+
+    /**
+     * Take the counts for the interval starting at intervalStart and start the next interval.
+     * Signatures without failures are dropped to keep memory bounded to active signatures, a
+     * failure counted at the moment its idle counter is dropped is lost.
+     */
+    public List<ErrorSignatureCount> drain(long intervalStart) {
+        final List<ErrorSignatureCount> drained = new ArrayList<ErrorSignatureCount>();
+
+        for (final Map.Entry<String, ConcurrentMap<String, AtomicInteger>> hostEntry : this.counts.entrySet()) {
+            final String host = hostEntry.getKey();
+            for (final Iterator<Map.Entry<String, AtomicInteger>> signatureIterator = hostEntry.getValue().entrySet().iterator(); signatureIterator.hasNext();) {
+                final Map.Entry<String, AtomicInteger> signatureEntry = signatureIterator.next();
+                final int failureCount = signatureEntry.getValue().getAndSet(0);
+                if (failureCount > 0) {
+                    drained.add(new ErrorSignatureCount(host, signatureEntry.getKey(), new Date(intervalStart), failureCount));
+                }
+                else {
+                    signatureIterator.remove();
+                }
+            }
+        }
+
+        return drained;
+    }
+
+    /**
+     * Mask the parts of an error message that vary between occurrences of the same error, ids
+     * and numbers become #
+     */
+    public static String mask(String message) {
+        if (message == null) {
+            return "";
+        }
+        String masked = HEX_ID_PATTERN.matcher(message).replaceAll("#");
+        masked = NUMBER_PATTERN.matcher(masked).replaceAll("#");
+        return WHITESPACE_PATTERN.matcher(masked).replaceAll(" ").trim();
+    }
+
+    /**
+     * Limit a signature to what fits in the signature table
+     */
+    public static String truncate(String signature) {
+        if (signature.length() <= MAX_SIGNATURE_LENGTH) {
+            return signature;
+        }
+        return signature.substring(0, MAX_SIGNATURE_LENGTH);
+    }
+
+    private AtomicInteger getCount(String host, String signature) {
+        ConcurrentMap<String, AtomicInteger> signatureCounts = this.counts.get(host);
+        if (signatureCounts == null) {
+            signatureCounts = new ConcurrentHashMap<String, AtomicInteger>();
+            final ConcurrentMap<String, AtomicInteger> existing = this.counts.putIfAbsent(host, signatureCounts);
+            if (existing != null) {
+                signatureCounts = existing;
+            }
+        }
+
+        AtomicInteger count = signatureCounts.get(signature);
+        if (count == null) {
+            count = new AtomicInteger();
+            final AtomicInteger existing = signatureCounts.putIfAbsent(signature, count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        return count;
+    }
+}
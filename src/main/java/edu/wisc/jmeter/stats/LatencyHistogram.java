@@ -0,0 +1,210 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory, lock-free latency histogram. Values below {@link #LINEAR_LIMIT} ms get their own
+ * bucket, larger values are split into {@link #SUB_BUCKETS} buckets per power of two which keeps
+ * the relative error of any percentile under 1/{@link #SUB_BUCKETS}.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final int LINEAR_BITS = SUB_BUCKET_BITS + 1;
+    private static final int MAX_EXPONENT = 31; //Just under 25 days in ms
+    static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - LINEAR_BITS + 1) * SUB_BUCKETS;
+    private static final int INITIAL_SNAPSHOT_BUCKETS = 16;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public void record(long duration, boolean successful) {
+        final long value = Math.min(Math.max(duration, 0), MAX_VALUE);
+        this.counts.incrementAndGet(getBucket(value));
+        this.sum.addAndGet(value);
+        if (!successful) {
+            this.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Take the recorded values and reset the histogram. Values recorded concurrently end up in
+     * either this snapshot or the next one, never neither.
+     */
+    public Snapshot drain() {
+        int[] buckets = new int[INITIAL_SNAPSHOT_BUCKETS];
+        long[] bucketCounts = new long[INITIAL_SNAPSHOT_BUCKETS];
+        int size = 0;
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            final long drained = this.counts.getAndSet(i, 0);
+            if (drained == 0) {
+                continue;
+            }
+
+            if (size == buckets.length) {
+                buckets = Arrays.copyOf(buckets, size * 2);
+                bucketCounts = Arrays.copyOf(bucketCounts, size * 2);
+            }
+            buckets[size] = i;
+            bucketCounts[size++] = drained;
+            count += drained;
+        }
+        return new Snapshot(Arrays.copyOf(buckets, size), Arrays.copyOf(bucketCounts, size), count, this.sum.getAndSet(0), this.errors.getAndSet(0));
+    }
+
+    static int getBucket(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int)value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The largest value that maps to the bucket
+     */
+    static long getBucketMaxValue(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        final int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_BITS;
+        final int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (((long)(SUB_BUCKETS + subBucket)) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * Immutable copy of the histogram for one interval, snapshots can be added together to
+     * build coarser intervals. Only the buckets with values are kept, latencies cluster in a few
+     * dozen buckets so the in-progress coarse snapshots held per host and label stay small.
+     */
+    public static class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(new int[0], new long[0], 0, 0, 0);
+
+        //Ascending bucket indexes and their counts, no zero counts
+        private final int[] buckets;
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sum;
+        private final long errors;
+
+        Snapshot(int[] buckets, long[] bucketCounts, long count, long sum, long errors) {
+            this.buckets = buckets;
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sum = sum;
+            this.errors = errors;
+        }
+
+        public static Snapshot empty() {
+            return EMPTY;
+        }
+
+        public Snapshot add(Snapshot other) {
+            final int[] buckets = new int[this.buckets.length + other.buckets.length];
+            final long[] bucketCounts = new long[buckets.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < this.buckets.length || j < other.buckets.length) {
+                final int bucket;
+                long bucketCount = 0;
+                if (j == other.buckets.length || (i < this.buckets.length && this.buckets[i] <= other.buckets[j])) {
+                    bucket = this.buckets[i];
+                }
+                else {
+                    bucket = other.buckets[j];
+                }
+                if (i < this.buckets.length && this.buckets[i] == bucket) {
+                    bucketCount += this.bucketCounts[i++];
+                }
+                if (j < other.buckets.length && other.buckets[j] == bucket) {
+                    bucketCount += other.bucketCounts[j++];
+                }
+                buckets[size] = bucket;
+                bucketCounts[size++] = bucketCount;
+            }
+            return new Snapshot(Arrays.copyOf(buckets, size), Arrays.copyOf(bucketCounts, size), 
+                    this.count + other.count, this.sum + other.sum, this.errors + other.errors);
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getErrorCount() {
+            return this.errors;
+        }
+
+        public long getSum() {
+            return this.sum;
+        }
+
+        public double getMean() {
+            if (this.count == 0) {
+                return 0;
+            }
+            return (double)this.sum / this.count;
+        }
+
+        public long getMin() {
+            if (this.buckets.length == 0) {
+                return 0;
+            }
+            return getBucketMaxValue(this.buckets[0]);
+        }
+
+        public long getMax() {
+            if (this.buckets.length == 0) {
+                return 0;
+            }
+            return getBucketMaxValue(this.buckets[this.buckets.length - 1]);
+        }
+
+        /**
+         * @param percentile 0 - 100
+         * @return The smallest recorded value that percentile of the values are at or below
+         */
+        public long getPercentile(double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long)Math.ceil(this.count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < this.buckets.length; i++) {
+                seen += this.bucketCounts[i];
+                if (seen >= rank) {
+                    return getBucketMaxValue(this.buckets[i]);
+                }
+            }
+            return this.getMax();
+        }
+    }
+}
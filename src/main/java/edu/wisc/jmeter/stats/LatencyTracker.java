@@ -0,0 +1,189 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import edu.wisc.jmeter.LatencyRollup;
+
+/**
+ * {@link LatencyHistogram} per host and label. Recording does not allocate once a host and
+ * label have been seen, {@link #drain(long)} turns the histograms into {@link LatencyRollup}s.
+ * <p>
+ * Besides the fine rollups produced on every drain, drained histograms are folded into coarser
+ * resolutions which are emitted once their bucket closes, so long term data never has to be
+ * rebuilt from fine rows.
+ */
+public class LatencyTracker {
+    private final ConcurrentMap<String, ConcurrentMap<String, LatencyStats>> stats = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyStats>>();
+    private final int resolution;
+    private final int[] coarseResolutions;
+
+    /**
+     * @param resolution Minutes between drains
+     * @param coarseResolutions Minutes for each coarser resolution, any not larger than resolution are ignored
+     */
+    public LatencyTracker(int resolution, int... coarseResolutions) {
+        this.resolution = resolution;
+
+        int coarseCount = 0;
+        final int[] coarse = new int[coarseResolutions.length];
+        for (final int coarseResolution : coarseResolutions) {
+            if (coarseResolution > resolution) {
+                coarse[coarseCount++] = coarseResolution;
+            }
+        }
+        this.coarseResolutions = Arrays.copyOf(coarse, coarseCount);
+    }
+
+    public int getResolution() {
+        return this.resolution;
+    }
+
+    public int[] getCoarseResolutions() {
+        return this.coarseResolutions.clone();
+    }
+
+    public void record(String host, String label, long duration, boolean successful) {
+        this.getStats(host, label).histogram.record(duration, successful);
+    }
+
+    /**
+     * Drain every histogram into a rollup for the fine bucket starting at bucketStart and fold it
+     * into the coarse buckets, coarse buckets that bucketStart has moved past are returned as
+     * well. Stats that are idle at every resolution are dropped to keep memory bounded to active
+     * hosts and labels, a sample recorded at the moment its idle histogram is dropped is lost.
+     */
+    public List<LatencyRollup> drain(long bucketStart) {
+        return this.drain(bucketStart, false);
+    }
+
+    /**
+     * Same as {@link #drain(long)} but also returns the partial coarse buckets still in
+     * progress, used when tracking stops.
+     */
+    public List<LatencyRollup> drainAll(long bucketStart) {
+        return this.drain(bucketStart, true);
+    }
+
+    private List<LatencyRollup> drain(long bucketStart, boolean closeAll) {
+        final List<LatencyRollup> rollups = new ArrayList<LatencyRollup>();
+
+        for (final Map.Entry<String, ConcurrentMap<String, LatencyStats>> hostEntry : this.stats.entrySet()) {
+            final String host = hostEntry.getKey();
+            final ConcurrentMap<String, LatencyStats> labelStats = hostEntry.getValue();
+
+            for (final Iterator<Map.Entry<String, LatencyStats>> labelIterator = labelStats.entrySet().iterator(); labelIterator.hasNext();) {
+                final Map.Entry<String, LatencyStats> labelEntry = labelIterator.next();
+                final String label = labelEntry.getKey();
+                final LatencyStats latencyStats = labelEntry.getValue();
+
+                final LatencyHistogram.Snapshot snapshot = latencyStats.histogram.drain();
+                if (snapshot.getCount() > 0) {
+                    rollups.add(new LatencyRollup(host, label, this.resolution, new Date(bucketStart), snapshot));
+                }
+
+                boolean idle = snapshot.getCount() == 0;
+                for (int i = 0; i < this.coarseResolutions.length; i++) {
+                    final int coarseResolution = this.coarseResolutions[i];
+                    final long coarseStart = getBucketStart(bucketStart, coarseResolution);
+
+                    //Bucket closed, emit it and start the next one
+                    LatencyHistogram.Snapshot coarseSnapshot = latencyStats.coarseSnapshots[i];
+                    if (coarseSnapshot != null && latencyStats.coarseStarts[i] != coarseStart) {
+                        rollups.add(new LatencyRollup(host, label, coarseResolution, new Date(latencyStats.coarseStarts[i]), coarseSnapshot));
+                        coarseSnapshot = null;
+                    }
+
+                    if (snapshot.getCount() > 0) {
+                        coarseSnapshot = coarseSnapshot == null ? snapshot : coarseSnapshot.add(snapshot);
+                        latencyStats.coarseStarts[i] = coarseStart;
+                    }
+
+                    if (closeAll && coarseSnapshot != null) {
+                        rollups.add(new LatencyRollup(host, label, coarseResolution, new Date(latencyStats.coarseStarts[i]), coarseSnapshot));
+                        coarseSnapshot = null;
+                    }
+
+                    latencyStats.coarseSnapshots[i] = coarseSnapshot;
+                    idle = idle && coarseSnapshot == null;
+                }
+
+                if (idle) {
+                    labelIterator.remove();
+                }
+            }
+        }
+
+        return rollups;
+    }
+
+    /**
+     * Start of the bucket of the given resolution, in minutes, that the time falls in
+     */
+    public static long getBucketStart(long time, int resolution) {
+        final long bucketLength = TimeUnit.MILLISECONDS.convert(resolution, TimeUnit.MINUTES);
+        return time - (time % bucketLength);
+    }
+
+    private LatencyStats getStats(String host, String label) {
+        ConcurrentMap<String, LatencyStats> labelStats = this.stats.get(host);
+        if (labelStats == null) {
+            labelStats = new ConcurrentHashMap<String, LatencyStats>();
+            final ConcurrentMap<String, LatencyStats> existing = this.stats.putIfAbsent(host, labelStats);
+            if (existing != null) {
+                labelStats = existing;
+            }
+        }
+
+        LatencyStats latencyStats = labelStats.get(label);
+        if (latencyStats == null) {
+            latencyStats = new LatencyStats(this.coarseResolutions.length);
+            final LatencyStats existing = labelStats.putIfAbsent(label, latencyStats);
+            if (existing != null) {
+                latencyStats = existing;
+            }
+        }
+        return latencyStats;
+    }
+
+    /**
+     * Live histogram plus the in-progress coarse buckets, the coarse fields are only touched by
+     * the draining thread
+     */
+    private static final class LatencyStats {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LatencyHistogram.Snapshot[] coarseSnapshots;
+        private final long[] coarseStarts;
+
+        public LatencyStats(int coarseResolutions) {
+            this.coarseSnapshots = new LatencyHistogram.Snapshot[coarseResolutions];
+            this.coarseStarts = new long[coarseResolutions];
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.stats;
+
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the last few samples of each host so notifications and failure captures can show what
+ * led up to a failure. Each host gets a ring of preallocated primitive arrays, recording a sample
+ * overwrites the oldest slot and allocates nothing once the host and its labels have been seen.
+ * <p>
+ * Labels are numbered by a small table in each ring rather than a shared one, labels no slot
+ * refers to anymore are dropped when the table fills up and removing a host frees everything it
+ * used.
+ */
+public class RecentSamples {
+    public static final int NO_RESPONSE_CODE = -1;
+
+    private final ConcurrentMap<String, Ring> rings = new ConcurrentHashMap<String, Ring>();
+    private final int size;
+
+    /**
+     * @param size Samples to keep per host
+     */
+    public RecentSamples(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be at least 1: " + size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Record a sample for the host, replacing the oldest one once the host's ring is full
+     */
+    public void record(String host, String label, long endTime, long duration, boolean success, String responseCode) {
+        this.getRing(host).record(label, endTime, duration, success, parseResponseCode(responseCode));
+    }
+
+    /**
+     * @return The host's recent samples oldest first, one per line, empty if none have been recorded
+     */
+    public String describe(String host) {
+        final Ring ring = this.rings.get(host);
+        if (ring == null) {
+            return "";
+        }
+
+        final StringBuilder description = new StringBuilder();
+        ring.describe(description, new SimpleDateFormat("HH:mm:ss.SSS"));
+        return description.toString();
+    }
+
+    /**
+     * Drop the samples of the hosts
+     */
+    public void remove(Collection<String> hosts) {
+        for (final String host : hosts) {
+            this.rings.remove(host);
+        }
+    }
+
+    /**
+     * @return Number of hosts with samples
+     */
+    public int getHostCount() {
+        return this.rings.size();
+    }
+
+    /**
+     * Response codes are kept as ints, anything that isn't a plain number (JMeter uses messages
+     * for non-HTTP failures) is {@link #NO_RESPONSE_CODE}. Parsed by hand to avoid the exception
+     * Integer.parseInt throws for those.
+     */
+    public static int parseResponseCode(String responseCode) {
+        if (responseCode == null || responseCode.length() == 0 || responseCode.length() > 9) {
+            return NO_RESPONSE_CODE;
+        }
+
+        int code = 0;
+        for (int i = 0; i < responseCode.length(); i++) {
+            final char c = responseCode.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_RESPONSE_CODE;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    private Ring getRing(String host) {
+        Ring ring = this.rings.get(host);
+        if (ring == null) {
+            ring = new Ring(this.size);
+            final Ring existing = this.rings.putIfAbsent(host, ring);
+            if (existing != null) {
+                ring = existing;
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * Fixed size ring of samples for a single host. The label table holds twice as many labels
+     * as there are slots so at least half of it is free after dropping unused labels.
+     */
+    private static final class Ring {
+        private final String[] labels;
+        private int labelCount;
+        private final int[] labelIds;
+        private final long[] endTimes;
+        private final long[] durations;
+        private final boolean[] successes;
+        private final int[] responseCodes;
+        private int next;
+        private int count;
+
+        public Ring(int size) {
+            this.labels = new String[size * 2];
+            this.labelIds = new int[size];
+            this.endTimes = new long[size];
+            this.durations = new long[size];
+            this.successes = new boolean[size];
+            this.responseCodes = new int[size];
+        }
+
+        public synchronized void record(String label, long endTime, long duration, boolean success, int responseCode) {
+            this.labelIds[this.next] = this.getLabelId(label);
+            this.endTimes[this.next] = endTime;
+            this.durations[this.next] = duration;
+            this.successes[this.next] = success;
+            this.responseCodes[this.next] = responseCode;
+
+            this.next = (this.next + 1) % this.endTimes.length;
+            if (this.count < this.endTimes.length) {
+                this.count++;
+            }
+        }
+
+        public synchronized void describe(StringBuilder description, SimpleDateFormat timeFormat) {
+            final int length = this.endTimes.length;
+            for (int i = 0; i < this.count; i++) {
+                final int slot = (this.next - this.count + i + length) % length;
+
+                description.append(timeFormat.format(new Date(this.endTimes[slot])))
+                    .append(this.successes[slot] ? " OK   " : " FAIL ");
+
+                final int responseCode = this.responseCodes[slot];
+                description.append(responseCode == NO_RESPONSE_CODE ? "-" : Integer.toString(responseCode))
+                    .append(" ").append(this.durations[slot]).append("ms ")
+                    .append(this.labels[this.labelIds[slot]]).append("\n");
+            }
+        }
+
+        /**
+         * JMeter hands out the same label instances so the identity check usually matches first
+         */
+        private int getLabelId(String label) {
+            for (int id = 0; id < this.labelCount; id++) {
+                final String existing = this.labels[id];
+                if (existing == label || existing.equals(label)) {
+                    return id;
+                }
+            }
+
+            if (this.labelCount == this.labels.length) {
+                this.compactLabels();
+            }
+            this.labels[this.labelCount] = label;
+            return this.labelCount++;
+        }
+
+        /**
+         * Renumber the labels the recorded slots use, dropping the rest
+         */
+        private void compactLabels() {
+            final String[] oldLabels = this.labels.clone();
+            final int[] newIds = new int[this.labels.length];
+            for (int id = 0; id < this.labels.length; id++) {
+                newIds[id] = -1;
+            }
+
+            int newCount = 0;
+            for (int slot = 0; slot < this.count; slot++) {
+                final int id = this.labelIds[slot];
+                if (newIds[id] == -1) {
+                    newIds[id] = newCount;
+                    this.labels[newCount] = oldLabels[id];
+                    newCount++;
+                }
+                this.labelIds[slot] = newIds[id];
+            }
+            for (int id = newCount; id < this.labelCount; id++) {
+                this.labels[id] = null;
+            }
+            this.labelCount = newCount;
+        }
+    }
+}
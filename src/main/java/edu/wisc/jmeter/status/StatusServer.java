@@ -0,0 +1,252 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.status;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.wisc.jmeter.Json;
+import edu.wisc.jmeter.LatencyRollup;
+import edu.wisc.jmeter.OutageStats;
+
+/**
+ * Serves the {@link StatusState} as JSON over the JDK's built in HTTP server so dashboards can
+ * poll the listener instead of the database:
+ * <ul>
+ *  <li>/status/hosts - current status of every host, with availability and mean time to recovery
+ *  in ms once the host has had an outage. Availability is as of the last change to the hosts.</li>
+ *  <li>/status/failures - recent failures, newest first</li>
+ *  <li>/status/latency - latest latency rollup of every host and label</li>
+ * </ul>
+ * Each response is rendered once per state version and reused until the state changes, with the
+ * version as an ETag so pollers can skip unchanged responses entirely.
+ */
+public class StatusServer {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private final StatusState statusState;
+    private final String bindAddress;
+    private final int port;
+    private final String instanceTag = Long.toString(System.currentTimeMillis(), 36);
+    private HttpServer httpServer;
+
+    public StatusServer(StatusState statusState, String bindAddress, int port) {
+        this.statusState = statusState;
+        this.bindAddress = bindAddress;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        this.httpServer = HttpServer.create(new InetSocketAddress(this.bindAddress, this.port), 0);
+        this.httpServer.createContext("/status/hosts", new CachedJsonHandler() {
+            @Override
+            protected long getVersion() {
+                return statusState.getHostsVersion();
+            }
+            @Override
+            protected String render() {
+                return renderHosts();
+            }
+        });
+        this.httpServer.createContext("/status/failures", new CachedJsonHandler() {
+            @Override
+            protected long getVersion() {
+                return statusState.getFailuresVersion();
+            }
+            @Override
+            protected String render() {
+                return renderFailures();
+            }
+        });
+        this.httpServer.createContext("/status/latency", new CachedJsonHandler() {
+            @Override
+            protected long getVersion() {
+                return statusState.getLatencyVersion();
+            }
+            @Override
+            protected String render() {
+                return renderLatency();
+            }
+        });
+        this.httpServer.start();
+        log.info("Started status server on " + this.bindAddress + ":" + this.getPort());
+    }
+
+    public void stop() {
+        final HttpServer server = this.httpServer;
+        this.httpServer = null;
+        if (server != null) {
+            server.stop(0);
+            log.info("Stopped status server");
+        }
+    }
+
+    /**
+     * @return The port being listened on, useful when started on port 0
+     */
+    public int getPort() {
+        return this.httpServer.getAddress().getPort();
+    }
+
+    String renderHosts() {
+        final StringBuilder json = new StringBuilder("{\"hosts\":[");
+        final List<StatusState.HostEntry> hosts = this.statusState.getHosts();
+        final Date now = new Date();
+        for (int i = 0; i < hosts.size(); i++) {
+            final StatusState.HostEntry host = hosts.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"host\":").append(Json.quote(host.getHost()))
+                .append(",\"status\":").append(Json.quote(host.getStatus().name()))
+                .append(",\"since\":").append(Json.time(host.getSince()))
+                .append(",\"failureCount\":").append(host.getFailureCount())
+                .append(",\"messageCount\":").append(host.getMessageCount())
+                .append(",\"lastMessageSent\":").append(Json.time(host.getLastMessageSent()));
+            
+            final OutageStats outageStats = this.statusState.getOutageStats(host.getHost());
+            if (outageStats != null) {
+                json.append(",\"availability\":").append(outageStats.getAvailability(now))
+                    .append(",\"outageCount\":").append(outageStats.getOutageCount())
+                    .append(",\"meanTimeToRecovery\":").append(outageStats.getMeanTimeToRecovery());
+            }
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    String renderFailures() {
+        final StringBuilder json = new StringBuilder("{\"failures\":[");
+        final List<StatusState.FailureEntry> failures = this.statusState.getFailures();
+        for (int i = 0; i < failures.size(); i++) {
+            final StatusState.FailureEntry failure = failures.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"host\":").append(Json.quote(failure.getHost()))
+                .append(",\"label\":").append(Json.quote(failure.getLabel()))
+                .append(",\"time\":").append(Json.time(failure.getTime()))
+                .append(",\"status\":").append(Json.quote(failure.getStatus().name()))
+                .append(",\"subject\":").append(Json.quote(failure.getSubject()))
+                .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    String renderLatency() {
+        final StringBuilder json = new StringBuilder("{\"resolution\":").append(this.statusState.getLatencyResolution())
+            .append(",\"latency\":[");
+        final List<LatencyRollup> rollups = this.statusState.getLatency();
+        for (int i = 0; i < rollups.size(); i++) {
+            final LatencyRollup rollup = rollups.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"host\":").append(Json.quote(rollup.getHost()))
+                .append(",\"label\":").append(Json.quote(rollup.getLabel()))
+                .append(",\"bucketStart\":").append(Json.time(rollup.getBucketStart()))
+                .append(",\"sampleCount\":").append(rollup.getSampleCount())
+                .append(",\"errorCount\":").append(rollup.getErrorCount())
+                .append(",\"min\":").append(rollup.getMinDuration())
+                .append(",\"mean\":").append(Math.round(rollup.getMeanDuration()))
+                .append(",\"max\":").append(rollup.getMaxDuration())
+                .append(",\"p50\":").append(rollup.getP50())
+                .append(",\"p90\":").append(rollup.getP90())
+                .append(",\"p95\":").append(rollup.getP95())
+                .append(",\"p99\":").append(rollup.getP99())
+                .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Handler that renders its response at most once per state version
+     */
+    private abstract class CachedJsonHandler implements HttpHandler {
+        private volatile CachedResponse cachedResponse;
+
+        protected abstract long getVersion();
+
+        protected abstract String render();
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                final CachedResponse response = this.getResponse();
+                exchange.getResponseHeaders().set("ETag", response.etag);
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                if (response.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.sendResponseHeaders(200, response.body.length);
+                final OutputStream responseBody = exchange.getResponseBody();
+                responseBody.write(response.body);
+                responseBody.flush();
+            }
+            finally {
+                exchange.close();
+            }
+        }
+
+        private CachedResponse getResponse() throws UnsupportedEncodingException {
+            //Read the version before rendering, a change during rendering causes another render next time
+            final long version = this.getVersion();
+            CachedResponse response = this.cachedResponse;
+            if (response == null || response.version != version) {
+                response = new CachedResponse(version, "\"" + instanceTag + "-" + version + "\"", this.render().getBytes("UTF-8"));
+                this.cachedResponse = response;
+            }
+            return response;
+        }
+    }
+
+    private static final class CachedResponse {
+        private final long version;
+        private final String etag;
+        private final byte[] body;
+
+        public CachedResponse(long version, String etag, byte[] body) {
+            this.version = version;
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.status;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
+import edu.wisc.jmeter.OutageStats;
+import edu.wisc.jmeter.Status;
+
+/**
+ * In memory copy of the host statuses, recent failures and latest latency rollups the listener
+ * stores, served by the {@link StatusServer}. Each kind of state has a version that only changes
+ * when the state does, so rendered responses can be reused until then.
+ */
+public class StatusState {
+    private final ConcurrentMap<String, HostEntry> hosts = new ConcurrentHashMap<String, HostEntry>();
+    private final ConcurrentMap<String, OutageStats> outageStats = new ConcurrentHashMap<String, OutageStats>();
+    private final LinkedList<FailureEntry> failures = new LinkedList<FailureEntry>();
+    private final ConcurrentMap<String, LatencyRollup> latency = new ConcurrentHashMap<String, LatencyRollup>();
+    private final AtomicLong hostsVersion = new AtomicLong();
+    private final AtomicLong failuresVersion = new AtomicLong();
+    private final AtomicLong latencyVersion = new AtomicLong();
+    private final int recentFailureCount;
+    private final int latencyResolution;
+
+    /**
+     * @param recentFailureCount Failures to keep, the oldest is dropped past this
+     * @param latencyResolution Rollup resolution, in minutes, of the latency summaries to keep
+     */
+    public StatusState(int recentFailureCount, int latencyResolution) {
+        this.recentFailureCount = recentFailureCount;
+        this.latencyResolution = latencyResolution;
+    }
+
+    /**
+     * Track the host's current status. The hosts version only changes if the status or counts did,
+     * samples that just touch the last updated time don't invalidate anything.
+     */
+    public void updateHost(HostStatus hostStatus) {
+        final String host = hostStatus.getHost();
+        while (true) {
+            final HostEntry existing = this.hosts.get(host);
+            if (existing != null && existing.matches(hostStatus)) {
+                return;
+            }
+
+            final Date since;
+            if (existing != null && existing.getStatus() == hostStatus.getStatus()) {
+                since = existing.getSince();
+            }
+            else if (hostStatus.getLastUpdated() != null) {
+                since = hostStatus.getLastUpdated();
+            }
+            else {
+                since = new Date();
+            }
+
+            final HostEntry entry = new HostEntry(hostStatus, since);
+            final boolean stored;
+            if (existing == null) {
+                stored = this.hosts.putIfAbsent(host, entry) == null;
+            }
+            else {
+                stored = this.hosts.replace(host, existing, entry);
+            }
+            if (stored) {
+                this.hostsVersion.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Track the host's outage totals, called when an outage opens or closes since that is when
+     * they change
+     */
+    public void updateOutageStats(OutageStats outageStats) {
+        this.outageStats.put(outageStats.getHost(), outageStats);
+        this.hostsVersion.incrementAndGet();
+    }
+
+    /**
+     * Stop serving hosts that storage purged
+     */
+    public void removeHosts(Collection<String> hostNames) {
+        boolean removed = false;
+        for (final String host : hostNames) {
+            removed |= this.hosts.remove(host) != null;
+            removed |= this.outageStats.remove(host) != null;
+        }
+        if (removed) {
+            this.hostsVersion.incrementAndGet();
+        }
+    }
+
+    public void addFailure(String host, String label, Date time, Status status, String subject) {
+        synchronized (this.failures) {
+            this.failures.addFirst(new FailureEntry(host, label, time, status, subject));
+            if (this.failures.size() > this.recentFailureCount) {
+                this.failures.removeLast();
+            }
+        }
+        this.failuresVersion.incrementAndGet();
+    }
+
+    /**
+     * Keep the newest rollup of each host and label at the tracked resolution, others are ignored
+     */
+    public void updateLatency(List<LatencyRollup> rollups) {
+        boolean changed = false;
+        for (final LatencyRollup rollup : rollups) {
+            if (rollup.getResolution() != this.latencyResolution) {
+                continue;
+            }
+
+            final String key = rollup.getHost() + "\t" + rollup.getLabel();
+            final LatencyRollup existing = this.latency.get(key);
+            if (existing == null || !existing.getBucketStart().after(rollup.getBucketStart())) {
+                this.latency.put(key, rollup);
+                changed = true;
+            }
+        }
+        if (changed) {
+            this.latencyVersion.incrementAndGet();
+        }
+    }
+
+    public long getHostsVersion() {
+        return this.hostsVersion.get();
+    }
+
+    public long getFailuresVersion() {
+        return this.failuresVersion.get();
+    }
+
+    public long getLatencyVersion() {
+        return this.latencyVersion.get();
+    }
+
+    public int getLatencyResolution() {
+        return this.latencyResolution;
+    }
+
+    /**
+     * @return Every tracked host, sorted by name
+     */
+    public List<HostEntry> getHosts() {
+        final List<HostEntry> hostEntries = new ArrayList<HostEntry>(this.hosts.values());
+        Collections.sort(hostEntries);
+        return hostEntries;
+    }
+
+    /**
+     * @return The host's outage totals, null if it has not had an outage since the listener started
+     */
+    public OutageStats getOutageStats(String host) {
+        return this.outageStats.get(host);
+    }
+
+    /**
+     * @return The recent failures, newest first
+     */
+    public List<FailureEntry> getFailures() {
+        synchronized (this.failures) {
+            return new ArrayList<FailureEntry>(this.failures);
+        }
+    }
+
+    public List<LatencyRollup> getLatency() {
+        return new ArrayList<LatencyRollup>(this.latency.values());
+    }
+
+    /**
+     * Immutable copy of the parts of a {@link HostStatus} that are served
+     */
+    public static final class HostEntry implements Comparable<HostEntry> {
+        private final String host;
+        private final Status status;
+        private final int failureCount;
+        private final int messageCount;
+        private final Date lastMessageSent;
+        private final Date since;
+
+        HostEntry(HostStatus hostStatus, Date since) {
+            this.host = hostStatus.getHost();
+            this.status = hostStatus.getStatus();
+            this.failureCount = hostStatus.getFailureCount();
+            this.messageCount = hostStatus.getMessageCount();
+            this.lastMessageSent = hostStatus.getLastMessageSent();
+            this.since = since;
+        }
+
+        boolean matches(HostStatus hostStatus) {
+            return this.status == hostStatus.getStatus()
+                    && this.failureCount == hostStatus.getFailureCount()
+                    && this.messageCount == hostStatus.getMessageCount()
+                    && (this.lastMessageSent == null ? hostStatus.getLastMessageSent() == null : this.lastMessageSent.equals(hostStatus.getLastMessageSent()));
+        }
+
+        public String getHost() {
+            return host;
+        }
+        public Status getStatus() {
+            return status;
+        }
+        public int getFailureCount() {
+            return failureCount;
+        }
+        public int getMessageCount() {
+            return messageCount;
+        }
+        public Date getLastMessageSent() {
+            return lastMessageSent;
+        }
+        /**
+         * @return When the host changed to its current status, as far as this listener has seen
+         */
+        public Date getSince() {
+            return since;
+        }
+
+        @Override
+        public int compareTo(HostEntry o) {
+            return this.host.compareTo(o.host);
+        }
+    }
+
+    public static final class FailureEntry {
+        private final String host;
+        private final String label;
+        private final Date time;
+        private final Status status;
+        private final String subject;
+
+        FailureEntry(String host, String label, Date time, Status status, String subject) {
+            this.host = host;
+            this.label = label;
+            this.time = time;
+            this.status = status;
+            this.subject = subject;
+        }
+
+        public String getHost() {
+            return host;
+        }
+        public String getLabel() {
+            return label;
+        }
+        public Date getTime() {
+            return time;
+        }
+        public Status getStatus() {
+            return status;
+        }
+        public String getSubject() {
+            return subject;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.MonitorListener;
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.dao.LocalMonitorDao;
+import edu.wisc.jmeter.metrics.StripedCounter;
+import edu.wisc.jmeter.stats.RecentSamples;
+
+public class AggregatorTest {
+    @Test
+    public void protocolTest() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final SampleRecordWriter writer = new SampleRecordWriter(bytes);
+        writer.writeBatch(Arrays.asList(
+                new SampleRecord("host1", "login", 1000, 100, true, 200, Status.UP, true),
+                new SampleRecord("host2", "login", 2000, 200, false, RecentSamples.NO_RESPONSE_CODE, Status.OUT_UP, false)));
+        writer.writeBatch(Arrays.asList(new SampleRecord("host1", "home", 3000, 300, false, 503, Status.UNKOWN, false)));
+
+        final SampleRecordReader reader = new SampleRecordReader(new ByteArrayInputStream(bytes.toByteArray()));
+        final List<SampleRecord> first = reader.readBatch();
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals("host2", first.get(1).getHost());
+        Assert.assertEquals(RecentSamples.NO_RESPONSE_CODE, first.get(1).getResponseCode());
+        Assert.assertEquals(Status.OUT_UP, first.get(1).getStatus());
+        Assert.assertTrue(first.get(0).isNotify());
+
+        final SampleRecord second = reader.readBatch().get(0);
+        Assert.assertEquals("host1", second.getHost());
+        Assert.assertEquals("home", second.getLabel());
+        Assert.assertEquals(3000, second.getEndTime());
+        Assert.assertEquals(300, second.getDuration());
+        Assert.assertFalse(second.isSuccessful());
+        Assert.assertEquals(503, second.getResponseCode());
+
+        Assert.assertNull(reader.readBatch());
+
+        //Every status has its own code and reads back as itself
+        final Set<Integer> codes = new HashSet<Integer>();
+        for (final Status status : Status.values()) {
+            final int code = SampleRecordWriter.getStatusCode(status);
+            Assert.assertTrue(codes.add(code));
+            Assert.assertEquals(status, SampleRecordReader.getStatus(code));
+        }
+
+        //A batch size over the limit is rejected before anything is allocated for it
+        final ByteArrayOutputStream oversized = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(oversized);
+        out.writeInt(SampleRecordWriter.MAGIC);
+        out.writeByte(SampleRecordWriter.VERSION);
+        out.writeByte(SampleRecordWriter.BATCH);
+        out.writeInt(Integer.MAX_VALUE);
+        try {
+            new SampleRecordReader(new ByteArrayInputStream(oversized.toByteArray())).readBatch();
+            Assert.fail("Oversized batch was read");
+        }
+        catch (IOException e) {
+            //Expected
+        }
+    }
+
+    @Test
+    public void aggregateTest() throws Exception {
+        final File directory = new File(System.getProperty("java.io.tmpdir"), "aggregator-test-" + System.nanoTime());
+        try {
+            final MonitorListener listener = new MonitorListener();
+            listener.setStorageType(MonitorListener.STORAGE_TYPE_LOCAL);
+            listener.setLocalStorageDirectory(directory.getAbsolutePath());
+            listener.setLogLocation(directory.getAbsolutePath());
+            listener.setFailureThreshold(2);
+            listener.setErrorRateWindow(0);
+            listener.setLatencyRollupInterval(0);
+            listener.setErrorSignatureInterval(0);
+
+            final Aggregator aggregator = new Aggregator(listener, Aggregator.DEFAULT_BIND_ADDRESS, 0);
+            aggregator.start();
+            try {
+                //Two agents each see one failure of host1, together they reach the threshold
+                for (int agent = 0; agent < 2; agent++) {
+                    final AggregatorClient client = new AggregatorClient(Aggregator.DEFAULT_BIND_ADDRESS + ":" + aggregator.getPort(), 10, 100, new StripedCounter(), new StripedCounter());
+                    client.start(50);
+                    client.send(new SampleRecord("host1", "login", System.currentTimeMillis(), 100, false, 500, Status.UP, false));
+                    client.send(new SampleRecord("host2", "login", System.currentTimeMillis(), 100, true, 200, Status.UP, false));
+                    client.close();
+                }
+
+                for (int wait = 0; aggregator.getReceived() < 4 && wait < 500; wait++) {
+                    Thread.sleep(10);
+                }
+                Assert.assertEquals(4, aggregator.getReceived());
+            }
+            finally {
+                aggregator.stop();
+            }
+
+            final LocalMonitorDao monitorDao = new LocalMonitorDao(directory, 60, 60);
+            monitorDao.afterPropertiesSet();
+            try {
+                final HostStatus hostStatus = monitorDao.getHostStatus("host1");
+                Assert.assertEquals(Status.DOWN, hostStatus.getStatus());
+                Assert.assertEquals(2, hostStatus.getFailureCount());
+                Assert.assertEquals(Status.UP, monitorDao.getHostStatus("host2").getStatus());
+            }
+            finally {
+                monitorDao.destroy();
+            }
+        }
+        finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+}
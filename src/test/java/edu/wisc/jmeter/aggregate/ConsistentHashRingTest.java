@@ -0,0 +1,79 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.aggregate;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+    private static final int HOSTS = 10000;
+
+    @Test
+    public void balanceTest() {
+        final ConsistentHashRing<String> ring = new ConsistentHashRing<String>(nodes("a", "b", "c", "d"));
+
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < HOSTS; i++) {
+            final String owner = ring.getOwner("host" + i + ".example.edu");
+            counts.put(owner, counts.containsKey(owner) ? counts.get(owner) + 1 : 1);
+        }
+
+        Assert.assertEquals(4, counts.size());
+        for (final Map.Entry<String, Integer> count : counts.entrySet()) {
+            Assert.assertTrue(count.toString(), count.getValue() > HOSTS * 0.15 && count.getValue() < HOSTS * 0.35);
+        }
+    }
+
+    @Test
+    public void rebalanceTest() {
+        final ConsistentHashRing<String> four = new ConsistentHashRing<String>(nodes("a", "b", "c", "d"));
+        final ConsistentHashRing<String> three = new ConsistentHashRing<String>(nodes("a", "b", "c"));
+        final ConsistentHashRing.NodeFilter<String> notD = new ConsistentHashRing.NodeFilter<String>() {
+            @Override
+            public boolean accept(String node) {
+                return !"d".equals(node);
+            }
+        };
+
+        for (int i = 0; i < HOSTS; i++) {
+            final String host = "host" + i + ".example.edu";
+            final String owner = four.getOwner(host);
+
+            //Only hosts of the node that left move, skipping it gives the same owner as rebuilding without it
+            if (!"d".equals(owner)) {
+                Assert.assertEquals(owner, three.getOwner(host));
+            }
+            Assert.assertEquals(three.getOwner(host), four.getOwner(host, notD));
+        }
+    }
+
+    private static Map<String, String> nodes(String... names) {
+        final Map<String, String> nodes = new LinkedHashMap<String, String>();
+        for (final String name : names) {
+            nodes.put(name, name);
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.capture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.capture.CaptureBufferPool.ExhaustedPolicy;
+import edu.wisc.jmeter.metrics.StripedCounter;
+
+public class CaptureBufferPoolTest {
+    private final StripedCounter truncated = new StripedCounter();
+    private final StripedCounter dropped = new StripedCounter();
+    private final StripedCounter blocked = new StripedCounter();
+
+    @Test
+    public void copyTest() throws Exception {
+        final CaptureBufferPool pool = this.createPool(ExhaustedPolicy.TRUNCATE, 16);
+
+        final PooledBytes bytes = pool.copy("head".getBytes("UTF-8"), "|".getBytes("UTF-8"), "body of the response".getBytes("UTF-8"));
+        Assert.assertEquals(25, bytes.getLength());
+        Assert.assertFalse(bytes.isTruncated());
+        Assert.assertEquals(12, pool.getFree());
+        Assert.assertEquals("head|body of the response", toString(bytes));
+
+        bytes.release();
+        Assert.assertEquals(16, pool.getFree());
+
+        //A single capture can use at most a quarter of the pool
+        final PooledBytes tooLong = pool.copy(new byte[100]);
+        Assert.assertTrue(tooLong.isTruncated());
+        Assert.assertEquals(32, tooLong.getLength());
+        Assert.assertEquals(100, tooLong.getOriginalLength());
+        Assert.assertEquals(1, this.truncated.get());
+        tooLong.release();
+    }
+
+    @Test
+    public void exhaustedTest() throws Exception {
+        final CaptureBufferPool truncatePool = this.createPool(ExhaustedPolicy.TRUNCATE, 8);
+        final PooledBytes truncateHeld = truncatePool.copy(new byte[16]);
+        truncatePool.copy(new byte[16]);
+        truncatePool.copy(new byte[16]);
+        truncatePool.copy(new byte[8]);
+        final PooledBytes partial = truncatePool.copy(new byte[16]);
+        Assert.assertEquals(8, partial.getLength());
+        Assert.assertEquals(1, this.truncated.get());
+        Assert.assertNull(truncatePool.copy(new byte[1]));
+        Assert.assertEquals(1, this.dropped.get());
+        truncateHeld.release();
+        Assert.assertEquals(2, truncatePool.getFree());
+
+        final CaptureBufferPool dropPool = this.createPool(ExhaustedPolicy.DROP, 8);
+        dropPool.copy(new byte[16]);
+        dropPool.copy(new byte[16]);
+        dropPool.copy(new byte[16]);
+        dropPool.copy(new byte[8]);
+        Assert.assertNull(dropPool.copy(new byte[16]));
+        Assert.assertEquals(2, this.dropped.get());
+        Assert.assertEquals(1, dropPool.getFree());
+
+        final CaptureBufferPool blockPool = this.createPool(ExhaustedPolicy.BLOCK, 4);
+        blockPool.copy(new byte[8]);
+        blockPool.copy(new byte[8]);
+        blockPool.copy(new byte[8]);
+        final PooledBytes blockHeld = blockPool.copy(new byte[8]);
+        final Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                blockHeld.release();
+            }
+        };
+        releaser.start();
+        final PooledBytes waited = blockPool.copy(new byte[8]);
+        Assert.assertNotNull(waited);
+        Assert.assertFalse(waited.isTruncated());
+        Assert.assertEquals(1, this.blocked.get());
+        releaser.join();
+        Assert.assertNull(blockPool.copy(new byte[8]));
+        Assert.assertEquals(3, this.dropped.get());
+    }
+
+    @Test
+    public void writerTest() throws Exception {
+        final File file = File.createTempFile("CaptureBufferPoolTest", ".response");
+        try {
+            final StripedCounter written = new StripedCounter();
+            final CaptureWriter writer = new CaptureWriter(this.createPool(ExhaustedPolicy.TRUNCATE, 16), 8, written, this.dropped);
+            Assert.assertTrue(writer.capture(file, "Label: login\n", "HTTP/1.1 500\n", "--\n", new byte[] { 'e', 'r', 'r', 'o', 'r' }));
+            writer.close();
+
+            Assert.assertEquals(1, written.get());
+            Assert.assertEquals("Label: login\nHTTP/1.1 500\n--\nerror", FileUtils.readFileToString(file, "UTF-8"));
+
+            //Captures after closing are counted as dropped
+            Assert.assertFalse(writer.capture(file, "Label: login\n", "HTTP/1.1 500\n", "--\n", new byte[] { 'l', 'a', 't', 'e' }));
+            Assert.assertEquals(1, written.get());
+            Assert.assertEquals(1, this.dropped.get());
+        }
+        finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    private CaptureBufferPool createPool(ExhaustedPolicy exhaustedPolicy, int slabCount) {
+        return new CaptureBufferPool(8, slabCount, exhaustedPolicy, 1000, this.truncated, this.dropped, this.blocked);
+    }
+
+    private static String toString(PooledBytes bytes) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bytes.writeTo(Channels.newChannel(out));
+        return out.toString("UTF-8");
+    }
+}
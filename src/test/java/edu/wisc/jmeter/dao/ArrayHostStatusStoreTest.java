@@ -0,0 +1,142 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.dao;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.SimpleHostStatus;
+import edu.wisc.jmeter.Status;
+
+public class ArrayHostStatusStoreTest {
+    @Test
+    public void viewTest() {
+        final ArrayHostStatusStore store = new ArrayHostStatusStore();
+        Assert.assertNull(store.get("host1"));
+
+        final HostStatus hostStatus = new SimpleHostStatus();
+        hostStatus.setHost("host1");
+        hostStatus.setFailureCount(3);
+        hostStatus.setLastUpdated(new Date(1000));
+        hostStatus.setVersion(7);
+        hostStatus.markStored();
+
+        final HostStatus stored = store.add(hostStatus);
+        Assert.assertTrue(stored != hostStatus);
+        Assert.assertEquals(hostStatus, stored);
+        Assert.assertEquals(3, stored.getFailureCount());
+        Assert.assertEquals(7, stored.getVersion());
+        Assert.assertNull(stored.getLastMessageSent());
+        Assert.assertEquals(Status.UNKOWN, stored.getStatus());
+
+        //Changes made through a view are seen by every later lookup
+        stored.incrementFailureCount();
+        stored.incrementMessageCount();
+        stored.setStatus(Status.DOWN);
+        stored.setLastMessageSent(new Date(2000));
+        final HostStatus lookedUp = store.get("host1");
+        Assert.assertEquals(4, lookedUp.getFailureCount());
+        Assert.assertEquals(1, lookedUp.getMessageCount());
+        Assert.assertEquals(Status.DOWN, lookedUp.getStatus());
+        Assert.assertEquals(new Date(2000), lookedUp.getLastMessageSent());
+
+        //Adding an existing host keeps the stored status
+        Assert.assertEquals(4, store.add(hostStatus).getFailureCount());
+
+        //Merging uses the stored baseline kept in the arrays
+        final HostStatus current = new SimpleHostStatus();
+        current.setHost("host1");
+        current.setFailureCount(10);
+        current.setVersion(8);
+        lookedUp.merge(current);
+        Assert.assertEquals(11, store.get("host1").getFailureCount());
+        Assert.assertEquals(8, store.get("host1").getVersion());
+
+        //Putting a copy replaces the stored values
+        hostStatus.setStatus(Status.UP);
+        store.put(hostStatus);
+        Assert.assertEquals(Status.UP, store.get("host1").getStatus());
+        Assert.assertEquals(3, store.get("host1").getFailureCount());
+    }
+
+    @Test
+    public void growAndRemoveTest() {
+        final ArrayHostStatusStore store = new ArrayHostStatusStore();
+        for (int i = 0; i < 5000; i++) {
+            final HostStatus hostStatus = new SimpleHostStatus();
+            hostStatus.setHost("host" + i);
+            hostStatus.setFailureCount(i);
+            hostStatus.setLastUpdated(new Date(i % 2 == 0 ? 1000 : 3000));
+            store.add(hostStatus);
+        }
+        Assert.assertEquals(5000, store.size());
+        Assert.assertEquals(4321, store.get("host4321").getFailureCount());
+
+        final List<String> removed = store.removeUpdatedBefore(new Date(2000));
+        Assert.assertEquals(2500, removed.size());
+        Assert.assertTrue(removed.contains("host0"));
+        Assert.assertEquals(2500, store.size());
+        Assert.assertEquals(2500, store.values().size());
+        Assert.assertNull(store.get("host4320"));
+        Assert.assertEquals(4321, store.get("host4321").getFailureCount());
+
+        //Released slots are reused after the next removal
+        Assert.assertTrue(store.removeUpdatedBefore(new Date(0)).isEmpty());
+        for (int i = 0; i < 2500; i++) {
+            final HostStatus hostStatus = new SimpleHostStatus();
+            hostStatus.setHost("new" + i);
+            hostStatus.setLastUpdated(new Date(5000));
+            store.add(hostStatus);
+        }
+        Assert.assertEquals(5000, store.size());
+        Assert.assertEquals(0, store.get("new42").getFailureCount());
+        Assert.assertEquals(4321, store.get("host4321").getFailureCount());
+
+        store.clear();
+        Assert.assertEquals(0, store.size());
+        Assert.assertNull(store.get("host4321"));
+    }
+
+    @Test
+    public void lockTest() {
+        final ArrayHostStatusStore store = new ArrayHostStatusStore();
+
+        //A host locked before it's stored keeps the same lock once added
+        final Object lock = store.getLock("host1");
+        Assert.assertSame(lock, store.getLock("host1"));
+        final HostStatus hostStatus = new SimpleHostStatus();
+        hostStatus.setHost("host1");
+        hostStatus.setLastUpdated(new Date(1000));
+        store.add(hostStatus);
+        Assert.assertSame(lock, store.getLock("host1"));
+
+        //Every host has its own lock
+        for (int i = 2; i < 1000; i++) {
+            Assert.assertNotSame(lock, store.getLock("host" + i));
+        }
+
+        store.removeUpdatedBefore(new Date(2000));
+        Assert.assertNotSame(lock, store.getLock("host1"));
+    }
+}
@@ -6,7 +6,16 @@
 
 package edu.wisc.jmeter.dao;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -21,9 +30,15 @@ import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import org.springframework.jdbc.datasource.SimpleDriverDataSource;
 import org.springframework.test.jdbc.SimpleJdbcTestUtils;
 
+import edu.wisc.jmeter.BurnRate;
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.ErrorSignatureCount;
 import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
 import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.OutageStats;
 import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.stats.LatencyTracker;
 
 /**
  * @author Eric Dalquist
@@ -33,6 +48,7 @@ public class JdbcMonitorDaoTest {
     private JdbcMonitorDao jdbcMonitorDao;
     private DataSource ds;
     private JdbcTemplate jdbcTemplate;
+    private final List<JdbcMonitorDao> nodes = new ArrayList<JdbcMonitorDao>();
     
     @Before
     public void setup() throws Exception {
@@ -47,11 +63,26 @@ public class JdbcMonitorDaoTest {
     
     @After
     public void tearDown() throws Exception {
+        for (final JdbcMonitorDao node : this.nodes) {
+            node.destroy();
+        }
+        this.nodes.clear();
+        
         this.jdbcTemplate.execute("SHUTDOWN");
         this.jdbcMonitorDao.destroy();
         this.jdbcMonitorDao = null;
     }
     
+    /**
+     * @return Another node sharing the database, destroyed after the test
+     */
+    private JdbcMonitorDao createNode() throws Exception {
+        final JdbcMonitorDao node = new JdbcMonitorDao(this.ds, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        node.afterPropertiesSet();
+        this.nodes.add(node);
+        return node;
+    }
+    
     @Test
     public void hostStatusTest() {
         final HostStatus host1Status = this.jdbcMonitorDao.getHostStatus("host1");
@@ -84,6 +115,249 @@ public class JdbcMonitorDaoTest {
         Assert.assertNotSame(host1Status, host1StatusPrime2);
     }
     
+    @Test
+    public void concurrentHostStatusTest() throws Exception {
+        final JdbcMonitorDao otherMonitorDao = this.createNode();
+        final HostStatus node1Status = this.jdbcMonitorDao.getHostStatus("host1");
+        final HostStatus node2Status = otherMonitorDao.getHostStatus("host1");
+        Assert.assertTrue(node1Status != node2Status);
+        
+        //Both nodes see failures from their own view of the host
+        node1Status.incrementFailureCount();
+        node1Status.incrementFailureCount();
+        node1Status.setStatus(Status.DOWN);
+        this.jdbcMonitorDao.storeHostStatus(node1Status);
+        
+        final Date lastMessageSent = new Date();
+        node2Status.incrementFailureCount();
+        node2Status.incrementMessageCount();
+        node2Status.setLastMessageSent(lastMessageSent);
+        node2Status.setStatus(Status.DOWN);
+        otherMonitorDao.storeHostStatus(node2Status);
+        
+        //Second store conflicted and merged, failures are summed
+        Assert.assertEquals(3, node2Status.getFailureCount());
+        Assert.assertEquals(1, node2Status.getMessageCount());
+        Assert.assertEquals(2, node2Status.getVersion());
+        
+        //First node picks up the merged row on refresh
+        this.jdbcMonitorDao.refreshHostStatusCache();
+        Assert.assertEquals(3, node1Status.getFailureCount());
+        Assert.assertEquals(1, node1Status.getMessageCount());
+        Assert.assertEquals(lastMessageSent, node1Status.getLastMessageSent());
+        Assert.assertEquals(2, node1Status.getVersion());
+        
+        //A local reset wins over failures counted elsewhere
+        node2Status.incrementFailureCount();
+        otherMonitorDao.storeHostStatus(node2Status);
+        node1Status.setFailureCount(0);
+        node1Status.setStatus(Status.UP);
+        this.jdbcMonitorDao.storeHostStatus(node1Status);
+        Assert.assertEquals(0, node1Status.getFailureCount());
+        Assert.assertEquals(4, node1Status.getVersion());
+    }
+    
+    @Test
+    public void leaseTest() throws Exception {
+        final JdbcMonitorDao node2MonitorDao = this.createNode();
+        final JdbcMonitorDao node3MonitorDao = this.createNode();
+        Assert.assertTrue(this.jdbcMonitorDao.acquireLease("test", 60000));
+        Assert.assertFalse(node2MonitorDao.acquireLease("test", 60000));
+        Assert.assertFalse(node3MonitorDao.acquireLease("test", 60000));
+        
+        //Holder can renew
+        Assert.assertTrue(this.jdbcMonitorDao.acquireLease("test", 60000));
+        
+        //Released lease is available immediately
+        this.jdbcMonitorDao.releaseLease("test");
+        Assert.assertTrue(node2MonitorDao.acquireLease("test", 60000));
+        Assert.assertFalse(this.jdbcMonitorDao.acquireLease("test", 60000));
+        
+        //Expired lease fails over to the next node that asks
+        Assert.assertTrue(node2MonitorDao.acquireLease("test", -1000));
+        Assert.assertTrue(node3MonitorDao.acquireLease("test", 60000));
+        Assert.assertFalse(node2MonitorDao.acquireLease("test", 60000));
+    }
+    
+    @Test
+    public void claimNotificationTest() throws Exception {
+        final JdbcMonitorDao otherMonitorDao = this.createNode();
+        final Date window = new Date(0);
+        Assert.assertNull(this.jdbcMonitorDao.claimNotification("host1", Status.DOWN, window, 60000));
+        Assert.assertEquals(this.jdbcMonitorDao.getNodeId(), otherMonitorDao.claimNotification("host1", Status.DOWN, window, 60000));
+        
+        //Repeat claims by the winner still succeed
+        Assert.assertNull(this.jdbcMonitorDao.claimNotification("host1", Status.DOWN, window, 60000));
+        
+        //Different transition, window or host is a separate claim
+        Assert.assertNull(otherMonitorDao.claimNotification("host1", Status.UP, window, 60000));
+        Assert.assertNull(otherMonitorDao.claimNotification("host1", Status.DOWN, new Date(120000), 60000));
+        Assert.assertNull(otherMonitorDao.claimNotification("host2", Status.DOWN, window, 60000));
+        
+        //Crossing the threshold just after the window boundary doesn't notify again
+        Assert.assertEquals(this.jdbcMonitorDao.getNodeId(), otherMonitorDao.claimNotification("host1", Status.DOWN, new Date(60000), 60000));
+        Assert.assertEquals(otherMonitorDao.getNodeId(), this.jdbcMonitorDao.claimNotification("host2", Status.DOWN, new Date(60000), 60000));
+        
+        this.jdbcMonitorDao.purgeFailureLog(new Date(60000));
+        Assert.assertNull(otherMonitorDao.claimNotification("host1", Status.DOWN, window, 60000));
+    }
+    
+    @Test
+    public void outageTest() throws Exception {
+        final JdbcMonitorDao otherMonitorDao = this.createNode();
+        final OutageStats outageStats = this.jdbcMonitorDao.getOutageStats("host1");
+        final long trackedSince = outageStats.getTrackedSince().getTime();
+        Assert.assertEquals(1, outageStats.getAvailability(new Date(trackedSince + 1000)), 0);
+        
+        //Both nodes see the host go down, only one outage is recorded
+        this.jdbcMonitorDao.openOutage("host1", new Date(trackedSince + 1000));
+        otherMonitorDao.openOutage("host1", new Date(trackedSince + 2000));
+        Assert.assertEquals(new Date(trackedSince + 1000), otherMonitorDao.getOutageStats("host1").getOpenOutageStart());
+        Assert.assertEquals(0.5, outageStats.getAvailability(new Date(trackedSince + 2000)), 0.001);
+        
+        this.jdbcMonitorDao.closeOutage("host1", new Date(trackedSince + 3000), 4, 1);
+        otherMonitorDao.closeOutage("host1", new Date(trackedSince + 4000), 5, 1);
+        Assert.assertEquals(1, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_OUTAGE WHERE OUTAGE_END IS NOT NULL"));
+        Assert.assertEquals(4, this.jdbcTemplate.queryForInt("SELECT FAILURE_COUNT FROM MONITOR_OUTAGE"));
+        
+        Assert.assertNull(outageStats.getOpenOutageStart());
+        Assert.assertEquals(1, outageStats.getOutageCount());
+        Assert.assertEquals(2000, outageStats.getMeanTimeToRecovery());
+        Assert.assertEquals(0.5, outageStats.getAvailability(new Date(trackedSince + 4000)), 0.001);
+        
+        //Totals survive a reload
+        this.jdbcMonitorDao.clearHostStatusCache();
+        final OutageStats reloadedStats = this.jdbcMonitorDao.getOutageStats("host1");
+        Assert.assertTrue(outageStats != reloadedStats);
+        Assert.assertEquals(1, reloadedStats.getOutageCount());
+        Assert.assertEquals(2000, reloadedStats.getOutageDuration());
+        
+        //Outages are kept as long as the totals they add up to
+        this.jdbcMonitorDao.purgeFailureLog(new Date(trackedSince + 5000));
+        Assert.assertEquals(1, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_OUTAGE"));
+    }
+    
+    @Test
+    public void concurrentOutageTest() throws Exception {
+        //Row level locking so both nodes can read at once like they would on the real database
+        this.jdbcTemplate.execute("SET DATABASE TRANSACTION CONTROL MVCC");
+        
+        final JdbcMonitorDao otherMonitorDao = this.createNode();
+        final int hostCount = 50;
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < hostCount; i++) {
+            //Both nodes cache stats without an open outage
+            this.jdbcMonitorDao.getOutageStats("host" + i);
+            otherMonitorDao.getOutageStats("host" + i);
+        }
+        
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for (final JdbcMonitorDao node : Arrays.asList(this.jdbcMonitorDao, otherMonitorDao)) {
+                final long nodeStart = node == this.jdbcMonitorDao ? now : now + 1000;
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        for (int i = 0; i < hostCount; i++) {
+                            barrier.await(10, TimeUnit.SECONDS);
+                            node.openOutage("host" + i, new Date(nodeStart));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Object> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        
+        //One open outage per host and both nodes agree on when it started
+        Assert.assertEquals(hostCount, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_OUTAGE WHERE OUTAGE_END IS NULL"));
+        for (int i = 0; i < hostCount; i++) {
+            Assert.assertEquals(
+                    this.jdbcMonitorDao.getOutageStats("host" + i).getOpenOutageStart().getTime(), 
+                    otherMonitorDao.getOutageStats("host" + i).getOpenOutageStart().getTime());
+        }
+    }
+    
+    @Test
+    public void errorCountTest() {
+        final List<ErrorSignatureCount> errorCounts = Arrays.asList(
+                new ErrorSignatureCount("host1", "500 Internal Server Error", new Date(0), 3),
+                new ErrorSignatureCount("host1", "200 [Welcome] Text expected to contain /Welcome/", new Date(0), 2));
+        
+        this.jdbcMonitorDao.storeErrorCounts(errorCounts);
+        this.jdbcMonitorDao.storeErrorCounts(errorCounts);
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_ERROR_SIGNATURE"));
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_ERROR_COUNT"));
+        Assert.assertEquals(10, this.jdbcTemplate.queryForInt("SELECT SUM(FAILURE_COUNT) FROM MONITOR_ERROR_COUNT"));
+        
+        final long signatureId = this.jdbcTemplate.queryForLong("SELECT MIN(SIGNATURE_ID) FROM MONITOR_ERROR_SIGNATURE");
+        Assert.assertNotNull(this.jdbcMonitorDao.getErrorSignature(signatureId));
+        
+        this.jdbcMonitorDao.purgeFailureLog(new Date(1));
+        Assert.assertEquals(0, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_ERROR_COUNT"));
+    }
+    
+    @Test
+    public void burnRateTest() {
+        this.jdbcMonitorDao.storeBurnRates(Arrays.asList(new BurnRate("portal", 0.999, 20, 15, 3, true, new Date(0))));
+        this.jdbcMonitorDao.storeBurnRates(Arrays.asList(new BurnRate("portal", 0.999, 2, 10, 3, false, new Date(1000))));
+        Assert.assertEquals(1, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_BURN_RATE"));
+        Assert.assertEquals("false", this.jdbcTemplate.queryForObject("SELECT BURNING FROM MONITOR_BURN_RATE", String.class));
+        
+        this.jdbcMonitorDao.purgeRequestLog(new Date(2000));
+        Assert.assertEquals(0, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_BURN_RATE"));
+    }
+    
+    @Test
+    public void clusterStatusTest() {
+        this.jdbcMonitorDao.storeClusterStatus(new ClusterStatus("portal", Status.DEGRADED, Status.UP, 8, 3, new Date(0)));
+        this.jdbcMonitorDao.storeClusterStatus(new ClusterStatus("portal", Status.DEGRADED, Status.DEGRADED, 8, 4, new Date(1000)));
+        Assert.assertEquals(1, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_CLUSTER_STATUS"));
+        Assert.assertEquals(4, this.jdbcTemplate.queryForInt("SELECT DOWN_COUNT FROM MONITOR_CLUSTER_STATUS"));
+    }
+    
+    @Test
+    public void latencyRollupTest() {
+        final LatencyTracker latencyTracker = new LatencyTracker(1, 60);
+        for (int i = 0; i < 100; i++) {
+            latencyTracker.record("host1", "label1", i, true);
+            latencyTracker.record("host1", "label2", i * 10, i % 2 == 0);
+        }
+        
+        final List<LatencyRollup> rollups = latencyTracker.drain(0);
+        Assert.assertEquals(2, rollups.size());
+        this.jdbcMonitorDao.storeLatencyRollups(rollups);
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LATENCY"));
+        Assert.assertEquals(50, this.jdbcTemplate.queryForInt("SELECT SUM(ERROR_COUNT) FROM MONITOR_LATENCY"));
+        
+        //Another node writing the same bucket adds to the stored row
+        this.jdbcMonitorDao.storeLatencyRollups(rollups);
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LATENCY"));
+        Assert.assertEquals(400, this.jdbcTemplate.queryForInt("SELECT SUM(SAMPLE_COUNT) FROM MONITOR_LATENCY"));
+        Assert.assertEquals(100, this.jdbcTemplate.queryForInt("SELECT SUM(ERROR_COUNT) FROM MONITOR_LATENCY"));
+        
+        //Moving into the next hour closes the hourly buckets
+        final List<LatencyRollup> hourlyRollups = latencyTracker.drain(3600000);
+        Assert.assertEquals(2, hourlyRollups.size());
+        this.jdbcMonitorDao.storeLatencyRollups(hourlyRollups);
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LATENCY WHERE RESOLUTION = 60"));
+        
+        //Idle histograms are dropped
+        Assert.assertTrue(latencyTracker.drain(7200000).isEmpty());
+        
+        this.jdbcMonitorDao.purgeLatencyRollups(1, new Date(1));
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LATENCY"));
+        this.jdbcMonitorDao.purgeLatencyRollups(60, new Date(1));
+        Assert.assertEquals(0, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LATENCY"));
+    }
+    
     @Test
     public void logFailureTest() {
         final HostStatus host1Status = this.jdbcMonitorDao.getHostStatus("host1");
@@ -116,5 +390,67 @@ public class JdbcMonitorDaoTest {
         host1Status.setStatus(Status.UP);
         
         this.jdbcMonitorDao.logRequestAndStatus(host1Status, "label", new Date(), 0, true);
+        
+        //Compatibility view still exposes host and label names
+        Assert.assertEquals(1, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LOG WHERE HOST_NAME = 'host1' AND LABEL = 'label'"));
+    }
+    
+    @Test
+    public void dictionaryTest() throws Exception {
+        this.jdbcMonitorDao.logFailure("host1", "label1", new Date(), Status.DOWN, "subject1", "body1", Notification.FALSE);
+        this.jdbcMonitorDao.logFailure("host1", "label2", new Date(), Status.DOWN, "subject2", "body2", Notification.FALSE);
+        this.jdbcMonitorDao.logFailure("host2", "label1", new Date(), Status.DOWN, "subject3", "body3", Notification.FALSE);
+        
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_HOST"));
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LABEL"));
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_ERRORS WHERE LABEL = 'label1'"));
+        
+        final long host2Id = this.jdbcTemplate.queryForLong("SELECT HOST_ID FROM MONITOR_HOST WHERE HOST_NAME = 'host2'");
+        Assert.assertEquals("host2", this.jdbcMonitorDao.getHostName(host2Id));
+        Assert.assertNull(this.jdbcMonitorDao.getHostName(host2Id + 100));
+        
+        //A second node sharing the database uses the same ids
+        final JdbcMonitorDao otherMonitorDao = this.createNode();
+        otherMonitorDao.logFailure("host2", "label3", new Date(), Status.DOWN, "subject4", "body4", Notification.FALSE);
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_HOST"));
+        Assert.assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_FAILURE WHERE HOST_ID = " + host2Id));
+    }
+    
+    @Test
+    public void legacyMigrationTest() throws Exception {
+        //Fresh database with the tables of the first release, the DAO creates the rest itself
+        final DataSource legacyDs = new SimpleDriverDataSource(new jdbcDriver(), "jdbc:hsqldb:mem:JdbcMonitorLegacyTest", "sa", "");
+        final JdbcTemplate legacyTemplate = new JdbcTemplate(legacyDs);
+        legacyTemplate.execute("SET DATABASE SQL SYNTAX ORA TRUE");
+        legacyTemplate.execute("CREATE TABLE MONITOR_LOG (HOST_NAME VARCHAR2(500), LABEL VARCHAR2(2000), LAST_SAMPLE TIMESTAMP, " +
+                "DURATION NUMBER, SUCCESS VARCHAR2(10), CONSTRAINT PK_MONITOR_LOG PRIMARY KEY (HOST_NAME, LABEL))");
+        //An earlier startup renamed MONITOR_ERRORS and failed before copying its rows
+        legacyTemplate.execute("CREATE TABLE MONITOR_ERRORS_OLD (HOST_NAME VARCHAR2(500), LABEL VARCHAR2(2000), FAILURE_DATE TIMESTAMP, " +
+                "STATUS VARCHAR2(50), EMAIL_SUBJECT VARCHAR2(1000), EMAIL_BODY VARCHAR2(4000), EMAIL_SENT VARCHAR2(10))");
+        legacyTemplate.update("INSERT INTO MONITOR_LOG VALUES ('host1', 'login', CURRENT_TIMESTAMP, 100, 'true')");
+        legacyTemplate.update("INSERT INTO MONITOR_LOG VALUES ('host2', 'login', CURRENT_TIMESTAMP, 200, 'false')");
+        legacyTemplate.update("INSERT INTO MONITOR_ERRORS_OLD VALUES ('host2', 'login', CURRENT_TIMESTAMP, 'DOWN', 'subject', 'body', 'true')");
+        
+        final JdbcMonitorDao legacyMonitorDao = new JdbcMonitorDao(legacyDs, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        try {
+            legacyMonitorDao.afterPropertiesSet();
+            
+            Assert.assertEquals(2, legacyTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LOG"));
+            Assert.assertEquals(200, legacyTemplate.queryForInt("SELECT DURATION FROM MONITOR_LOG WHERE HOST_NAME = 'host2' AND LABEL = 'login'"));
+            Assert.assertEquals(1, legacyTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_ERRORS WHERE HOST_NAME = 'host2' AND EMAIL_SUBJECT = 'subject'"));
+            Assert.assertEquals(2, legacyTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LOG_OLD"));
+            Assert.assertEquals(2, legacyTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_HOST"));
+            
+            //Copied rows aren't copied again by the next node to start
+            final JdbcMonitorDao nextMonitorDao = new JdbcMonitorDao(legacyDs, Integer.MAX_VALUE, Integer.MAX_VALUE);
+            nextMonitorDao.afterPropertiesSet();
+            nextMonitorDao.destroy();
+            Assert.assertEquals(2, legacyTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_LOG"));
+            Assert.assertEquals(1, legacyTemplate.queryForInt("SELECT COUNT(*) FROM MONITOR_ERRORS"));
+        }
+        finally {
+            legacyMonitorDao.destroy();
+            legacyTemplate.execute("SHUTDOWN");
+        }
     }
 }
@@ -0,0 +1,134 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.dao;
+
+import java.io.File;
+import java.util.Date;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.Notification;
+import edu.wisc.jmeter.Status;
+
+public class LocalMonitorDaoTest {
+    private File directory;
+    private LocalMonitorDao localMonitorDao;
+
+    @Before
+    public void setup() throws Exception {
+        this.directory = File.createTempFile("LocalMonitorDaoTest", "");
+        this.directory.delete();
+
+        this.localMonitorDao = new LocalMonitorDao(this.directory, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        this.localMonitorDao.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.localMonitorDao.destroy();
+        this.localMonitorDao = null;
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    @Test
+    public void hostStatusSnapshotTest() throws Exception {
+        final HostStatus host1Status = this.localMonitorDao.getHostStatus("host1");
+        Assert.assertNotNull(host1Status);
+        Assert.assertTrue(host1Status == this.localMonitorDao.getHostStatus("host1"));
+
+        host1Status.incrementFailureCount();
+        host1Status.incrementFailureCount();
+        host1Status.incrementMessageCount();
+        host1Status.setLastMessageSent(new Date());
+        host1Status.setStatus(Status.DOWN);
+        this.localMonitorDao.storeHostStatus(host1Status);
+
+        //Restart the dao, status should be restored from the snapshot
+        this.localMonitorDao.destroy();
+        this.localMonitorDao = new LocalMonitorDao(this.directory, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        this.localMonitorDao.afterPropertiesSet();
+
+        final HostStatus restoredStatus = this.localMonitorDao.getHostStatus("host1");
+        Assert.assertTrue(host1Status != restoredStatus);
+        Assert.assertEquals(host1Status, restoredStatus);
+        Assert.assertEquals(Status.DOWN, restoredStatus.getStatus());
+        Assert.assertEquals(2, restoredStatus.getFailureCount());
+        Assert.assertEquals(1, restoredStatus.getMessageCount());
+        Assert.assertEquals(host1Status.getLastMessageSent(), restoredStatus.getLastMessageSent());
+    }
+
+    @Test
+    public void compactHostStatusSnapshotTest() throws Exception {
+        this.localMonitorDao.destroy();
+        this.localMonitorDao = new LocalMonitorDao(this.directory, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        this.localMonitorDao.setHostStatusStore(new ArrayHostStatusStore());
+        this.localMonitorDao.afterPropertiesSet();
+
+        final HostStatus host1Status = this.localMonitorDao.getHostStatus("host1");
+        host1Status.incrementFailureCount();
+        host1Status.setStatus(Status.DOWN);
+        this.localMonitorDao.storeHostStatus(host1Status);
+        Assert.assertEquals(1, this.localMonitorDao.getHostStatus("host1").getFailureCount());
+
+        this.localMonitorDao.destroy();
+        this.localMonitorDao = new LocalMonitorDao(this.directory, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        this.localMonitorDao.setHostStatusStore(new ArrayHostStatusStore());
+        this.localMonitorDao.afterPropertiesSet();
+
+        final HostStatus restoredStatus = this.localMonitorDao.getHostStatus("host1");
+        Assert.assertEquals(Status.DOWN, restoredStatus.getStatus());
+        Assert.assertEquals(1, restoredStatus.getFailureCount());
+    }
+
+    @Test
+    public void logAndPurgeTest() throws Exception {
+        final HostStatus host1Status = this.localMonitorDao.getHostStatus("host1");
+
+        this.localMonitorDao.logRequestAndStatus(host1Status, "label", new Date(), 10, true);
+        this.localMonitorDao.logFailureAndStatus(host1Status, "label", new Date(), Status.DOWN, "subject1", "body\twith\nbreaks", Notification.TRUE);
+        this.localMonitorDao.flush();
+
+        Assert.assertEquals(3, this.directory.list().length);
+
+        //Nothing should be purged that is still in the current segment
+        this.localMonitorDao.purgeFailureLog(new Date(System.currentTimeMillis() - SegmentedLog.SEGMENT_DURATION));
+        Assert.assertEquals(3, this.directory.list().length);
+
+        this.localMonitorDao.purgeFailureLog(new Date(System.currentTimeMillis() + SegmentedLog.SEGMENT_DURATION));
+        this.localMonitorDao.purgeRequestLog(new Date(System.currentTimeMillis() + SegmentedLog.SEGMENT_DURATION));
+        Assert.assertEquals(1, this.directory.list().length);
+
+        Assert.assertTrue(host1Status != this.localMonitorDao.getHostStatus("host1"));
+    }
+
+    @Test
+    public void escapeTest() {
+        final String value = "a\tb\nc\\d\re";
+        final String escaped = SegmentedLog.escape(value);
+        Assert.assertEquals(-1, escaped.indexOf('\t'));
+        Assert.assertEquals(-1, escaped.indexOf('\n'));
+        Assert.assertEquals(value, SegmentedLog.unescape(escaped));
+    }
+}
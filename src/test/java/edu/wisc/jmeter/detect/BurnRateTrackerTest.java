@@ -0,0 +1,115 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.detect;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.BurnRate;
+
+public class BurnRateTrackerTest {
+    @Test
+    public void parseTest() {
+        final List<ServiceGroup> groups = ServiceGroup.parse("portal 99.9 portal\\d+\\.example\\.edu; \n login 99 portal\\d+\\.example\\.edu Login Page");
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(0.999, groups.get(0).getSloTarget(), 0.0000001);
+        Assert.assertTrue(groups.get(0).matches("portal1.example.edu", "Home"));
+        Assert.assertFalse(groups.get(0).matches("mail1.example.edu", "Home"));
+        Assert.assertTrue(groups.get(1).matches("portal1.example.edu", "Login Page"));
+        Assert.assertFalse(groups.get(1).matches("portal1.example.edu", "Home"));
+        
+        Assert.assertTrue(ServiceGroup.parse(" ").isEmpty());
+    }
+
+    @Test
+    public void burnTest() {
+        final BurnRateTracker tracker = new BurnRateTracker(ServiceGroup.parse("portal 99 portal\\d"));
+        
+        long time = 0;
+        for (int i = 0; i < 100; i++, time += 6000) {
+            Assert.assertTrue(tracker.record("portal1", "Home", time, true).isEmpty());
+            Assert.assertTrue(tracker.record("other1", "Home", time, false).isEmpty());
+        }
+        
+        //The first failures against a 1% budget burn fast but aren't sustained enough to alert
+        int failures = 0;
+        List<BurnRate> changed;
+        do {
+            changed = tracker.record("portal1", "Home", time, false);
+            time += 6000;
+            failures++;
+        } while (changed.isEmpty() && failures < 100);
+        Assert.assertTrue("alerted after " + failures, failures > 3 && failures < 20);
+        Assert.assertEquals(1, changed.size());
+        Assert.assertTrue(changed.get(0).isBurning());
+        Assert.assertTrue(changed.get(0).getMediumBurnRate() > BurnRateTracker.SLOW_BURN_RATE);
+        
+        //Recovering clears once the medium window no longer burns
+        int successes = 0;
+        do {
+            changed = tracker.record("portal1", "Home", time, true);
+            time += 6000;
+            successes++;
+        } while (changed.isEmpty() && successes < 100);
+        Assert.assertEquals(1, changed.size());
+        Assert.assertFalse(changed.get(0).isBurning());
+        
+        final List<BurnRate> burnRates = tracker.getBurnRates(time);
+        Assert.assertEquals(1, burnRates.size());
+        Assert.assertEquals("portal", burnRates.get(0).getGroup());
+    }
+
+    @Test
+    public void minimumRequestsTest() {
+        final BurnRateTracker tracker = new BurnRateTracker(ServiceGroup.parse("portal 99 portal\\d"));
+        
+        //Every request failing is still too few requests to call a burn
+        long time = 0;
+        for (int i = 1; i < BurnRateTracker.MIN_WINDOW_REQUESTS; i++, time += 6000) {
+            Assert.assertTrue(tracker.record("portal1", "Home", time, false).isEmpty());
+        }
+        Assert.assertEquals(1, tracker.record("portal1", "Home", time, false).size());
+    }
+
+    @Test
+    public void quietGroupTest() {
+        final BurnRateTracker tracker = new BurnRateTracker(ServiceGroup.parse("portal 99 portal\\d"));
+        
+        long time = 0;
+        List<BurnRate> changed = null;
+        for (int i = 0; i < 50 && (changed == null || changed.isEmpty()); i++, time += 6000) {
+            changed = tracker.record("portal1", "Home", time, false);
+        }
+        Assert.assertTrue(changed.get(0).isBurning());
+        Assert.assertTrue(tracker.update(time).isEmpty());
+        
+        //No more samples, the slow burn still holds after the fast one ages out of the short window
+        Assert.assertTrue(tracker.update(time + BurnRateTracker.SHORT_WINDOW + 60000).isEmpty());
+        
+        //Stops burning once the failures age out of the medium window too
+        changed = tracker.update(time + BurnRateTracker.MEDIUM_WINDOW + 60000);
+        Assert.assertEquals(1, changed.size());
+        Assert.assertFalse(changed.get(0).isBurning());
+        Assert.assertFalse(tracker.getBurnRates(time + BurnRateTracker.MEDIUM_WINDOW + 60000).get(0).isBurning());
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.detect;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.ClusterStatus;
+import edu.wisc.jmeter.Status;
+
+public class ClusterTrackerTest {
+    @Test
+    public void clusterTest() {
+        final ClusterTracker tracker = new ClusterTracker(Cluster.parse("portal 30% portal\\d; mail 2 mail1,mail2"));
+        for (int i = 1; i <= 8; i++) {
+            Assert.assertFalse(tracker.update("portal" + i, Status.UP, 0).get(0).isStatusChanged());
+        }
+        Assert.assertTrue(tracker.update("other1", Status.DOWN, 0).isEmpty());
+        
+        //Repeating a status changes nothing
+        Assert.assertTrue(tracker.update("portal1", Status.UP, 0).isEmpty());
+        Assert.assertTrue(tracker.update("portal1", Status.DEGRADED, 0).isEmpty());
+        
+        //Flapping hosts are still answering
+        Assert.assertTrue(tracker.update("portal2", Status.FLAPPING, 0).isEmpty());
+        
+        //30% of 8 hosts rounds up to 3
+        Assert.assertFalse(tracker.update("portal1", Status.DOWN, 0).get(0).isStatusChanged());
+        Assert.assertFalse(tracker.update("portal2", Status.DOWN, 0).get(0).isStatusChanged());
+        List<ClusterStatus> changed = tracker.update("portal3", Status.DOWN, 0);
+        Assert.assertEquals(1, changed.size());
+        Assert.assertEquals(Status.DEGRADED, changed.get(0).getStatus());
+        Assert.assertEquals(Status.UP, changed.get(0).getPreviousStatus());
+        Assert.assertEquals(3, changed.get(0).getDownCount());
+        Assert.assertEquals(8, changed.get(0).getHostCount());
+        
+        //Taking a down host out of service leaves 2 of 7 down, under the threshold of 3
+        changed = tracker.update("portal3", Status.OUT_DOWN, 0);
+        Assert.assertEquals(Status.UP, changed.get(0).getStatus());
+        Assert.assertEquals(7, changed.get(0).getHostCount());
+        
+        tracker.update("mail1", Status.DOWN, 0);
+        changed = tracker.update("mail2", Status.DOWN, 0);
+        Assert.assertEquals(Status.DOWN, changed.get(0).getStatus());
+        changed = tracker.update("mail2", Status.UP, 0);
+        Assert.assertEquals(Status.UP, changed.get(0).getStatus());
+        
+        //Removing hosts takes them out of the counts, removing again changes nothing
+        changed = tracker.remove(Arrays.asList("portal1", "portal2", "other1"), 0);
+        Assert.assertEquals(2, changed.size());
+        Assert.assertEquals(0, changed.get(1).getDownCount());
+        Assert.assertEquals(5, changed.get(1).getHostCount());
+        Assert.assertTrue(tracker.remove(Arrays.asList("portal1"), 0).isEmpty());
+        
+        //A removed host that comes back is a member again
+        Assert.assertEquals(6, tracker.update("portal1", Status.UP, 0).get(0).getHostCount());
+    }
+}
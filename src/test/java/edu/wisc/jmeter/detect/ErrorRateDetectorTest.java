@@ -0,0 +1,108 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.detect;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ErrorRateDetectorTest {
+    @Test
+    public void windowExpiryTest() {
+        final ErrorRateWindow window = new ErrorRateWindow(10000, 10);
+        window.record(0, false);
+        window.record(500, true);
+        window.record(9999, true);
+        Assert.assertEquals(1, window.getFailures());
+        Assert.assertEquals(2, window.getSuccesses());
+
+        //First bucket slides out
+        window.record(10000, true);
+        Assert.assertEquals(0, window.getFailures());
+        Assert.assertEquals(2, window.getSuccesses());
+
+        //Too old to count
+        window.record(0, false);
+        Assert.assertEquals(0, window.getFailures());
+
+        //Idle far longer than the window clears everything
+        window.record(1000000, false);
+        Assert.assertEquals(1, window.getFailures());
+        Assert.assertEquals(0, window.getSuccesses());
+        Assert.assertEquals(1.0, window.getErrorRate(), 0);
+    }
+
+    @Test
+    public void alternatingFailuresTest() {
+        final ErrorRateDetector detector = new ErrorRateDetector(60000, 0.5, 0.1, 2, 4);
+
+        //Failing 60% of requests trips even though no two failures are consecutive
+        boolean tripped = false;
+        for (int i = 0; i < 20; i++) {
+            tripped = detector.record("host1", i * 1000, i % 5 == 1 || i % 5 == 3);
+        }
+        Assert.assertTrue(tripped);
+        Assert.assertEquals(0.6, detector.getErrorRate("host1"), 0.001);
+
+        //Dropping below the trip rate is not enough to clear while failures keep breaking up the successes
+        for (int i = 20; i < 50; i++) {
+            tripped = detector.record("host1", i * 1000, i % 4 != 0);
+        }
+        Assert.assertTrue(tripped);
+
+        //Clears once failures age out of the window
+        for (int i = 50; i < 120; i++) {
+            tripped = detector.record("host1", i * 1000, true);
+        }
+        Assert.assertFalse(tripped);
+    }
+
+    @Test
+    public void minimumFailuresTest() {
+        final ErrorRateDetector detector = new ErrorRateDetector(60000, 0.5, 0.1, 2, 4);
+        Assert.assertFalse(detector.record("host1", 0, false));
+        Assert.assertTrue(detector.record("host1", 1000, false));
+        Assert.assertFalse(detector.record("host2", 1000, false));
+        
+        //Purged hosts start over
+        detector.remove(Arrays.asList("host1"));
+        Assert.assertEquals(1, detector.getHostCount());
+        Assert.assertEquals(0, detector.getErrorRate("host1"), 0);
+        Assert.assertFalse(detector.record("host1", 2000, false));
+    }
+
+    @Test
+    public void recoveryTest() {
+        final ErrorRateDetector detector = new ErrorRateDetector(300000, 0.5, 0.1, 2, 2);
+
+        //Hard down for a minute, the failures fill the window
+        boolean tripped = false;
+        for (int i = 0; i < 60; i++) {
+            tripped = detector.record("host1", i * 1000, false);
+        }
+        Assert.assertTrue(tripped);
+
+        //Recovered hosts clear on successes in a row long before the failures age out
+        Assert.assertTrue(detector.record("host1", 60000, true));
+        Assert.assertFalse(detector.record("host1", 61000, true));
+        Assert.assertTrue(detector.getErrorRate("host1") > 0.9);
+    }
+}
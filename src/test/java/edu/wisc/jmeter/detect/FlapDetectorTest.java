@@ -0,0 +1,59 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.detect;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FlapDetectorTest {
+    private static final long MINUTE = 60000;
+
+    @Test
+    public void flappingTest() {
+        final FlapDetector detector = new FlapDetector(30 * MINUTE, 3, 1);
+
+        //A single outage is not flapping
+        Assert.assertFalse(detector.record("host1", 0, false));
+        Assert.assertFalse(detector.record("host1", MINUTE, true));
+        Assert.assertFalse(detector.record("host1", 2 * MINUTE, true));
+
+        //Quick flips push the score over the start score
+        Assert.assertFalse(detector.record("host1", 3 * MINUTE, false));
+        Assert.assertTrue(detector.record("host1", 4 * MINUTE, true));
+        Assert.assertTrue(detector.getScore("host1", 4 * MINUTE) >= 3);
+
+        //Stays flapping while the score decays past the start score
+        Assert.assertTrue(detector.record("host1", 10 * MINUTE, true));
+
+        //Settles once the transitions have mostly aged out
+        Assert.assertTrue(detector.record("host1", 20 * MINUTE, true));
+        Assert.assertFalse(detector.record("host1", 30 * MINUTE, true));
+        Assert.assertEquals(0, detector.getScore("host1", 35 * MINUTE), 0);
+        
+        //Purged hosts start over without transitions
+        detector.record("host2", 36 * MINUTE, false);
+        Assert.assertEquals(2, detector.getHostCount());
+        detector.remove(Arrays.asList("host1"));
+        Assert.assertEquals(1, detector.getHostCount());
+        Assert.assertEquals(0, detector.getScore("host1", 36 * MINUTE), 0);
+    }
+}
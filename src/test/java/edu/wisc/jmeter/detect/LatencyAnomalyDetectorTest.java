@@ -0,0 +1,91 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.detect;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyAnomalyDetectorTest {
+    @Test
+    public void baselineTest() {
+        final LatencyBaseline baseline = new LatencyBaseline(0.1);
+        for (int i = 0; i < 1000; i++) {
+            baseline.update(i % 2 == 0 ? 90 : 110);
+        }
+        Assert.assertEquals(100, baseline.getMean(), 5);
+        Assert.assertEquals(10, baseline.getStandardDeviation(), 2);
+    }
+
+    @Test
+    public void slowHostTest() {
+        final LatencyAnomalyDetector detector = new LatencyAnomalyDetector(4, 3, 3);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(detector.record("host1", "label1", 90 + i % 20));
+            Assert.assertFalse(detector.record("host1", "label2", 1000 + i % 200));
+        }
+
+        //20x slower, degraded after the threshold is reached
+        Assert.assertFalse(detector.record("host1", "label1", 2000));
+        Assert.assertFalse(detector.record("host1", "label1", 2000));
+        Assert.assertTrue(detector.record("host1", "label1", 2000));
+
+        //Slow samples barely move the baseline
+        Assert.assertEquals(100, detector.getMean("host1", "label1"), 10);
+
+        //A label that is normally this slow is not anomalous, but one sample doesn't clear the host
+        Assert.assertTrue(detector.record("host1", "label2", 2000));
+        Assert.assertTrue(detector.record("host1", "label1", 100));
+        Assert.assertFalse(detector.record("host1", "label1", 100));
+
+        Assert.assertFalse(detector.record("host2", "label1", 2000));
+        
+        //Purged hosts start over without a baseline
+        detector.remove(Arrays.asList("host1"));
+        Assert.assertEquals(1, detector.getHostCount());
+        Assert.assertEquals(0, detector.getMean("host1", "label1"), 0);
+        Assert.assertFalse(detector.record("host1", "label1", 2000));
+    }
+
+    @Test
+    public void latencyShiftTest() {
+        final LatencyAnomalyDetector detector = new LatencyAnomalyDetector(4, 3, 3);
+        for (int i = 0; i < 100; i++) {
+            detector.record("host1", "label1", 90 + i % 20);
+        }
+
+        //A permanent shift is degraded at first and becomes the new baseline eventually
+        Assert.assertFalse(detector.record("host1", "label1", 2000));
+        Assert.assertFalse(detector.record("host1", "label1", 2000));
+        Assert.assertTrue(detector.record("host1", "label1", 2000));
+
+        boolean degraded = true;
+        for (int i = 0; i < 1000 && degraded; i++) {
+            degraded = detector.record("host1", "label1", 1990 + i % 20);
+        }
+        Assert.assertFalse(degraded);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertFalse(detector.record("host1", "label1", 1990 + i % 20));
+        }
+        Assert.assertEquals(2000, detector.getMean("host1", "label1"), 10);
+    }
+}
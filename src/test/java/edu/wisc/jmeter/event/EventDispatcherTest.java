@@ -0,0 +1,118 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.event;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.SimpleHostStatus;
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.metrics.StripedCounter;
+
+public class EventDispatcherTest {
+    @Test
+    public void slowSubscriberTest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<MonitorEvent> slowEvents = Collections.synchronizedList(new ArrayList<MonitorEvent>());
+        final MonitorEventSubscriber slow = new CollectingSubscriber(slowEvents) {
+            @Override
+            public void onEvent(MonitorEvent event) {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onEvent(event);
+            }
+        };
+        final List<MonitorEvent> fastEvents = Collections.synchronizedList(new ArrayList<MonitorEvent>());
+        final StripedCounter dropped = new StripedCounter();
+        final EventDispatcher dispatcher = new EventDispatcher(Arrays.asList(slow, new CollectingSubscriber(fastEvents)), 4, dropped);
+
+        //The slow subscriber holds one event and buffers four, the rest are dropped without blocking
+        for (int i = 0; i < 10; i++) {
+            dispatcher.publish(MonitorEvent.failure("host1", "login", new Date(i), Status.DOWN, "failure " + i));
+
+            //Let the fast subscriber keep up so only the slow one drops
+            for (int wait = 0; fastEvents.size() <= i && wait < 100; wait++) {
+                Thread.sleep(10);
+            }
+        }
+        release.countDown();
+        dispatcher.close();
+
+        Assert.assertEquals(10, fastEvents.size());
+        Assert.assertTrue(slowEvents.size() >= 4 && slowEvents.size() <= 5);
+        Assert.assertEquals(10 - slowEvents.size(), dropped.get());
+        Assert.assertEquals("failure 0", slowEvents.get(0).getSubject());
+    }
+
+    @Test
+    public void ndjsonTest() throws Exception {
+        final File file = File.createTempFile("events", ".ndjson");
+        file.deleteOnExit();
+
+        final HostStatus hostStatus = new SimpleHostStatus();
+        hostStatus.setHost("host1");
+        hostStatus.setStatus(Status.DOWN);
+        hostStatus.setFailureCount(2);
+        hostStatus.setLastUpdated(new Date(2000));
+
+        final NdjsonEventSubscriber subscriber = new NdjsonEventSubscriber(file.getAbsolutePath());
+        subscriber.onEvent(MonitorEvent.failure("host1", "login", new Date(1000), Status.DOWN, "Login \"failed\""));
+        subscriber.onEvent(MonitorEvent.statusChange(hostStatus, Status.UP));
+        subscriber.close();
+
+        final List<String> lines = FileUtils.readLines(file, "UTF-8");
+        Assert.assertEquals(Arrays.asList(
+                "{\"type\":\"FAILURE\",\"host\":\"host1\",\"time\":1000,\"status\":\"DOWN\",\"label\":\"login\",\"subject\":\"Login \\\"failed\\\"\"}",
+                "{\"type\":\"STATUS\",\"host\":\"host1\",\"time\":2000,\"status\":\"DOWN\",\"previousStatus\":\"UP\",\"failureCount\":2,\"messageCount\":0}"),
+                lines);
+    }
+
+    private static class CollectingSubscriber implements MonitorEventSubscriber {
+        private final List<MonitorEvent> events;
+
+        public CollectingSubscriber(List<MonitorEvent> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void onEvent(MonitorEvent event) {
+            this.events.add(event);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+    @Test
+    public void snapshotTest() {
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        Assert.assertSame(metricsRegistry.counter("samples.seen"), metricsRegistry.counter("samples.seen"));
+
+        metricsRegistry.counter("samples.seen").increment();
+        metricsRegistry.counter("samples.seen").add(4);
+        metricsRegistry.timer("dao.getHostStatus").record(TimeUnit.MILLISECONDS.toNanos(2));
+        metricsRegistry.timer("dao.getHostStatus").record(TimeUnit.MILLISECONDS.toNanos(4));
+
+        final SortedMap<String, Long> snapshot = metricsRegistry.snapshot();
+        Assert.assertEquals(Long.valueOf(5), snapshot.get("samples.seen"));
+        Assert.assertEquals(Long.valueOf(2), snapshot.get("dao.getHostStatus.count"));
+        Assert.assertEquals(Long.valueOf(3000), snapshot.get("dao.getHostStatus.meanMicros"));
+        Assert.assertEquals(Long.valueOf(4000), snapshot.get("dao.getHostStatus.maxMicros"));
+    }
+
+    @Test
+    public void mBeanTest() throws Exception {
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        metricsRegistry.counter("emails.sent").add(3);
+
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = MetricsMBean.register("Monitor, Portal", metricsRegistry);
+        final ObjectName otherObjectName = MetricsMBean.register("Monitor Mail", new MetricsRegistry());
+        try {
+            Assert.assertEquals(MetricsMBean.getObjectName("Monitor, Portal"), objectName);
+            Assert.assertEquals(Long.valueOf(3), mBeanServer.getAttribute(objectName, "emails.sent"));
+
+            //Listeners with different names don't replace each other
+            Assert.assertFalse(objectName.equals(otherObjectName));
+            Assert.assertEquals(0, mBeanServer.getMBeanInfo(otherObjectName).getAttributes().length);
+
+            //A second registration under the same name replaces the first
+            MetricsMBean.register("Monitor, Portal", new MetricsRegistry());
+            Assert.assertEquals(0, mBeanServer.getMBeanInfo(objectName).getAttributes().length);
+
+            try {
+                mBeanServer.invoke(objectName, "reset", new Object[0], new String[0]);
+                Assert.fail("Metrics have no operations");
+            }
+            catch (ReflectionException e) {
+                Assert.assertTrue(e.getCause() instanceof NoSuchMethodException);
+            }
+        }
+        finally {
+            MetricsMBean.unregister(objectName);
+            MetricsMBean.unregister(otherObjectName);
+        }
+        Assert.assertFalse(mBeanServer.isRegistered(objectName));
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+
+package edu.wisc.jmeter.replay;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.dao.MemoryMonitorDao.Outage;
+
+public class ReplayTest {
+    private static final String CSV =
+        "timeStamp,elapsed,label,responseCode,responseMessage,success,failureMessage,URL\n" +
+        "60000,100,login,200,OK,true,,https://a.example.edu/login\n" +
+        "60000,100,login,200,OK,true,,https://b.example.edu/login\n" +
+        "120000,100,login,500,\"Server Error, try again\",false,\"Text \"\"Welcome\"\" not found\",https://a.example.edu/login\n" +
+        "180000,100,login,500,Server Error,false,,https://a.example.edu/login\n" +
+        "180000,100,login,200,OK,true,,https://b.example.edu/login\n" +
+        "240000,100,login,500,Server Error,false,,https://a.example.edu/login\n" +
+        "300000,100,login,200,OK,true,,https://a.example.edu/login\n" +
+        "300000,100,login,200,OK,true,,\n";
+
+    private static final String XML =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<testResults version=\"1.2\">\n" +
+        "<httpSample t=\"100\" ts=\"60000\" s=\"true\" lb=\"login\" rc=\"200\" rm=\"OK\">\n" +
+        "  <httpSample t=\"50\" ts=\"60000\" s=\"true\" lb=\"login-0\" rc=\"200\" rm=\"OK\"><java.net.URL>https://c.example.edu/sub</java.net.URL></httpSample>\n" +
+        "  <java.net.URL>https://a.example.edu/login</java.net.URL>\n" +
+        "</httpSample>\n" +
+        "<httpSample t=\"100\" ts=\"120000\" s=\"false\" lb=\"login\" rc=\"500\" rm=\"Server Error\">\n" +
+        "  <assertionResult><name>Welcome</name><failure>true</failure><error>false</error><failureMessage>Text not found</failureMessage></assertionResult>\n" +
+        "  <java.net.URL>https://a.example.edu/login</java.net.URL>\n" +
+        "</httpSample>\n" +
+        "<httpSample t=\"100\" ts=\"180000\" s=\"false\" lb=\"login\" rc=\"500\" rm=\"Server Error\">\n" +
+        "  <java.net.URL>https://a.example.edu/login</java.net.URL>\n" +
+        "</httpSample>\n" +
+        "<httpSample t=\"100\" ts=\"240000\" s=\"true\" lb=\"login\" rc=\"200\" rm=\"OK\">\n" +
+        "  <java.net.URL>https://a.example.edu/login</java.net.URL>\n" +
+        "</httpSample>\n" +
+        "<sample t=\"5\" ts=\"240000\" s=\"true\" lb=\"debug\"/>\n" +
+        "</testResults>\n";
+
+    @Test
+    public void readCsvTest() throws Exception {
+        final File file = write("replay-test", ".csv", CSV);
+        try {
+            final JtlReader reader = JtlReader.open(file, false);
+            try {
+                Assert.assertTrue(reader instanceof CsvJtlReader);
+                final SampleResult first = reader.read();
+                Assert.assertEquals("a.example.edu", first.getURL().getHost());
+                Assert.assertEquals(60100, first.getEndTime());
+                Assert.assertTrue(first.isSuccessful());
+                reader.read();
+
+                final SampleResult failure = reader.read();
+                Assert.assertFalse(failure.isSuccessful());
+                Assert.assertEquals("Server Error, try again", failure.getResponseMessage());
+                Assert.assertEquals("Text \"Welcome\" not found", failure.getAssertionResults()[0].getFailureMessage());
+
+                int remaining = 0;
+                while (reader.read() != null) {
+                    remaining++;
+                }
+                Assert.assertEquals(4, remaining);
+                Assert.assertEquals(1, reader.getSkipped());
+            }
+            finally {
+                reader.close();
+            }
+        }
+        finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    @Test
+    public void readXmlTest() throws Exception {
+        final File file = write("replay-test", ".jtl", XML);
+        try {
+            final JtlReader reader = JtlReader.open(file, true);
+            try {
+                Assert.assertTrue(reader instanceof XmlJtlReader);
+                final SampleResult first = reader.read();
+                Assert.assertEquals("a.example.edu", first.getURL().getHost());
+                Assert.assertEquals(60000, first.getEndTime());
+
+                final SampleResult failure = reader.read();
+                Assert.assertFalse(failure.isSuccessful());
+                Assert.assertEquals("500", failure.getResponseCode());
+                Assert.assertEquals("Text not found", failure.getAssertionResults()[0].getFailureMessage());
+
+                Assert.assertNotNull(reader.read());
+                Assert.assertNotNull(reader.read());
+                Assert.assertNull(reader.read());
+                Assert.assertEquals(1, reader.getSkipped());
+            }
+            finally {
+                reader.close();
+            }
+        }
+        finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    @Test
+    public void replayTest() throws Exception {
+        final File file = write("replay-test", ".csv", CSV);
+        try {
+            final ReplayMonitorListener listener = new ReplayMonitorListener();
+            listener.setFailureThreshold(2);
+            listener.setBackoffDuration(15);
+            listener.setErrorRateWindow(0);
+            listener.setLatencyRollupInterval(0);
+            listener.setErrorSignatureInterval(0);
+
+            final Replay replay = new Replay(listener, 2, false);
+            replay.replay(Arrays.asList(file));
+            Assert.assertEquals(7, replay.getSamples());
+            Assert.assertEquals(1, replay.getSkipped());
+
+            final List<ReplayNotification> notifications = listener.getNotifications();
+            Assert.assertEquals(notifications.toString(), 2, notifications.size());
+            Assert.assertEquals("a.example.edu", notifications.get(0).getHost());
+            Assert.assertEquals(Status.DOWN, notifications.get(0).getStatus());
+            Assert.assertEquals(180100, notifications.get(0).getTime().getTime());
+            Assert.assertEquals(Status.UP, notifications.get(1).getStatus());
+
+            final List<Outage> outages = listener.getMemoryMonitorDao().getOutages();
+            Assert.assertEquals(1, outages.size());
+            Assert.assertEquals("a.example.edu", outages.get(0).getHost());
+            Assert.assertEquals(300100, outages.get(0).getEnd().getTime());
+            Assert.assertEquals(2, listener.getMemoryMonitorDao().getHostStatuses().size());
+        }
+        finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    @Test
+    public void busyWindowTest() throws Exception {
+        //Five minutes of successes fill the error rate window before the host goes hard down
+        final StringBuilder csv = new StringBuilder("timeStamp,elapsed,label,responseCode,responseMessage,success,failureMessage,URL\n");
+        for (int i = 1; i <= 300; i++) {
+            csv.append(i * 1000).append(",100,login,200,OK,true,,https://a.example.edu/login\n");
+        }
+        for (int i = 301; i <= 320; i++) {
+            csv.append(i * 1000).append(",100,login,500,Server Error,false,,https://a.example.edu/login\n");
+        }
+        for (int i = 321; i <= 325; i++) {
+            csv.append(i * 1000).append(",100,login,200,OK,true,,https://a.example.edu/login\n");
+        }
+        final File file = write("replay-busy-test", ".csv", csv.toString());
+        try {
+            final ReplayMonitorListener listener = new ReplayMonitorListener();
+            listener.setFailureThreshold(2);
+            listener.setBackoffDuration(15);
+            listener.setLatencyRollupInterval(0);
+            listener.setErrorSignatureInterval(0);
+
+            final Replay replay = new Replay(listener, 1, false);
+            replay.replay(Arrays.asList(file));
+
+            //Down on the second failure in a row and up on the first success, the error rate never got close to tripping
+            final List<ReplayNotification> notifications = listener.getNotifications();
+            Assert.assertEquals(notifications.toString(), 2, notifications.size());
+            Assert.assertEquals(Status.DOWN, notifications.get(0).getStatus());
+            Assert.assertEquals(302100, notifications.get(0).getTime().getTime());
+            Assert.assertEquals(Status.UP, notifications.get(1).getStatus());
+            Assert.assertEquals(321100, notifications.get(1).getTime().getTime());
+        }
+        finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    @Test
+    public void sampleClockTest() throws Exception {
+        final StringBuilder csv = new StringBuilder("timeStamp,elapsed,label,responseCode,responseMessage,success,failureMessage,URL\n");
+        for (int i = 1; i <= 300; i++) {
+            csv.append(i * 1000).append(",100,login,200,OK,true,,https://a.example.edu/login\n");
+        }
+        for (int i = 301; i <= 320; i++) {
+            csv.append(i * 1000).append(",100,login,500,Server Error,false,,https://a.example.edu/login\n");
+        }
+        final File file = write("replay-clock-test", ".csv", csv.toString());
+        try {
+            final ReplayMonitorListener listener = new ReplayMonitorListener();
+            listener.setFailureThreshold(2);
+            listener.setBackoffDuration(15);
+            listener.setServiceGroups("portal 99.9 a\\.example\\.edu");
+
+            final Replay replay = new Replay(listener, 1, false);
+            replay.replay(Arrays.asList(file));
+
+            //The group starts burning during the failures, ending the replay long after them doesn't stop it
+            final List<ReplayNotification> notifications = listener.getNotifications();
+            boolean burning = false;
+            for (final ReplayNotification notification : notifications) {
+                Assert.assertTrue(notifications.toString(), notification.getTime().getTime() <= 320100);
+                burning |= "portal".equals(notification.getHost()) && notification.getStatus() == Status.DOWN;
+            }
+            Assert.assertTrue(notifications.toString(), burning);
+        }
+        finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void workerFailureTest() throws Exception {
+        //More batches than the worker's queue holds, so reading would block on a dead worker
+        final StringBuilder csv = new StringBuilder("timeStamp,elapsed,label,responseCode,responseMessage,success,failureMessage,URL\n");
+        for (int i = 0; i < 20000; i++) {
+            csv.append(60000 + i).append(",100,login,200,OK,true,,https://a.example.edu/login\n");
+        }
+        final File file = write("replay-failure-test", ".csv", csv.toString());
+        try {
+            final RuntimeException failure = new RuntimeException("broken listener");
+            final ReplayMonitorListener listener = new ReplayMonitorListener() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public void sampleOccurred(SampleEvent e) {
+                    throw failure;
+                }
+            };
+            listener.setErrorRateWindow(0);
+            listener.setLatencyRollupInterval(0);
+            listener.setErrorSignatureInterval(0);
+
+            final Replay replay = new Replay(listener, 1, false);
+            try {
+                replay.replay(Arrays.asList(file));
+                Assert.fail("Worker failure should stop the replay");
+            }
+            catch (IllegalStateException e) {
+                Assert.assertSame(failure, e.getCause());
+            }
+        }
+        finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    private static File write(String prefix, String suffix, String content) throws Exception {
+        final File file = File.createTempFile(prefix, suffix);
+        FileUtils.writeStringToFile(file, content, "UTF-8");
+        return file;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.stats;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.ErrorSignatureCount;
+
+public class ErrorSignatureTrackerTest {
+    @Test
+    public void maskTest() {
+        Assert.assertEquals(
+                ErrorSignatureTracker.mask("Timeout after 30012 ms for session 9f86d081884c7d65 at 10.0.3.12"),
+                ErrorSignatureTracker.mask("Timeout after 29987 ms for session 0a1b2c3d4e5f6789  at 10.0.3.14"));
+        Assert.assertEquals("Text expected to contain /Welcome #/", ErrorSignatureTracker.mask("Text expected to contain /Welcome 2/"));
+        Assert.assertEquals("request # failed", ErrorSignatureTracker.mask("request 6ba7b810-9dad-11d1-80b4-00c04fd430c8 failed"));
+        Assert.assertEquals("deadbeef", ErrorSignatureTracker.mask("deadbeef"));
+    }
+
+    @Test
+    public void rawFailureTest() {
+        final ErrorSignatureTracker tracker = new ErrorSignatureTracker(2);
+        Assert.assertTrue(tracker.record("host1", "500 Internal Server Error"));
+        Assert.assertTrue(tracker.record("host1", "500 Internal Server Error"));
+        Assert.assertFalse(tracker.record("host1", "500 Internal Server Error"));
+        Assert.assertTrue(tracker.record("host2", "500 Internal Server Error"));
+
+        final List<ErrorSignatureCount> counts = tracker.drain(0);
+        Assert.assertEquals(2, counts.size());
+        int total = 0;
+        for (final ErrorSignatureCount count : counts) {
+            total += count.getFailureCount();
+        }
+        Assert.assertEquals(4, total);
+
+        //Each interval logs its own first failures
+        Assert.assertTrue(tracker.record("host1", "500 Internal Server Error"));
+
+        tracker.drain(60000);
+        Assert.assertTrue(tracker.drain(120000).isEmpty());
+    }
+}
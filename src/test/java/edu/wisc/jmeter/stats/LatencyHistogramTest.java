@@ -0,0 +1,76 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.stats;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void bucketBoundsTest() {
+        for (long value = 0; value < 1000000; value += 7) {
+            final int bucket = LatencyHistogram.getBucket(value);
+            final long bucketMax = LatencyHistogram.getBucketMaxValue(bucket);
+            Assert.assertTrue(value + " > " + bucketMax, value <= bucketMax);
+            Assert.assertTrue(value + " < " + bucketMax, bucketMax - value <= value / LatencyHistogram.SUB_BUCKETS);
+            if (bucket > 0) {
+                Assert.assertTrue(value > LatencyHistogram.getBucketMaxValue(bucket - 1));
+            }
+        }
+        
+        Assert.assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.getBucket(LatencyHistogram.MAX_VALUE));
+        Assert.assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.getBucketMaxValue(LatencyHistogram.BUCKET_COUNT - 1));
+    }
+    
+    @Test
+    public void percentileTest() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i, i % 100 != 0);
+        }
+        histogram.record(-5, true);
+        
+        final LatencyHistogram.Snapshot snapshot = histogram.drain();
+        Assert.assertEquals(1001, snapshot.getCount());
+        Assert.assertEquals(10, snapshot.getErrorCount());
+        Assert.assertEquals(0, snapshot.getMin());
+        Assert.assertEquals(1000, snapshot.getMax(), 1000 / LatencyHistogram.SUB_BUCKETS);
+        Assert.assertEquals(500, snapshot.getPercentile(50), 500 / LatencyHistogram.SUB_BUCKETS);
+        Assert.assertEquals(990, snapshot.getPercentile(99), 990 / LatencyHistogram.SUB_BUCKETS);
+        Assert.assertEquals(500.0, snapshot.getMean(), 1);
+        
+        //Drain resets the histogram
+        Assert.assertEquals(0, histogram.drain().getCount());
+        
+        final LatencyHistogram.Snapshot added = snapshot.add(snapshot);
+        Assert.assertEquals(2002, added.getCount());
+        Assert.assertEquals(snapshot.getPercentile(95), added.getPercentile(95));
+        
+        //Adding snapshots with different buckets keeps every bucket in order
+        histogram.record(5000, true);
+        histogram.record(3, true);
+        final LatencyHistogram.Snapshot merged = histogram.drain().add(snapshot);
+        Assert.assertEquals(1003, merged.getCount());
+        Assert.assertEquals(0, merged.getMin());
+        Assert.assertEquals(5000, merged.getMax(), 5000 / LatencyHistogram.SUB_BUCKETS);
+        Assert.assertEquals(snapshot.getPercentile(50), merged.getPercentile(50));
+        Assert.assertEquals(0, LatencyHistogram.Snapshot.empty().add(LatencyHistogram.Snapshot.empty()).getMax());
+    }
+}
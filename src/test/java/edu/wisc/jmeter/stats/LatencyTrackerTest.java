@@ -0,0 +1,67 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.stats;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.LatencyRollup;
+
+public class LatencyTrackerTest {
+    private static final long MINUTE = 60000;
+
+    @Test
+    public void coarseResolutionTest() {
+        final LatencyTracker latencyTracker = new LatencyTracker(1, 1, 60, 1440);
+        Assert.assertArrayEquals(new int[] { 60, 1440 }, latencyTracker.getCoarseResolutions());
+
+        //Two samples in each of the first two minutes of the day
+        for (int minute = 0; minute < 2; minute++) {
+            latencyTracker.record("host1", "label1", 10, true);
+            latencyTracker.record("host1", "label1", 20, false);
+            assertRollups(latencyTracker.drain(minute * MINUTE), 1);
+        }
+
+        //Nothing closes until the hour is over
+        assertRollups(latencyTracker.drain(2 * MINUTE));
+
+        final List<LatencyRollup> hourly = latencyTracker.drain(60 * MINUTE);
+        assertRollups(hourly, 60);
+        Assert.assertEquals(4, hourly.get(0).getSampleCount());
+        Assert.assertEquals(2, hourly.get(0).getErrorCount());
+        Assert.assertEquals(0, hourly.get(0).getBucketStart().getTime());
+
+        //Stopping emits the partial daily bucket
+        final List<LatencyRollup> daily = latencyTracker.drainAll(61 * MINUTE);
+        assertRollups(daily, 1440);
+        Assert.assertEquals(4, daily.get(0).getSampleCount());
+
+        Assert.assertTrue(latencyTracker.drain(62 * MINUTE).isEmpty());
+    }
+
+    private static void assertRollups(List<LatencyRollup> rollups, int... resolutions) {
+        Assert.assertEquals(resolutions.length, rollups.size());
+        for (int i = 0; i < resolutions.length; i++) {
+            Assert.assertEquals(resolutions[i], rollups.get(i).getResolution());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.wisc.jmeter.stats;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecentSamplesTest {
+    @Test
+    public void ringTest() {
+        final RecentSamples recentSamples = new RecentSamples(3);
+        Assert.assertEquals("", recentSamples.describe("host1"));
+
+        recentSamples.record("host1", "login", 1000, 100, true, "200");
+        recentSamples.record("host1", "home", 2000, 200, true, "200");
+        recentSamples.record("host2", "login", 2500, 50, true, "200");
+        recentSamples.record("host1", "search", 3000, 300, false, "500");
+        recentSamples.record("host1", "home", 4000, 4000, false, "Non HTTP response code: java.net.SocketTimeoutException");
+
+        //Only the last three samples are kept, oldest first
+        final String[] lines = recentSamples.describe("host1").split("\n");
+        Assert.assertEquals(3, lines.length);
+        Assert.assertTrue(lines[0], lines[0].endsWith(" OK   200 200ms home"));
+        Assert.assertTrue(lines[1], lines[1].endsWith(" FAIL 500 300ms search"));
+        Assert.assertTrue(lines[2], lines[2].endsWith(" FAIL - 4000ms home"));
+
+        Assert.assertEquals(1, recentSamples.describe("host2").split("\n").length);
+    }
+
+    @Test
+    public void labelTableTest() {
+        final RecentSamples recentSamples = new RecentSamples(2);
+
+        //Far more labels than the table holds, only the ones still in the ring are kept
+        for (int i = 0; i < 100; i++) {
+            recentSamples.record("host1", "label" + (i % 7 == 0 ? 0 : i), i * 1000, i, true, "200");
+        }
+        final String[] lines = recentSamples.describe("host1").split("\n");
+        Assert.assertEquals(2, lines.length);
+        Assert.assertTrue(lines[0], lines[0].endsWith(" 98ms label0"));
+        Assert.assertTrue(lines[1], lines[1].endsWith(" 99ms label99"));
+    }
+
+    @Test
+    public void removeTest() {
+        final RecentSamples recentSamples = new RecentSamples(3);
+        recentSamples.record("host1", "login", 1000, 100, true, "200");
+        recentSamples.record("host2", "login", 1000, 100, true, "200");
+        Assert.assertEquals(2, recentSamples.getHostCount());
+
+        recentSamples.remove(Arrays.asList("host1", "host3"));
+        Assert.assertEquals(1, recentSamples.getHostCount());
+        Assert.assertEquals("", recentSamples.describe("host1"));
+        Assert.assertEquals(1, recentSamples.describe("host2").split("\n").length);
+    }
+
+    @Test
+    public void parseResponseCodeTest() {
+        Assert.assertEquals(404, RecentSamples.parseResponseCode("404"));
+        Assert.assertEquals(RecentSamples.NO_RESPONSE_CODE, RecentSamples.parseResponseCode(""));
+        Assert.assertEquals(RecentSamples.NO_RESPONSE_CODE, RecentSamples.parseResponseCode(null));
+        Assert.assertEquals(RecentSamples.NO_RESPONSE_CODE, RecentSamples.parseResponseCode("Non HTTP response code"));
+    }
+}
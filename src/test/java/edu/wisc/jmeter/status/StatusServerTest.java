@@ -0,0 +1,146 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.wisc.jmeter.status;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.jmeter.HostStatus;
+import edu.wisc.jmeter.LatencyRollup;
+import edu.wisc.jmeter.OutageStats;
+import edu.wisc.jmeter.SimpleHostStatus;
+import edu.wisc.jmeter.Status;
+import edu.wisc.jmeter.stats.LatencyHistogram;
+
+public class StatusServerTest {
+    @Test
+    public void stateVersionTest() {
+        final StatusState statusState = new StatusState(2, 1);
+
+        final HostStatus hostStatus = new SimpleHostStatus();
+        hostStatus.setHost("host1");
+        hostStatus.setStatus(Status.UP);
+        hostStatus.setLastUpdated(new Date(1000));
+        statusState.updateHost(hostStatus);
+        Assert.assertEquals(1, statusState.getHostsVersion());
+
+        //Only the last updated time changed, nothing to invalidate
+        hostStatus.setLastUpdated(new Date(2000));
+        statusState.updateHost(hostStatus);
+        Assert.assertEquals(1, statusState.getHostsVersion());
+
+        hostStatus.setStatus(Status.DOWN);
+        hostStatus.incrementFailureCount();
+        statusState.updateHost(hostStatus);
+        Assert.assertEquals(2, statusState.getHostsVersion());
+        Assert.assertEquals(new Date(2000), statusState.getHosts().get(0).getSince());
+        
+        //Purged hosts stop being served
+        statusState.removeHosts(Arrays.asList("host2"));
+        Assert.assertEquals(2, statusState.getHostsVersion());
+        statusState.removeHosts(Arrays.asList("host1"));
+        Assert.assertEquals(3, statusState.getHostsVersion());
+        Assert.assertTrue(statusState.getHosts().isEmpty());
+        statusState.updateHost(hostStatus);
+
+        statusState.addFailure("host1", "login", new Date(1000), Status.DOWN, "first");
+        statusState.addFailure("host1", "login", new Date(2000), Status.DOWN, "second");
+        statusState.addFailure("host1", "login", new Date(3000), Status.DOWN, "third");
+        Assert.assertEquals(2, statusState.getFailures().size());
+        Assert.assertEquals("third", statusState.getFailures().get(0).getSubject());
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100, true);
+        statusState.updateLatency(Arrays.asList(
+                new LatencyRollup("host1", "login", 1, new Date(60000), histogram.drain()),
+                new LatencyRollup("host1", "login", 60, new Date(0), LatencyHistogram.Snapshot.empty())));
+        Assert.assertEquals(1, statusState.getLatency().size());
+        Assert.assertEquals(1, statusState.getLatencyVersion());
+    }
+
+    @Test
+    public void serverTest() throws Exception {
+        final StatusState statusState = new StatusState(10, 1);
+        final StatusServer statusServer = new StatusServer(statusState, "127.0.0.1", 0);
+        statusServer.start();
+        try {
+            final HostStatus hostStatus = new SimpleHostStatus();
+            hostStatus.setHost("host1");
+            hostStatus.setStatus(Status.DOWN);
+            hostStatus.setLastUpdated(new Date(1000));
+            statusState.updateHost(hostStatus);
+            statusState.addFailure("host1", "login \"page\"", new Date(1000), Status.DOWN, "Down\nagain");
+
+            final URL hostsUrl = new URL("http://localhost:" + statusServer.getPort() + "/status/hosts");
+            HttpURLConnection connection = (HttpURLConnection) hostsUrl.openConnection();
+            Assert.assertEquals(200, connection.getResponseCode());
+            Assert.assertEquals(
+                    "{\"hosts\":[{\"host\":\"host1\",\"status\":\"DOWN\",\"since\":1000,\"failureCount\":0,\"messageCount\":0,\"lastMessageSent\":null}]}",
+                    read(connection));
+            final String etag = connection.getHeaderField("ETag");
+
+            //Unchanged state is not sent again
+            connection = (HttpURLConnection) hostsUrl.openConnection();
+            connection.setRequestProperty("If-None-Match", etag);
+            Assert.assertEquals(304, connection.getResponseCode());
+
+            hostStatus.setStatus(Status.UP);
+            statusState.updateHost(hostStatus);
+            connection = (HttpURLConnection) hostsUrl.openConnection();
+            connection.setRequestProperty("If-None-Match", etag);
+            Assert.assertEquals(200, connection.getResponseCode());
+            Assert.assertTrue(read(connection).contains("\"status\":\"UP\""));
+            
+            //Outage totals are added once the host has had an outage
+            final OutageStats outageStats = new OutageStats("host1", new Date(0));
+            outageStats.setOpenOutageStart(new Date(1000));
+            outageStats.closeOutage(new Date(5000));
+            statusState.updateOutageStats(outageStats);
+            connection = (HttpURLConnection) hostsUrl.openConnection();
+            Assert.assertTrue(read(connection).contains("\"outageCount\":1,\"meanTimeToRecovery\":4000}"));
+
+            connection = (HttpURLConnection) new URL("http://localhost:" + statusServer.getPort() + "/status/failures").openConnection();
+            Assert.assertEquals(
+                    "{\"failures\":[{\"host\":\"host1\",\"label\":\"login \\\"page\\\"\",\"time\":1000,\"status\":\"DOWN\",\"subject\":\"Down\\nagain\"}]}",
+                    read(connection));
+        }
+        finally {
+            statusServer.stop();
+        }
+    }
+
+    private static String read(HttpURLConnection connection) throws Exception {
+        final InputStream in = connection.getInputStream();
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        }
+        finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+}
@@ -5,24 +5,144 @@ CREATE TABLE MONITOR_HOST_STATUS (
     MESSAGE_COUNT INTEGER,
     LAST_NOTIFICATION TIMESTAMP,
     LAST_UPDATED TIMESTAMP,
+    VERSION BIGINT DEFAULT 0 NOT NULL,
     CONSTRAINT PK_MONITOR_HOST_STATUS PRIMARY KEY (HOST_NAME)
 );
 
-CREATE TABLE MONITOR_LOG (
-    HOST_NAME VARCHAR(500),
-    LABEL VARCHAR(2000),
+CREATE TABLE MONITOR_HOST (
+    HOST_ID INTEGER,
+    HOST_NAME VARCHAR(500) NOT NULL,
+    CONSTRAINT PK_MONITOR_HOST PRIMARY KEY (HOST_ID),
+    CONSTRAINT UK_MONITOR_HOST UNIQUE (HOST_NAME)
+);
+
+CREATE TABLE MONITOR_LABEL (
+    LABEL_ID INTEGER,
+    LABEL VARCHAR(2000) NOT NULL,
+    CONSTRAINT PK_MONITOR_LABEL PRIMARY KEY (LABEL_ID),
+    CONSTRAINT UK_MONITOR_LABEL UNIQUE (LABEL)
+);
+
+CREATE TABLE MONITOR_REQUEST (
+    HOST_ID INTEGER,
+    LABEL_ID INTEGER,
     LAST_SAMPLE TIMESTAMP,
     DURATION INTEGER,
     SUCCESS VARCHAR(10),
-    CONSTRAINT PK_MONITOR_LOG PRIMARY KEY (HOST_NAME, LABEL)
+    CONSTRAINT PK_MONITOR_REQUEST PRIMARY KEY (HOST_ID, LABEL_ID)
 );
 
-CREATE TABLE MONITOR_ERRORS (
-    HOST_NAME VARCHAR(500),
-    LABEL VARCHAR(2000),
+CREATE TABLE MONITOR_FAILURE (
+    HOST_ID INTEGER,
+    LABEL_ID INTEGER,
     FAILURE_DATE TIMESTAMP,
     STATUS VARCHAR(50),
     EMAIL_SUBJECT VARCHAR(1000),
     EMAIL_BODY VARCHAR(4000),
     EMAIL_SENT VARCHAR(10)
+);
+
+CREATE TABLE MONITOR_LATENCY (
+    HOST_ID INTEGER,
+    LABEL_ID INTEGER,
+    RESOLUTION INTEGER,
+    BUCKET_START TIMESTAMP,
+    SAMPLE_COUNT INTEGER,
+    ERROR_COUNT INTEGER,
+    MIN_DURATION INTEGER,
+    MAX_DURATION INTEGER,
+    MEAN_DURATION DOUBLE,
+    P50_DURATION INTEGER,
+    P90_DURATION INTEGER,
+    P95_DURATION INTEGER,
+    P99_DURATION INTEGER,
+    CONSTRAINT PK_MONITOR_LATENCY PRIMARY KEY (HOST_ID, LABEL_ID, RESOLUTION, BUCKET_START)
+);
+
+CREATE TABLE MONITOR_MIGRATION (
+    TABLE_NAME VARCHAR(100),
+    MIGRATED TIMESTAMP NOT NULL,
+    CONSTRAINT PK_MONITOR_MIGRATION PRIMARY KEY (TABLE_NAME)
+);
+
+CREATE VIEW MONITOR_LOG AS
+SELECT H.HOST_NAME, L.LABEL, R.LAST_SAMPLE, R.DURATION, R.SUCCESS
+FROM MONITOR_REQUEST R
+    JOIN MONITOR_HOST H ON H.HOST_ID = R.HOST_ID
+    JOIN MONITOR_LABEL L ON L.LABEL_ID = R.LABEL_ID;
+
+CREATE VIEW MONITOR_ERRORS AS
+SELECT H.HOST_NAME, L.LABEL, F.FAILURE_DATE, F.STATUS, F.EMAIL_SUBJECT, F.EMAIL_BODY, F.EMAIL_SENT
+FROM MONITOR_FAILURE F
+    JOIN MONITOR_HOST H ON H.HOST_ID = F.HOST_ID
+    JOIN MONITOR_LABEL L ON L.LABEL_ID = F.LABEL_ID;
+
+CREATE TABLE MONITOR_LEASE (
+    LEASE_NAME VARCHAR(100),
+    OWNER VARCHAR(500) NOT NULL,
+    EXPIRES TIMESTAMP NOT NULL,
+    CONSTRAINT PK_MONITOR_LEASE PRIMARY KEY (LEASE_NAME)
+);;
+
+CREATE TABLE MONITOR_NOTIFICATION_CLAIM (
+    HOST_NAME VARCHAR(500),
+    STATUS VARCHAR(50),
+    WINDOW_START TIMESTAMP,
+    OWNER VARCHAR(500) NOT NULL,
+    CLAIMED TIMESTAMP NOT NULL,
+    CONSTRAINT PK_MONITOR_NOTIFICATION_CLAIM PRIMARY KEY (HOST_NAME, STATUS, WINDOW_START)
+);
+
+CREATE TABLE MONITOR_ERROR_SIGNATURE (
+    SIGNATURE_ID INTEGER,
+    SIGNATURE VARCHAR(1000) NOT NULL,
+    CONSTRAINT PK_MONITOR_ERROR_SIGNATURE PRIMARY KEY (SIGNATURE_ID),
+    CONSTRAINT UK_MONITOR_ERROR_SIGNATURE UNIQUE (SIGNATURE)
+);
+
+CREATE TABLE MONITOR_ERROR_COUNT (
+    HOST_ID INTEGER,
+    SIGNATURE_ID INTEGER,
+    INTERVAL_START TIMESTAMP,
+    FAILURE_COUNT INTEGER NOT NULL,
+    CONSTRAINT PK_MONITOR_ERROR_COUNT PRIMARY KEY (HOST_ID, SIGNATURE_ID, INTERVAL_START)
+);
+
+CREATE TABLE MONITOR_OUTAGE (
+    HOST_ID INTEGER,
+    OUTAGE_START TIMESTAMP,
+    OUTAGE_END TIMESTAMP,
+    DURATION BIGINT,
+    FAILURE_COUNT INTEGER,
+    MESSAGE_COUNT INTEGER,
+    CONSTRAINT PK_MONITOR_OUTAGE PRIMARY KEY (HOST_ID, OUTAGE_START)
+);
+
+CREATE TABLE MONITOR_OUTAGE_STATS (
+    HOST_ID INTEGER,
+    TRACKED_SINCE TIMESTAMP NOT NULL,
+    OUTAGE_COUNT INTEGER NOT NULL,
+    OUTAGE_DURATION BIGINT NOT NULL,
+    CONSTRAINT PK_MONITOR_OUTAGE_STATS PRIMARY KEY (HOST_ID)
+);
+
+CREATE TABLE MONITOR_BURN_RATE (
+    GROUP_NAME VARCHAR(200),
+    NODE_ID VARCHAR(500),
+    SLO_TARGET DOUBLE NOT NULL,
+    SHORT_BURN_RATE DOUBLE NOT NULL,
+    MEDIUM_BURN_RATE DOUBLE NOT NULL,
+    LONG_BURN_RATE DOUBLE NOT NULL,
+    BURNING VARCHAR(10) NOT NULL,
+    LAST_UPDATED TIMESTAMP NOT NULL,
+    CONSTRAINT PK_MONITOR_BURN_RATE PRIMARY KEY (GROUP_NAME, NODE_ID)
+);
+
+CREATE TABLE MONITOR_CLUSTER_STATUS (
+    CLUSTER_NAME VARCHAR(200),
+    STATUS VARCHAR(50) NOT NULL,
+    HOST_COUNT INTEGER NOT NULL,
+    DOWN_COUNT INTEGER NOT NULL,
+    LAST_UPDATED TIMESTAMP NOT NULL,
+    CONSTRAINT PK_MONITOR_CLUSTER_STATUS PRIMARY KEY (CLUSTER_NAME)
 );
\ No newline at end of file